@@ -0,0 +1,244 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.Arrays;
+
+/**
+ * spatial index of the edges of a graph, each edge being the segment between its nodes. The bounding box of the
+ * nodes is covered by a grid of square cells, and each cell lists the edges whose bounding box overlaps it, in
+ * compressed rows: the edges of cell c are cellEdgeIds[cellFirsts[c]] to cellEdgeIds[cellFirsts[c + 1] - 1].
+ * <p>
+ * An edge overlapping several cells of a query is only reported by the one containing the lower left corner of
+ * the intersection of its bounding box with the one of the query, so that it is reported once without keeping
+ * track of the edges already seen.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class EdgeIndex {
+    /**
+     * side of the cells when none is specified, in meters
+     */
+    public static final double DEFAULT_CELL_SIZE = 100;
+    /**
+     * maximal number of cells of the grid, the cells being enlarged if there would be more
+     */
+    private static final int MAX_CELL_COUNT = 1 << 24;
+
+    /**
+     * the graph of the edges
+     */
+    private final Graph graph;
+    /**
+     * the E coordinate of the lower left corner of the grid
+     */
+    private final double minE;
+    /**
+     * the N coordinate of the lower left corner of the grid
+     */
+    private final double minN;
+    /**
+     * the side of the cells, in meters
+     */
+    private final double cellSize;
+    /**
+     * the number of columns of the grid
+     */
+    private final int columnCount;
+    /**
+     * the number of rows of the grid
+     */
+    private final int rowCount;
+    /**
+     * for each cell, the index of its first edge in cellEdgeIds, followed by the total number of entries
+     */
+    private final int[] cellFirsts;
+    /**
+     * the edges of the cells, cell by cell
+     */
+    private final int[] cellEdgeIds;
+
+    /**
+     * constructor of EdgeIndex, with cells of DEFAULT_CELL_SIZE meters
+     *
+     * @param graph the graph of the edges
+     */
+    public EdgeIndex(Graph graph) {
+        this(graph, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * constructor of EdgeIndex
+     *
+     * @param graph    the graph of the edges
+     * @param cellSize the side of the cells, in meters
+     * @throws IllegalArgumentException if the side of the cells is not strictly positive
+     */
+    public EdgeIndex(Graph graph, double cellSize) {
+        Preconditions.checkArgument(cellSize > 0);
+        this.graph = graph;
+        double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+        double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+            minE = Math.min(minE, graph.nodeE(nodeId));
+            minN = Math.min(minN, graph.nodeN(nodeId));
+            maxE = Math.max(maxE, graph.nodeE(nodeId));
+            maxN = Math.max(maxN, graph.nodeN(nodeId));
+        }
+        if (graph.nodeCount() == 0) minE = minN = maxE = maxN = 0;
+        while ((Math.floor((maxE - minE) / cellSize) + 1) * (Math.floor((maxN - minN) / cellSize) + 1) > MAX_CELL_COUNT)
+            cellSize *= 2;
+        this.minE = minE;
+        this.minN = minN;
+        this.cellSize = cellSize;
+        this.columnCount = (int) ((maxE - minE) / cellSize) + 1;
+        this.rowCount = (int) ((maxN - minN) / cellSize) + 1;
+
+        //the edges are counted per cell, then placed in a second pass
+        int[] firsts = new int[columnCount * rowCount + 1];
+        for (int edgeId = 0; edgeId < graph.edgeCount(); ++edgeId) {
+            int[] box = cellBox(edgeId);
+            for (int row = box[2]; row <= box[3]; ++row)
+                for (int column = box[0]; column <= box[1]; ++column) ++firsts[row * columnCount + column + 1];
+        }
+        for (int cell = 0; cell < columnCount * rowCount; ++cell) firsts[cell + 1] += firsts[cell];
+        int[] edgeIds = new int[firsts[columnCount * rowCount]];
+        int[] next = Arrays.copyOf(firsts, columnCount * rowCount);
+        for (int edgeId = 0; edgeId < graph.edgeCount(); ++edgeId) {
+            int[] box = cellBox(edgeId);
+            for (int row = box[2]; row <= box[3]; ++row)
+                for (int column = box[0]; column <= box[1]; ++column)
+                    edgeIds[next[row * columnCount + column]++] = edgeId;
+        }
+        this.cellFirsts = firsts;
+        this.cellEdgeIds = edgeIds;
+    }
+
+    /**
+     * returns the edges whose segment passes at most at the given distance from the given point, sorted by
+     * increasing distance
+     *
+     * @param point          the point
+     * @param searchDistance the maximal distance between the point and the edges, in meters
+     * @param maxCount       the maximal number of edges, the closest ones being kept
+     * @return the identities of the edges
+     * @throws IllegalArgumentException if the distance is negative or if maxCount is not strictly positive
+     */
+    public int[] edgesClosestTo(PointCh point, double searchDistance, int maxCount) {
+        Preconditions.checkArgument(searchDistance >= 0 && maxCount > 0);
+        double queryMinE = point.e() - searchDistance;
+        double queryMinN = point.n() - searchDistance;
+        int firstColumn = column(queryMinE);
+        int lastColumn = column(point.e() + searchDistance);
+        int firstRow = row(queryMinN);
+        int lastRow = row(point.n() + searchDistance);
+        int[] edgeIds = new int[maxCount];
+        double[] squaredDistances = new double[maxCount];
+        int count = 0;
+        double maxSquaredDistance = searchDistance * searchDistance;
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int column = firstColumn; column <= lastColumn; ++column) {
+                int cell = row * columnCount + column;
+                for (int entry = cellFirsts[cell]; entry < cellFirsts[cell + 1]; ++entry) {
+                    int edgeId = cellEdgeIds[entry];
+                    int fromNodeId = graph.edgeSourceNodeId(edgeId);
+                    int toNodeId = graph.edgeTargetNodeId(edgeId);
+                    double fromE = graph.nodeE(fromNodeId), fromN = graph.nodeN(fromNodeId);
+                    double toE = graph.nodeE(toNodeId), toN = graph.nodeN(toNodeId);
+                    //reported by the cell of the lower left corner of the intersection of the boxes only
+                    if (column(Math.max(Math.min(fromE, toE), queryMinE)) != column
+                            || row(Math.max(Math.min(fromN, toN), queryMinN)) != row) continue;
+                    double squaredDistance = squaredDistanceToSegment(fromE, fromN, toE, toN, point.e(), point.n());
+                    if (squaredDistance > maxSquaredDistance) continue;
+                    //insertion in the sorted arrays, the farthest edge being dropped once maxCount edges are kept
+                    if (count == maxCount && squaredDistance >= squaredDistances[count - 1]) continue;
+                    int i = count < maxCount ? count++ : count - 1;
+                    for (; i > 0 && squaredDistances[i - 1] > squaredDistance; --i) {
+                        edgeIds[i] = edgeIds[i - 1];
+                        squaredDistances[i] = squaredDistances[i - 1];
+                    }
+                    edgeIds[i] = edgeId;
+                    squaredDistances[i] = squaredDistance;
+                }
+            }
+        }
+        return Arrays.copyOf(edgeIds, count);
+    }
+
+    /**
+     * returns the position along the given edge closest to the given point, in meters, measured with the length
+     * of the edge as Edge does
+     *
+     * @param edgeId the identity of the edge
+     * @param point  the point
+     * @return the position on the edge closest to the point, between 0 and the length of the edge
+     */
+    public double positionClosestTo(int edgeId, PointCh point) {
+        int fromNodeId = graph.edgeSourceNodeId(edgeId);
+        int toNodeId = graph.edgeTargetNodeId(edgeId);
+        double dE = graph.nodeE(toNodeId) - graph.nodeE(fromNodeId);
+        double dN = graph.nodeN(toNodeId) - graph.nodeN(fromNodeId);
+        double segmentLength = Math2.norm(dE, dN);
+        if (segmentLength == 0) return 0;
+        double projection = Math2.projectionLength(graph.nodeE(fromNodeId), graph.nodeN(fromNodeId),
+                graph.nodeE(toNodeId), graph.nodeN(toNodeId), point.e(), point.n());
+        return Math2.clamp(0, projection / segmentLength, 1) * graph.edgeLength(edgeId);
+    }
+
+    /**
+     * returns the squared distance between a point and a segment
+     *
+     * @param aE the E coordinate of the start of the segment
+     * @param aN the N coordinate of the start of the segment
+     * @param bE the E coordinate of the end of the segment
+     * @param bN the N coordinate of the end of the segment
+     * @param pE the E coordinate of the point
+     * @param pN the N coordinate of the point
+     * @return the squared distance between the point and the closest point of the segment
+     */
+    private static double squaredDistanceToSegment(double aE, double aN, double bE, double bN, double pE,
+                                                   double pN) {
+        double squaredLength = Math2.squaredNorm(bE - aE, bN - aN);
+        double t = squaredLength == 0 ? 0
+                : Math2.clamp(0, Math2.dotProduct(pE - aE, pN - aN, bE - aE, bN - aN) / squaredLength, 1);
+        return Math2.squaredNorm(pE - (aE + t * (bE - aE)), pN - (aN + t * (bN - aN)));
+    }
+
+    /**
+     * returns the columns and rows of the cells overlapped by the bounding box of the given edge
+     *
+     * @param edgeId the identity of the edge
+     * @return the first and last columns, followed by the first and last rows
+     */
+    private int[] cellBox(int edgeId) {
+        int fromNodeId = graph.edgeSourceNodeId(edgeId);
+        int toNodeId = graph.edgeTargetNodeId(edgeId);
+        double fromE = graph.nodeE(fromNodeId), fromN = graph.nodeN(fromNodeId);
+        double toE = graph.nodeE(toNodeId), toN = graph.nodeN(toNodeId);
+        return new int[]{column(Math.min(fromE, toE)), column(Math.max(fromE, toE)),
+                row(Math.min(fromN, toN)), row(Math.max(fromN, toN))};
+    }
+
+    /**
+     * returns the column of the grid containing the given E coordinate, the closest one if it is outside
+     *
+     * @param e the E coordinate
+     * @return the column of the coordinate
+     */
+    private int column(double e) {
+        return Math2.clamp(0, (int) Math.floor((e - minE) / cellSize), columnCount - 1);
+    }
+
+    /**
+     * returns the row of the grid containing the given N coordinate, the closest one if it is outside
+     *
+     * @param n the N coordinate
+     * @return the row of the coordinate
+     */
+    private int row(double n) {
+        return Math2.clamp(0, (int) Math.floor((n - minN) / cellSize), rowCount - 1);
+    }
+}
@@ -1,6 +1,7 @@
 package ch.epfl.javelo.data;
 
 import ch.epfl.javelo.Functions;
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.io.IOException;
@@ -8,12 +9,17 @@ import java.nio.*;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntPredicate;
 
 
 /**
  * represents a Graph
+ * <p>
+ * A graph can be read by several threads at once: its buffers are only read with absolute accesses, which never
+ * modify their position, and the reverse adjacency is built only once, safely published.
  *
  * @author Louis ROCHE (345620)
  * @author Ambroise AIGUEPERSE (341890)
@@ -23,6 +29,10 @@ public final class Graph {
     private final GraphSectors sectors;
     private final GraphEdges edges;
     private final List<AttributeSet> attributeSets;
+    /**
+     * reverse adjacency of the graph, derived from the out-edges the first time it is needed.
+     */
+    private volatile GraphInEdges inEdges;
 
     /**
      * Constructor of the Graph Class.
@@ -95,6 +105,28 @@ public final class Graph {
         return new PointCh(nodes.nodeE(nodeId), nodes.nodeN(nodeId));
     }
 
+    /**
+     * returns the E coordinate of the node at the given id, without building a PointCh
+     * (so without allocation nor bounds check).
+     *
+     * @param nodeId (int) id of the node.
+     * @return (double) the E coordinate of the node at the given id.
+     */
+    public double nodeE(int nodeId) {
+        return nodes.nodeE(nodeId);
+    }
+
+    /**
+     * returns the N coordinate of the node at the given id, without building a PointCh
+     * (so without allocation nor bounds check).
+     *
+     * @param nodeId (int) id of the node.
+     * @return (double) the N coordinate of the node at the given id.
+     */
+    public double nodeN(int nodeId) {
+        return nodes.nodeN(nodeId);
+    }
+
     /**
      * returns the number of edges coming out of a given node.
      *
@@ -116,6 +148,27 @@ public final class Graph {
         return nodes.edgeId(nodeId, edgeIndex);
     }
 
+    /**
+     * returns the number of edges coming into a given node.
+     *
+     * @param nodeId (int) id of the node to extract the number of edges coming into from.
+     * @return (int) the number of edges coming into the given node at nodeId.
+     */
+    public int nodeInDegree(int nodeId) {
+        return inEdges().inDegree(nodeId);
+    }
+
+    /**
+     * return the ID of the edge #edgeIndex coming into the given node.
+     *
+     * @param nodeId    (int) ID of the node to extract the ID of the edge #edgeIndex coming into it.
+     * @param edgeIndex (int) position of the edge in the list of the edges coming into the given node.
+     * @return (int) the ID of the edge #edgeIndex coming into the given node.
+     */
+    public int nodeInEdgeId(int nodeId, int edgeIndex) {
+        return inEdges().edgeId(nodeId, edgeIndex);
+    }
+
     /**
      * returns the identity of the node closest to a given point, and given a radius of search.
      *
@@ -124,25 +177,100 @@ public final class Graph {
      * @return (int) the identity of the node closest to a given point, and given a radius of search.
      */
     public int nodeClosestTo(PointCh point, double searchDistance) {
-        List<GraphSectors.Sector> sectorsNearby = sectors.sectorsInArea(point, searchDistance);
-        List<PointCh> candidates = new ArrayList<>();
-        List<Integer> indexLists = new ArrayList<>();
+        return nodeClosestTo(point, searchDistance, nodeId -> true);
+    }
+
+    /**
+     * returns the identity of the node closest to a given point, among the nodes accepted by the given filter,
+     * and given a radius of search.
+     *
+     * @param point          (PointCh) point to search the closest node to.
+     * @param searchDistance (double) radius of the circle at which the node is to be searched
+     * @param filter         (IntPredicate) condition the identity of a node must satisfy for it to be returned
+     * @return (int) the identity of the closest accepted node, or -1 if there is none within the radius.
+     */
+    public int nodeClosestTo(PointCh point, double searchDistance, IntPredicate filter) {
         int index = -1;
         double minDistance = Math.pow(searchDistance, 2);
-        for (GraphSectors.Sector secteurs : sectorsNearby) {
-            for (int i = secteurs.startNodeId(); i < secteurs.endNodeId(); ++i) {
-                candidates.add(nodePoint(i));
-                indexLists.add(i);
-                //TODO nommer la variable candidates.indexOf(i) - nodePoint(i)
-                if (candidates.get(candidates.indexOf(nodePoint(i))).squaredDistanceTo(point) <= minDistance) {
-                    index = indexLists.get(indexLists.indexOf(i));
-                    minDistance = candidates.get(candidates.indexOf(nodePoint(i))).squaredDistanceTo(point);
+        for (GraphSectors.Sector sector : sectors.sectorsInArea(point, searchDistance)) {
+            for (int nodeId = sector.startNodeId(); nodeId < sector.endNodeId(); ++nodeId) {
+                if (!filter.test(nodeId)) continue;
+                double squaredDistance = nodePoint(nodeId).squaredDistanceTo(point);
+                if (squaredDistance <= minDistance) {
+                    index = nodeId;
+                    minDistance = squaredDistance;
                 }
             }
         }
         return index;
     }
 
+    /**
+     * returns the identities of the nodes closest to a given point, among the nodes accepted by the given filter,
+     * and given a radius of search, sorted by increasing distance to the point.
+     *
+     * @param point          (PointCh) point to search the closest nodes to.
+     * @param searchDistance (double) radius of the circle at which the nodes are to be searched
+     * @param maxCount       (int) maximal number of nodes returned
+     * @param filter         (IntPredicate) condition the identity of a node must satisfy for it to be returned
+     * @return (int[]) the identities of the at most maxCount closest accepted nodes, empty if there is none within
+     * the radius.
+     * @throws IllegalArgumentException if maxCount is not strictly positive.
+     */
+    public int[] nodesClosestTo(PointCh point, double searchDistance, int maxCount, IntPredicate filter) {
+        Preconditions.checkArgument(maxCount > 0);
+        int[] nodeIds = new int[maxCount];
+        double[] squaredDistances = new double[maxCount];
+        int count = 0;
+        double maxSquaredDistance = Math.pow(searchDistance, 2);
+        for (GraphSectors.Sector sector : sectors.sectorsInArea(point, searchDistance)) {
+            for (int nodeId = sector.startNodeId(); nodeId < sector.endNodeId(); ++nodeId) {
+                if (!filter.test(nodeId)) continue;
+                double squaredDistance = nodePoint(nodeId).squaredDistanceTo(point);
+                if (squaredDistance > maxSquaredDistance) continue;
+                //insertion in the sorted arrays, the farthest node being dropped once maxCount nodes are kept
+                if (count == maxCount && squaredDistance >= squaredDistances[count - 1]) continue;
+                int i = count < maxCount ? count++ : count - 1;
+                for (; i > 0 && squaredDistances[i - 1] > squaredDistance; --i) {
+                    nodeIds[i] = nodeIds[i - 1];
+                    squaredDistances[i] = squaredDistances[i - 1];
+                }
+                nodeIds[i] = nodeId;
+                squaredDistances[i] = squaredDistance;
+            }
+        }
+        return Arrays.copyOf(nodeIds, count);
+    }
+
+    /**
+     * returns the sector of given identity, whose nodes are consecutive
+     *
+     * @param identity the identity of the sector
+     * @return the sector of given identity
+     */
+    public GraphSectors.Sector sector(int identity) {
+        return sectors.getSectorAtIdentity(identity);
+    }
+
+    /**
+     * returns the number of edges the graph has
+     *
+     * @return (int) the number of edges the graph has.
+     */
+    public int edgeCount() {
+        return this.edges.count();
+    }
+
+    /**
+     * returns the ID of the node a given edge comes out of.
+     *
+     * @param edgeId (int) ID of the given edge
+     * @return (int) ID of the node the given edge comes out of.
+     */
+    public int edgeSourceNodeId(int edgeId) {
+        return inEdges().sourceNodeId(edgeId);
+    }
+
     /**
      * returns the ID of the target node of a given edge.
      *
@@ -204,4 +332,21 @@ public final class Graph {
                 Functions.sampled(edges.profileSamples(edgeId), edgeLength(edgeId))
                 : Functions.constant(Double.NaN));
     }
+
+    /**
+     * returns the reverse adjacency of the graph, deriving it from the out-edges on the first call
+     * (safely, even if several threads call it at the same time).
+     *
+     * @return the reverse adjacency of the graph.
+     */
+    private GraphInEdges inEdges() {
+        GraphInEdges result = inEdges;
+        if (result == null) {
+            synchronized (this) {
+                result = inEdges;
+                if (result == null) inEdges = result = GraphInEdges.of(nodes, edges);
+            }
+        }
+        return result;
+    }
 }
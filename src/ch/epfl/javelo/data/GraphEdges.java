@@ -28,6 +28,15 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
     private static final int SAMPLES_PER_SHORT_44 = 2;
     private static final int SAMPLES_PER_SHORT_04 = 4;
 
+    /**
+     * returns the total number of edges
+     *
+     * @return the total number of edges
+     */
+    public int count() {
+        return edgesBuffer.capacity() / BYTES_PER_EDGE;
+    }
+
     /**
      * returns whether the given edge's orientation goes in the opposite direction of the OSM way which it provides from
      *
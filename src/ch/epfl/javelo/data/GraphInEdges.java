@@ -0,0 +1,87 @@
+package ch.epfl.javelo.data;
+
+import java.nio.IntBuffer;
+
+/**
+ * represents the reverse adjacency of the JaVelo graph: the edges coming into each node, and the node each
+ * edge comes out of. The graph files only store the out-edges, so it is derived from them.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+
+/**
+ * @param firstInEdges  for each node, the index in inEdgeIds of its first in-edge, followed by the total
+ *                      number of edges (so that the in-edges of node n go from index n to index n + 1, excluded)
+ * @param inEdgeIds     the identities of the edges, sorted by target node
+ * @param sourceNodeIds for each edge identity, the identity of the node it comes out of
+ */
+public record GraphInEdges(IntBuffer firstInEdges, IntBuffer inEdgeIds, IntBuffer sourceNodeIds) {
+
+    /**
+     * derives the reverse adjacency from the out-edges of the given nodes, with a counting sort of the edges by
+     * target node (linear time)
+     *
+     * @param nodes the nodes of the graph
+     * @param edges the edges of the graph
+     * @return the reverse adjacency of the graph
+     */
+    public static GraphInEdges of(GraphNodes nodes, GraphEdges edges) {
+        int nodeCount = nodes.count();
+        int edgeCount = edges.count();
+        int[] firstInEdges = new int[nodeCount + 1];
+        int[] inEdgeIds = new int[edgeCount];
+        int[] sourceNodeIds = new int[edgeCount];
+
+        //count the in-edges of each node (shifted by one), and record the source of each edge
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            for (int i = 0; i < nodes.outDegree(nodeId); ++i) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                sourceNodeIds[edgeId] = nodeId;
+                ++firstInEdges[edges.targetNodeId(edgeId) + 1];
+            }
+        }
+        //prefix sums give the index of the first in-edge of each node
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) firstInEdges[nodeId + 1] += firstInEdges[nodeId];
+
+        int[] nextFreeIndex = new int[nodeCount];
+        System.arraycopy(firstInEdges, 0, nextFreeIndex, 0, nodeCount);
+        for (int edgeId = 0; edgeId < edgeCount; ++edgeId) {
+            int targetNodeId = edges.targetNodeId(edgeId);
+            inEdgeIds[nextFreeIndex[targetNodeId]++] = edgeId;
+        }
+        return new GraphInEdges(IntBuffer.wrap(firstInEdges), IntBuffer.wrap(inEdgeIds), IntBuffer.wrap(sourceNodeIds));
+    }
+
+    /**
+     * returns the number of edges coming into the node with given identity
+     *
+     * @param nodeId the identity of the considered node
+     * @return the number of edges coming into the node with given identity
+     */
+    public int inDegree(int nodeId) {
+        return firstInEdges.get(nodeId + 1) - firstInEdges.get(nodeId);
+    }
+
+    /**
+     * returns the identity of the edgeIndex-th edge coming into the node with given identity
+     *
+     * @param nodeId    the identity of the considered node
+     * @param edgeIndex the index of the edge in the list containing all the edges coming into the node
+     * @return the identity of the edgeIndex-th edge coming into the node with given identity
+     */
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+        return inEdgeIds.get(firstInEdges.get(nodeId) + edgeIndex);
+    }
+
+    /**
+     * returns the identity of the node the given edge comes out of
+     *
+     * @param edgeId the identity of the edge
+     * @return the identity of the node the given edge comes out of
+     */
+    public int sourceNodeId(int edgeId) {
+        return sourceNodeIds.get(edgeId);
+    }
+}
@@ -26,7 +26,10 @@ public record GraphSectors(ByteBuffer buffer) {
     private static final int OFFSET_IDENTITY_OF_FIRST_NODE = 0;
     private static final int OFFSET_NUMBER_OF_NODES = OFFSET_IDENTITY_OF_FIRST_NODE + 4;
     private static final int SECTOR_BYTES = OFFSET_NUMBER_OF_NODES + 2;
-    private static final int NUMBER_OF_SECTORS_ON_SIDE = 128;
+    /**
+     * number of sectors on each side of the grid covering Switzerland
+     */
+    public static final int NUMBER_OF_SECTORS_ON_SIDE = 128;
     private static final double SECTOR_WIDTH = SwissBounds.WIDTH / NUMBER_OF_SECTORS_ON_SIDE;
     private static final double SECTOR_HEIGHT = SwissBounds.HEIGHT / NUMBER_OF_SECTORS_ON_SIDE;
 
@@ -54,12 +57,27 @@ public record GraphSectors(ByteBuffer buffer) {
     }
 
     /**
-     * returns the sectors given its identity
+     * returns the identity of the sector containing the given point (points outside of Switzerland are in the
+     * closest sector)
+     *
+     * @param e the E coordinate of the point
+     * @param n the N coordinate of the point
+     * @return the identity of the sector containing the point
+     */
+    public static int sectorIdentityAt(double e, double n) {
+        int x = Math2.clamp(0, (int) Math.floor((e - SwissBounds.MIN_E) / SECTOR_WIDTH), NUMBER_OF_SECTORS_ON_SIDE - 1);
+        int y = Math2.clamp(0, (int) Math.floor((n - SwissBounds.MIN_N) / SECTOR_HEIGHT), NUMBER_OF_SECTORS_ON_SIDE - 1);
+        return NUMBER_OF_SECTORS_ON_SIDE * y + x;
+    }
+
+    /**
+     * returns the sectors given its identity (the sector in column x and row y, from the south-west corner,
+     * has identity NUMBER_OF_SECTORS_ON_SIDE * y + x)
      *
      * @param identity the identity of the sector
      * @return the sector of given identity
      */
-    private Sector getSectorAtIdentity(int identity) {
+    public Sector getSectorAtIdentity(int identity) {
         //initiated startNodeId here to not calculate it twice
         int startNodeId = (buffer.getInt(identity * SECTOR_BYTES + OFFSET_IDENTITY_OF_FIRST_NODE));
         int endNodeId = startNodeId + Short.toUnsignedInt(buffer.getShort(identity * SECTOR_BYTES + OFFSET_NUMBER_OF_NODES));
@@ -6,6 +6,7 @@ import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
 import ch.epfl.javelo.projection.SwissBounds;
 import ch.epfl.javelo.routing.RoutePoint;
+import ch.epfl.javelo.routing.SearchTrace;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
 import javafx.geometry.Point2D;
@@ -19,6 +20,7 @@ import javafx.scene.text.Text;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * @author Louis ROCHE (345620)
@@ -47,6 +49,7 @@ public final class AnnotatedMapManager {
     private final ObjectProperty<Point2D> mouseOnLastEvent;
     private final DoubleProperty positionAlongRoute;
     private final GridPane statsPane;
+    private final SearchSpaceManager searchSpaceManager;
     private IntegerProperty distanceScaleIndex;
 
     /**
@@ -58,15 +61,46 @@ public final class AnnotatedMapManager {
      * @param consumer    a consumer to display errors
      */
     public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean routeBean, Consumer<String> consumer) {
+        this(graph, tileManager, routeBean, consumer, nodeId -> true);
+    }
+
+    /**
+     * constructor of the class, whose waypoints are only placed on the nodes satisfying the given condition
+     *
+     * @param graph         the graph with all the edges, node...
+     * @param tileManager   the tile manager
+     * @param routeBean     the bean of the displayed route
+     * @param consumer      a consumer to display errors
+     * @param placeableNode condition a node must satisfy for a waypoint to be placed on it
+     */
+    public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean routeBean, Consumer<String> consumer, IntPredicate placeableNode) {
+        this(graph, tileManager, routeBean, consumer, placeableNode, new SearchTrace());
+    }
+
+    /**
+     * constructor of the class, which can show the nodes settled by the searches of the route above the map
+     *
+     * @param graph         the graph with all the edges, node...
+     * @param tileManager   the tile manager
+     * @param routeBean     the bean of the displayed route
+     * @param consumer      a consumer to display errors
+     * @param placeableNode condition a node must satisfy for a waypoint to be placed on it
+     * @param searchTrace   the trace recording the nodes settled by the route computer of the bean
+     */
+    public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean routeBean, Consumer<String> consumer, IntPredicate placeableNode,
+                               SearchTrace searchTrace) {
         this.routeBean = routeBean;
         mouseOnLastEvent = new SimpleObjectProperty<>();
         MapViewParameters mapViewParameters = new MapViewParameters(INITIAL_ZOOM_LEVEL, INITIAL_X, INITIAL_Y);
         mapViewParametersP = new SimpleObjectProperty<>(mapViewParameters);
-        WaypointsManager waypointsManager = new WaypointsManager(graph, mapViewParametersP, routeBean.getWaypoints(), consumer);
+        WaypointsManager waypointsManager = new WaypointsManager(graph, mapViewParametersP, routeBean.getWaypoints(), consumer,
+                routeBean::previewWaypoint, placeableNode);
         BaseMapManager baseMapManager = new BaseMapManager(tileManager, waypointsManager, mapViewParametersP);
         RouteManager routeManager = new RouteManager(routeBean, mapViewParametersP);
         positionAlongRoute = new SimpleDoubleProperty();
-        pane = new StackPane(baseMapManager.pane(), routeManager.pane(), waypointsManager.pane());
+        searchSpaceManager = new SearchSpaceManager(graph, searchTrace, routeBean.route(), mapViewParametersP);
+        searchSpaceManager.pane().setVisible(false);
+        pane = new StackPane(baseMapManager.pane(), searchSpaceManager.pane(), routeManager.pane(), waypointsManager.pane());
         this.statsPane = new StatsPane(routeBean, consumer).pane();
         pane.getStylesheets().add("map.css");
         distanceScaleIndex= new SimpleIntegerProperty(INITIAL_DISTANCE_SCALE_INDEX);
@@ -92,6 +126,16 @@ public final class AnnotatedMapManager {
         return positionAlongRoute;
     }
 
+    /**
+     * returns the property telling whether the nodes settled by the searches of the route are shown, which is
+     * false initially
+     *
+     * @return the property telling whether the search space is shown
+     */
+    public BooleanProperty searchSpaceVisibleProperty() {
+        return searchSpaceManager.pane().visibleProperty();
+    }
+
     /**
      * creation of the buttons for the bonus
      */
@@ -3,6 +3,7 @@ package ch.epfl.javelo.gui;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.routing.*;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -15,6 +16,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 
 /**
@@ -33,8 +35,14 @@ public final class JaVelo extends Application {
     private static final String SERVER_NAME = "tile.openstreetmap.org";
     private static final String PATH_TO_REPERTORY = "osm-cache";
     private static final String NAME_OF_DATA_FILES = "javelo-data";
+    private static final String DERIVED_DATA_NAME = "citybike";
     private static final String FILE_NAME_WRITTEN = "javelo.gpx";
-    private static final int MAX_STEP_LENGTH = 5;
+    private static final String ROUTE_MENU_TEXT = "Itinéraire";
+    private static final String OPTIMIZE_ORDER_TEXT = "Optimiser l'ordre des points";
+    private static final String SHOW_SEARCH_SPACE_TEXT = "Afficher l'espace de recherche";
+    private static final String RELOAD_OVERRIDES_TEXT = "Recharger les fermetures";
+    private static final String OVERRIDES_FILE_NAME = "closures.txt";
+    private static final String INVALID_OVERRIDES_MESSAGE = "Fichier des fermetures invalide !";
     public static final String STRING_MAP_1 = "Route adaptée aux vélos";
     public static final String STRING_MAP_0 = "Route par défaut";
     public static final String STRING_MAP_2 = "Carte Paysage";
@@ -65,14 +73,43 @@ public final class JaVelo extends Application {
         Path cacheBasePathJavelo = Path.of(PATH_TO_REPERTORY);
         TileManager tileManager =
                 new TileManager(cacheBasePathJavelo, SERVER_NAME);
-        CostFunction costFunction = new CityBikeCF(graphJavelo);
-        RouteBean bean = new RouteBean(new RouteComputer(graphJavelo, costFunction));
+        CostFunction costFunction = new TableCF(loadCostTable(graphJavelo));
+        ConnectedComponents components = loadComponents(graphJavelo);
+        //the overrides only raise the costs, so that the components computed without them stay valid
+        EdgeOverrides overrides = new EdgeOverrides(graphJavelo.edgeCount());
+        //the previews follow the overrides too, their arcs being costed again whenever the overrides change
+        CostFunction routingCostFunction = new OverridingCF(costFunction, overrides);
+        RouteComputer routeComputer = new RouteComputer(graphJavelo, routingCostFunction, components);
+        RouteBean bean = new RouteBean(routeComputer, loadOverview(graphJavelo, routingCostFunction));
+        SearchTrace searchTrace = new SearchTrace();
         ErrorManager errorManager = new ErrorManager();
-        AnnotatedMapManager map = new AnnotatedMapManager(graphJavelo, tileManager, bean, errorManager::displayError);
+        AnnotatedMapManager map = new AnnotatedMapManager(graphJavelo, tileManager, bean, errorManager::displayError,
+                components == null ? nodeId -> true : components::isInLargestComponent, searchTrace);
 
         MenuItem option = new MenuItem(EXPORTER_GFX);
         Menu filesMenu = new Menu(FILE_NAME, null, option);
-        MenuBar bar = new MenuBar(filesMenu);
+        //the first and last waypoints are the start and the destination chosen by the user, so only the others move
+        MenuItem optimizeOrder = new MenuItem(OPTIMIZE_ORDER_TEXT);
+        optimizeOrder.setOnAction(event -> bean.optimizeWaypointOrder(true, true));
+        optimizeOrder.disableProperty().bind(bean.optimizingOrderProperty());
+        //the searches are only recorded while they are shown, so that they cost nothing otherwise
+        CheckMenuItem showSearchSpace = new CheckMenuItem(SHOW_SEARCH_SPACE_TEXT);
+        showSearchSpace.setOnAction(event ->
+                routeComputer.setSearchTrace(showSearchSpace.isSelected() ? searchTrace : null));
+        map.searchSpaceVisibleProperty().bind(showSearchSpace.selectedProperty());
+        overrides.addListener(() -> Platform.runLater(bean::invalidateRoutes));
+        Runnable applyOverridesFile = () -> {
+            try {
+                loadOverrides(overrides);
+            } catch (IOException | IllegalArgumentException e) {
+                errorManager.displayError(INVALID_OVERRIDES_MESSAGE);
+            }
+        };
+        applyOverridesFile.run();
+        MenuItem reloadOverrides = new MenuItem(RELOAD_OVERRIDES_TEXT);
+        reloadOverrides.setOnAction(event -> applyOverridesFile.run());
+        Menu routeMenu = new Menu(ROUTE_MENU_TEXT, null, optimizeOrder, showSearchSpace, reloadOverrides);
+        MenuBar bar = new MenuBar(filesMenu, routeMenu);
         bonusOptions(bar, tileManager);
 
         SplitPane window = new SplitPane();
@@ -86,8 +123,8 @@ public final class JaVelo extends Application {
         bean.route().addListener((observable, oldValue, newValue) -> {
             window.getItems().remove(profileManager.pane());
             if (newValue != null) {
-                ElevationProfile profile = ElevationProfileComputer
-                        .elevationProfile(bean.route().get(), MAX_STEP_LENGTH);
+                //computed in the background along with the route, and set before it
+                ElevationProfile profile = bean.elevationProfile().get();
                 profileProperty.set(profile);
                 bar.setDisable(false);
                 option.setOnAction(event -> {
@@ -160,4 +197,68 @@ public final class JaVelo extends Application {
             c.setSelected(false);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * loads the connected components of the graph from the data files, if they have been derived by
+     * ConnectedComponentsBuilder
+     *
+     * @param graph the graph of the components
+     * @return the connected components of the graph, or null if their file is missing, in which case the queries
+     * without route are not rejected at once, and the waypoints can be placed on any node
+     * @throws IOException              if the file of the components exists but cannot be read
+     * @throws IllegalArgumentException if the file of the components is not the one of the graph
+     */
+    private static ConnectedComponents loadComponents(Graph graph) throws IOException {
+        try {
+            return ConnectedComponents.loadFrom(graph, Path.of(NAME_OF_DATA_FILES), DERIVED_DATA_NAME);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * loads the cost table of CityBikeCF from the data files, or computes it if it is missing
+     *
+     * @param graph the graph of the table
+     * @return the cost table of the graph
+     * @throws IOException if the file of the table exists but cannot be read
+     */
+    private static CostTable loadCostTable(Graph graph) throws IOException {
+        try {
+            return CostTable.loadFrom(graph, Path.of(NAME_OF_DATA_FILES), DERIVED_DATA_NAME);
+        } catch (NoSuchFileException e) {
+            return CostTableBuilder.build(graph, new CityBikeCF(graph));
+        }
+    }
+
+    /**
+     * replaces the overrides of the edges by the ones of the closures file of the data files, if there is one
+     *
+     * @param overrides the overrides of the edges
+     * @throws IOException              if the file exists but cannot be read
+     * @throws IllegalArgumentException if the file is invalid
+     */
+    private static void loadOverrides(EdgeOverrides overrides) throws IOException {
+        try {
+            overrides.loadFrom(Path.of(NAME_OF_DATA_FILES, OVERRIDES_FILE_NAME));
+        } catch (NoSuchFileException e) {
+            overrides.clear();
+        }
+    }
+
+    /**
+     * loads the overview graph from the data files, if it has been derived by OverviewGraphBuilder
+     *
+     * @param graph        the graph of the overview
+     * @param costFunction the cost function of the overview
+     * @return the overview graph, or null if its files are missing, in which case no approximate route is shown
+     * @throws IOException if the files of the overview exist but cannot be read
+     */
+    private static OverviewGraph loadOverview(Graph graph, CostFunction costFunction) throws IOException {
+        try {
+            return OverviewGraph.loadFrom(graph, costFunction, Path.of(NAME_OF_DATA_FILES), DERIVED_DATA_NAME);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -6,7 +6,6 @@ import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.util.Pair;
 
 import java.util.*;
 
@@ -16,11 +15,6 @@ import java.util.*;
  * @author Ambroise AIGUEPERSE (341890)
  */
 public final class RouteBean {
-    /**
-     * routeComputer to use to compute the itineraries between the multiple waypoints.
-     */
-    private final RouteComputer routeComputer;
-
     /**
      * list of waypoints to compute the itinerary between.
      */
@@ -38,31 +32,13 @@ public final class RouteBean {
      */
     private final ObjectProperty<ElevationProfile> elevationProfile;
     /**
-     * Cache used to avoid repetitive computations of the best itineraries between two points.
+     * service computing the route and its elevation profile in the background
      */
-    private final Map<Pair<Integer, Integer>, Route> bestRouteCache;
+    private final RouteService routeService;
     /**
-     * List representing the multiple itineraries linking the multiple waypoints on the map.
+     * whether the order of the waypoints is being optimized in the background
      */
-    private final List<Route> theRoutes;
-    /**
-     * initial size of the bestRouteCache
-     */
-    private final static int INITIAL_CAPACITY = 30;
-
-    /**
-     * default load factor of any LinkedHashMap -> to be used in the constructor of bestRouteCache.
-     */
-    private final static float LOAD_FACTOR = 0.75f;
-    /**
-     * determines whether any iterator accesses the elements in a LinkedHashMap by their reversed order of access (true here)
-     */
-    private final static boolean ELDEST_ACCESS = true;
-    /**
-     * Max step length of the elevation profile computer
-     */
-    private static final int MAX_STEP_LENGTH = 5;
-
+    private final BooleanProperty optimizingOrder;
 
     /**
      * constructor of the RouteBean class, creates a bean which is used for observation purposes.
@@ -71,13 +47,23 @@ public final class RouteBean {
      *                      an observable value.
      */
     public RouteBean(RouteComputer routeComputer) {
-        this.routeComputer = routeComputer;
-        this.bestRouteCache = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, ELDEST_ACCESS);
+        this(routeComputer, null);
+    }
+
+    /**
+     * constructor of the RouteBean class, showing an approximate route given by the overview graph while the
+     * route is computed.
+     *
+     * @param routeComputer RouteComputer which will be used to compute the route
+     * @param overview      overview of the graph giving the approximate routes, or null to show none
+     */
+    public RouteBean(RouteComputer routeComputer, OverviewGraph overview) {
+        this.routeService = new RouteService(routeComputer, overview);
+        this.optimizingOrder = new SimpleBooleanProperty();
         this.route = new SimpleObjectProperty<>();
         this.waypoints = FXCollections.observableArrayList();
         this.elevationProfile = new SimpleObjectProperty<>();
         this.highlightedPosition = new SimpleDoubleProperty();
-        this.theRoutes = new ArrayList<>();
         installListeners();
     }
 
@@ -153,6 +139,46 @@ public final class RouteBean {
         return index;
     }
 
+    /**
+     * reorders the waypoints so that the route going through them is as cheap as possible, as far as the
+     * heuristics of WaypointOrderOptimizer can tell. The order is computed in the background by the route service,
+     * and the list of waypoints is changed at once, so that the route is computed only once. The order is dropped
+     * if the waypoints change in the meantime, and nothing is done while another optimization is running.
+     *
+     * @param fixedFirst whether the first waypoint must stay the first one
+     * @param fixedLast  whether the last waypoint must stay the last one
+     */
+    public void optimizeWaypointOrder(boolean fixedFirst, boolean fixedLast) {
+        if (waypoints.size() < 2 || optimizingOrder.get()) return;
+        optimizingOrder.set(true);
+        List<WayPoint> current = List.copyOf(waypoints);
+        routeService.optimizeWaypointOrder(nodeIdsOfWaypoints(), fixedFirst, fixedLast, order -> {
+            optimizingOrder.set(false);
+            if (order == null) return;
+            List<WayPoint> reordered = new ArrayList<>();
+            for (int index : order) reordered.add(current.get(index));
+            waypoints.setAll(reordered);
+        });
+    }
+
+    /**
+     * returns the property telling whether the order of the waypoints is being optimized in the background
+     *
+     * @return the property telling whether the order of the waypoints is being optimized
+     */
+    public ReadOnlyBooleanProperty optimizingOrderProperty() {
+        return optimizingOrder;
+    }
+
+    /**
+     * computes the route again without reusing the routes computed so far, which must be done whenever the costs
+     * given by the cost function of the route computer change, for instance when edges are closed
+     */
+    public void invalidateRoutes() {
+        routeService.invalidateRoutes();
+        updateRoute();
+    }
+
     /**
      * installs the listener on the list of waypoints, and makes it so the program reacts
      * to any change it might have.
@@ -161,52 +187,63 @@ public final class RouteBean {
         waypoints.addListener((ListChangeListener<WayPoint>) c -> updateRoute());
     }
 
+    /**
+     * computes the route as if the waypoint at the given index was replaced by the given one, without changing
+     * the list of waypoints. Used to preview the route while a waypoint is being dragged: the route of the actual
+     * waypoints is only computed again when the list changes.
+     *
+     * @param index    the index of the waypoint being moved
+     * @param wayPoint the position the waypoint would be moved to
+     */
+    public void previewWaypoint(int index, WayPoint wayPoint) {
+        List<Integer> nodeIds = nodeIdsOfWaypoints();
+        nodeIds.set(index, wayPoint.closestNodeId());
+        requestRoute(nodeIds);
+    }
+
     /**
      * updates the route of this routeBean when the list of waypoint changes. I.e. some waypoint changed position,
      * a waypoint has been added or removed.
      */
     private void updateRoute() {
-        theRoutes.clear();
-        if (waypoints.size() >= 2) {
-            for (int i = 0; i < waypoints.size() - 1; i++) {
-                int nodeIdOfFirstWaypoint = waypoints.get(i).closestNodeId();
-                int nodeIdOfSecondWaypoint = waypoints.get(i + 1).closestNodeId();
-                Pair<Integer, Integer> pairOfWaypoints = new Pair<>(nodeIdOfFirstWaypoint, nodeIdOfSecondWaypoint);
-                if (!(nodeIdOfFirstWaypoint == nodeIdOfSecondWaypoint)) {
-                    if (!(bestRouteCache.containsKey(pairOfWaypoints))) {
-                        Route bestRouteBetween = routeComputer.bestRouteBetween(nodeIdOfFirstWaypoint, nodeIdOfSecondWaypoint);
-                        if (bestRouteBetween == null) {
-                            nullifyProperties();
-                            return;
-                        }
-                        bestRouteCache.put(pairOfWaypoints, bestRouteBetween);
-                        if (bestRouteCache.size() == INITIAL_CAPACITY) {
-                            bestRouteCache.remove(bestRouteCache.keySet().iterator().next());
-                        }
-                    }
-                    theRoutes.add(bestRouteCache.get(pairOfWaypoints));
-                }
-            }
-            route.set(new MultiRoute(theRoutes));
-            computeElevationProfile();
-        } else {
+        requestRoute(nodeIdsOfWaypoints());
+    }
+
+    /**
+     * returns the identities of the nodes closest to the waypoints, in order
+     *
+     * @return a modifiable list of the identities of the nodes of the waypoints
+     */
+    private List<Integer> nodeIdsOfWaypoints() {
+        List<Integer> nodeIds = new ArrayList<>();
+        for (WayPoint wayPoint : waypoints) nodeIds.add(wayPoint.closestNodeId());
+        return nodeIds;
+    }
+
+    /**
+     * requests the computation of the route going through the given nodes in the background. The properties are
+     * updated once it is computed, unless another route was requested in the meantime.
+     *
+     * @param nodeIds the identities of the nodes the route goes through
+     */
+    private void requestRoute(List<Integer> nodeIds) {
+        if (nodeIds.size() < 2) {
+            routeService.cancel();
             nullifyProperties();
+            return;
         }
+        routeService.computeRoute(nodeIds, (newRoute, newElevationProfile) -> {
+            //the profile is set first, so that the listeners of the route see the profile matching it
+            elevationProfile.set(newElevationProfile);
+            route.set(newRoute);
+        });
     }
 
     /**
      * Nullifies the properties of this bean in case the list of waypoints cannot compute a route.
      */
     private void nullifyProperties() {
-        theRoutes.clear();
-        route.setValue(null);
         elevationProfile.set(null);
-    }
-
-    /**
-     * Computes the elevation profile of the updated route.
-     */
-    private void computeElevationProfile() {
-        elevationProfile.set(ElevationProfileComputer.elevationProfile(route.get(), MAX_STEP_LENGTH));
+        route.setValue(null);
     }
 }
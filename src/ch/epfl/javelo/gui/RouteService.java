@@ -0,0 +1,272 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.routing.*;
+import javafx.application.Platform;
+import javafx.util.Pair;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * computes the routes between waypoints on a background thread, so that the JavaFX application thread is never
+ * blocked by a search.
+ * <p>
+ * Each request gets a new generation number, and makes the previous ones obsolete: an obsolete search is
+ * cancelled cooperatively by the route computer, and the result of an obsolete request is never published.
+ * Results are published on the JavaFX application thread. If an overview graph is given, an approximate route
+ * is published first whenever a segment of the route is not in the cache, so that something is shown while the
+ * best route is computed.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class RouteService {
+    /**
+     * maximal number of routes between two nodes kept in the cache
+     */
+    private static final int CACHE_CAPACITY = 30;
+    /**
+     * default load factor of any LinkedHashMap -> to be used in the constructor of bestRouteCache.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * determines whether any iterator accesses the elements in a LinkedHashMap by their reversed order of access (true here)
+     */
+    private static final boolean ELDEST_ACCESS = true;
+    /**
+     * Max step length of the elevation profile computer
+     */
+    private static final int MAX_STEP_LENGTH = 5;
+
+    /**
+     * routeComputer to use to compute the itineraries between the multiple waypoints.
+     */
+    private final RouteComputer routeComputer;
+    /**
+     * overview of the graph giving the approximate routes shown while the best ones are computed, or null
+     */
+    private final OverviewGraph overview;
+    /**
+     * the thread computing the routes, a daemon so that it never prevents the application from exiting
+     */
+    private final ExecutorService executor;
+    /**
+     * the generation of the last request
+     */
+    private final AtomicLong generation;
+    /**
+     * Cache used to avoid repetitive computations of the best itineraries between two nodes, only accessed by
+     * the thread computing the routes.
+     */
+    private final Map<Pair<Integer, Integer>, Route> bestRouteCache;
+
+    /**
+     * constructor of RouteService
+     *
+     * @param routeComputer routeComputer to use to compute the itineraries between the waypoints
+     */
+    public RouteService(RouteComputer routeComputer) {
+        this(routeComputer, null);
+    }
+
+    /**
+     * constructor of RouteService, showing approximate routes given by the overview graph while the best ones are
+     * computed
+     *
+     * @param routeComputer routeComputer to use to compute the itineraries between the waypoints
+     * @param overview      overview of the graph giving the approximate routes, or null to show none
+     */
+    public RouteService(RouteComputer routeComputer, OverviewGraph overview) {
+        this.routeComputer = routeComputer;
+        this.overview = overview;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "route-service");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.generation = new AtomicLong();
+        this.bestRouteCache = new LinkedHashMap<>(CACHE_CAPACITY, LOAD_FACTOR, ELDEST_ACCESS) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Pair<Integer, Integer>, Route> eldest) {
+                return size() > CACHE_CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * requests the computation of the route going through the given nodes, in order, and of its elevation
+     * profile. Once they are computed, and if no other request was made in the meantime, they are given to the
+     * consumer on the JavaFX application thread (both null if there is no route between two of the nodes, or if
+     * there are less than two distinct nodes).
+     *
+     * @param nodeIds  the identities of the nodes the route goes through
+     * @param onResult the consumer of the route and of its elevation profile
+     */
+    public void computeRoute(List<Integer> nodeIds, BiConsumer<Route, ElevationProfile> onResult) {
+        long requestGeneration = generation.incrementAndGet();
+        List<Integer> nodes = List.copyOf(nodeIds);
+        executor.execute(() -> {
+            if (isObsolete(requestGeneration)) return;
+            try {
+                if (overview != null && !isCached(nodes)) {
+                    Route preview = previewRoute(nodes);
+                    if (preview != null) publish(preview, requestGeneration, onResult);
+                }
+                publish(route(nodes, requestGeneration), requestGeneration, onResult);
+            } catch (CancellationException e) {
+                //a newer request has been made, which will publish its own result
+            }
+        });
+    }
+
+    /**
+     * requests the computation of the order of visit of the waypoints placed on the given nodes minimizing the cost
+     * of the route going through them, on the thread of the service. The order is given to the consumer on the
+     * JavaFX application thread, or null if a route was requested in the meantime (so that the waypoints may have
+     * changed) or if it could not be computed.
+     *
+     * @param nodeIds    the identities of the nodes of the waypoints, in their current order
+     * @param fixedFirst whether the first waypoint must stay the first one
+     * @param fixedLast  whether the last waypoint must stay the last one
+     * @param onResult   the consumer of the indices of the waypoints in their new order, or of null
+     */
+    public void optimizeWaypointOrder(List<Integer> nodeIds, boolean fixedFirst, boolean fixedLast,
+                                      Consumer<int[]> onResult) {
+        long requestGeneration = generation.get();
+        int[] nodes = nodeIds.stream().mapToInt(Integer::intValue).toArray();
+        executor.execute(() -> {
+            int[] order = null;
+            try {
+                if (!isObsolete(requestGeneration))
+                    order = WaypointOrderOptimizer.optimalOrder(routeComputer, nodes, fixedFirst, fixedLast,
+                            () -> isObsolete(requestGeneration));
+            } catch (CancellationException e) {
+                //a route was requested in the meantime, which must not wait for the whole matrix
+            } finally {
+                //the consumer is always called, so that it knows that the optimization is over
+                int[] result = order;
+                Platform.runLater(() -> onResult.accept(isObsolete(requestGeneration) ? null : result));
+            }
+        });
+    }
+
+    /**
+     * computes the elevation profile of the given route, and gives both to the consumer on the JavaFX application
+     * thread, unless the request became obsolete in the meantime
+     *
+     * @param route             the route, or null if there is none
+     * @param requestGeneration the generation of the request
+     * @param onResult          the consumer of the route and of its elevation profile
+     */
+    private void publish(Route route, long requestGeneration, BiConsumer<Route, ElevationProfile> onResult) {
+        ElevationProfile profile = route == null ? null
+                : ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH);
+        Platform.runLater(() -> {
+            if (!isObsolete(requestGeneration)) onResult.accept(route, profile);
+        });
+    }
+
+    /**
+     * makes all the requests made so far obsolete, so that their searches stop and their results are never
+     * published
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * forgets the routes computed so far, which must be done whenever the costs given by the cost function of the
+     * route computer change. The cache is emptied, and the costs of the overview arcs computed again, by the
+     * thread of the service, before the requests made after this call are handled.
+     */
+    public void invalidateRoutes() {
+        executor.execute(() -> {
+            bestRouteCache.clear();
+            routeComputer.invalidateRetainedTree();
+            if (overview != null) overview.updateArcCosts();
+        });
+    }
+
+    /**
+     * returns whether a request of the given generation is obsolete
+     *
+     * @param requestGeneration the generation of the request
+     * @return true if another request was made after it
+     */
+    private boolean isObsolete(long requestGeneration) {
+        return generation.get() != requestGeneration;
+    }
+
+    /**
+     * returns whether the best routes of all the segments between the given nodes are in the cache
+     *
+     * @param nodeIds the identities of the nodes the route goes through
+     * @return true if no segment has to be computed
+     */
+    private boolean isCached(List<Integer> nodeIds) {
+        for (int i = 0; i < nodeIds.size() - 1; i++) {
+            int first = nodeIds.get(i);
+            int second = nodeIds.get(i + 1);
+            if (first != second && !bestRouteCache.containsKey(new Pair<>(first, second))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * computes the approximate route going through the given nodes with the overview graph, using the best
+     * routes of the segments which are in the cache
+     *
+     * @param nodeIds the identities of the nodes the route goes through
+     * @return the approximate route, or null if the overview gives none for one of the segments
+     */
+    private Route previewRoute(List<Integer> nodeIds) {
+        List<Route> segments = new ArrayList<>();
+        for (int i = 0; i < nodeIds.size() - 1; i++) {
+            int first = nodeIds.get(i);
+            int second = nodeIds.get(i + 1);
+            if (first == second) continue;
+            Route segment = bestRouteCache.get(new Pair<>(first, second));
+            if (segment == null) segment = overview.previewRouteBetween(first, second);
+            if (segment == null) return null;
+            segments.add(segment);
+        }
+        return segments.isEmpty() ? null : new MultiRoute(segments);
+    }
+
+    /**
+     * computes the route going through the given nodes, on the thread of the service
+     *
+     * @param nodeIds           the identities of the nodes the route goes through
+     * @param requestGeneration the generation of the request
+     * @return the route, or null if there is none
+     * @throws CancellationException if the request became obsolete during a search
+     */
+    private Route route(List<Integer> nodeIds, long requestGeneration) {
+        List<Route> segments = new ArrayList<>();
+        for (int i = 0; i < nodeIds.size() - 1; i++) {
+            int nodeIdOfFirstWaypoint = nodeIds.get(i);
+            int nodeIdOfSecondWaypoint = nodeIds.get(i + 1);
+            if (nodeIdOfFirstWaypoint == nodeIdOfSecondWaypoint) continue;
+            Pair<Integer, Integer> pairOfWaypoints = new Pair<>(nodeIdOfFirstWaypoint, nodeIdOfSecondWaypoint);
+            Route bestRouteBetween = bestRouteCache.get(pairOfWaypoints);
+            if (bestRouteBetween == null) {
+                //while the last waypoint is moved, the last segment always starts from the same node, so that
+                //the tree of its previous searches can be reused
+                bestRouteBetween = i == nodeIds.size() - 2
+                        ? routeComputer.incrementalBestRouteBetween(nodeIdOfFirstWaypoint, nodeIdOfSecondWaypoint,
+                        () -> isObsolete(requestGeneration))
+                        : routeComputer.bestRouteBetween(nodeIdOfFirstWaypoint, nodeIdOfSecondWaypoint,
+                        () -> isObsolete(requestGeneration));
+                if (bestRouteBetween == null) return null;
+                bestRouteCache.put(pairOfWaypoints, bestRouteBetween);
+            }
+            segments.add(bestRouteBetween);
+        }
+        return segments.isEmpty() ? null : new MultiRoute(segments);
+    }
+}
@@ -0,0 +1,207 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.PointWebMercator;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.SearchTrace;
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Text;
+
+/**
+ * draws the nodes settled by the searches of the displayed route as a heat layer over the map, along with their
+ * number and duration, to compare the search spaces of the kinds of queries
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class SearchSpaceManager {
+    /**
+     * side of the squares of the heat layer, in pixels
+     */
+    private static final int CELL_SIZE = 4;
+    /**
+     * hue of the squares containing the fewest settled nodes (yellow)
+     */
+    private static final double COLD_HUE = 60;
+    /**
+     * hue of the squares containing the most settled nodes (red)
+     */
+    private static final double HOT_HUE = 0;
+    /**
+     * opacity of the squares of the heat layer
+     */
+    private static final double OPACITY = 0.5;
+    /**
+     * position of the text of the statistics, from the bottom left corner of the pane
+     */
+    private static final int TEXT_PADDING = 10;
+    /**
+     * number of nanoseconds in a millisecond
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * the graph of the settled nodes
+     */
+    private final Graph graph;
+    /**
+     * the trace recording the nodes settled by the searches
+     */
+    private final SearchTrace trace;
+    /**
+     * property containing the parameters of the displayed map
+     */
+    private final ObjectProperty<MapViewParameters> mapViewParameters;
+    /**
+     * the canvas of the heat layer
+     */
+    private final Canvas canvas;
+    /**
+     * the statistics of the searches
+     */
+    private final Text stats;
+    /**
+     * the pane containing the canvas and the statistics
+     */
+    private final Pane pane;
+    /**
+     * the points of the settled nodes of the displayed searches, or null if there are none
+     */
+    private PointWebMercator[] settledPoints;
+    /**
+     * whether the canvas must be redrawn on the next pulse
+     */
+    private boolean redrawNeeded;
+
+    /**
+     * constructor of the class
+     *
+     * @param graph             the graph of the settled nodes
+     * @param trace             the trace recording the nodes settled by the searches of the route
+     * @param route             property containing the displayed route
+     * @param mapViewParameters property containing the parameters of the displayed map
+     */
+    public SearchSpaceManager(Graph graph, SearchTrace trace, ReadOnlyObjectProperty<Route> route,
+                              ObjectProperty<MapViewParameters> mapViewParameters) {
+        this.graph = graph;
+        this.trace = trace;
+        this.mapViewParameters = mapViewParameters;
+        canvas = new Canvas();
+        stats = new Text();
+        pane = new Pane(canvas, stats);
+        pane.setPickOnBounds(false);
+        canvas.setMouseTransparent(true);
+        stats.setMouseTransparent(true);
+        canvas.widthProperty().bind(pane.widthProperty());
+        canvas.heightProperty().bind(pane.heightProperty());
+        stats.setLayoutX(TEXT_PADDING);
+        stats.layoutYProperty().bind(pane.heightProperty().subtract(TEXT_PADDING));
+        installListeners(route);
+    }
+
+    /**
+     * returns the pane containing the heat layer and the statistics
+     *
+     * @return the pane containing the heat layer and the statistics
+     */
+    public Pane pane() {
+        return pane;
+    }
+
+    /**
+     * installs the listeners updating the layer: the searches recorded since the previous route are shown with
+     * each new route, and the layer is redrawn when the map moves or is resized
+     *
+     * @param route property containing the displayed route
+     */
+    private void installListeners(ReadOnlyObjectProperty<Route> route) {
+        canvas.sceneProperty().addListener((p, oldS, newS) -> {
+            if (newS != null) newS.addPreLayoutPulseListener(this::redrawIfNeeded);
+        });
+        canvas.widthProperty().addListener((o, oV, nV) -> redrawOnNextPulse());
+        canvas.heightProperty().addListener((o, oV, nV) -> redrawOnNextPulse());
+        mapViewParameters.addListener((o, oV, nV) -> redrawOnNextPulse());
+        pane.visibleProperty().addListener((o, oV, nV) -> redrawOnNextPulse());
+        route.addListener((o, oV, nV) -> {
+            SearchTrace.Snapshot snapshot = trace.drain();
+            if (nV == null || snapshot.searchCount() == 0) {
+                //a route found without searching, in the cache or in the overview, leaves the layer as it is
+                if (nV == null) clear();
+                return;
+            }
+            settledPoints = new PointWebMercator[snapshot.settledCount()];
+            for (int i = 0; i < settledPoints.length; ++i) {
+                int nodeId = snapshot.nodeId(i);
+                settledPoints[i] = PointWebMercator.ofPointCh(new PointCh(graph.nodeE(nodeId), graph.nodeN(nodeId)));
+            }
+            stats.setText(String.format("%d searches, %d settled nodes (%d backward), %.1f ms",
+                    snapshot.searchCount(), snapshot.settledCount(), snapshot.backwardCount(),
+                    snapshot.searchNanos() / NANOS_PER_MILLI));
+            redrawOnNextPulse();
+        });
+    }
+
+    /**
+     * removes the searches shown by the layer
+     */
+    private void clear() {
+        settledPoints = null;
+        stats.setText(null);
+        redrawOnNextPulse();
+    }
+
+    /**
+     * redraws the layer if redrawOnNextPulse() has been called since the last redraw
+     */
+    private void redrawIfNeeded() {
+        if (!redrawNeeded) return;
+        redrawNeeded = false;
+        drawHeatLayer();
+    }
+
+    /**
+     * draws the settled nodes on the canvas, as squares whose color goes from yellow to red with the number of
+     * nodes they contain
+     */
+    private void drawHeatLayer() {
+        GraphicsContext context = canvas.getGraphicsContext2D();
+        context.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (settledPoints == null || !pane.isVisible()) return;
+        int columnCount = (int) Math.ceil(canvas.getWidth() / CELL_SIZE);
+        int rowCount = (int) Math.ceil(canvas.getHeight() / CELL_SIZE);
+        if (columnCount == 0 || rowCount == 0) return;
+        int[] counts = new int[columnCount * rowCount];
+        int maxCount = 0;
+        MapViewParameters parameters = mapViewParameters.get();
+        for (PointWebMercator point : settledPoints) {
+            double x = parameters.viewX(point);
+            double y = parameters.viewY(point);
+            if (x < 0 || y < 0 || x >= canvas.getWidth() || y >= canvas.getHeight()) continue;
+            int cell = (int) (y / CELL_SIZE) * columnCount + (int) (x / CELL_SIZE);
+            maxCount = Math.max(maxCount, ++counts[cell]);
+        }
+        //the scale is logarithmic, so that the squares far from the sources of the searches stay visible
+        double maxHeat = Math.log1p(maxCount);
+        for (int cell = 0; cell < counts.length; ++cell) {
+            if (counts[cell] == 0) continue;
+            double heat = Math.log1p(counts[cell]) / maxHeat;
+            context.setFill(Color.hsb(COLD_HUE + heat * (HOT_HUE - COLD_HUE), 1, 1, OPACITY));
+            context.fillRect(cell % columnCount * CELL_SIZE, cell / columnCount * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+        }
+    }
+
+    /**
+     * asks for the layer to be redrawn on the next pulse
+     */
+    private void redrawOnNextPulse() {
+        redrawNeeded = true;
+        Platform.requestNextPulse();
+    }
+}
@@ -4,8 +4,10 @@ import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -18,7 +20,9 @@ import javafx.scene.shape.SVGPath;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * represents a point of passage
@@ -82,6 +86,16 @@ public final class WaypointsManager {
      */
     private final ObjectProperty<Point2D> mouseOnLastEvent;
 
+    /**
+     * consumer of the index and of the temporary position of a waypoint being dragged, to preview the route
+     */
+    private final BiConsumer<Integer, WayPoint> dragPreview;
+
+    /**
+     * condition a node must satisfy for a waypoint to be placed on it
+     */
+    private final IntPredicate placeableNode;
+
     /**
      * constructor of WaypointsManager
      *
@@ -91,7 +105,40 @@ public final class WaypointsManager {
      * @param errorConsumer     an object for reporting errors
      */
     public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> mapViewParameters, ObservableList<WayPoint> wayPointsList, Consumer<String> errorConsumer) {
+        this(graph, mapViewParameters, wayPointsList, errorConsumer, (index, wayPoint) -> {});
+    }
+
+    /**
+     * constructor of WaypointsManager, with a live preview of the route while a waypoint is dragged: the consumer
+     * receives the index of the dragged waypoint and the waypoint at the node closest to the mouse, each time this
+     * node changes, and the original waypoint if the drag ends where no waypoint can be placed
+     *
+     * @param graph             the graph of the route
+     * @param mapViewParameters a JavaFX property containing the parameters of the displayed map
+     * @param wayPointsList     the (observable) list of all waypoints
+     * @param errorConsumer     an object for reporting errors
+     * @param dragPreview       consumer of the index and of the temporary position of a dragged waypoint
+     */
+    public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> mapViewParameters, ObservableList<WayPoint> wayPointsList, Consumer<String> errorConsumer, BiConsumer<Integer, WayPoint> dragPreview) {
+        this(graph, mapViewParameters, wayPointsList, errorConsumer, dragPreview, nodeId -> true);
+    }
+
+    /**
+     * constructor of WaypointsManager, with a live preview of the route while a waypoint is dragged, and whose
+     * waypoints are only placed on the nodes satisfying the given condition (typically the nodes of the largest
+     * connected component of the graph, so that a route between the waypoints always exists)
+     *
+     * @param graph             the graph of the route
+     * @param mapViewParameters a JavaFX property containing the parameters of the displayed map
+     * @param wayPointsList     the (observable) list of all waypoints
+     * @param errorConsumer     an object for reporting errors
+     * @param dragPreview       consumer of the index and of the temporary position of a dragged waypoint
+     * @param placeableNode     condition a node must satisfy for a waypoint to be placed on it
+     */
+    public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> mapViewParameters, ObservableList<WayPoint> wayPointsList, Consumer<String> errorConsumer, BiConsumer<Integer, WayPoint> dragPreview, IntPredicate placeableNode) {
         this.graph = graph;
+        this.dragPreview = dragPreview;
+        this.placeableNode = placeableNode;
         this.mapViewParameters = mapViewParameters;
         this.wayPointsList = wayPointsList;
         this.errorConsumer = errorConsumer;
@@ -121,7 +168,7 @@ public final class WaypointsManager {
         PointWebMercator pointWebMercator = mapViewParameters.get().pointAt(x, y);
         PointCh pointCh = pointWebMercator.toPointCh();
         if (pointCh != null) {
-            int nodeId = graph.nodeClosestTo(pointCh, SEARCH_DISTANCE_NODE_CLOSEST_TO);
+            int nodeId = graph.nodeClosestTo(pointCh, SEARCH_DISTANCE_NODE_CLOSEST_TO, placeableNode);
             if (nodeId == NODE_NOT_FOUND) {
                 errorConsumer.accept(ERROR_MESSAGE);
                 return;
@@ -206,6 +253,7 @@ public final class WaypointsManager {
         ObjectProperty<WayPoint> draggedWayPoint = new SimpleObjectProperty<>();
         DoubleProperty yBeforeDrag = new SimpleDoubleProperty();
         DoubleProperty xBeforeDrag = new SimpleDoubleProperty();
+        IntegerProperty previewedNodeId = new SimpleIntegerProperty();
 
         group.setOnMouseClicked(event -> {
             if (event.isStillSincePress()) wayPointsList.remove(wayPoint);
@@ -215,6 +263,7 @@ public final class WaypointsManager {
             xBeforeDrag.set(group.getLayoutX());
             yBeforeDrag.set(group.getLayoutY());
             draggedWayPoint.set(wayPoint);
+            previewedNodeId.set(wayPoint.closestNodeId());
             mouseOnLastEvent.set(new Point2D(event.getX(), event.getY()));
         });
         group.setOnMouseDragged(event -> {
@@ -223,16 +272,27 @@ public final class WaypointsManager {
             group.setLayoutX(group.getLayoutX() + deltaX);
             group.setLayoutY(group.getLayoutY() + deltaY);
             mouseOnLastEvent.get().add(deltaX, deltaY);
+
+            PointCh pointCh = mapViewParameters.get().pointAt(group.getLayoutX(), group.getLayoutY()).toPointCh();
+            if (pointCh == null) return;
+            int nodeId = graph.nodeClosestTo(pointCh, SEARCH_DISTANCE_NODE_CLOSEST_TO, placeableNode);
+            //a new route is only previewed when the waypoint moves to another node
+            if (nodeId != NODE_NOT_FOUND && nodeId != previewedNodeId.get()) {
+                previewedNodeId.set(nodeId);
+                dragPreview.accept(wayPointsList.indexOf(draggedWayPoint.get()), new WayPoint(pointCh, nodeId));
+            }
         });
 
         group.setOnMouseReleased(event -> {
             if (!event.isStillSincePress()) {
                 PointCh pointCh = mapViewParameters.get().pointAt(group.getLayoutX(), group.getLayoutY()).toPointCh();
                 int nodeId = NODE_NOT_FOUND;
-                if (pointCh != null) nodeId = graph.nodeClosestTo(pointCh, SEARCH_DISTANCE_NODE_CLOSEST_TO);
+                if (pointCh != null) nodeId = graph.nodeClosestTo(pointCh, SEARCH_DISTANCE_NODE_CLOSEST_TO, placeableNode);
                 if (nodeId == NODE_NOT_FOUND) {
                     group.setLayoutX(xBeforeDrag.doubleValue());
                     group.setLayoutY(yBeforeDrag.doubleValue());
+                    if (previewedNodeId.get() != wayPoint.closestNodeId())
+                        dragPreview.accept(wayPointsList.indexOf(draggedWayPoint.get()), wayPoint);
                     errorConsumer.accept(ERROR_MESSAGE);
                 } else wayPointsList.set(wayPointsList.indexOf(draggedWayPoint.get()), new WayPoint(pointCh, nodeId));
             }
@@ -0,0 +1,372 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * computes the best route between two nodes along with alternative routes, with the plateau method. A forward
+ * tree of best routes from the start and a backward one towards the end are computed concurrently; a plateau is
+ * a path belonging to both trees, and each plateau gives a candidate route: the forward tree up to the plateau,
+ * the plateau, then the backward tree down to the end.
+ * <p>
+ * A candidate is kept if it is not too long compared to the best route (stretch), if its plateau is long enough
+ * (a route whose plateau costs T is locally optimal on any part of cost T, so that it makes no useless detour),
+ * if it is a simple path, and if it does not share too much with the routes already kept (overlap).
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class AlternativeRoutesComputer {
+    /**
+     * maximal extra cost of an alternative, relatively to the cost of the best route
+     */
+    private static final float MAX_STRETCH = 0.25f;
+    /**
+     * minimal cost of the plateau of an alternative, relatively to the cost of the best route
+     */
+    private static final float MIN_PLATEAU_SHARE = 0.2f;
+    /**
+     * maximal length an alternative can share with any of the routes already kept, relatively to the length of
+     * the best route
+     */
+    private static final double MAX_SHARING = 0.75;
+    /**
+     * maximal number of candidates whose route is built and checked, in the order of their rank
+     */
+    private static final int MAX_EXAMINED_CANDIDATES = 50;
+
+    /**
+     * the graph of the routes
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the routes
+     */
+    private final CostFunction costFunction;
+    /**
+     * the workspaces in which the trees are computed, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> searchWorkspaces;
+    /**
+     * the workspaces in which the forward trees are copied by the thread of the query, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> forwardTrees;
+    /**
+     * the workspaces in which the backward trees are copied by the thread of the query, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> backwardTrees;
+
+    /**
+     * constructor of AlternativeRoutesComputer
+     *
+     * @param graph        the graph of the routes
+     * @param costFunction the cost function of the routes
+     */
+    public AlternativeRoutesComputer(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        int nodeCount = graph.nodeCount();
+        this.searchWorkspaces = SearchWorkspace.threadLocalPool(nodeCount, RouteComputer.DEFAULT_QUEUE_KIND);
+        this.forwardTrees = SearchWorkspace.threadLocalPool(nodeCount, RouteComputer.DEFAULT_QUEUE_KIND);
+        this.backwardTrees = SearchWorkspace.threadLocalPool(nodeCount, RouteComputer.DEFAULT_QUEUE_KIND);
+    }
+
+    /**
+     * returns the best route between the given nodes followed by at most maxCount - 1 alternatives, ranked by
+     * increasing cost, once the cost of their plateau is half deducted
+     *
+     * @param startNodeId id of the starting node
+     * @param endNodeId   id of the ending node
+     * @param maxCount    the maximal number of routes, including the best one
+     * @return the routes between the nodes, the best one first, or an empty list if there is no route
+     * @throws IllegalArgumentException if the starting node is the same as the ending one, or if maxCount is not
+     *                                  strictly positive
+     */
+    public List<SingleRoute> routesBetween(int startNodeId, int endNodeId, int maxCount) {
+        Preconditions.checkArgument(startNodeId != endNodeId && maxCount > 0);
+        CompletableFuture<SearchTree> backwardSearch =
+                CompletableFuture.supplyAsync(() -> searchTree(endNodeId, startNodeId, true));
+        SearchTree forwardTree = searchTree(startNodeId, endNodeId, false);
+        SearchWorkspace forward = forwardTree.copyTo(forwardTrees.get());
+        SearchWorkspace backward = backwardSearch.join().copyTo(backwardTrees.get());
+        if (!forward.isSettled(endNodeId)) return List.of();
+
+        float bestCost = forward.distance(endNodeId);
+        List<Edge> bestEdges = viaEdges(forward, backward, startNodeId, endNodeId, endNodeId);
+        List<SingleRoute> routes = new ArrayList<>();
+        routes.add(new SingleRoute(bestEdges));
+        double bestLength = routes.get(0).length();
+        List<Set<Long>> keptEdges = new ArrayList<>();
+        keptEdges.add(nodePairs(bestEdges));
+
+        List<Candidate> candidates = candidates(forward, backward, forwardTree.nodeIds(), bestCost);
+        candidates.sort(Comparator.comparingDouble(Candidate::rank));
+        for (int i = 0; i < Math.min(candidates.size(), MAX_EXAMINED_CANDIDATES) && routes.size() < maxCount; ++i) {
+            List<Edge> edges = viaEdges(forward, backward, startNodeId, endNodeId, candidates.get(i).viaNodeId());
+            if (!isSimple(edges) || !sharesLittle(edges, keptEdges, bestLength)) continue;
+            routes.add(new SingleRoute(edges));
+            keptEdges.add(nodePairs(edges));
+        }
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * computes the tree of the best routes from (or towards, if backward) the given node, until all the nodes
+     * whose cost is at most the maximal cost of an alternative are settled
+     *
+     * @param rootNodeId  the identity of the root of the tree
+     * @param otherNodeId the identity of the other node of the query, whose cost gives the extent of the tree
+     * @param backward    whether the tree goes backward, along the in-edges
+     * @return the nodes settled by the search, in their order
+     */
+    private SearchTree searchTree(int rootNodeId, int otherNodeId, boolean backward) {
+        SearchWorkspace workspace = searchWorkspaces.get();
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        SearchTree.Builder tree = new SearchTree.Builder();
+        float maxCost = Float.POSITIVE_INFINITY;
+
+        workspace.update(rootNodeId, 0f, rootNodeId, RouteComputer.NO_EDGE);
+        queue.insertOrDecrease(rootNodeId, 0f);
+        while (!queue.isEmpty() && queue.minPriority() <= maxCost) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            tree.add(N, distanceN, workspace.predecessorNode(N), workspace.predecessorEdge(N));
+            if (N == otherNodeId) maxCost = distanceN * (1 + MAX_STRETCH);
+
+            int degree = backward ? graph.nodeInDegree(N) : graph.nodeOutDegree(N);
+            for (int i = 0; i < degree; ++i) {
+                int edgeId = backward ? graph.nodeInEdgeId(N, i) : graph.nodeOutEdgeId(N, i);
+                int Nbis = backward ? graph.edgeSourceNodeId(edgeId) : graph.edgeTargetNodeId(edgeId);
+                //the cost of an edge is always evaluated in its own direction
+                int edgeStartNodeId = backward ? Nbis : N;
+                float d = distanceN
+                        + (float) (costFunction.costFactor(edgeStartNodeId, edgeId) * graph.edgeLength(edgeId));
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+        return tree.build();
+    }
+
+    /**
+     * returns the candidates given by the plateaus of the two trees, one per plateau starting at a node settled by
+     * both trees, filtered by their stretch and the cost of their plateau
+     *
+     * @param forward  the forward tree
+     * @param backward the backward tree
+     * @param nodeIds  the nodes of the forward tree
+     * @param bestCost the cost of the best route
+     * @return the candidates
+     */
+    private List<Candidate> candidates(SearchWorkspace forward, SearchWorkspace backward, int[] nodeIds,
+                                       float bestCost) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (int nodeId : nodeIds) {
+            if (!backward.isSettled(nodeId) || isOnPlateau(forward, backward, forward.predecessorNode(nodeId), nodeId))
+                continue;
+            float cost = forward.distance(nodeId) + backward.distance(nodeId);
+            if (cost > bestCost * (1 + MAX_STRETCH)) continue;
+            //follows the plateau starting at the node, along the backward tree
+            int plateauEndNodeId = nodeId;
+            while (isOnPlateau(forward, backward, plateauEndNodeId, backward.predecessorNode(plateauEndNodeId)))
+                plateauEndNodeId = backward.predecessorNode(plateauEndNodeId);
+            float plateauCost = backward.distance(nodeId) - backward.distance(plateauEndNodeId);
+            if (plateauCost < bestCost * MIN_PLATEAU_SHARE) continue;
+            candidates.add(new Candidate(nodeId, cost - plateauCost / 2));
+        }
+        return candidates;
+    }
+
+    /**
+     * returns whether the edge between the given nodes belongs to both trees
+     *
+     * @param forward    the forward tree
+     * @param backward   the backward tree
+     * @param fromNodeId the node the edge would start from
+     * @param toNodeId   the node the edge would go to
+     * @return true if the edge of the forward tree reaching toNodeId is the edge of the backward tree leaving
+     * fromNodeId
+     */
+    private static boolean isOnPlateau(SearchWorkspace forward, SearchWorkspace backward,
+                                       int fromNodeId, int toNodeId) {
+        return fromNodeId != toNodeId && forward.isSettled(toNodeId) && backward.isSettled(fromNodeId)
+                && forward.predecessorNode(toNodeId) == fromNodeId && backward.predecessorNode(fromNodeId) == toNodeId
+                && forward.predecessorEdge(toNodeId) == backward.predecessorEdge(fromNodeId);
+    }
+
+    /**
+     * returns the edges of the route going from the start to the given node along the forward tree, then to the
+     * end along the backward tree
+     *
+     * @param forward     the forward tree
+     * @param backward    the backward tree
+     * @param startNodeId id of the starting node
+     * @param endNodeId   id of the ending node
+     * @param viaNodeId   id of the node through which the route goes
+     * @return the edges of the route
+     */
+    private List<Edge> viaEdges(SearchWorkspace forward, SearchWorkspace backward,
+                                int startNodeId, int endNodeId, int viaNodeId) {
+        List<Edge> edges = new ArrayList<>();
+        for (int nodeId = viaNodeId; nodeId != startNodeId; nodeId = forward.predecessorNode(nodeId))
+            edges.add(Edge.of(graph, forward.predecessorEdge(nodeId), forward.predecessorNode(nodeId), nodeId));
+        Collections.reverse(edges);
+        for (int nodeId = viaNodeId; nodeId != endNodeId; nodeId = backward.predecessorNode(nodeId))
+            edges.add(Edge.of(graph, backward.predecessorEdge(nodeId), nodeId, backward.predecessorNode(nodeId)));
+        return edges;
+    }
+
+    /**
+     * returns whether the given edges never go twice through the same node
+     *
+     * @param edges the edges of a route
+     * @return true if the route is a simple path
+     */
+    private static boolean isSimple(List<Edge> edges) {
+        Set<Integer> nodeIds = new HashSet<>();
+        nodeIds.add(edges.get(0).fromNodeId());
+        for (Edge edge : edges)
+            if (!nodeIds.add(edge.toNodeId())) return false;
+        return true;
+    }
+
+    /**
+     * returns whether the given edges share little with each of the routes already kept
+     *
+     * @param edges      the edges of a route
+     * @param keptEdges  the sets of the pairs of nodes of the edges of the routes already kept
+     * @param bestLength the length of the best route
+     * @return true if the length shared with any kept route is at most MAX_SHARING times the best length
+     */
+    private static boolean sharesLittle(List<Edge> edges, List<Set<Long>> keptEdges, double bestLength) {
+        for (Set<Long> kept : keptEdges) {
+            double sharedLength = 0;
+            for (Edge edge : edges)
+                if (kept.contains(nodePair(edge))) sharedLength += edge.length();
+            if (sharedLength > MAX_SHARING * bestLength) return false;
+        }
+        return true;
+    }
+
+    /**
+     * returns the pairs of nodes of the given edges
+     *
+     * @param edges the edges
+     * @return the set of the pairs of nodes of the edges
+     */
+    private static Set<Long> nodePairs(List<Edge> edges) {
+        Set<Long> nodePairs = new HashSet<>();
+        for (Edge edge : edges) nodePairs.add(nodePair(edge));
+        return nodePairs;
+    }
+
+    /**
+     * returns the pair of nodes of the given edge, which identifies it in a route
+     *
+     * @param edge the edge
+     * @return the identity of its starting node followed by the one of its ending node, packed in a long
+     */
+    private static long nodePair(Edge edge) {
+        return (long) edge.fromNodeId() << Integer.SIZE | edge.toNodeId();
+    }
+
+    /**
+     * represents a candidate alternative
+     *
+     * @param viaNodeId the identity of the first node of its plateau
+     * @param rank      its cost, minus half of the cost of its plateau
+     */
+    private record Candidate(int viaNodeId, float rank) {
+    }
+
+    /**
+     * represents the nodes settled by a search, in their order, with their distance and predecessor, so that
+     * the tree can be copied out of the workspace of the thread that computed it
+     *
+     * @param nodeIds          the identities of the nodes
+     * @param distances        the distances of the nodes
+     * @param predecessorNodes the predecessors of the nodes in the tree
+     * @param predecessorEdges the edges linking the nodes to their predecessor
+     */
+    private record SearchTree(int[] nodeIds, float[] distances, int[] predecessorNodes, int[] predecessorEdges) {
+
+        /**
+         * copies the tree in the given workspace, whose nodes are then the settled ones
+         *
+         * @param workspace the workspace
+         * @return the workspace
+         */
+        SearchWorkspace copyTo(SearchWorkspace workspace) {
+            workspace.reset();
+            for (int i = 0; i < nodeIds.length; ++i) {
+                workspace.update(nodeIds[i], distances[i], predecessorNodes[i], predecessorEdges[i]);
+                workspace.settle(nodeIds[i]);
+            }
+            return workspace;
+        }
+
+        /**
+         * builder of a SearchTree, to which the nodes are added as they are settled
+         */
+        private static final class Builder {
+            /**
+             * the identities of the nodes, followed by unused space
+             */
+            private int[] nodeIds = new int[16];
+            /**
+             * the distances of the nodes
+             */
+            private float[] distances = new float[16];
+            /**
+             * the predecessors of the nodes
+             */
+            private int[] predecessorNodes = new int[16];
+            /**
+             * the edges linking the nodes to their predecessor
+             */
+            private int[] predecessorEdges = new int[16];
+            /**
+             * the number of nodes added
+             */
+            private int count;
+
+            /**
+             * adds a settled node to the tree
+             *
+             * @param nodeId          the identity of the node
+             * @param distance        its distance
+             * @param predecessorNode its predecessor in the tree
+             * @param predecessorEdge the edge linking its predecessor to it
+             */
+            void add(int nodeId, float distance, int predecessorNode, int predecessorEdge) {
+                if (count == nodeIds.length) {
+                    nodeIds = Arrays.copyOf(nodeIds, 2 * count);
+                    distances = Arrays.copyOf(distances, 2 * count);
+                    predecessorNodes = Arrays.copyOf(predecessorNodes, 2 * count);
+                    predecessorEdges = Arrays.copyOf(predecessorEdges, 2 * count);
+                }
+                nodeIds[count] = nodeId;
+                distances[count] = distance;
+                predecessorNodes[count] = predecessorNode;
+                predecessorEdges[count++] = predecessorEdge;
+            }
+
+            /**
+             * returns the tree made of the nodes added so far
+             *
+             * @return the tree
+             */
+            SearchTree build() {
+                return new SearchTree(Arrays.copyOf(nodeIds, count), Arrays.copyOf(distances, count),
+                        Arrays.copyOf(predecessorNodes, count), Arrays.copyOf(predecessorEdges, count));
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * represents the arc flags of the edges of a graph, for a given cost function: the sectors of the graph are
+ * grouped in square regions, and the flag of an edge for a region is set if the edge starts a best route to a
+ * node of the region. A search towards a node can thus ignore the edges whose flag for its region is not set.
+ * <p>
+ * The flags of an edge take one bit per region, and are packed in longs (the number of regions always divides
+ * 64, so that the flags of an edge are in a single long). The file of the flags contains the shift of the regions
+ * followed by the packed flags.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ArcFlags {
+    /**
+     * suffix of the name of the file containing the flags
+     */
+    private static final String FILE_SUFFIX = "_arc_flags.bin";
+    /**
+     * smallest shift of the regions, for which there are 64 of them
+     */
+    static final int MIN_REGION_SHIFT = 4;
+
+    /**
+     * the regions, as the single level of a partition of the graph
+     */
+    private final MultiLevelPartition regions;
+    /**
+     * the base 2 logarithm of the number of sectors on a side of a region
+     */
+    private final int regionShift;
+    /**
+     * the packed flags of the edges
+     */
+    private final LongBuffer flags;
+
+    /**
+     * constructor of ArcFlags
+     *
+     * @param graph       the graph of the flags
+     * @param regionShift the base 2 logarithm of the number of sectors on a side of a region
+     * @param flags       the packed flags of the edges
+     * @throws IllegalArgumentException if there are more than 64 regions, or if there are not enough flags
+     */
+    ArcFlags(Graph graph, int regionShift, LongBuffer flags) {
+        Preconditions.checkArgument(regionShift >= MIN_REGION_SHIFT);
+        this.regions = MultiLevelPartition.of(graph, regionShift);
+        this.regionShift = regionShift;
+        this.flags = flags;
+        Preconditions.checkArgument((long) flags.capacity() * Long.SIZE >= (long) graph.edgeCount() * regionCount());
+    }
+
+    /**
+     * returns the arc flags of the given graph stored in the file with the given name, in the given directory (the
+     * file is memory-mapped)
+     *
+     * @param graph    the graph of the flags
+     * @param basePath path of the directory containing the file
+     * @param name     name of the flags (typically the name of their cost function)
+     * @return the arc flags stored in the file
+     * @throws IOException if the file does not exist.
+     */
+    public static ArcFlags loadFrom(Graph graph, Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX))) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int regionShift = (int) buffer.getLong(0);
+            return new ArcFlags(graph, regionShift,
+                    buffer.slice(Long.BYTES, buffer.capacity() - Long.BYTES).asLongBuffer());
+        }
+    }
+
+    /**
+     * writes the flags in the file with the given name, in the given directory, through a memory-mapped buffer
+     *
+     * @param basePath path of the directory in which to write the file
+     * @param name     name of the flags (typically the name of their cost function)
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX),
+                CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Long.BYTES * (flags.capacity() + 1L));
+            buffer.putLong(regionShift);
+            buffer.asLongBuffer().put(flags.duplicate().clear());
+        }
+    }
+
+    /**
+     * returns the number of regions
+     *
+     * @return the number of regions
+     */
+    public int regionCount() {
+        return regions.cellCount(0);
+    }
+
+    /**
+     * returns the region containing the given node
+     *
+     * @param nodeId the identity of the node
+     * @return the identity of the region containing the node
+     */
+    public int region(int nodeId) {
+        return regions.cell(0, nodeId);
+    }
+
+    /**
+     * returns whether the given edge starts a best route to a node of the given region
+     *
+     * @param edgeId the identity of the edge
+     * @param region the identity of the region
+     * @return true if the flag of the edge for the region is set
+     */
+    public boolean isFlagged(int edgeId, int region) {
+        long bitIndex = (long) edgeId * regionCount() + region;
+        return (flags.get((int) (bitIndex >>> 6)) >>> (bitIndex & (Long.SIZE - 1)) & 1) != 0;
+    }
+}
@@ -0,0 +1,195 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * computes the arc flags of a graph for a given cost function, region by region and in parallel. The flag of an
+ * edge for a region is set if both its nodes are in the region, or if it belongs to the tree of best routes
+ * towards one of the entry nodes of the region (the nodes of the region having an edge coming from outside of it),
+ * computed by a backward search from that node.
+ * <p>
+ * Since any best route to a node of a region enters it for the last time through an entry node, the flagged edges
+ * always contain a best route, even though only one tree per entry node is kept.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ArcFlagsBuilder {
+    /**
+     * shift of the regions used when none is specified: 8x8 regions of 16x16 sectors
+     */
+    private static final int DEFAULT_REGION_SHIFT = ArcFlags.MIN_REGION_SHIFT;
+
+    /**
+     * the graph of the flags
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the flags
+     */
+    private final CostFunction costFunction;
+    /**
+     * the regions, as the single level of a partition of the graph
+     */
+    private final MultiLevelPartition regions;
+    /**
+     * the workspaces of the backward searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    /**
+     * constructor of ArcFlagsBuilder
+     *
+     * @param graph        the graph of the flags
+     * @param costFunction the cost function of the flags
+     * @param regionShift  the base 2 logarithm of the number of sectors on a side of a region
+     */
+    private ArcFlagsBuilder(Graph graph, CostFunction costFunction, int regionShift) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.regions = MultiLevelPartition.of(graph, regionShift);
+        this.workspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), NodePriorityQueue.Kind.QUATERNARY_HEAP);
+    }
+
+    /**
+     * computes the arc flags of the given graph for the given cost function, with the default regions
+     *
+     * @param graph        the graph of the flags
+     * @param costFunction the cost function of the flags
+     * @return the arc flags of the graph
+     */
+    public static ArcFlags build(Graph graph, CostFunction costFunction) {
+        return build(graph, costFunction, DEFAULT_REGION_SHIFT);
+    }
+
+    /**
+     * computes the arc flags of the given graph for the given cost function, using all the processors
+     *
+     * @param graph        the graph of the flags
+     * @param costFunction the cost function of the flags
+     * @param regionShift  the base 2 logarithm of the number of sectors on a side of a region
+     * @return the arc flags of the graph
+     * @throws IllegalArgumentException if there would be more than 64 regions, or less than 4
+     */
+    public static ArcFlags build(Graph graph, CostFunction costFunction, int regionShift) {
+        Preconditions.checkArgument(regionShift >= ArcFlags.MIN_REGION_SHIFT);
+        return new ArcFlagsBuilder(graph, costFunction, regionShift).computeFlags(regionShift);
+    }
+
+    /**
+     * computes the arc flags of a graph for CityBikeCF and writes them next to the files of the graph
+     *
+     * @param args the path of the directory containing the graph, and optionally the shift of the regions
+     *             (4 by default) and the name of the flags ("citybike" by default)
+     * @throws IOException if the graph cannot be read or the flags cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        int regionShift = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REGION_SHIFT;
+        String name = args.length > 2 ? args[2] : "citybike";
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        ArcFlags arcFlags = build(graph, new CityBikeCF(graph), regionShift);
+        System.out.printf("flags of %d regions computed in %.1f s%n",
+                arcFlags.regionCount(), (System.nanoTime() - start) / 1e9);
+        arcFlags.writeTo(basePath, name);
+    }
+
+    /**
+     * computes the flags of all the regions in parallel, and packs them
+     *
+     * @param regionShift the base 2 logarithm of the number of sectors on a side of a region
+     * @return the arc flags of the graph
+     */
+    private ArcFlags computeFlags(int regionShift) {
+        int regionCount = regions.cellCount(0);
+        BitSet[] regionFlags = IntStream.range(0, regionCount).parallel()
+                .mapToObj(this::regionFlags)
+                .toArray(BitSet[]::new);
+
+        int edgeCount = graph.edgeCount();
+        long[] flags = new long[(int) (((long) edgeCount * regionCount + Long.SIZE - 1) / Long.SIZE)];
+        for (int region = 0; region < regionCount; ++region) {
+            BitSet edges = regionFlags[region];
+            for (int edgeId = edges.nextSetBit(0); edgeId >= 0; edgeId = edges.nextSetBit(edgeId + 1)) {
+                long bitIndex = (long) edgeId * regionCount + region;
+                flags[(int) (bitIndex >>> 6)] |= 1L << (bitIndex & (Long.SIZE - 1));
+            }
+        }
+        return new ArcFlags(graph, regionShift, LongBuffer.wrap(flags));
+    }
+
+    /**
+     * returns the edges whose flag is set for the given region
+     *
+     * @param region the identity of the region
+     * @return the set of the identities of the edges flagged for the region
+     */
+    private BitSet regionFlags(int region) {
+        BitSet flagged = new BitSet(graph.edgeCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+            if (regions.cell(0, nodeId) != region) continue;
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (regions.cell(0, graph.edgeTargetNodeId(edgeId)) == region) flagged.set(edgeId);
+            }
+        }
+        SearchWorkspace workspace = workspaces.get();
+        for (int i = 0; i < regions.boundaryNodeCount(0, region); ++i) {
+            int boundaryNodeId = regions.boundaryNodeId(0, region, i);
+            if (!isEntryNode(boundaryNodeId, region)) continue;
+            backwardSearch(workspace, boundaryNodeId, flagged);
+        }
+        return flagged;
+    }
+
+    /**
+     * returns whether the given node of the given region has an edge coming from outside of the region
+     *
+     * @param nodeId the identity of the node
+     * @param region the region of the node
+     * @return true if the node is an entry node of the region
+     */
+    private boolean isEntryNode(int nodeId, int region) {
+        for (int i = 0; i < graph.nodeInDegree(nodeId); ++i)
+            if (regions.cell(0, graph.edgeSourceNodeId(graph.nodeInEdgeId(nodeId, i))) != region) return true;
+        return false;
+    }
+
+    /**
+     * runs a complete Dijkstra search towards the given node, along the in-edges, and flags the edges of its tree
+     *
+     * @param workspace    the workspace of the search
+     * @param targetNodeId the identity of the node the best routes go to
+     * @param flagged      the set of flagged edges, to which the edges of the tree are added
+     */
+    private void backwardSearch(SearchWorkspace workspace, int targetNodeId, BitSet flagged) {
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        workspace.update(targetNodeId, 0f, targetNodeId, -1);
+        queue.insertOrDecrease(targetNodeId, 0f);
+        while (!queue.isEmpty()) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            if (N != targetNodeId) flagged.set(workspace.predecessorEdge(N));
+            for (int i = 0; i < graph.nodeInDegree(N); ++i) {
+                int edgeId = graph.nodeInEdgeId(N, i);
+                int Nbis = graph.edgeSourceNodeId(edgeId);
+                //the cost of an edge is always evaluated in its own direction
+                float d = distanceN + (float) (costFunction.costFactor(Nbis, edgeId) * graph.edgeLength(edgeId));
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+    }
+}
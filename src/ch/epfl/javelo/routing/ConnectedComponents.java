@@ -0,0 +1,154 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * represents the connected components of a graph for a given cost function, the edges of infinite cost being
+ * considered as absent: for each node, its strongly connected component and its weakly connected component.
+ * <p>
+ * The strong components are numbered in reverse topological order: a node can only reach the nodes whose strong
+ * component has a smaller or equal number, and only if they are in the same weak component. This allows to
+ * reject at once most of the pairs of nodes between which there is no route.
+ * <p>
+ * The file of the components contains, for each node, the number of its strong component followed by the one of
+ * its weak component.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ConnectedComponents {
+    /**
+     * suffix of the name of the file containing the components
+     */
+    private static final String FILE_SUFFIX = "_components.bin";
+    private static final int OFFSET_STRONG = 0;
+    private static final int OFFSET_WEAK = OFFSET_STRONG + 1;
+    private static final int NODE_INTS = OFFSET_WEAK + 1;
+
+    /**
+     * the components of the nodes, NODE_INTS ints per node
+     */
+    private final IntBuffer components;
+    /**
+     * the number of the strong component containing the most nodes
+     */
+    private final int largestStrongComponent;
+
+    /**
+     * constructor of ConnectedComponents
+     *
+     * @param components the components of the nodes, NODE_INTS ints per node
+     * @throws IllegalArgumentException if there is not the same number of ints for each node
+     */
+    ConnectedComponents(IntBuffer components) {
+        Preconditions.checkArgument(components.capacity() % NODE_INTS == 0);
+        this.components = components;
+        int nodeCount = nodeCount();
+        int componentCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId)
+            componentCount = Math.max(componentCount, strongComponent(nodeId) + 1);
+        int[] sizes = new int[componentCount];
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) ++sizes[strongComponent(nodeId)];
+        int largest = 0;
+        for (int component = 1; component < componentCount; ++component)
+            if (sizes[component] > sizes[largest]) largest = component;
+        this.largestStrongComponent = largest;
+    }
+
+    /**
+     * returns the components of the given graph stored in the file with the given name, in the given directory
+     * (the file is memory-mapped)
+     *
+     * @param graph    the graph of the components
+     * @param basePath path of the directory containing the file
+     * @param name     name of the components (typically the name of their cost function)
+     * @return the components stored in the file
+     * @throws IOException              if the file does not exist.
+     * @throws IllegalArgumentException if the components do not have one entry per node of the graph
+     */
+    public static ConnectedComponents loadFrom(Graph graph, Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX))) {
+            IntBuffer components = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            Preconditions.checkArgument(components.capacity() == NODE_INTS * graph.nodeCount());
+            return new ConnectedComponents(components);
+        }
+    }
+
+    /**
+     * writes the components in the file with the given name, in the given directory, through a memory-mapped
+     * buffer
+     *
+     * @param basePath path of the directory in which to write the file
+     * @param name     name of the components (typically the name of their cost function)
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX),
+                CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) Integer.BYTES * components.capacity());
+            buffer.asIntBuffer().put(components.duplicate().clear());
+        }
+    }
+
+    /**
+     * returns the number of nodes of the graph
+     *
+     * @return the number of nodes of the graph
+     */
+    public int nodeCount() {
+        return components.capacity() / NODE_INTS;
+    }
+
+    /**
+     * returns the number of the strongly connected component of the given node
+     *
+     * @param nodeId the identity of the node
+     * @return the number of its strong component
+     */
+    public int strongComponent(int nodeId) {
+        return components.get(NODE_INTS * nodeId + OFFSET_STRONG);
+    }
+
+    /**
+     * returns the number of the weakly connected component of the given node
+     *
+     * @param nodeId the identity of the node
+     * @return the number of its weak component
+     */
+    public int weakComponent(int nodeId) {
+        return components.get(NODE_INTS * nodeId + OFFSET_WEAK);
+    }
+
+    /**
+     * returns whether there may be a route from a node to another one. When false, there is certainly none.
+     *
+     * @param fromNodeId the identity of the node the route would start from
+     * @param toNodeId   the identity of the node the route would go to
+     * @return false if the second node cannot be reached from the first one
+     */
+    public boolean mayReach(int fromNodeId, int toNodeId) {
+        return weakComponent(fromNodeId) == weakComponent(toNodeId)
+                && strongComponent(fromNodeId) >= strongComponent(toNodeId);
+    }
+
+    /**
+     * returns whether the given node belongs to the strong component containing the most nodes, from and to
+     * which all the nodes of that component can be reached
+     *
+     * @param nodeId the identity of the node
+     * @return true if the node is in the largest strong component
+     */
+    public boolean isInLargestComponent(int nodeId) {
+        return strongComponent(nodeId) == largestStrongComponent;
+    }
+}
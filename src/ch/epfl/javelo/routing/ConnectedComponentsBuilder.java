@@ -0,0 +1,222 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * computes the connected components of a graph for a given cost function, the edges of infinite cost being
+ * considered as absent. The weak components are computed by a parallel union-find over the edges, at the same
+ * time as the strong components, computed by an iterative version of Tarjan's algorithm (which numbers them in
+ * reverse topological order).
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ConnectedComponentsBuilder {
+    /**
+     * index of a node not yet visited by Tarjan's algorithm
+     */
+    private static final int UNVISITED = -1;
+
+    /**
+     * the graph of the components
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the components
+     */
+    private final CostFunction costFunction;
+
+    /**
+     * constructor of ConnectedComponentsBuilder
+     *
+     * @param graph        the graph of the components
+     * @param costFunction the cost function of the components
+     */
+    private ConnectedComponentsBuilder(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+    }
+
+    /**
+     * computes the connected components of the given graph for the given cost function
+     *
+     * @param graph        the graph of the components
+     * @param costFunction the cost function of the components
+     * @return the connected components of the graph
+     */
+    public static ConnectedComponents build(Graph graph, CostFunction costFunction) {
+        ConnectedComponentsBuilder builder = new ConnectedComponentsBuilder(graph, costFunction);
+        CompletableFuture<int[]> weakComponents = CompletableFuture.supplyAsync(builder::weakComponents);
+        int[] strongComponents = builder.strongComponents();
+        int[] weak = weakComponents.join();
+
+        int nodeCount = graph.nodeCount();
+        int[] components = new int[2 * nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            components[2 * nodeId] = strongComponents[nodeId];
+            components[2 * nodeId + 1] = weak[nodeId];
+        }
+        return new ConnectedComponents(IntBuffer.wrap(components));
+    }
+
+    /**
+     * computes the connected components of a graph for CityBikeCF and writes them next to the files of the graph
+     *
+     * @param args the path of the directory containing the graph, and optionally the name of the components
+     *             ("citybike" by default)
+     * @throws IOException if the graph cannot be read or the components cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        String name = args.length > 1 ? args[1] : "citybike";
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        ConnectedComponents components = build(graph, new CityBikeCF(graph));
+        System.out.printf("components computed in %.1f s%n", (System.nanoTime() - start) / 1e9);
+        components.writeTo(basePath, name);
+    }
+
+    /**
+     * returns whether the given edge can be used, that is whether its cost is finite
+     *
+     * @param nodeId the identity of the node the edge starts from
+     * @param edgeId the identity of the edge
+     * @return true if the cost of the edge is finite
+     */
+    private boolean isUsable(int nodeId, int edgeId) {
+        return Double.isFinite(costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId));
+    }
+
+    /**
+     * computes the weak components with a lock-free union-find, the edges being merged in parallel. The number of
+     * a component is the smallest identity of its nodes.
+     *
+     * @return for each node, the number of its weak component
+     */
+    private int[] weakComponents() {
+        int nodeCount = graph.nodeCount();
+        AtomicIntegerArray parents = new AtomicIntegerArray(nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) parents.set(nodeId, nodeId);
+        IntStream.range(0, nodeCount).parallel().forEach(nodeId -> {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (isUsable(nodeId, edgeId)) union(parents, nodeId, graph.edgeTargetNodeId(edgeId));
+            }
+        });
+        return IntStream.range(0, nodeCount).parallel().map(nodeId -> find(parents, nodeId)).toArray();
+    }
+
+    /**
+     * returns the root of the set containing the given node, halving the path to it on the way
+     *
+     * @param parents the parent of each node in the union-find forest
+     * @param nodeId  the identity of the node
+     * @return the root of its set
+     */
+    private static int find(AtomicIntegerArray parents, int nodeId) {
+        int current = nodeId;
+        while (true) {
+            int parent = parents.get(current);
+            if (parent == current) return current;
+            int grandParent = parents.get(parent);
+            //a failure only means that another thread changed the parent, which is then closer to the root
+            if (parent != grandParent) parents.compareAndSet(current, parent, grandParent);
+            current = grandParent;
+        }
+    }
+
+    /**
+     * merges the sets containing the given nodes, the root with the largest identity being linked to the other
+     *
+     * @param parents the parent of each node in the union-find forest
+     * @param first   the identity of a node
+     * @param second  the identity of another node
+     */
+    private static void union(AtomicIntegerArray parents, int first, int second) {
+        while (true) {
+            int firstRoot = find(parents, first);
+            int secondRoot = find(parents, second);
+            if (firstRoot == secondRoot) return;
+            int child = Math.max(firstRoot, secondRoot);
+            //fails if the child stopped being a root in the meantime, in which case the roots are found again
+            if (parents.compareAndSet(child, child, Math.min(firstRoot, secondRoot))) return;
+        }
+    }
+
+    /**
+     * computes the strong components with Tarjan's algorithm, its recursion being replaced by an explicit stack
+     * since the depth of the search can be as large as the number of nodes
+     *
+     * @return for each node, the number of its strong component, in reverse topological order
+     */
+    private int[] strongComponents() {
+        int nodeCount = graph.nodeCount();
+        int[] indices = new int[nodeCount];
+        int[] lowLinks = new int[nodeCount];
+        int[] components = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        Arrays.fill(indices, UNVISITED);
+        //nodes of the components not yet completed, and the path of the search with the next edge of each node
+        int[] stack = new int[nodeCount];
+        int[] pathNodes = new int[nodeCount];
+        int[] pathNextEdges = new int[nodeCount];
+        int stackSize = 0;
+        int nextIndex = 0;
+        int nextComponent = 0;
+
+        for (int rootNodeId = 0; rootNodeId < nodeCount; ++rootNodeId) {
+            if (indices[rootNodeId] != UNVISITED) continue;
+            int pathSize = 0;
+            indices[rootNodeId] = lowLinks[rootNodeId] = nextIndex++;
+            stack[stackSize++] = rootNodeId;
+            onStack[rootNodeId] = true;
+            pathNodes[pathSize] = rootNodeId;
+            pathNextEdges[pathSize++] = 0;
+
+            while (pathSize > 0) {
+                int nodeId = pathNodes[pathSize - 1];
+                int edgeIndex = pathNextEdges[pathSize - 1];
+                if (edgeIndex < graph.nodeOutDegree(nodeId)) {
+                    ++pathNextEdges[pathSize - 1];
+                    int edgeId = graph.nodeOutEdgeId(nodeId, edgeIndex);
+                    if (!isUsable(nodeId, edgeId)) continue;
+                    int targetNodeId = graph.edgeTargetNodeId(edgeId);
+                    if (indices[targetNodeId] == UNVISITED) {
+                        indices[targetNodeId] = lowLinks[targetNodeId] = nextIndex++;
+                        stack[stackSize++] = targetNodeId;
+                        onStack[targetNodeId] = true;
+                        pathNodes[pathSize] = targetNodeId;
+                        pathNextEdges[pathSize++] = 0;
+                    } else if (onStack[targetNodeId]) {
+                        lowLinks[nodeId] = Math.min(lowLinks[nodeId], indices[targetNodeId]);
+                    }
+                    continue;
+                }
+                //all the edges of the node have been followed
+                --pathSize;
+                if (lowLinks[nodeId] == indices[nodeId]) {
+                    int memberNodeId;
+                    do {
+                        memberNodeId = stack[--stackSize];
+                        onStack[memberNodeId] = false;
+                        components[memberNodeId] = nextComponent;
+                    } while (memberNodeId != nodeId);
+                    ++nextComponent;
+                }
+                if (pathSize > 0) {
+                    int parentNodeId = pathNodes[pathSize - 1];
+                    lowLinks[parentNodeId] = Math.min(lowLinks[parentNodeId], lowLinks[nodeId]);
+                }
+            }
+        }
+        return components;
+    }
+}
@@ -0,0 +1,427 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * represents a contraction hierarchy of the graph for a given cost function: a rank for each node and a set of
+ * arcs, made of the edges of the graph and of shortcuts replacing paths through lower ranked nodes. A route
+ * is then found by two small searches that only go up in the hierarchy.
+ * <p>
+ * Each arc takes 6 ints: its tail and head nodes, its cost and length (as float bits) and either the identity
+ * of the graph edge it represents followed by NO_ARC, or the identities of the two arcs it shortcuts.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ContractionHierarchy {
+    static final int OFFSET_TAIL = 0;
+    static final int OFFSET_HEAD = OFFSET_TAIL + 1;
+    static final int OFFSET_COST = OFFSET_HEAD + 1;
+    static final int OFFSET_LENGTH = OFFSET_COST + 1;
+    static final int OFFSET_FIRST = OFFSET_LENGTH + 1;
+    static final int OFFSET_SECOND = OFFSET_FIRST + 1;
+    static final int ARC_INTS = OFFSET_SECOND + 1;
+    /**
+     * value of the second half of an arc which is an edge of the graph, not a shortcut
+     */
+    static final int NO_ARC = -1;
+    /**
+     * suffix of the name of the file containing the ranks of the nodes
+     */
+    private static final String RANKS_FILE_SUFFIX = "_ch_ranks.bin";
+    /**
+     * suffix of the name of the file containing the arcs
+     */
+    private static final String ARCS_FILE_SUFFIX = "_ch_arcs.bin";
+
+    /**
+     * the graph on which the hierarchy is built
+     */
+    private final Graph graph;
+    /**
+     * for each node, its rank in the hierarchy (the order in which it was contracted)
+     */
+    private final IntBuffer ranks;
+    /**
+     * the arcs of the hierarchy, ARC_INTS ints per arc
+     */
+    private final IntBuffer arcs;
+    /**
+     * for each node, the index of its first upward out-arc in upwardOutArcs, followed by the number of such arcs
+     */
+    private final int[] firstUpwardOutArc;
+    /**
+     * the arcs going to a node of higher rank, sorted by tail node
+     */
+    private final int[] upwardOutArcs;
+    /**
+     * for each node, the index of its first upward in-arc in upwardInArcs, followed by the number of such arcs
+     */
+    private final int[] firstUpwardInArc;
+    /**
+     * the arcs coming from a node of higher rank, sorted by head node
+     */
+    private final int[] upwardInArcs;
+    /**
+     * the workspaces of the forward (upward from the start) searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> forwardWorkspaces;
+    /**
+     * the workspaces of the backward (upward from the end) searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
+
+    /**
+     * constructor of ContractionHierarchy
+     *
+     * @param graph the graph on which the hierarchy is built
+     * @param ranks for each node, its rank in the hierarchy
+     * @param arcs  the arcs of the hierarchy, ARC_INTS ints per arc
+     * @throws IllegalArgumentException if there is not one rank per node of the graph
+     */
+    ContractionHierarchy(Graph graph, IntBuffer ranks, IntBuffer arcs) {
+        Preconditions.checkArgument(ranks.capacity() == graph.nodeCount() && arcs.capacity() % ARC_INTS == 0);
+        this.graph = graph;
+        this.ranks = ranks;
+        this.arcs = arcs;
+
+        int nodeCount = graph.nodeCount();
+        int arcCount = arcCount();
+        firstUpwardOutArc = new int[nodeCount + 1];
+        firstUpwardInArc = new int[nodeCount + 1];
+        for (int arc = 0; arc < arcCount; ++arc) {
+            if (isUpward(arc)) ++firstUpwardOutArc[arcTail(arc) + 1];
+            else ++firstUpwardInArc[arcHead(arc) + 1];
+        }
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            firstUpwardOutArc[nodeId + 1] += firstUpwardOutArc[nodeId];
+            firstUpwardInArc[nodeId + 1] += firstUpwardInArc[nodeId];
+        }
+        upwardOutArcs = new int[firstUpwardOutArc[nodeCount]];
+        upwardInArcs = new int[firstUpwardInArc[nodeCount]];
+        int[] nextOut = Arrays.copyOf(firstUpwardOutArc, nodeCount);
+        int[] nextIn = Arrays.copyOf(firstUpwardInArc, nodeCount);
+        for (int arc = 0; arc < arcCount; ++arc) {
+            if (isUpward(arc)) upwardOutArcs[nextOut[arcTail(arc)]++] = arc;
+            else upwardInArcs[nextIn[arcHead(arc)]++] = arc;
+        }
+
+        this.forwardWorkspaces = SearchWorkspace.threadLocalPool(nodeCount, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+        this.backwardWorkspaces = SearchWorkspace.threadLocalPool(nodeCount, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+    }
+
+    /**
+     * returns the contraction hierarchy of the given graph stored in the files with the given name,
+     * next to the files of the graph (the files are memory-mapped)
+     *
+     * @param graph    the graph on which the hierarchy was built
+     * @param basePath path of the directory containing the files
+     * @param name     name of the hierarchy (typically the name of its cost function)
+     * @return the contraction hierarchy stored in the files
+     * @throws IOException if the files do not exist.
+     */
+    public static ContractionHierarchy loadFrom(Graph graph, Path basePath, String name) throws IOException {
+        return new ContractionHierarchy(graph,
+                readFile(basePath.resolve(name + RANKS_FILE_SUFFIX)),
+                readFile(basePath.resolve(name + ARCS_FILE_SUFFIX)));
+    }
+
+    /**
+     * writes the hierarchy in the files with the given name, in the given directory, through memory-mapped buffers
+     *
+     * @param basePath path of the directory in which to write the files
+     * @param name     name of the hierarchy (typically the name of its cost function)
+     * @throws IOException if the files cannot be written.
+     */
+    public void writeTo(Path basePath, String name) throws IOException {
+        writeFile(basePath.resolve(name + RANKS_FILE_SUFFIX), ranks);
+        writeFile(basePath.resolve(name + ARCS_FILE_SUFFIX), arcs);
+    }
+
+    /**
+     * returns the graph on which the hierarchy is built
+     *
+     * @return the graph on which the hierarchy is built
+     */
+    public Graph graph() {
+        return graph;
+    }
+
+    /**
+     * returns the number of arcs (edges and shortcuts) of the hierarchy
+     *
+     * @return the number of arcs of the hierarchy
+     */
+    public int arcCount() {
+        return arcs.capacity() / ARC_INTS;
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes, with a bidirectional search going only up in the hierarchy,
+     * and then unpacks the shortcuts of the route into the edges of the graph
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @return the shortest Route between 2 nodes, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        SearchWorkspace forward = forwardWorkspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        int meetingNodeId = upwardSearch(startNodeId, endNodeId, forward, backward);
+        if (meetingNodeId == NO_ARC) return null;
+
+        //arcs from the starting node up to the meeting node, found backwards, then down to the ending node
+        List<Integer> routeArcs = new ArrayList<>();
+        for (int nodeId = meetingNodeId; nodeId != startNodeId; nodeId = forward.predecessorNode(nodeId))
+            routeArcs.add(forward.predecessorEdge(nodeId));
+        Collections.reverse(routeArcs);
+        for (int nodeId = meetingNodeId; nodeId != endNodeId; nodeId = backward.predecessorNode(nodeId))
+            routeArcs.add(backward.predecessorEdge(nodeId));
+
+        List<Edge> edges = new ArrayList<>();
+        for (int arc : routeArcs) unpack(arc, edges);
+        return new SingleRoute(edges);
+    }
+
+    /**
+     * runs the two upward searches between the given nodes, in the given workspaces, and returns the node at which
+     * the best route goes from the forward search to the backward one
+     *
+     * @param startNodeId id of the starting node
+     * @param endNodeId   id of the ending node
+     * @param forward     the workspace of the forward search
+     * @param backward    the workspace of the backward search
+     * @return the node where the best route changes from one search to the other, or NO_ARC if there is no route
+     */
+    private int upwardSearch(int startNodeId, int endNodeId, SearchWorkspace forward, SearchWorkspace backward) {
+        forward.reset();
+        backward.reset();
+        NodePriorityQueue forwardQueue = forward.queue();
+        NodePriorityQueue backwardQueue = backward.queue();
+        forward.update(startNodeId, 0f, startNodeId, NO_ARC);
+        forwardQueue.insertOrDecrease(startNodeId, 0f);
+        backward.update(endNodeId, 0f, endNodeId, NO_ARC);
+        backwardQueue.insertOrDecrease(endNodeId, 0f);
+
+        float bestCost = Float.POSITIVE_INFINITY;
+        int meetingNodeId = NO_ARC;
+        while (true) {
+            //each search stops by itself once its smallest distance reaches the best cost found
+            boolean forwardGoesOn = !forwardQueue.isEmpty() && forwardQueue.minPriority() < bestCost;
+            boolean backwardGoesOn = !backwardQueue.isEmpty() && backwardQueue.minPriority() < bestCost;
+            if (!forwardGoesOn && !backwardGoesOn) break;
+            boolean goForward = forwardGoesOn
+                    && (!backwardGoesOn || forwardQueue.minPriority() <= backwardQueue.minPriority());
+
+            SearchWorkspace workspace = goForward ? forward : backward;
+            SearchWorkspace other = goForward ? backward : forward;
+            NodePriorityQueue queue = workspace.queue();
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            float cost = distanceN + other.distance(N);
+            if (cost < bestCost) {
+                bestCost = cost;
+                meetingNodeId = N;
+            }
+            int degree = goForward ? upwardOutDegree(N) : upwardInDegree(N);
+            for (int i = 0; i < degree; ++i) {
+                int arc = goForward ? upwardOutArc(N, i) : upwardInArc(N, i);
+                int Nbis = goForward ? arcHead(arc) : arcTail(arc);
+                float d = distanceN + arcCost(arc);
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, arc);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+        return meetingNodeId;
+    }
+
+    /**
+     * appends to the given list the edges of the graph represented by the given arc, in order
+     *
+     * @param arc   the identity of the arc
+     * @param edges the list to which the edges are appended
+     */
+    void unpack(int arc, List<Edge> edges) {
+        //explicit stack rather than recursion, since shortcuts can be nested very deeply
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = arc;
+        while (size > 0) {
+            int current = stack[--size];
+            if (arcSecond(current) == NO_ARC) {
+                edges.add(Edge.of(graph, arcFirst(current), arcTail(current), arcHead(current)));
+            } else {
+                if (size + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[size++] = arcSecond(current);
+                stack[size++] = arcFirst(current);
+            }
+        }
+    }
+
+    /**
+     * returns the rank of the given node in the hierarchy
+     *
+     * @param nodeId the identity of the node
+     * @return the rank of the node
+     */
+    int rank(int nodeId) {
+        return ranks.get(nodeId);
+    }
+
+    /**
+     * returns the number of arcs going from the given node to nodes of higher rank
+     *
+     * @param nodeId the identity of the node
+     * @return the number of upward out-arcs of the node
+     */
+    int upwardOutDegree(int nodeId) {
+        return firstUpwardOutArc[nodeId + 1] - firstUpwardOutArc[nodeId];
+    }
+
+    /**
+     * returns the index-th arc going from the given node to a node of higher rank
+     *
+     * @param nodeId the identity of the node
+     * @param index  the index of the arc among the upward out-arcs of the node
+     * @return the identity of the arc
+     */
+    int upwardOutArc(int nodeId, int index) {
+        return upwardOutArcs[firstUpwardOutArc[nodeId] + index];
+    }
+
+    /**
+     * returns the number of arcs coming from nodes of higher rank to the given node
+     *
+     * @param nodeId the identity of the node
+     * @return the number of upward in-arcs of the node
+     */
+    int upwardInDegree(int nodeId) {
+        return firstUpwardInArc[nodeId + 1] - firstUpwardInArc[nodeId];
+    }
+
+    /**
+     * returns the index-th arc coming from a node of higher rank to the given node
+     *
+     * @param nodeId the identity of the node
+     * @param index  the index of the arc among the upward in-arcs of the node
+     * @return the identity of the arc
+     */
+    int upwardInArc(int nodeId, int index) {
+        return upwardInArcs[firstUpwardInArc[nodeId] + index];
+    }
+
+    /**
+     * returns the node the given arc comes out of
+     *
+     * @param arc the identity of the arc
+     * @return the node the given arc comes out of
+     */
+    int arcTail(int arc) {
+        return arcs.get(arc * ARC_INTS + OFFSET_TAIL);
+    }
+
+    /**
+     * returns the node the given arc goes to
+     *
+     * @param arc the identity of the arc
+     * @return the node the given arc goes to
+     */
+    int arcHead(int arc) {
+        return arcs.get(arc * ARC_INTS + OFFSET_HEAD);
+    }
+
+    /**
+     * returns the cost of the given arc
+     *
+     * @param arc the identity of the arc
+     * @return the cost of the given arc
+     */
+    float arcCost(int arc) {
+        return Float.intBitsToFloat(arcs.get(arc * ARC_INTS + OFFSET_COST));
+    }
+
+    /**
+     * returns the length of the given arc, in meters
+     *
+     * @param arc the identity of the arc
+     * @return the length of the given arc, in meters
+     */
+    float arcLength(int arc) {
+        return Float.intBitsToFloat(arcs.get(arc * ARC_INTS + OFFSET_LENGTH));
+    }
+
+    /**
+     * returns the edge represented by the given arc, or the first arc it shortcuts
+     *
+     * @param arc the identity of the arc
+     * @return the edge represented by the given arc, or the first arc it shortcuts
+     */
+    int arcFirst(int arc) {
+        return arcs.get(arc * ARC_INTS + OFFSET_FIRST);
+    }
+
+    /**
+     * returns the second arc shortcut by the given arc, or NO_ARC if it is an edge
+     *
+     * @param arc the identity of the arc
+     * @return the second arc shortcut by the given arc, or NO_ARC if it is an edge
+     */
+    int arcSecond(int arc) {
+        return arcs.get(arc * ARC_INTS + OFFSET_SECOND);
+    }
+
+    /**
+     * returns whether the given arc goes from a node to a node of higher rank
+     *
+     * @param arc the identity of the arc
+     * @return true if the arc goes up in the hierarchy
+     */
+    private boolean isUpward(int arc) {
+        return rank(arcHead(arc)) > rank(arcTail(arc));
+    }
+
+    /**
+     * returns the content of the given file, memory-mapped, as an IntBuffer
+     *
+     * @param file the file to map
+     * @return the content of the file
+     * @throws IOException if the file does not exist
+     */
+    private static IntBuffer readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+        }
+    }
+
+    /**
+     * writes the content of the given buffer in the given file, through a memory-mapped buffer
+     *
+     * @param file    the file to write
+     * @param content the ints to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeFile(Path file, IntBuffer content) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) content.capacity() * Integer.BYTES)
+                    .asIntBuffer()
+                    .put(content.duplicate().clear());
+        }
+    }
+}
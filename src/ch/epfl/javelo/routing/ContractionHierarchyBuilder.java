@@ -0,0 +1,439 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static ch.epfl.javelo.routing.ContractionHierarchy.*;
+
+/**
+ * builds the contraction hierarchy of a graph for a given cost function. Nodes are contracted by rounds: each
+ * round takes the nodes whose priority is smaller than the one of all their neighbours (an independent set),
+ * computes the shortcuts replacing them in parallel, and then removes them from the remaining graph.
+ * <p>
+ * The priority of a node is its edge difference (the number of shortcuts its contraction would add, minus the
+ * number of arcs it would remove) plus its number of already contracted neighbours, which spreads the
+ * contraction evenly over the graph.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ContractionHierarchyBuilder {
+    /**
+     * maximal number of nodes settled by a witness search, after which a shortcut is added without proof that it
+     * is necessary (this only costs an unnecessary arc, never a wrong result)
+     */
+    private static final int MAX_WITNESS_SETTLED_NODES = 500;
+
+    /**
+     * the graph on which the hierarchy is built
+     */
+    private final Graph graph;
+    /**
+     * the arcs (edges and shortcuts) created so far
+     */
+    private final ArcList arcs;
+    /**
+     * for each node, the arcs going out of it to nodes which are not contracted yet
+     */
+    private final int[][] outArcs;
+    /**
+     * for each node, the number of arcs in outArcs
+     */
+    private final int[] outDegrees;
+    /**
+     * for each node, the arcs coming into it from nodes which are not contracted yet
+     */
+    private final int[][] inArcs;
+    /**
+     * for each node, the number of arcs in inArcs
+     */
+    private final int[] inDegrees;
+    /**
+     * for each node, its rank, or -1 if it is not contracted yet
+     */
+    private final int[] ranks;
+    /**
+     * for each node, its number of contracted neighbours
+     */
+    private final int[] contractedNeighbours;
+    /**
+     * for each node, its contraction priority (the smaller, the earlier)
+     */
+    private final int[] priorities;
+    /**
+     * for each node, whether it is contracted during the current round (witness paths must avoid them)
+     */
+    private final boolean[] inCurrentRound;
+    /**
+     * the workspaces of the witness searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    /**
+     * constructor of ContractionHierarchyBuilder, creating one arc per edge of finite cost
+     *
+     * @param graph        the graph on which the hierarchy is built
+     * @param costFunction the cost function of the hierarchy
+     */
+    private ContractionHierarchyBuilder(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        int nodeCount = graph.nodeCount();
+        this.arcs = new ArcList(graph.edgeCount());
+        this.outArcs = new int[nodeCount][];
+        this.outDegrees = new int[nodeCount];
+        this.inArcs = new int[nodeCount][];
+        this.inDegrees = new int[nodeCount];
+        this.ranks = new int[nodeCount];
+        this.contractedNeighbours = new int[nodeCount];
+        this.priorities = new int[nodeCount];
+        this.inCurrentRound = new boolean[nodeCount];
+        this.workspaces = SearchWorkspace.threadLocalPool(nodeCount, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+        Arrays.fill(ranks, -1);
+
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            outArcs[nodeId] = new int[Math.max(graph.nodeOutDegree(nodeId), 1)];
+            inArcs[nodeId] = new int[Math.max(graph.nodeInDegree(nodeId), 1)];
+        }
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                int targetNodeId = graph.edgeTargetNodeId(edgeId);
+                double cost = costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId);
+                if (targetNodeId == nodeId || cost == Double.POSITIVE_INFINITY) continue;
+                addArc(arcs.add(nodeId, targetNodeId, (float) cost, (float) graph.edgeLength(edgeId), edgeId, NO_ARC));
+            }
+        }
+    }
+
+    /**
+     * builds the contraction hierarchy of the given graph for the given cost function, using all the processors
+     *
+     * @param graph        the graph on which the hierarchy is built
+     * @param costFunction the cost function of the hierarchy
+     * @return the contraction hierarchy
+     */
+    public static ContractionHierarchy build(Graph graph, CostFunction costFunction) {
+        return new ContractionHierarchyBuilder(graph, costFunction).contractAll();
+    }
+
+    /**
+     * builds the contraction hierarchy of a graph for CityBikeCF and writes it next to the files of the graph
+     *
+     * @param args the path of the directory containing the graph, and optionally the name of the hierarchy
+     *             ("citybike" by default)
+     * @throws IOException if the graph cannot be read or the hierarchy cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        String name = args.length > 1 ? args[1] : "citybike";
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = build(graph, new CityBikeCF(graph));
+        System.out.printf("%d nodes contracted, %d arcs, in %.1f s%n",
+                graph.nodeCount(), hierarchy.arcCount(), (System.nanoTime() - start) / 1e9);
+        hierarchy.writeTo(basePath, name);
+    }
+
+    /**
+     * contracts all the nodes of the graph, round by round
+     *
+     * @return the contraction hierarchy
+     */
+    private ContractionHierarchy contractAll() {
+        int[] remaining = IntStream.range(0, graph.nodeCount()).toArray();
+        IntStream.of(remaining).parallel().forEach(this::updatePriority);
+
+        int nextRank = 0;
+        while (remaining.length > 0) {
+            int[] round = IntStream.of(remaining).parallel().filter(this::isLocalMinimum).toArray();
+            for (int nodeId : round) inCurrentRound[nodeId] = true;
+
+            List<List<Shortcut>> shortcuts = IntStream.of(round).parallel()
+                    .mapToObj(nodeId -> shortcutsOf(nodeId, workspaces.get()))
+                    .toList();
+
+            //the graph is only modified sequentially, once all the shortcuts of the round are known
+            for (int i = 0; i < round.length; ++i) {
+                for (Shortcut shortcut : shortcuts.get(i)) addShortcut(shortcut);
+                ranks[round[i]] = nextRank++;
+            }
+            int[] neighbours = IntStream.of(round).flatMap(this::neighbours).distinct().toArray();
+            for (int nodeId : round) removeFromRemainingGraph(nodeId);
+            for (int nodeId : neighbours) ++contractedNeighbours[nodeId];
+            for (int nodeId : round) inCurrentRound[nodeId] = false;
+
+            IntStream.of(neighbours).parallel().filter(n -> ranks[n] < 0).forEach(this::updatePriority);
+            remaining = IntStream.of(remaining).filter(n -> ranks[n] < 0).toArray();
+        }
+        return new ContractionHierarchy(graph, IntBuffer.wrap(ranks), arcs.toIntBuffer());
+    }
+
+    /**
+     * returns whether the given node has a smaller priority than all its neighbours (the identity breaking ties),
+     * so that it can be contracted in the current round
+     *
+     * @param nodeId the identity of the node
+     * @return true if the node has a smaller priority than all its neighbours
+     */
+    private boolean isLocalMinimum(int nodeId) {
+        return neighbours(nodeId).allMatch(n -> priorities[nodeId] < priorities[n]
+                || (priorities[nodeId] == priorities[n] && nodeId < n));
+    }
+
+    /**
+     * recomputes the priority of the given node, by simulating its contraction
+     *
+     * @param nodeId the identity of the node
+     */
+    private void updatePriority(int nodeId) {
+        int shortcutCount = shortcutsOf(nodeId, workspaces.get()).size();
+        priorities[nodeId] = shortcutCount - inDegrees[nodeId] - outDegrees[nodeId] + contractedNeighbours[nodeId];
+    }
+
+    /**
+     * returns the shortcuts needed to contract the given node: for each pair of neighbours u and w, the shortcut
+     * from u to w through the node, unless a witness search finds a path at most as costly avoiding the node
+     *
+     * @param nodeId    the identity of the node
+     * @param workspace the workspace of the witness searches
+     * @return the shortcuts needed to contract the node
+     */
+    private List<Shortcut> shortcutsOf(int nodeId, SearchWorkspace workspace) {
+        int[] in = cheapestArcs(inArcs[nodeId], inDegrees[nodeId], true);
+        int[] out = cheapestArcs(outArcs[nodeId], outDegrees[nodeId], false);
+        float maxOutCost = 0;
+        for (int arc : out) maxOutCost = Math.max(maxOutCost, arcs.cost(arc));
+
+        List<Shortcut> shortcuts = new ArrayList<>();
+        for (int inArc : in) {
+            int fromNodeId = arcs.tail(inArc);
+            witnessSearch(workspace, fromNodeId, nodeId, arcs.cost(inArc) + maxOutCost);
+            for (int outArc : out) {
+                int toNodeId = arcs.head(outArc);
+                if (toNodeId == fromNodeId) continue;
+                float cost = arcs.cost(inArc) + arcs.cost(outArc);
+                if (workspace.distance(toNodeId) > cost)
+                    shortcuts.add(new Shortcut(fromNodeId, toNodeId, cost,
+                            arcs.length(inArc) + arcs.length(outArc), inArc, outArc));
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * returns, among the given arcs, the cheapest one for each neighbour
+     *
+     * @param nodeArcs the arcs going out of (or coming into) a node
+     * @param degree   the number of such arcs
+     * @param incoming true if the arcs come into the node, so that the neighbour is their tail
+     * @return the cheapest arc to (or from) each neighbour
+     */
+    private int[] cheapestArcs(int[] nodeArcs, int degree, boolean incoming) {
+        int[] cheapest = new int[degree];
+        int count = 0;
+        for (int i = 0; i < degree; ++i) {
+            int arc = nodeArcs[i];
+            int neighbour = incoming ? arcs.tail(arc) : arcs.head(arc);
+            int j = 0;
+            while (j < count && neighbour != (incoming ? arcs.tail(cheapest[j]) : arcs.head(cheapest[j]))) ++j;
+            if (j == count) cheapest[count++] = arc;
+            else if (arcs.cost(arc) < arcs.cost(cheapest[j])) cheapest[j] = arc;
+        }
+        return Arrays.copyOf(cheapest, count);
+    }
+
+    /**
+     * runs a Dijkstra search from the given node in the remaining graph, avoiding the node being contracted and the
+     * nodes contracted in the same round, until its distance exceeds the given bound
+     *
+     * @param workspace    the workspace of the search, which contains the distances found afterwards
+     * @param sourceNodeId the identity of the source of the search
+     * @param avoidedId    the identity of the node being contracted
+     * @param maxCost      the largest distance of interest
+     */
+    private void witnessSearch(SearchWorkspace workspace, int sourceNodeId, int avoidedId, float maxCost) {
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        workspace.update(sourceNodeId, 0f, sourceNodeId, NO_ARC);
+        queue.insertOrDecrease(sourceNodeId, 0f);
+        int settledCount = 0;
+        while (!queue.isEmpty() && queue.minPriority() <= maxCost && settledCount < MAX_WITNESS_SETTLED_NODES) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            ++settledCount;
+            for (int i = 0; i < outDegrees[N]; ++i) {
+                int arc = outArcs[N][i];
+                int Nbis = arcs.head(arc);
+                if (Nbis == avoidedId || inCurrentRound[Nbis]) continue;
+                float d = distanceN + arcs.cost(arc);
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, arc);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * returns the neighbours of the given node in the remaining graph (possibly with repetitions)
+     *
+     * @param nodeId the identity of the node
+     * @return the neighbours of the node in the remaining graph
+     */
+    private IntStream neighbours(int nodeId) {
+        return IntStream.concat(
+                IntStream.range(0, outDegrees[nodeId]).map(i -> arcs.head(outArcs[nodeId][i])),
+                IntStream.range(0, inDegrees[nodeId]).map(i -> arcs.tail(inArcs[nodeId][i])));
+    }
+
+    /**
+     * adds the given shortcut to the hierarchy, unless an arc at most as costly already links its nodes
+     *
+     * @param shortcut the shortcut
+     */
+    private void addShortcut(Shortcut shortcut) {
+        for (int i = 0; i < outDegrees[shortcut.tail()]; ++i) {
+            int arc = outArcs[shortcut.tail()][i];
+            if (arcs.head(arc) == shortcut.head() && arcs.cost(arc) <= shortcut.cost()) return;
+        }
+        addArc(arcs.add(shortcut.tail(), shortcut.head(), shortcut.cost(), shortcut.length(),
+                shortcut.firstArc(), shortcut.secondArc()));
+    }
+
+    /**
+     * adds the given arc to the adjacency of its tail and head nodes
+     *
+     * @param arc the identity of the arc
+     */
+    private void addArc(int arc) {
+        int tail = arcs.tail(arc);
+        int head = arcs.head(arc);
+        if (outDegrees[tail] == outArcs[tail].length) outArcs[tail] = Arrays.copyOf(outArcs[tail], outDegrees[tail] * 2);
+        outArcs[tail][outDegrees[tail]++] = arc;
+        if (inDegrees[head] == inArcs[head].length) inArcs[head] = Arrays.copyOf(inArcs[head], inDegrees[head] * 2);
+        inArcs[head][inDegrees[head]++] = arc;
+    }
+
+    /**
+     * removes the arcs of the given (contracted) node from the adjacency of its neighbours
+     *
+     * @param nodeId the identity of the node
+     */
+    private void removeFromRemainingGraph(int nodeId) {
+        for (int i = 0; i < outDegrees[nodeId]; ++i) {
+            int head = arcs.head(outArcs[nodeId][i]);
+            inDegrees[head] = removeArc(inArcs[head], inDegrees[head], outArcs[nodeId][i]);
+        }
+        for (int i = 0; i < inDegrees[nodeId]; ++i) {
+            int tail = arcs.tail(inArcs[nodeId][i]);
+            outDegrees[tail] = removeArc(outArcs[tail], outDegrees[tail], inArcs[nodeId][i]);
+        }
+        outDegrees[nodeId] = 0;
+        inDegrees[nodeId] = 0;
+    }
+
+    /**
+     * removes the given arc from the given list of arcs, by moving the last one in its place
+     *
+     * @param nodeArcs the list of arcs
+     * @param degree   the number of arcs in the list
+     * @param arc      the arc to remove
+     * @return the new number of arcs in the list
+     */
+    private static int removeArc(int[] nodeArcs, int degree, int arc) {
+        for (int i = 0; i < degree; ++i) {
+            if (nodeArcs[i] == arc) {
+                nodeArcs[i] = nodeArcs[degree - 1];
+                return degree - 1;
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * represents a shortcut found by the contraction of a node
+     *
+     * @param tail      the node the shortcut comes out of
+     * @param head      the node the shortcut goes to
+     * @param cost      the cost of the shortcut
+     * @param length    the length of the shortcut
+     * @param firstArc  the arc from the tail to the contracted node
+     * @param secondArc the arc from the contracted node to the head
+     */
+    private record Shortcut(int tail, int head, float cost, float length, int firstArc, int secondArc) {
+    }
+
+    /**
+     * represents a growable list of arcs, stored in the layout of ContractionHierarchy
+     */
+    private static final class ArcList {
+        /**
+         * the arcs, ARC_INTS ints per arc
+         */
+        private int[] content;
+        /**
+         * the number of arcs in the list
+         */
+        private int size;
+
+        /**
+         * constructor of ArcList
+         *
+         * @param initialCapacity the number of arcs the list can contain before growing
+         */
+        ArcList(int initialCapacity) {
+            this.content = new int[Math.max(initialCapacity, 1) * ARC_INTS];
+            this.size = 0;
+        }
+
+        /**
+         * adds an arc at the end of the list
+         *
+         * @return the identity of the new arc
+         */
+        int add(int tail, int head, float cost, float length, int first, int second) {
+            if ((size + 1) * ARC_INTS > content.length) content = Arrays.copyOf(content, content.length * 2);
+            int base = size * ARC_INTS;
+            content[base + OFFSET_TAIL] = tail;
+            content[base + OFFSET_HEAD] = head;
+            content[base + OFFSET_COST] = Float.floatToIntBits(cost);
+            content[base + OFFSET_LENGTH] = Float.floatToIntBits(length);
+            content[base + OFFSET_FIRST] = first;
+            content[base + OFFSET_SECOND] = second;
+            return size++;
+        }
+
+        int tail(int arc) {
+            return content[arc * ARC_INTS + OFFSET_TAIL];
+        }
+
+        int head(int arc) {
+            return content[arc * ARC_INTS + OFFSET_HEAD];
+        }
+
+        float cost(int arc) {
+            return Float.intBitsToFloat(content[arc * ARC_INTS + OFFSET_COST]);
+        }
+
+        float length(int arc) {
+            return Float.intBitsToFloat(content[arc * ARC_INTS + OFFSET_LENGTH]);
+        }
+
+        /**
+         * returns the arcs of the list, in a buffer of the exact size
+         *
+         * @return the arcs of the list
+         */
+        IntBuffer toIntBuffer() {
+            return IntBuffer.wrap(Arrays.copyOf(content, size * ARC_INTS));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * represents the cost factors of the edges of a graph for a given cost function, evaluated once per edge by
+ * CostTableBuilder so that the searches read them instead of evaluating the function, through TableCF.
+ * <p>
+ * The factor of an edge is the one of the edge starting from its source node, which is the only node the searches
+ * ever give with it. The factors are stored as floats, which is the precision of the distances of the searches.
+ * The file of the table contains the factor of each edge, in order.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class CostTable {
+    /**
+     * suffix of the name of the file containing the table
+     */
+    private static final String FILE_SUFFIX = "_costs.bin";
+
+    /**
+     * the cost factors of the edges
+     */
+    private final FloatBuffer costFactors;
+
+    /**
+     * constructor of CostTable
+     *
+     * @param costFactors the cost factors of the edges
+     */
+    CostTable(FloatBuffer costFactors) {
+        this.costFactors = costFactors;
+    }
+
+    /**
+     * returns the table of the given graph stored in the file with the given name, in the given directory (the
+     * file is memory-mapped)
+     *
+     * @param graph    the graph of the table
+     * @param basePath path of the directory containing the file
+     * @param name     name of the table (typically the name of its cost function)
+     * @return the table stored in the file
+     * @throws IOException              if the file does not exist.
+     * @throws IllegalArgumentException if the table does not have one factor per edge of the graph
+     */
+    public static CostTable loadFrom(Graph graph, Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX))) {
+            FloatBuffer costFactors = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asFloatBuffer();
+            Preconditions.checkArgument(costFactors.capacity() == graph.edgeCount());
+            return new CostTable(costFactors);
+        }
+    }
+
+    /**
+     * writes the table in the file with the given name, in the given directory, through a memory-mapped buffer
+     *
+     * @param basePath path of the directory in which to write the file
+     * @param name     name of the table (typically the name of its cost function)
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX),
+                CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) Float.BYTES * costFactors.capacity());
+            buffer.asFloatBuffer().put(costFactors.duplicate().clear());
+        }
+    }
+
+    /**
+     * returns the number of edges of the table
+     *
+     * @return the number of edges of the table
+     */
+    public int edgeCount() {
+        return costFactors.capacity();
+    }
+
+    /**
+     * returns the cost factor of the given edge
+     *
+     * @param edgeId the identity of the edge
+     * @return the cost factor of the edge, which is infinite if the edge cannot be used
+     */
+    public float costFactor(int edgeId) {
+        return costFactors.get(edgeId);
+    }
+}
@@ -0,0 +1,57 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * computes the cost table of a graph for a given cost function, evaluating the function once per edge, in
+ * parallel
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class CostTableBuilder {
+
+    /**
+     * private constructor to make the class non instantiable
+     */
+    private CostTableBuilder() {
+    }
+
+    /**
+     * computes the cost table of the given graph for the given cost function. The function must only depend on
+     * the edge, the factor of an edge being evaluated from its source node.
+     *
+     * @param graph        the graph of the table
+     * @param costFunction the cost function of the table
+     * @return the cost table
+     */
+    public static CostTable build(Graph graph, CostFunction costFunction) {
+        float[] costFactors = new float[graph.edgeCount()];
+        //each edge is written by a single thread
+        IntStream.range(0, graph.edgeCount()).parallel().forEach(edgeId -> costFactors[edgeId] =
+                (float) costFunction.costFactor(graph.edgeSourceNodeId(edgeId), edgeId));
+        return new CostTable(FloatBuffer.wrap(costFactors));
+    }
+
+    /**
+     * computes the cost table of a graph for CityBikeCF and writes it next to the files of the graph
+     *
+     * @param args the path of the directory containing the graph, and optionally the name of the table
+     *             ("citybike" by default)
+     * @throws IOException if the graph cannot be read or the table cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        String name = args.length > 1 ? args[1] : "citybike";
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        CostTable table = build(graph, new CityBikeCF(graph));
+        System.out.printf("cost table computed in %.1f s%n", (System.nanoTime() - start) / 1e9);
+        table.writeTo(basePath, name);
+    }
+}
@@ -0,0 +1,78 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * represents the costs and lengths of the best routes from each node of a list of sources to each node of a list
+ * of targets, stored row by row (the route from the i-th source to the j-th target is at index
+ * i * targetCount + j)
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+
+/**
+ * @param sourceCount the number of sources
+ * @param targetCount the number of targets
+ * @param costs       the costs of the routes, positive infinity if there is no route between the nodes
+ * @param lengths     the lengths of the routes, in meters (positive infinity if there is no route)
+ */
+public record DistanceMatrix(int sourceCount, int targetCount, float[] costs, float[] lengths) {
+
+    /**
+     * compact constructor of DistanceMatrix
+     *
+     * @throws IllegalArgumentException if the arrays do not have one value per pair of source and target
+     */
+    public DistanceMatrix {
+        Preconditions.checkArgument(sourceCount >= 0 && targetCount >= 0
+                && costs.length == (long) sourceCount * targetCount && lengths.length == costs.length);
+    }
+
+    /**
+     * returns the cost of the best route from the given source to the given target
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return the cost of the route, positive infinity if there is none
+     */
+    public float cost(int sourceIndex, int targetIndex) {
+        return costs[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * returns the length of the best route from the given source to the given target
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return the length of the route, in meters, positive infinity if there is none
+     */
+    public float length(int sourceIndex, int targetIndex) {
+        return lengths[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * returns whether there is a route from the given source to the given target
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return true if there is a route between the nodes
+     */
+    public boolean hasRoute(int sourceIndex, int targetIndex) {
+        return cost(sourceIndex, targetIndex) != Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * returns the index in the arrays of the route from the given source to the given target
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return the index of the route
+     * @throws IndexOutOfBoundsException if one of the indices is invalid
+     */
+    private int index(int sourceIndex, int targetIndex) {
+        if (sourceIndex < 0 || sourceIndex >= sourceCount || targetIndex < 0 || targetIndex >= targetCount)
+            throw new IndexOutOfBoundsException();
+        return sourceIndex * targetCount + targetIndex;
+    }
+}
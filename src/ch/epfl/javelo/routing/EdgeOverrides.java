@@ -0,0 +1,296 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * closures and cost multipliers of edges, which can be changed while routes are computed, so that roadworks or
+ * events are avoided without rebuilding the graph. They are applied by OverridingCF.
+ * <p>
+ * The closed edges are kept in a bitset, and the multipliers in a sparse map, only looked up for the edges whose
+ * bit is set in a second bitset, so that an edge without override costs two bit tests. Each direction of a road
+ * is a distinct edge, to be closed on its own. The multipliers are at least 1, so that the costs only grow: the
+ * connected components and the landmarks computed for the costs without overrides stay valid, but the arc flags
+ * and the contraction hierarchy do not.
+ * <p>
+ * The listeners are called after each change, by the thread making it, so that the caches of routes can be
+ * emptied. A search running during a change may see only part of it.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class EdgeOverrides {
+    /**
+     * keyword of the lines of the override files closing an edge
+     */
+    private static final String CLOSE_KEYWORD = "close";
+    /**
+     * keyword of the lines of the override files multiplying the cost of an edge
+     */
+    private static final String MULTIPLY_KEYWORD = "multiply";
+    /**
+     * first character of the comment lines of the override files
+     */
+    private static final String COMMENT_PREFIX = "#";
+
+    /**
+     * the number of edges of the graph
+     */
+    private final int edgeCount;
+    /**
+     * the bitset of the closed edges
+     */
+    private final AtomicLongArray closed;
+    /**
+     * the bitset of the edges having a multiplier
+     */
+    private final AtomicLongArray multiplied;
+    /**
+     * the multipliers of the edges, by edge identity
+     */
+    private final Map<Integer, Double> multipliers;
+    /**
+     * the listeners called after each change
+     */
+    private final List<Runnable> listeners;
+
+    /**
+     * constructor of EdgeOverrides, without any override
+     *
+     * @param edgeCount the number of edges of the graph
+     * @throws IllegalArgumentException if the number of edges is negative
+     */
+    public EdgeOverrides(int edgeCount) {
+        Preconditions.checkArgument(edgeCount >= 0);
+        this.edgeCount = edgeCount;
+        this.closed = new AtomicLongArray((edgeCount + Long.SIZE - 1) / Long.SIZE);
+        this.multiplied = new AtomicLongArray((edgeCount + Long.SIZE - 1) / Long.SIZE);
+        this.multipliers = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * returns the factor by which the cost of the given edge must be multiplied
+     *
+     * @param edgeId the identity of the edge
+     * @return positive infinity if the edge is closed, its multiplier if it has one, and 1 otherwise
+     */
+    public double multiplier(int edgeId) {
+        if (isSet(closed, edgeId)) return Double.POSITIVE_INFINITY;
+        if (!isSet(multiplied, edgeId)) return 1;
+        //the bit may have been set before the multiplier was added, or left after it was removed
+        return multipliers.getOrDefault(edgeId, 1d);
+    }
+
+    /**
+     * returns whether the given edge is closed
+     *
+     * @param edgeId the identity of the edge
+     * @return true if the edge is closed
+     */
+    public boolean isClosed(int edgeId) {
+        return isSet(closed, edgeId);
+    }
+
+    /**
+     * closes or reopens the given edge
+     *
+     * @param edgeId the identity of the edge
+     * @param close  true to close the edge, false to reopen it
+     * @throws IllegalArgumentException if there is no such edge
+     */
+    public void setClosed(int edgeId, boolean close) {
+        checkEdge(edgeId);
+        set(closed, edgeId, close);
+        fireChanged();
+    }
+
+    /**
+     * sets the factor by which the cost of the given edge is multiplied, a factor of 1 removing the override
+     *
+     * @param edgeId     the identity of the edge
+     * @param multiplier the factor, at least 1 so that the costs are never lowered
+     * @throws IllegalArgumentException if there is no such edge, or if the factor is not a number at least 1
+     */
+    public void setMultiplier(int edgeId, double multiplier) {
+        checkEdge(edgeId);
+        Preconditions.checkArgument(multiplier >= 1);
+        putMultiplier(edgeId, multiplier);
+        fireChanged();
+    }
+
+    /**
+     * removes all the overrides
+     */
+    public void clear() {
+        removeAll();
+        fireChanged();
+    }
+
+    /**
+     * replaces all the overrides by the ones of the given text file, and calls the listeners once. Each line of
+     * the file is either empty, a comment starting with #, "close edgeId" or "multiply edgeId factor".
+     * The file is read entirely before any override is replaced, so that nothing changes if it is invalid.
+     *
+     * @param file the path of the file
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a line is invalid, or refers to an edge which does not exist
+     */
+    public void loadFrom(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        long[] closedWords = new long[closed.length()];
+        Map<Integer, Double> newMultipliers = new ConcurrentHashMap<>();
+        for (String line : lines) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith(COMMENT_PREFIX)) continue;
+            String[] tokens = trimmed.split("\\s+");
+            int edgeId = parseEdgeId(tokens);
+            switch (tokens[0]) {
+                case CLOSE_KEYWORD -> {
+                    Preconditions.checkArgument(tokens.length == 2);
+                    closedWords[edgeId / Long.SIZE] |= 1L << edgeId;
+                }
+                case MULTIPLY_KEYWORD -> {
+                    Preconditions.checkArgument(tokens.length == 3);
+                    double multiplier = parseNumber(tokens[2]);
+                    Preconditions.checkArgument(multiplier >= 1);
+                    newMultipliers.put(edgeId, multiplier);
+                }
+                default -> throw new IllegalArgumentException();
+            }
+        }
+        removeAll();
+        for (int word = 0; word < closedWords.length; ++word) closed.set(word, closedWords[word]);
+        newMultipliers.forEach(this::putMultiplier);
+        fireChanged();
+    }
+
+    /**
+     * adds a listener called after each change of the overrides, by the thread making it
+     *
+     * @param listener the listener
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * removes a listener added by addListener
+     *
+     * @param listener the listener
+     */
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * sets the multiplier of the given edge, without calling the listeners
+     *
+     * @param edgeId     the identity of the edge
+     * @param multiplier the factor, 1 removing the override
+     */
+    private void putMultiplier(int edgeId, double multiplier) {
+        if (multiplier == 1) {
+            set(multiplied, edgeId, false);
+            multipliers.remove(edgeId);
+        } else {
+            //the bit is set after the multiplier, so that a reader seeing it finds the multiplier
+            multipliers.put(edgeId, multiplier);
+            set(multiplied, edgeId, true);
+        }
+    }
+
+    /**
+     * removes all the overrides, without calling the listeners
+     */
+    private void removeAll() {
+        for (int word = 0; word < closed.length(); ++word) {
+            closed.set(word, 0);
+            multiplied.set(word, 0);
+        }
+        multipliers.clear();
+    }
+
+    /**
+     * calls the listeners
+     */
+    private void fireChanged() {
+        for (Runnable listener : listeners) listener.run();
+    }
+
+    /**
+     * checks that the given edge exists
+     *
+     * @param edgeId the identity of the edge
+     * @throws IllegalArgumentException if there is no such edge
+     */
+    private void checkEdge(int edgeId) {
+        Preconditions.checkArgument(0 <= edgeId && edgeId < edgeCount);
+    }
+
+    /**
+     * returns the edge of a line of an override file
+     *
+     * @param tokens the words of the line
+     * @return the identity of the edge, which exists
+     * @throws IllegalArgumentException if the line has no valid edge identity
+     */
+    private int parseEdgeId(String[] tokens) {
+        Preconditions.checkArgument(tokens.length >= 2);
+        int edgeId;
+        try {
+            edgeId = Integer.parseInt(tokens[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(e);
+        }
+        checkEdge(edgeId);
+        return edgeId;
+    }
+
+    /**
+     * parses a number of a line of an override file
+     *
+     * @param token the number, as written in the file
+     * @return the number
+     * @throws IllegalArgumentException if the token is not a number
+     */
+    private static double parseNumber(String token) {
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * returns whether the bit of the given edge is set in the given bitset
+     *
+     * @param bits   the bitset
+     * @param edgeId the identity of the edge
+     * @return true if the bit is set
+     */
+    private static boolean isSet(AtomicLongArray bits, int edgeId) {
+        return (bits.get(edgeId / Long.SIZE) & (1L << edgeId)) != 0;
+    }
+
+    /**
+     * sets or clears the bit of the given edge in the given bitset, atomically
+     *
+     * @param bits   the bitset
+     * @param edgeId the identity of the edge
+     * @param value  true to set the bit, false to clear it
+     */
+    private static void set(AtomicLongArray bits, int edgeId, boolean value) {
+        long mask = 1L << edgeId;
+        bits.getAndUpdate(edgeId / Long.SIZE, word -> value ? word | mask : word & ~mask);
+    }
+}
@@ -0,0 +1,84 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphSectors;
+
+import java.util.BitSet;
+
+import static ch.epfl.javelo.data.GraphSectors.NUMBER_OF_SECTORS_ON_SIDE;
+
+/**
+ * represents the nodes reachable from a source node within a cost budget, sorted by increasing cost
+ *
+ * @param nodeIds the identities of the reachable nodes, sorted by increasing cost
+ * @param costs   the cost of the best route from the source to each of the nodes
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public record Isochrone(int[] nodeIds, float[] costs) {
+
+    /**
+     * constructor of Isochrone
+     *
+     * @throws IllegalArgumentException if there is not one cost per node
+     */
+    public Isochrone {
+        Preconditions.checkArgument(nodeIds.length == costs.length);
+    }
+
+    /**
+     * returns the number of reachable nodes
+     *
+     * @return the number of reachable nodes
+     */
+    public int count() {
+        return nodeIds.length;
+    }
+
+    /**
+     * returns the sectors containing at least one reachable node
+     *
+     * @param graph the graph of the nodes
+     * @return the set of the identities of the sectors containing a reachable node
+     */
+    public BitSet coveredSectors(Graph graph) {
+        BitSet covered = new BitSet(NUMBER_OF_SECTORS_ON_SIDE * NUMBER_OF_SECTORS_ON_SIDE);
+        for (int nodeId : nodeIds)
+            covered.set(GraphSectors.sectorIdentityAt(graph.nodeE(nodeId), graph.nodeN(nodeId)));
+        return covered;
+    }
+
+    /**
+     * returns the outline of the isochrone at the level of the sectors: the covered sectors having a side in common
+     * with a sector which is not covered (or with the border of the grid)
+     *
+     * @param graph the graph of the nodes
+     * @return the set of the identities of the sectors of the outline
+     */
+    public BitSet outlineSectors(Graph graph) {
+        BitSet covered = coveredSectors(graph);
+        BitSet outline = new BitSet(covered.size());
+        for (int sector = covered.nextSetBit(0); sector >= 0; sector = covered.nextSetBit(sector + 1)) {
+            int x = sector % NUMBER_OF_SECTORS_ON_SIDE;
+            int y = sector / NUMBER_OF_SECTORS_ON_SIDE;
+            if (!isCovered(covered, x - 1, y) || !isCovered(covered, x + 1, y)
+                    || !isCovered(covered, x, y - 1) || !isCovered(covered, x, y + 1))
+                outline.set(sector);
+        }
+        return outline;
+    }
+
+    /**
+     * returns whether the sector of the given coordinates in the grid is covered
+     *
+     * @param covered the set of the covered sectors
+     * @param x       the index of the column of the sector
+     * @param y       the index of the row of the sector
+     * @return true if the sector is in the grid and is covered
+     */
+    private static boolean isCovered(BitSet covered, int x, int y) {
+        return 0 <= x && x < NUMBER_OF_SECTORS_ON_SIDE && 0 <= y && y < NUMBER_OF_SECTORS_ON_SIDE
+                && covered.get(NUMBER_OF_SECTORS_ON_SIDE * y + x);
+    }
+}
@@ -0,0 +1,374 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * computes the nodes reachable from a source node within a cost budget, with the costs given by a cost function
+ * (a budget in distance is obtained with a cost function whose factor is always 1).
+ * <p>
+ * Two searches are available: a sequential Dijkstra search, which can run in several threads at once, and a
+ * parallel delta-stepping search for large budgets, in which the nodes are put in buckets of width delta and the
+ * edges leaving the nodes of a bucket are relaxed in parallel. Only one parallel search can run at a time.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class IsochroneComputer {
+    /**
+     * width of the buckets of the parallel search when none is specified, a bit more than the cost of most edges
+     */
+    private static final double DEFAULT_DELTA = 500;
+    /**
+     * maximal number of buckets of the parallel search
+     */
+    private static final int MAX_BUCKET_COUNT = 1 << 20;
+    /**
+     * bits of positive infinity, the distance of the nodes not reached by the parallel search
+     */
+    private static final int UNREACHED = Float.floatToIntBits(Float.POSITIVE_INFINITY);
+
+    /**
+     * the graph of the searches
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the searches
+     */
+    private final CostFunction costFunction;
+    /**
+     * the workspaces of the sequential searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+    /**
+     * for each node, the bits of the distance found by the parallel search, allocated by the first one and reset
+     * to UNREACHED at the end of each of them
+     */
+    private AtomicIntegerArray parallelDistances;
+    /**
+     * for each node, the phase of the parallel search which last took it out of a bucket
+     */
+    private int[] phaseStamps;
+    /**
+     * the current phase of the parallel search
+     */
+    private int phase;
+
+    /**
+     * constructor of IsochroneComputer
+     *
+     * @param graph        the graph of the searches
+     * @param costFunction the cost function of the searches
+     */
+    public IsochroneComputer(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.workspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), RouteComputer.DEFAULT_QUEUE_KIND);
+    }
+
+    /**
+     * returns the nodes reachable from the given node with a cost smaller or equal to the given budget, computed
+     * by a sequential search
+     *
+     * @param sourceNodeId the identity of the source node
+     * @param maxCost      the cost budget
+     * @return the reachable nodes, sorted by increasing cost
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public Isochrone reachableFrom(int sourceNodeId, double maxCost) {
+        Preconditions.checkArgument(maxCost >= 0);
+        SearchWorkspace workspace = workspaces.get();
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        int[] nodeIds = new int[16];
+        float[] costs = new float[16];
+        int count = 0;
+
+        workspace.update(sourceNodeId, 0f, sourceNodeId, RouteComputer.NO_EDGE);
+        queue.insertOrDecrease(sourceNodeId, 0f);
+        while (!queue.isEmpty()) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            if (count == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * count);
+                costs = Arrays.copyOf(costs, 2 * count);
+            }
+            nodeIds[count] = N;
+            costs[count++] = distanceN;
+            for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                int edgeId = graph.nodeOutEdgeId(N, i);
+                int Nbis = graph.edgeTargetNodeId(edgeId);
+                float d = distanceN + edgeCost(N, edgeId);
+                if (d <= maxCost && d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+        return new Isochrone(Arrays.copyOf(nodeIds, count), Arrays.copyOf(costs, count));
+    }
+
+    /**
+     * returns the nodes reachable from the given node with a cost smaller or equal to the given budget, computed
+     * by a parallel search with the default width of buckets
+     *
+     * @param sourceNodeId the identity of the source node
+     * @param maxCost      the cost budget
+     * @return the reachable nodes, sorted by increasing cost
+     * @throws IllegalArgumentException if the budget is negative or too large
+     */
+    public Isochrone reachableFromInParallel(int sourceNodeId, double maxCost) {
+        return reachableFromInParallel(sourceNodeId, maxCost, DEFAULT_DELTA);
+    }
+
+    /**
+     * returns the nodes reachable from the given node with a cost smaller or equal to the given budget, computed
+     * by a parallel delta-stepping search. The nodes of each bucket are first settled by relaxing their light edges
+     * (costing at most delta) until the bucket stays empty, then their heavy edges are relaxed once.
+     *
+     * @param sourceNodeId the identity of the source node
+     * @param maxCost      the cost budget
+     * @param delta        the width of the buckets
+     * @return the reachable nodes, sorted by increasing cost
+     * @throws IllegalArgumentException if the budget is negative, if delta is not strictly positive, or if there
+     *                                  would be more than 2^20 buckets
+     */
+    public synchronized Isochrone reachableFromInParallel(int sourceNodeId, double maxCost, double delta) {
+        Preconditions.checkArgument(maxCost >= 0 && delta > 0 && maxCost / delta < MAX_BUCKET_COUNT);
+        if (parallelDistances == null) {
+            parallelDistances = new AtomicIntegerArray(graph.nodeCount());
+            for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) parallelDistances.set(nodeId, UNREACHED);
+            phaseStamps = new int[graph.nodeCount()];
+        }
+        IntList[] buckets = new IntList[(int) (maxCost / delta) + 1];
+        IntList reached = new IntList();
+
+        parallelDistances.set(sourceNodeId, Float.floatToIntBits(0f));
+        reached.add(sourceNodeId);
+        buckets[0] = new IntList();
+        buckets[0].add(sourceNodeId);
+        for (int bucket = 0; bucket < buckets.length; ++bucket) {
+            if (buckets[bucket] == null) continue;
+            IntList settled = new IntList();
+            while (buckets[bucket].size > 0) {
+                int[] frontier = takeBucket(buckets, bucket, delta);
+                settled.addAll(frontier);
+                relaxAll(frontier, true, maxCost, delta, buckets, reached);
+            }
+            buckets[bucket] = null;
+            relaxAll(distinct(settled), false, maxCost, delta, buckets, reached);
+        }
+        return collect(reached);
+    }
+
+    /**
+     * returns the cost of the given edge, in its own direction
+     *
+     * @param nodeId the identity of the node the edge starts from
+     * @param edgeId the identity of the edge
+     * @return the cost of the edge (positive infinity if it cannot be used)
+     */
+    private float edgeCost(int nodeId, int edgeId) {
+        return (float) (costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId));
+    }
+
+    /**
+     * returns the distance found by the parallel search for the given node
+     *
+     * @param nodeId the identity of the node
+     * @return the distance of the node, or positive infinity if it has not been reached
+     */
+    private float parallelDistance(int nodeId) {
+        return Float.intBitsToFloat(parallelDistances.get(nodeId));
+    }
+
+    /**
+     * returns the bucket of the given distance
+     *
+     * @param distance the distance
+     * @param delta    the width of the buckets
+     * @return the index of the bucket
+     */
+    private static int bucketOf(float distance, double delta) {
+        return (int) (distance / delta);
+    }
+
+    /**
+     * empties the given bucket, and returns its nodes which still belong to it, without duplicates
+     *
+     * @param buckets the buckets
+     * @param bucket  the index of the bucket to empty
+     * @param delta   the width of the buckets
+     * @return the nodes of the bucket
+     */
+    private int[] takeBucket(IntList[] buckets, int bucket, double delta) {
+        IntList nodes = buckets[bucket];
+        nextPhase();
+        IntList frontier = new IntList();
+        for (int i = 0; i < nodes.size; ++i) {
+            int nodeId = nodes.values[i];
+            if (phaseStamps[nodeId] == phase || bucketOf(parallelDistance(nodeId), delta) != bucket) continue;
+            phaseStamps[nodeId] = phase;
+            frontier.add(nodeId);
+        }
+        nodes.size = 0;
+        return frontier.toArray();
+    }
+
+    /**
+     * returns the given nodes without duplicates
+     *
+     * @param nodes the nodes
+     * @return the nodes without duplicates
+     */
+    private int[] distinct(IntList nodes) {
+        nextPhase();
+        IntList distinct = new IntList();
+        for (int i = 0; i < nodes.size; ++i) {
+            int nodeId = nodes.values[i];
+            if (phaseStamps[nodeId] == phase) continue;
+            phaseStamps[nodeId] = phase;
+            distinct.add(nodeId);
+        }
+        return distinct.toArray();
+    }
+
+    /**
+     * starts a new phase, so that no node is stamped with it
+     */
+    private void nextPhase() {
+        if (phase == Integer.MAX_VALUE) {
+            Arrays.fill(phaseStamps, 0);
+            phase = 0;
+        }
+        ++phase;
+    }
+
+    /**
+     * relaxes in parallel the light or heavy edges leaving the given nodes, then puts the nodes whose distance
+     * improved in their new bucket
+     *
+     * @param nodeIds the nodes whose edges are relaxed
+     * @param light   whether the light or the heavy edges are relaxed
+     * @param maxCost the cost budget
+     * @param delta   the width of the buckets
+     * @param buckets the buckets
+     * @param reached the nodes reached so far, to which the improved nodes are added
+     */
+    private void relaxAll(int[] nodeIds, boolean light, double maxCost, double delta,
+                          IntList[] buckets, IntList reached) {
+        int[] improved = IntStream.of(nodeIds).parallel()
+                .flatMap(nodeId -> relax(nodeId, light, maxCost, delta))
+                .toArray();
+        for (int nodeId : improved) {
+            reached.add(nodeId);
+            int bucket = bucketOf(parallelDistance(nodeId), delta);
+            if (buckets[bucket] == null) buckets[bucket] = new IntList();
+            buckets[bucket].add(nodeId);
+        }
+    }
+
+    /**
+     * relaxes the light or heavy edges leaving the given node, the distances being lowered atomically (the bits
+     * of positive floats are ordered as the floats themselves)
+     *
+     * @param nodeId  the identity of the node
+     * @param light   whether the light or the heavy edges are relaxed
+     * @param maxCost the cost budget
+     * @param delta   the width of the buckets
+     * @return the nodes whose distance improved
+     */
+    private IntStream relax(int nodeId, boolean light, double maxCost, double delta) {
+        IntStream.Builder improved = IntStream.builder();
+        float distance = parallelDistance(nodeId);
+        for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+            int edgeId = graph.nodeOutEdgeId(nodeId, i);
+            float cost = edgeCost(nodeId, edgeId);
+            if ((cost <= delta) != light) continue;
+            float d = distance + cost;
+            if (!(d <= maxCost)) continue;
+            int targetNodeId = graph.edgeTargetNodeId(edgeId);
+            int bits = Float.floatToIntBits(d);
+            int current;
+            do {
+                current = parallelDistances.get(targetNodeId);
+            } while (bits < current && !parallelDistances.compareAndSet(targetNodeId, current, bits));
+            if (bits < current) improved.add(targetNodeId);
+        }
+        return improved.build();
+    }
+
+    /**
+     * builds the isochrone from the nodes reached by the parallel search, and resets their distance
+     *
+     * @param reached the nodes reached by the search, possibly several times
+     * @return the reachable nodes, sorted by increasing cost
+     */
+    private Isochrone collect(IntList reached) {
+        long[] keys = new long[reached.size];
+        int count = 0;
+        for (int i = 0; i < reached.size; ++i) {
+            int nodeId = reached.values[i];
+            int bits = parallelDistances.getAndSet(nodeId, UNREACHED);
+            if (bits != UNREACHED) keys[count++] = (long) bits << Integer.SIZE | nodeId;
+        }
+        Arrays.parallelSort(keys, 0, count);
+        int[] nodeIds = new int[count];
+        float[] costs = new float[count];
+        for (int i = 0; i < count; ++i) {
+            nodeIds[i] = (int) keys[i];
+            costs[i] = Float.intBitsToFloat((int) (keys[i] >>> Integer.SIZE));
+        }
+        return new Isochrone(nodeIds, costs);
+    }
+
+    /**
+     * growable list of ints, used for the buckets of the parallel search
+     */
+    private static final class IntList {
+        /**
+         * the values, followed by unused space
+         */
+        private int[] values = new int[16];
+        /**
+         * the number of values
+         */
+        private int size;
+
+        /**
+         * adds the given value at the end of the list
+         *
+         * @param value the value
+         */
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        /**
+         * adds the given values at the end of the list
+         *
+         * @param newValues the values
+         */
+        void addAll(int[] newValues) {
+            if (size + newValues.length > values.length)
+                values = Arrays.copyOf(values, Math.max(2 * values.length, size + newValues.length));
+            System.arraycopy(newValues, 0, values, size, newValues.length);
+            size += newValues.length;
+        }
+
+        /**
+         * returns the values of the list
+         *
+         * @return a new array containing the values
+         */
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
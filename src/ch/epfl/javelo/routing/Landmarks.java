@@ -0,0 +1,201 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * represents the distance tables of a few landmark nodes, for a given cost function: for each node of the graph,
+ * the cost of the best route from each landmark to it and from it to each landmark. Thanks to the triangle
+ * inequality, they give lower bounds of the cost between any two nodes, which are much tighter than the
+ * euclidean distance when the cost factors are large.
+ * <p>
+ * The file of the landmarks contains their number, their nodes, and then both tables, node by node, with one
+ * float per landmark (positive infinity if there is no route).
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class Landmarks {
+    /**
+     * suffix of the name of the file containing the landmarks
+     */
+    private static final String FILE_SUFFIX = "_landmarks.bin";
+
+    /**
+     * the nodes of the landmarks
+     */
+    private final IntBuffer landmarkNodeIds;
+    /**
+     * for each node and each landmark, the cost of the best route from the landmark to the node
+     */
+    private final FloatBuffer fromLandmarks;
+    /**
+     * for each node and each landmark, the cost of the best route from the node to the landmark
+     */
+    private final FloatBuffer toLandmarks;
+
+    /**
+     * constructor of Landmarks
+     *
+     * @param landmarkNodeIds the nodes of the landmarks
+     * @param fromLandmarks   for each node and each landmark, the cost of the best route from the landmark to the node
+     * @param toLandmarks     for each node and each landmark, the cost of the best route from the node to the landmark
+     * @throws IllegalArgumentException if there is no landmark or the tables do not have the same size
+     */
+    Landmarks(IntBuffer landmarkNodeIds, FloatBuffer fromLandmarks, FloatBuffer toLandmarks) {
+        Preconditions.checkArgument(landmarkNodeIds.capacity() > 0
+                && fromLandmarks.capacity() == toLandmarks.capacity()
+                && fromLandmarks.capacity() % landmarkNodeIds.capacity() == 0);
+        this.landmarkNodeIds = landmarkNodeIds;
+        this.fromLandmarks = fromLandmarks;
+        this.toLandmarks = toLandmarks;
+    }
+
+    /**
+     * returns the landmarks stored in the file with the given name, in the given directory (the file is
+     * memory-mapped)
+     *
+     * @param basePath path of the directory containing the file
+     * @param name     name of the landmarks (typically the name of their cost function)
+     * @return the landmarks stored in the file
+     * @throws IOException if the file does not exist.
+     */
+    public static Landmarks loadFrom(Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX))) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = buffer.getInt(0);
+            int tableBytes = (buffer.capacity() - Integer.BYTES * (count + 1)) / 2;
+            int tablesStart = Integer.BYTES * (count + 1);
+            return new Landmarks(buffer.slice(Integer.BYTES, Integer.BYTES * count).asIntBuffer(),
+                    buffer.slice(tablesStart, tableBytes).asFloatBuffer(),
+                    buffer.slice(tablesStart + tableBytes, tableBytes).asFloatBuffer());
+        }
+    }
+
+    /**
+     * writes the landmarks in the file with the given name, in the given directory, through a memory-mapped buffer
+     *
+     * @param basePath path of the directory in which to write the file
+     * @param name     name of the landmarks (typically the name of their cost function)
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(Path basePath, String name) throws IOException {
+        int count = count();
+        long size = Integer.BYTES * (count + 1L) + 2L * Float.BYTES * fromLandmarks.capacity();
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name + FILE_SUFFIX),
+                CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(count);
+            buffer.asIntBuffer().put(landmarkNodeIds.duplicate().clear());
+            buffer.position(Integer.BYTES * (count + 1));
+            buffer.asFloatBuffer().put(fromLandmarks.duplicate().clear());
+            buffer.position(buffer.position() + Float.BYTES * fromLandmarks.capacity());
+            buffer.asFloatBuffer().put(toLandmarks.duplicate().clear());
+        }
+    }
+
+    /**
+     * returns the number of landmarks
+     *
+     * @return the number of landmarks
+     */
+    public int count() {
+        return landmarkNodeIds.capacity();
+    }
+
+    /**
+     * returns the node of the given landmark
+     *
+     * @param landmarkIndex the index of the landmark
+     * @return the identity of the node of the landmark
+     */
+    public int landmarkNodeId(int landmarkIndex) {
+        return landmarkNodeIds.get(landmarkIndex);
+    }
+
+    /**
+     * returns the cost of the best route from the given landmark to the given node
+     *
+     * @param landmarkIndex the index of the landmark
+     * @param nodeId        the identity of the node
+     * @return the cost of the best route from the landmark to the node, or positive infinity if there is none
+     */
+    public float costFromLandmark(int landmarkIndex, int nodeId) {
+        return fromLandmarks.get(nodeId * count() + landmarkIndex);
+    }
+
+    /**
+     * returns the cost of the best route from the given node to the given landmark
+     *
+     * @param landmarkIndex the index of the landmark
+     * @param nodeId        the identity of the node
+     * @return the cost of the best route from the node to the landmark, or positive infinity if there is none
+     */
+    public float costToLandmark(int landmarkIndex, int nodeId) {
+        return toLandmarks.get(nodeId * count() + landmarkIndex);
+    }
+
+    /**
+     * returns the lower bound of the cost of the best route between the given nodes given by the given landmark:
+     * the largest of cost(L, to) - cost(L, from) and cost(from, L) - cost(to, L). Terms involving unknown costs
+     * are ignored, except that the bound is infinite if the landmark can be reached from the ending node but not
+     * from the starting node (which then cannot reach the ending node either).
+     *
+     * @param landmarkIndex the index of the landmark
+     * @param fromNodeId    the identity of the starting node
+     * @param toNodeId      the identity of the ending node
+     * @return the lower bound of the cost of the best route between the nodes
+     */
+    public float lowerBound(int landmarkIndex, int fromNodeId, int toNodeId) {
+        float bound = 0;
+        float fromLandmarkToEnd = costFromLandmark(landmarkIndex, toNodeId);
+        float fromLandmarkToStart = costFromLandmark(landmarkIndex, fromNodeId);
+        if (fromLandmarkToEnd != Float.POSITIVE_INFINITY && fromLandmarkToStart != Float.POSITIVE_INFINITY)
+            bound = fromLandmarkToEnd - fromLandmarkToStart;
+        float fromEndToLandmark = costToLandmark(landmarkIndex, toNodeId);
+        if (fromEndToLandmark != Float.POSITIVE_INFINITY)
+            bound = Math.max(bound, costToLandmark(landmarkIndex, fromNodeId) - fromEndToLandmark);
+        return bound;
+    }
+
+    /**
+     * returns the indices of the given number of landmarks giving the best lower bounds between the given nodes,
+     * which are the ones worth using for a query between them
+     *
+     * @param fromNodeId the identity of the starting node
+     * @param toNodeId   the identity of the ending node
+     * @param maxCount   the largest number of landmarks to return
+     * @return the indices of the landmarks, from the best one
+     */
+    public int[] bestLandmarks(int fromNodeId, int toNodeId, int maxCount) {
+        int count = Math.min(maxCount, count());
+        int[] best = new int[count];
+        float[] bounds = new float[count];
+        int size = 0;
+        //insertion in a small sorted array, there are only a few landmarks
+        for (int landmarkIndex = 0; landmarkIndex < count(); ++landmarkIndex) {
+            float bound = lowerBound(landmarkIndex, fromNodeId, toNodeId);
+            int i = size < count ? size++ : count;
+            while (i > 0 && bounds[i - 1] < bound) {
+                if (i < count) {
+                    best[i] = best[i - 1];
+                    bounds[i] = bounds[i - 1];
+                }
+                --i;
+            }
+            if (i < count) {
+                best[i] = landmarkIndex;
+                bounds[i] = bound;
+            }
+        }
+        return best;
+    }
+}
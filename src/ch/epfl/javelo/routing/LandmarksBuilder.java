@@ -0,0 +1,294 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * selects the landmarks of a graph for a given cost function and computes their distance tables, with one
+ * Dijkstra search from each landmark along the out-edges and one towards it along the in-edges, run in parallel.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class LandmarksBuilder {
+    /**
+     * seed of the random choices of the selections, so that the landmarks of a graph are always the same
+     */
+    private static final long SEED = 2022;
+    /**
+     * predecessor of the source of a search, which has none
+     */
+    private static final int NO_NODE = -1;
+
+    /**
+     * represents the way landmarks are selected
+     */
+    public enum Selection {
+        /**
+         * each landmark is the node farthest (for the cost function) from the landmarks already selected
+         */
+        FARTHEST,
+        /**
+         * each landmark is a leaf of the largest branch of a random shortest path tree whose costs are badly
+         * bounded by the landmarks already selected, as described by Goldberg and Werneck
+         */
+        AVOID
+    }
+
+    /**
+     * the graph of the landmarks
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the landmarks
+     */
+    private final CostFunction costFunction;
+    /**
+     * the workspaces of the searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    /**
+     * constructor of LandmarksBuilder
+     *
+     * @param graph        the graph of the landmarks
+     * @param costFunction the cost function of the landmarks
+     */
+    private LandmarksBuilder(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.workspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), NodePriorityQueue.Kind.QUATERNARY_HEAP);
+    }
+
+    /**
+     * selects the given number of landmarks in the given graph and computes their distance tables
+     *
+     * @param graph        the graph of the landmarks
+     * @param costFunction the cost function of the landmarks
+     * @param count        the number of landmarks
+     * @param selection    the way landmarks are selected
+     * @return the landmarks
+     * @throws IllegalArgumentException if the number of landmarks is not strictly positive
+     */
+    public static Landmarks build(Graph graph, CostFunction costFunction, int count, Selection selection) {
+        Preconditions.checkArgument(count > 0);
+        return new LandmarksBuilder(graph, costFunction).select(count, selection);
+    }
+
+    /**
+     * selects the landmarks of a graph for CityBikeCF and writes them next to the files of the graph
+     *
+     * @param args the path of the directory containing the graph, and optionally the number of landmarks
+     *             (16 by default), the selection (AVOID by default) and the name of the landmarks ("citybike"
+     *             by default)
+     * @throws IOException if the graph cannot be read or the landmarks cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        Selection selection = args.length > 2 ? Selection.valueOf(args[2]) : Selection.AVOID;
+        String name = args.length > 3 ? args[3] : "citybike";
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        Landmarks landmarks = build(graph, new CityBikeCF(graph), count, selection);
+        System.out.printf("%d landmarks selected in %.1f s%n", landmarks.count(), (System.nanoTime() - start) / 1e9);
+        landmarks.writeTo(basePath, name);
+    }
+
+    /**
+     * selects the landmarks one after the other, computing the tables of each one as soon as it is selected
+     * (its two searches in parallel), since the selection of the next landmark depends on them
+     *
+     * @param count     the number of landmarks
+     * @param selection the way landmarks are selected
+     * @return the landmarks
+     */
+    private Landmarks select(int count, Selection selection) {
+        int nodeCount = graph.nodeCount();
+        Random random = new Random(SEED);
+        int[] landmarkNodeIds = new int[count];
+        float[][] fromLandmarks = new float[count][];
+        float[][] toLandmarks = new float[count][];
+        //for each node, the smallest sum of the costs to and from the landmarks already selected
+        float[] closestLandmarkCosts = new float[nodeCount];
+        Arrays.fill(closestLandmarkCosts, Float.POSITIVE_INFINITY);
+
+        //the first landmark is the node farthest from a random node, which is likely to be on the border
+        int root = random.nextInt(nodeCount);
+        float[] rootCosts = distances(root, false);
+        int landmarkNodeId = IntStream.range(0, nodeCount).boxed()
+                .filter(n -> rootCosts[n] != Float.POSITIVE_INFINITY)
+                .max((n1, n2) -> Float.compare(rootCosts[n1], rootCosts[n2])).orElse(root);
+
+        for (int landmark = 0; landmark < count; ++landmark) {
+            int landmarkIndex = landmark;
+            int selectedNodeId = landmarkNodeId;
+            landmarkNodeIds[landmarkIndex] = selectedNodeId;
+            IntStream.range(0, 2).parallel().forEach(direction -> {
+                if (direction == 0) fromLandmarks[landmarkIndex] = distances(selectedNodeId, false);
+                else toLandmarks[landmarkIndex] = distances(selectedNodeId, true);
+            });
+            IntStream.range(0, nodeCount).parallel().forEach(n -> closestLandmarkCosts[n] = Math.min(
+                    closestLandmarkCosts[n], fromLandmarks[landmarkIndex][n] + toLandmarks[landmarkIndex][n]));
+            if (landmark + 1 == count) break;
+
+            landmarkNodeId = switch (selection) {
+                case FARTHEST -> farthestNode(closestLandmarkCosts, selectedNodeId);
+                case AVOID -> avoidingNode(random.nextInt(nodeCount), landmarkNodeIds, landmarkIndex + 1,
+                        fromLandmarks, toLandmarks, closestLandmarkCosts);
+            };
+        }
+
+        float[] fromTable = new float[nodeCount * count];
+        float[] toTable = new float[nodeCount * count];
+        IntStream.range(0, nodeCount).parallel().forEach(n -> {
+            for (int landmark = 0; landmark < count; ++landmark) {
+                fromTable[n * count + landmark] = fromLandmarks[landmark][n];
+                toTable[n * count + landmark] = toLandmarks[landmark][n];
+            }
+        });
+        return new Landmarks(IntBuffer.wrap(landmarkNodeIds), FloatBuffer.wrap(fromTable), FloatBuffer.wrap(toTable));
+    }
+
+    /**
+     * returns the node which is the farthest from the landmarks already selected, among the ones linked to them
+     *
+     * @param closestLandmarkCosts for each node, the smallest sum of the costs to and from the landmarks
+     * @param defaultNodeId        the node returned if no node is linked to the landmarks
+     * @return the node the farthest from the landmarks
+     */
+    private static int farthestNode(float[] closestLandmarkCosts, int defaultNodeId) {
+        int farthest = defaultNodeId;
+        for (int nodeId = 0; nodeId < closestLandmarkCosts.length; ++nodeId) {
+            float cost = closestLandmarkCosts[nodeId];
+            if (cost != Float.POSITIVE_INFINITY && cost > closestLandmarkCosts[farthest]) farthest = nodeId;
+        }
+        return farthest;
+    }
+
+    /**
+     * returns the next landmark of the avoid selection: the shortest path tree of a random node is built, each
+     * node is weighted by the difference between its cost and the lower bound given by the landmarks, and the
+     * new landmark is a leaf of the heaviest branch without landmark.
+     *
+     * @param rootNodeId           the root of the tree
+     * @param landmarkNodeIds      the nodes of the landmarks already selected
+     * @param landmarkCount        the number of landmarks already selected
+     * @param fromLandmarks        the costs from the landmarks already selected
+     * @param toLandmarks          the costs to the landmarks already selected
+     * @param closestLandmarkCosts for each node, the smallest sum of the costs to and from the landmarks
+     * @return the node of the next landmark
+     */
+    private int avoidingNode(int rootNodeId, int[] landmarkNodeIds, int landmarkCount,
+                             float[][] fromLandmarks, float[][] toLandmarks, float[] closestLandmarkCosts) {
+        int nodeCount = graph.nodeCount();
+        SearchWorkspace workspace = workspaces.get();
+        int[] settledOrder = new int[nodeCount];
+        int settledCount = search(workspace, rootNodeId, false, settledOrder);
+
+        float[] sizes = new float[nodeCount];
+        boolean[] hasLandmark = new boolean[nodeCount];
+        int[] heaviestChildren = new int[nodeCount];
+        Arrays.fill(heaviestChildren, NO_NODE);
+        for (int i = 0; i < landmarkCount; ++i) hasLandmark[landmarkNodeIds[i]] = true;
+
+        //the tree is traversed from the leaves, in the reverse order of the search
+        for (int i = settledCount - 1; i >= 0; --i) {
+            int nodeId = settledOrder[i];
+            if (hasLandmark[nodeId]) {
+                sizes[nodeId] = 0;
+            } else {
+                float bound = 0;
+                for (int landmark = 0; landmark < landmarkCount; ++landmark) {
+                    float fromLandmarkToNode = fromLandmarks[landmark][nodeId];
+                    float fromLandmarkToRoot = fromLandmarks[landmark][rootNodeId];
+                    if (fromLandmarkToNode != Float.POSITIVE_INFINITY && fromLandmarkToRoot != Float.POSITIVE_INFINITY)
+                        bound = Math.max(bound, fromLandmarkToNode - fromLandmarkToRoot);
+                    float fromRootToLandmark = toLandmarks[landmark][rootNodeId];
+                    float fromNodeToLandmark = toLandmarks[landmark][nodeId];
+                    if (fromRootToLandmark != Float.POSITIVE_INFINITY && fromNodeToLandmark != Float.POSITIVE_INFINITY)
+                        bound = Math.max(bound, fromRootToLandmark - fromNodeToLandmark);
+                }
+                sizes[nodeId] += workspace.distance(nodeId) - bound;
+            }
+            if (nodeId == rootNodeId) continue;
+            int parentId = workspace.predecessorNode(nodeId);
+            if (hasLandmark[nodeId]) {
+                hasLandmark[parentId] = true;
+            } else {
+                sizes[parentId] += sizes[nodeId];
+                if (heaviestChildren[parentId] == NO_NODE || sizes[nodeId] > sizes[heaviestChildren[parentId]])
+                    heaviestChildren[parentId] = nodeId;
+            }
+        }
+
+        int heaviest = rootNodeId;
+        for (int i = 0; i < settledCount; ++i)
+            if (sizes[settledOrder[i]] > sizes[heaviest]) heaviest = settledOrder[i];
+        if (sizes[heaviest] == 0) return farthestNode(closestLandmarkCosts, landmarkNodeIds[landmarkCount - 1]);
+        int leaf = heaviest;
+        while (heaviestChildren[leaf] != NO_NODE && !hasLandmark[heaviestChildren[leaf]])
+            leaf = heaviestChildren[leaf];
+        return leaf;
+    }
+
+    /**
+     * returns the costs of the best routes from (or to) the given node to (or from) all the nodes of the graph
+     *
+     * @param sourceNodeId the identity of the node
+     * @param backward     true if the search goes along the in-edges, to get the costs of the routes to the node
+     * @return for each node, the cost of the best route, or positive infinity if there is none
+     */
+    private float[] distances(int sourceNodeId, boolean backward) {
+        SearchWorkspace workspace = workspaces.get();
+        search(workspace, sourceNodeId, backward, null);
+        float[] distances = new float[graph.nodeCount()];
+        for (int nodeId = 0; nodeId < distances.length; ++nodeId) distances[nodeId] = workspace.distance(nodeId);
+        return distances;
+    }
+
+    /**
+     * runs a complete Dijkstra search from the given node in the given workspace
+     *
+     * @param workspace    the workspace of the search, which contains the distances and the tree afterwards
+     * @param sourceNodeId the identity of the source of the search
+     * @param backward     true if the search goes along the in-edges
+     * @param settledOrder if not null, the array in which the nodes are stored in the order they are settled
+     * @return the number of nodes settled
+     */
+    private int search(SearchWorkspace workspace, int sourceNodeId, boolean backward, int[] settledOrder) {
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        workspace.update(sourceNodeId, 0f, NO_NODE, NO_NODE);
+        queue.insertOrDecrease(sourceNodeId, 0f);
+        int settledCount = 0;
+        while (!queue.isEmpty()) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            if (settledOrder != null) settledOrder[settledCount] = N;
+            ++settledCount;
+            int degree = backward ? graph.nodeInDegree(N) : graph.nodeOutDegree(N);
+            for (int i = 0; i < degree; ++i) {
+                int edgeId = backward ? graph.nodeInEdgeId(N, i) : graph.nodeOutEdgeId(N, i);
+                int Nbis = backward ? graph.edgeSourceNodeId(edgeId) : graph.edgeTargetNodeId(edgeId);
+                //the cost of an edge is always evaluated in its own direction
+                int edgeSourceId = backward ? Nbis : N;
+                float d = distanceN + (float) (costFunction.costFactor(edgeSourceId, edgeId) * graph.edgeLength(edgeId));
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+        return settledCount;
+    }
+}
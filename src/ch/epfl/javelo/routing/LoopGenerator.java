@@ -0,0 +1,406 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * generates round trips of a target length starting and ending at a given node.
+ * <p>
+ * A single Dijkstra search from the origin, bounded in length, gives the best routes from the origin to all the
+ * nodes around it. The nodes around the origin are split in sectors of bearing, and in each sector the node whose
+ * route is closest to a third of the target length is chosen as via-point. A candidate loop goes from the origin
+ * to the via-point of a sector, then to the via-point of a sector 60 or 90 degrees further, and back to the
+ * origin: its first segment is taken from the tree, and the two others are computed by searches whose results are
+ * shared by all the candidates. The candidates are evaluated in parallel, and if too few of them meet the
+ * tolerance on the length, the distance of the via-points is scaled according to the lengths obtained and the
+ * candidates are generated again, as long as the time budget allows it.
+ * <p>
+ * The loops are ranked by cost, the length of the parts of a loop travelled twice being counted twice, so that
+ * loops coming back by another way than they went are preferred.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class LoopGenerator {
+    /**
+     * tolerance on the length of the loops when none is specified, relatively to the target length
+     */
+    public static final double DEFAULT_TOLERANCE = 0.1;
+    /**
+     * time budget of a generation when none is specified
+     */
+    public static final Duration DEFAULT_TIME_BUDGET = Duration.ofSeconds(2);
+    /**
+     * number of sectors of bearing around the origin, each one giving at most one via-point
+     */
+    private static final int BEARING_COUNT = 12;
+    /**
+     * differences between the sectors of the two via-points of a loop, in number of sectors (60 and 90 degrees)
+     */
+    private static final int[] SECTOR_SEPARATIONS = {2, 3};
+    /**
+     * length of the route from the origin to a via-point in the first round, relatively to the target length
+     */
+    private static final double VIA_LENGTH_SHARE = 1d / 3;
+    /**
+     * maximal length of the routes of the tree of the origin, relatively to the target length, which bounds the
+     * scaling of the via-points
+     */
+    private static final double MAX_VIA_LENGTH_SHARE = 0.6;
+    /**
+     * maximal difference between the length of the route to a via-point and the wanted one, relatively to the
+     * wanted one
+     */
+    private static final double VIA_LENGTH_TOLERANCE = 0.25;
+    /**
+     * maximal number of rounds of candidates
+     */
+    private static final int MAX_ROUNDS = 3;
+    /**
+     * maximal length a loop can share with a better loop to be kept, relatively to its length
+     */
+    private static final double MAX_SHARING = 0.5;
+    /**
+     * value of a via-point when a sector has none
+     */
+    private static final int NO_NODE = -1;
+
+    /**
+     * the graph of the loops
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the loops
+     */
+    private final CostFunction costFunction;
+    /**
+     * the route computer giving the segments of the loops between the via-points and back to the origin
+     */
+    private final RouteComputer routeComputer;
+    /**
+     * the workspaces of the searches from the origin, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+    /**
+     * for each node, the length of its route in the tree of the origin, one array per thread: only the values of
+     * the nodes settled by the last search of the thread are meaningful
+     */
+    private final ThreadLocal<float[]> treeLengths;
+
+    /**
+     * constructor of LoopGenerator
+     *
+     * @param graph        the graph of the loops
+     * @param costFunction the cost function of the loops
+     */
+    public LoopGenerator(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.routeComputer = new RouteComputer(graph, costFunction);
+        this.workspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), RouteComputer.DEFAULT_QUEUE_KIND);
+        this.treeLengths = ThreadLocal.withInitial(() -> new float[graph.nodeCount()]);
+    }
+
+    /**
+     * returns at most maxCount loops starting and ending at the given node, whose length differs from the target
+     * length by at most DEFAULT_TOLERANCE, generated within DEFAULT_TIME_BUDGET
+     *
+     * @param originNodeId the identity of the node the loops start and end at
+     * @param targetLength the target length of the loops, in meters
+     * @param maxCount     the maximal number of loops
+     * @return the loops, the best one first, or an empty list if none was found
+     * @throws IllegalArgumentException if the target length or maxCount is not strictly positive
+     */
+    public List<Route> loopsFrom(int originNodeId, double targetLength, int maxCount) {
+        return loopsFrom(originNodeId, targetLength, DEFAULT_TOLERANCE, maxCount, DEFAULT_TIME_BUDGET);
+    }
+
+    /**
+     * returns at most maxCount loops starting and ending at the given node, whose length differs from the target
+     * length by at most the given tolerance. The generation stops once the time budget is spent, and then
+     * returns the loops found so far.
+     *
+     * @param originNodeId the identity of the node the loops start and end at
+     * @param targetLength the target length of the loops, in meters
+     * @param tolerance    the maximal difference between the length of a loop and the target one, relatively to
+     *                     the target one
+     * @param maxCount     the maximal number of loops
+     * @param timeBudget   the time after which the generation stops
+     * @return the loops, the best one first, or an empty list if none was found
+     * @throws IllegalArgumentException if the target length or maxCount is not strictly positive, if the
+     *                                  tolerance is not strictly between 0 and 1, or if the time budget is negative
+     */
+    public List<Route> loopsFrom(int originNodeId, double targetLength, double tolerance, int maxCount,
+                                 Duration timeBudget) {
+        Preconditions.checkArgument(targetLength > 0 && 0 < tolerance && tolerance < 1 && maxCount > 0
+                && !timeBudget.isNegative());
+        SearchOptions options = SearchOptions.UNLIMITED.withDeadline(Instant.now().plus(timeBudget));
+        SearchWorkspace tree = workspaces.get();
+        float[] lengths = treeLengths.get();
+        int[] treeNodeIds = searchTree(originNodeId, MAX_VIA_LENGTH_SHARE * targetLength, options, tree, lengths);
+
+        Map<Long, SearchResult> segments = new ConcurrentHashMap<>();
+        Set<Long> triedPairs = new HashSet<>();
+        List<Loop> accepted = new ArrayList<>();
+        double viaLength = VIA_LENGTH_SHARE * targetLength;
+        for (int round = 0; round < MAX_ROUNDS && !isOver(options); ++round) {
+            int[] viaNodeIds = viaNodes(originNodeId, treeNodeIds, lengths, viaLength);
+            //the routes from the origin are built before the parallel evaluation, by the thread owning the tree
+            Map<Integer, Route> outwardRoutes = new HashMap<>();
+            for (int viaNodeId : viaNodeIds)
+                if (viaNodeId != NO_NODE) outwardRoutes.put(viaNodeId, treeRoute(tree, originNodeId, viaNodeId));
+            List<long[]> pairs = new ArrayList<>();
+            for (int sector = 0; sector < BEARING_COUNT; ++sector) {
+                for (int separation : SECTOR_SEPARATIONS) {
+                    int first = viaNodeIds[sector];
+                    int second = viaNodeIds[(sector + separation) % BEARING_COUNT];
+                    if (first == NO_NODE || second == NO_NODE || first == second) continue;
+                    if (triedPairs.add(pairKey(first, second))) pairs.add(new long[]{first, second});
+                }
+            }
+            if (pairs.isEmpty()) break;
+
+            Loop[] loops = pairs.parallelStream()
+                    .map(pair -> loop(originNodeId, (int) pair[0], (int) pair[1], outwardRoutes, segments, options))
+                    .toArray(Loop[]::new);
+            double[] loopLengths = Arrays.stream(loops).filter(Objects::nonNull)
+                    .mapToDouble(loop -> loop.route().length()).sorted().toArray();
+            for (Loop loop : loops)
+                if (loop != null && Math.abs(loop.route().length() - targetLength) <= tolerance * targetLength)
+                    accepted.add(loop);
+            if (accepted.size() >= maxCount || loopLengths.length == 0) break;
+            //the via-points are moved so that the median loop gets the target length
+            double scaledViaLength = viaLength * targetLength / loopLengths[loopLengths.length / 2];
+            scaledViaLength = Math.min(scaledViaLength, MAX_VIA_LENGTH_SHARE * targetLength);
+            if (Math.abs(scaledViaLength - viaLength) < tolerance * viaLength / 2) break;
+            viaLength = scaledViaLength;
+        }
+        return bestLoops(accepted, maxCount);
+    }
+
+    /**
+     * computes the tree of the best routes from the origin, settling the nodes in order of cost but extending
+     * only the routes whose length is smaller than the given one
+     *
+     * @param originNodeId the identity of the origin
+     * @param maxLength    the length above which a route is not extended
+     * @param options      the limits of the search
+     * @param tree         the workspace in which the tree is computed
+     * @param lengths      the array in which the length of the route of each settled node is stored
+     * @return the identities of the settled nodes, in the order in which they were settled
+     */
+    private int[] searchTree(int originNodeId, double maxLength, SearchOptions options, SearchWorkspace tree,
+                             float[] lengths) {
+        SearchBudget budget = new SearchBudget(options);
+        tree.reset();
+        NodePriorityQueue queue = tree.queue();
+        int[] settled = new int[16];
+        int count = 0;
+
+        tree.update(originNodeId, 0f, originNodeId, RouteComputer.NO_EDGE);
+        queue.insertOrDecrease(originNodeId, 0f);
+        while (!queue.isEmpty() && budget.trySettle()) {
+            int N = queue.removeMin();
+            float distanceN = tree.distance(N);
+            tree.settle(N);
+            lengths[N] = N == originNodeId ? 0f
+                    : lengths[tree.predecessorNode(N)] + (float) graph.edgeLength(tree.predecessorEdge(N));
+            if (count == settled.length) settled = Arrays.copyOf(settled, 2 * count);
+            settled[count++] = N;
+            if (lengths[N] >= maxLength) continue;
+            for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                int edgeId = graph.nodeOutEdgeId(N, i);
+                int Nbis = graph.edgeTargetNodeId(edgeId);
+                float d = distanceN + (float) (costFunction.costFactor(N, edgeId) * graph.edgeLength(edgeId));
+                if (d < tree.distance(Nbis) && !tree.isSettled(Nbis)) {
+                    tree.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+        return Arrays.copyOf(settled, count);
+    }
+
+    /**
+     * chooses in each sector of bearing around the origin the node of the tree whose route is closest to the
+     * given length, if it differs from it by at most VIA_LENGTH_TOLERANCE
+     *
+     * @param originNodeId the identity of the origin
+     * @param treeNodeIds  the identities of the nodes of the tree
+     * @param lengths      the length of the route of each node of the tree
+     * @param viaLength    the wanted length of the routes to the via-points
+     * @return for each sector, the identity of its via-point, or NO_NODE if it has none
+     */
+    private int[] viaNodes(int originNodeId, int[] treeNodeIds, float[] lengths, double viaLength) {
+        int[] viaNodeIds = new int[BEARING_COUNT];
+        double[] gaps = new double[BEARING_COUNT];
+        Arrays.fill(viaNodeIds, NO_NODE);
+        Arrays.fill(gaps, VIA_LENGTH_TOLERANCE * viaLength);
+        double originE = graph.nodeE(originNodeId);
+        double originN = graph.nodeN(originNodeId);
+        for (int nodeId : treeNodeIds) {
+            double gap = Math.abs(lengths[nodeId] - viaLength);
+            double dE = graph.nodeE(nodeId) - originE;
+            double dN = graph.nodeN(nodeId) - originN;
+            if (dE == 0 && dN == 0) continue;
+            double bearing = Math.atan2(dE, dN) + Math.PI;
+            int sector = Math.min((int) (bearing / (2 * Math.PI) * BEARING_COUNT), BEARING_COUNT - 1);
+            if (gap <= gaps[sector]) {
+                gaps[sector] = gap;
+                viaNodeIds[sector] = nodeId;
+            }
+        }
+        return viaNodeIds;
+    }
+
+    /**
+     * builds the loop going from the origin to the first via-point, then to the second one, and back to the
+     * origin
+     *
+     * @param originNodeId   the identity of the origin
+     * @param firstNodeId    the identity of the first via-point
+     * @param secondNodeId   the identity of the second via-point
+     * @param outwardRoutes  the routes from the origin to the via-points
+     * @param segments       the results of the searches done so far, by pair of nodes
+     * @param options        the limits of the searches
+     * @return the loop, or null if one of its segments does not exist or could not be computed in time
+     */
+    private Loop loop(int originNodeId, int firstNodeId, int secondNodeId, Map<Integer, Route> outwardRoutes,
+                      Map<Long, SearchResult> segments, SearchOptions options) {
+        if (isOver(options)) return null;
+        Route middle = segment(firstNodeId, secondNodeId, segments, options);
+        if (middle == null) return null;
+        Route back = segment(secondNodeId, originNodeId, segments, options);
+        if (back == null) return null;
+        Route route = new MultiRoute(List.of(outwardRoutes.get(firstNodeId), middle, back));
+
+        //the length of the edges travelled a second time, in either direction, is added to the cost
+        double cost = 0;
+        double repeatedLength = 0;
+        Set<Long> travelled = new HashSet<>();
+        for (Edge edge : route.edges()) {
+            cost += edgeCost(edge);
+            int from = Math.min(edge.fromNodeId(), edge.toNodeId());
+            int to = Math.max(edge.fromNodeId(), edge.toNodeId());
+            if (!travelled.add(pairKey(from, to))) repeatedLength += edge.length();
+        }
+        return new Loop(route, cost * (1 + repeatedLength / route.length()));
+    }
+
+    /**
+     * returns the best route between the given nodes, computed once for all the candidates
+     *
+     * @param startNodeId the identity of the starting node
+     * @param endNodeId   the identity of the ending node
+     * @param segments    the results of the searches done so far, by pair of nodes
+     * @param options     the limits of the search
+     * @return the best route, or null if there is none or if it could not be computed in time
+     */
+    private Route segment(int startNodeId, int endNodeId, Map<Long, SearchResult> segments,
+                          SearchOptions options) {
+        long key = pairKey(startNodeId, endNodeId);
+        SearchResult result = segments.get(key);
+        if (result == null) {
+            //the search is done outside the map, so that it does not block the other searches
+            result = routeComputer.bestRouteBetween(startNodeId, endNodeId, options);
+            if (!result.isIncomplete()) segments.putIfAbsent(key, result);
+        }
+        return result.route();
+    }
+
+    /**
+     * returns the route from the origin of the tree to the given node
+     *
+     * @param tree         the tree of the origin
+     * @param originNodeId the identity of the origin
+     * @param nodeId       the identity of a settled node
+     * @return the route from the origin to the node
+     */
+    private Route treeRoute(SearchWorkspace tree, int originNodeId, int nodeId) {
+        List<Edge> edges = new ArrayList<>();
+        for (int toNodeId = nodeId; toNodeId != originNodeId; toNodeId = tree.predecessorNode(toNodeId))
+            edges.add(Edge.of(graph, tree.predecessorEdge(toNodeId), tree.predecessorNode(toNodeId), toNodeId));
+        Collections.reverse(edges);
+        return new SingleRoute(edges);
+    }
+
+    /**
+     * returns the cost of the given edge of a route, taking the cheapest edge of the graph linking its nodes
+     *
+     * @param edge the edge of a route
+     * @return the cost of the edge
+     */
+    private double edgeCost(Edge edge) {
+        double cost = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); ++i) {
+            int edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+            if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId())
+                cost = Math.min(cost, costFunction.costFactor(edge.fromNodeId(), edgeId) * graph.edgeLength(edgeId));
+        }
+        return cost;
+    }
+
+    /**
+     * keeps the best loops, skipping the ones sharing too much with a better loop
+     *
+     * @param loops    the loops meeting the tolerance
+     * @param maxCount the maximal number of loops
+     * @return the kept loops, the best one first
+     */
+    private static List<Route> bestLoops(List<Loop> loops, int maxCount) {
+        loops.sort(Comparator.comparingDouble(Loop::score));
+        List<Route> kept = new ArrayList<>();
+        List<Set<Long>> keptEdges = new ArrayList<>();
+        for (Loop loop : loops) {
+            if (kept.size() == maxCount) break;
+            Set<Long> edges = new HashSet<>();
+            for (Edge edge : loop.route().edges()) edges.add(pairKey(edge.fromNodeId(), edge.toNodeId()));
+            boolean distinct = true;
+            for (Set<Long> other : keptEdges) {
+                double sharedLength = 0;
+                for (Edge edge : loop.route().edges())
+                    if (other.contains(pairKey(edge.fromNodeId(), edge.toNodeId()))) sharedLength += edge.length();
+                if (sharedLength > MAX_SHARING * loop.route().length()) distinct = false;
+            }
+            if (!distinct) continue;
+            kept.add(loop.route());
+            keptEdges.add(edges);
+        }
+        return Collections.unmodifiableList(kept);
+    }
+
+    /**
+     * returns whether the deadline of the given options is reached
+     *
+     * @param options the limits of the generation
+     * @return true if no more search should be started
+     */
+    private static boolean isOver(SearchOptions options) {
+        return !Instant.now().isBefore(options.deadline());
+    }
+
+    /**
+     * returns the key of the given pair of nodes
+     *
+     * @param firstNodeId  the identity of the first node
+     * @param secondNodeId the identity of the second node
+     * @return the identities of the nodes packed in a long
+     */
+    private static long pairKey(int firstNodeId, int secondNodeId) {
+        return (long) firstNodeId << Integer.SIZE | secondNodeId;
+    }
+
+    /**
+     * represents a candidate loop
+     *
+     * @param route the route of the loop
+     * @param score the cost of the loop, increased by the share of its length travelled twice
+     */
+    private record Loop(Route route, double score) {
+    }
+}
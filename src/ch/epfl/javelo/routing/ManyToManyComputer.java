@@ -0,0 +1,221 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * computes the matrix of the costs of the best routes between two lists of nodes with the bucket algorithm, over
+ * the upward arcs of a contraction hierarchy. An upward search is first run backwards from each target, and the
+ * nodes it settles receive an entry (target, cost, length) in their bucket. An upward search is then run from each
+ * source, and the best route to each target goes through one of the settled nodes whose bucket holds an entry
+ * for it.
+ * <p>
+ * Both phases are parallelised, across targets and across sources. The searches are stalled on demand: a node
+ * reached by a downward arc from a node already reached with a smaller cost is not relaxed, since no best route
+ * goes up through it.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ManyToManyComputer {
+    /**
+     * the hierarchy the searches run on
+     */
+    private final ContractionHierarchy hierarchy;
+    /**
+     * the workspaces of the searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+    /**
+     * for each thread, the length of the best route found to each node settled by its current search
+     */
+    private final ThreadLocal<float[]> lengths;
+
+    /**
+     * constructor of ManyToManyComputer
+     *
+     * @param hierarchy the hierarchy the searches run on, built for the cost function of the matrices
+     */
+    public ManyToManyComputer(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        int nodeCount = hierarchy.graph().nodeCount();
+        this.workspaces = SearchWorkspace.threadLocalPool(nodeCount, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+        this.lengths = ThreadLocal.withInitial(() -> new float[nodeCount]);
+    }
+
+    /**
+     * returns the costs and lengths of the best routes from each of the given sources to each of the given targets
+     *
+     * @param sourceNodeIds the identities of the sources
+     * @param targetNodeIds the identities of the targets
+     * @return the matrix of the costs and lengths of the routes, with one row per source
+     */
+    public DistanceMatrix matrix(int[] sourceNodeIds, int[] targetNodeIds) {
+        int sourceCount = sourceNodeIds.length;
+        int targetCount = targetNodeIds.length;
+        SearchSpace[] targetSpaces = IntStream.range(0, targetCount).parallel()
+                .mapToObj(j -> upwardSearch(targetNodeIds[j], false))
+                .toArray(SearchSpace[]::new);
+        Buckets buckets = new Buckets(hierarchy.graph(), targetSpaces);
+
+        float[] costs = new float[sourceCount * targetCount];
+        float[] routeLengths = new float[sourceCount * targetCount];
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        Arrays.fill(routeLengths, Float.POSITIVE_INFINITY);
+        //each source fills its own row, so that the threads never write at the same place
+        IntStream.range(0, sourceCount).parallel().forEach(i -> {
+            SearchSpace sourceSpace = upwardSearch(sourceNodeIds[i], true);
+            int row = i * targetCount;
+            for (int k = 0; k < sourceSpace.nodeIds().length; ++k) {
+                int nodeId = sourceSpace.nodeIds()[k];
+                for (int entry = buckets.first[nodeId]; entry < buckets.first[nodeId + 1]; ++entry) {
+                    float cost = sourceSpace.costs()[k] + buckets.costs[entry];
+                    int index = row + buckets.targets[entry];
+                    if (cost < costs[index]) {
+                        costs[index] = cost;
+                        routeLengths[index] = sourceSpace.lengths()[k] + buckets.lengths[entry];
+                    }
+                }
+            }
+        });
+        return new DistanceMatrix(sourceCount, targetCount, costs, routeLengths);
+    }
+
+    /**
+     * runs a complete upward search from the given node, forwards or backwards, and returns the nodes it settled
+     * without being stalled
+     *
+     * @param nodeId  the identity of the node the search starts from
+     * @param forward whether the search follows the upward out-arcs (from a source) or the upward in-arcs
+     *                backwards (from a target)
+     * @return the nodes settled by the search, with their cost and length
+     */
+    private SearchSpace upwardSearch(int nodeId, boolean forward) {
+        SearchWorkspace workspace = workspaces.get();
+        float[] nodeLengths = lengths.get();
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        int[] nodeIds = new int[16];
+        float[] costs = new float[16];
+        float[] spaceLengths = new float[16];
+        int count = 0;
+
+        workspace.update(nodeId, 0f, nodeId, ContractionHierarchy.NO_ARC);
+        queue.insertOrDecrease(nodeId, 0f);
+        while (!queue.isEmpty()) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            int predecessorArc = workspace.predecessorEdge(N);
+            nodeLengths[N] = predecessorArc == ContractionHierarchy.NO_ARC ? 0f
+                    : nodeLengths[workspace.predecessorNode(N)] + hierarchy.arcLength(predecessorArc);
+            if (isStalled(workspace, N, distanceN, forward)) continue;
+
+            if (count == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * count);
+                costs = Arrays.copyOf(costs, 2 * count);
+                spaceLengths = Arrays.copyOf(spaceLengths, 2 * count);
+            }
+            nodeIds[count] = N;
+            costs[count] = distanceN;
+            spaceLengths[count++] = nodeLengths[N];
+
+            int degree = forward ? hierarchy.upwardOutDegree(N) : hierarchy.upwardInDegree(N);
+            for (int i = 0; i < degree; ++i) {
+                int arc = forward ? hierarchy.upwardOutArc(N, i) : hierarchy.upwardInArc(N, i);
+                int Nbis = forward ? hierarchy.arcHead(arc) : hierarchy.arcTail(arc);
+                float d = distanceN + hierarchy.arcCost(arc);
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, arc);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+        return new SearchSpace(Arrays.copyOf(nodeIds, count), Arrays.copyOf(costs, count),
+                Arrays.copyOf(spaceLengths, count));
+    }
+
+    /**
+     * returns whether the given settled node can be reached from a higher node already reached by the search,
+     * with a cost smaller than the one found by the search
+     *
+     * @param workspace the workspace of the search
+     * @param nodeId    the identity of the node
+     * @param distance  the cost found by the search for the node
+     * @param forward   whether the search is a forward one
+     * @return true if the node is stalled
+     */
+    private boolean isStalled(SearchWorkspace workspace, int nodeId, float distance, boolean forward) {
+        //the arcs coming down to the node, in the direction of the search
+        int degree = forward ? hierarchy.upwardInDegree(nodeId) : hierarchy.upwardOutDegree(nodeId);
+        for (int i = 0; i < degree; ++i) {
+            int arc = forward ? hierarchy.upwardInArc(nodeId, i) : hierarchy.upwardOutArc(nodeId, i);
+            int higherNodeId = forward ? hierarchy.arcTail(arc) : hierarchy.arcHead(arc);
+            if (workspace.distance(higherNodeId) + hierarchy.arcCost(arc) < distance) return true;
+        }
+        return false;
+    }
+
+    /**
+     * represents the nodes settled by an upward search
+     *
+     * @param nodeIds the identities of the nodes
+     * @param costs   the cost of the best route found between each node and the node the search started from
+     * @param lengths the length of these routes
+     */
+    private record SearchSpace(int[] nodeIds, float[] costs, float[] lengths) {
+    }
+
+    /**
+     * represents the buckets of the nodes, grouping the entries of the backward searches by node
+     */
+    private static final class Buckets {
+        /**
+         * for each node, the index of the first entry of its bucket, followed by the total number of entries
+         */
+        private final int[] first;
+        /**
+         * for each entry, the index of its target
+         */
+        private final int[] targets;
+        /**
+         * for each entry, the cost of the best route from its node to its target
+         */
+        private final float[] costs;
+        /**
+         * for each entry, the length of the best route from its node to its target
+         */
+        private final float[] lengths;
+
+        /**
+         * constructor of Buckets, sorting the entries by node
+         *
+         * @param graph        the graph of the nodes
+         * @param targetSpaces for each target, the nodes settled by the backward search from it
+         */
+        private Buckets(Graph graph, SearchSpace[] targetSpaces) {
+            int nodeCount = graph.nodeCount();
+            first = new int[nodeCount + 1];
+            for (SearchSpace space : targetSpaces)
+                for (int nodeId : space.nodeIds()) ++first[nodeId + 1];
+            for (int nodeId = 0; nodeId < nodeCount; ++nodeId) first[nodeId + 1] += first[nodeId];
+
+            int entryCount = first[nodeCount];
+            targets = new int[entryCount];
+            costs = new float[entryCount];
+            lengths = new float[entryCount];
+            int[] next = Arrays.copyOf(first, nodeCount);
+            for (int target = 0; target < targetSpaces.length; ++target) {
+                SearchSpace space = targetSpaces[target];
+                for (int k = 0; k < space.nodeIds().length; ++k) {
+                    int entry = next[space.nodeIds()[k]]++;
+                    targets[entry] = target;
+                    costs[entry] = space.costs()[k];
+                    lengths[entry] = space.lengths()[k];
+                }
+            }
+        }
+    }
+}
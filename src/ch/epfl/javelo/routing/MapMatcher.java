@@ -0,0 +1,655 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.EdgeIndex;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * matches recorded traces of points to the edges of a graph, with a hidden Markov model whose states are the
+ * positions on the edges close to each point.
+ * <p>
+ * The candidates of a point are the positions closest to it on the edges found by a spatial index within a
+ * search radius, and the usable edges only (whose cost is finite in their direction). The probability of a
+ * candidate decreases with its distance to the point (a normal distribution of the error of the receiver), and
+ * the probability of a transition between the candidates of two consecutive points decreases with the difference
+ * between the length of the route linking them and the distance between the points. The lengths of these routes
+ * are computed by one-to-many searches, bounded in length, from each node leaving a candidate of a point to the
+ * nodes leading to the candidates of the next one, and cached by pair of nodes.
+ * <p>
+ * The most probable sequence of candidates is found by a streaming Viterbi algorithm: only the points whose
+ * candidate is not decided yet are kept. The candidate of a point is decided as soon as all the most probable
+ * sequences ending at the last point go through the same candidate of it, or when too many points are waiting
+ * for a decision, in which case the most probable sequence is chosen. The memory used by a match is thus bounded
+ * whatever the length of the trace. When no transition is possible between two points (after an interruption
+ * of the recording, for example), the sequence is decided up to the first one, and the matched parts are linked
+ * by the shortest route between them whose length respects the same bound as the transitions. If there is no
+ * such route, the route followed has a gap there, and is made of several connected pieces.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class MapMatcher {
+    /**
+     * maximal distance between a point and its candidates when none is specified, in meters
+     */
+    public static final double DEFAULT_SEARCH_RADIUS = 50;
+    /**
+     * maximal number of candidates of a point, the closest ones being kept
+     */
+    private static final int MAX_CANDIDATE_COUNT = 8;
+    /**
+     * standard deviation of the error of the positions of the points, in meters
+     */
+    private static final double GPS_SIGMA = 10;
+    /**
+     * scale of the exponential distribution of the difference between the length of the route linking two
+     * candidates and the distance between their points, in meters
+     */
+    private static final double TRANSITION_BETA = 20;
+    /**
+     * maximal length of the route between two candidates, relatively to the distance between their points
+     * (increased by twice the search radius)
+     */
+    private static final double MAX_DETOUR_FACTOR = 2;
+    /**
+     * length by which a candidate can go back on the edge of the previous one, since the points of a stopped
+     * receiver move around its position
+     */
+    private static final double BACKWARD_TOLERANCE = 2 * GPS_SIGMA;
+    /**
+     * maximal number of points waiting for the decision of their candidate
+     */
+    private static final int MAX_LAG = 64;
+    /**
+     * maximal number of pairs of nodes whose route length is kept in the cache of a match
+     */
+    private static final int CACHE_CAPACITY = 1 << 16;
+    /**
+     * default load factor of any LinkedHashMap, used by the cache of a match
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * value of the predecessor of the candidates of the first point of a sequence
+     */
+    private static final int NO_PREDECESSOR = -1;
+
+    /**
+     * the graph the traces are matched to
+     */
+    private final Graph graph;
+    /**
+     * the cost function giving the usable edges
+     */
+    private final CostFunction costFunction;
+    /**
+     * the spatial index of the edges of the graph
+     */
+    private final EdgeIndex edgeIndex;
+    /**
+     * the maximal distance between a point and its candidates, in meters
+     */
+    private final double searchRadius;
+    /**
+     * the workspaces of the searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    /**
+     * constructor of MapMatcher, building the index of the edges and using the default search radius
+     *
+     * @param graph        the graph the traces are matched to
+     * @param costFunction the cost function giving the usable edges
+     */
+    public MapMatcher(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, new EdgeIndex(graph), DEFAULT_SEARCH_RADIUS);
+    }
+
+    /**
+     * constructor of MapMatcher
+     *
+     * @param graph        the graph the traces are matched to
+     * @param costFunction the cost function giving the usable edges
+     * @param edgeIndex    the spatial index of the edges of the graph
+     * @param searchRadius the maximal distance between a point and its candidates, in meters
+     * @throws IllegalArgumentException if the search radius is not strictly positive
+     */
+    public MapMatcher(Graph graph, CostFunction costFunction, EdgeIndex edgeIndex, double searchRadius) {
+        Preconditions.checkArgument(searchRadius > 0);
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.edgeIndex = edgeIndex;
+        this.searchRadius = searchRadius;
+        this.workspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), RouteComputer.DEFAULT_QUEUE_KIND);
+    }
+
+    /**
+     * matches the given trace, and returns the route followed along with the matched points
+     *
+     * @param trace the points of the trace, in order
+     * @return the matched trace, whose route is null if no point could be matched
+     */
+    public MatchedTrace match(List<PointCh> trace) {
+        List<Route> pieces = new ArrayList<>();
+        List<Edge> edges = new ArrayList<>();
+        List<MatchedPoint> points = new ArrayList<>();
+        new Match(edgeId -> edges.add(Edge.of(graph, edgeId, graph.edgeSourceNodeId(edgeId),
+                graph.edgeTargetNodeId(edgeId))), () -> {
+            pieces.add(new SingleRoute(edges));
+            edges.clear();
+        }, points::add).run(trace.iterator());
+        if (!edges.isEmpty()) pieces.add(new SingleRoute(edges));
+        Route route = switch (pieces.size()) {
+            case 0 -> null;
+            case 1 -> pieces.get(0);
+            default -> new MultiRoute(pieces);
+        };
+        return new MatchedTrace(route, Collections.unmodifiableList(points));
+    }
+
+    /**
+     * matches the given trace, giving the matched points to the consumer as soon as they are decided, so that
+     * traces of any length are matched in bounded memory. The points farther than the search radius from any
+     * usable edge are not matched.
+     *
+     * @param trace    the points of the trace, in order
+     * @param consumer the consumer of the matched points, called in the order of the trace
+     */
+    public void match(Iterator<PointCh> trace, Consumer<MatchedPoint> consumer) {
+        new Match(edgeId -> {}, () -> {}, consumer).run(trace);
+    }
+
+    /**
+     * represents a trace matched to the graph
+     *
+     * @param route  the route followed, made of the edges of the matched points and of the edges linking them, or
+     *               null if no point was matched. It is a single route if its edges are all connected, and
+     *               otherwise a MultiRoute whose segments are the connected pieces, in order, each gap being
+     *               between two consecutive pieces
+     * @param points the matched points, in the order of the trace
+     */
+    public record MatchedTrace(Route route, List<MatchedPoint> points) {
+    }
+
+    /**
+     * represents a point of a trace matched to an edge
+     *
+     * @param traceIndex    the index of the point in the trace
+     * @param point         the position the point is matched to, on the edge
+     * @param edgeId        the identity of the edge
+     * @param edgePosition  the position along the edge, in meters
+     * @param routePosition the position along the route followed, in meters, which never decreases along the
+     *                      trace even if the point goes back a little on its edge. At a gap of the route, the
+     *                      position goes on from the end of the previous piece, as the pieces of the route are
+     *                      put end to end
+     */
+    public record MatchedPoint(int traceIndex, PointCh point, int edgeId, double edgePosition,
+                               double routePosition) {
+    }
+
+    /**
+     * represents a candidate of a point
+     *
+     * @param edgeId   the identity of the edge
+     * @param position the position along the edge, in meters
+     * @param point    the position on the edge
+     * @param distance the distance between the point of the trace and the position on the edge
+     */
+    private record Candidate(int edgeId, double position, PointCh point, double distance) {
+    }
+
+    /**
+     * represents a point of the trace whose candidate is not decided yet
+     *
+     * @param traceIndex   the index of the point in the trace
+     * @param point        the point of the trace
+     * @param candidates   the candidates of the point
+     * @param predecessors for each candidate, the index of its predecessor in the most probable sequence ending
+     *                     at it among the candidates of the previous step, or NO_PREDECESSOR
+     */
+    private record Step(int traceIndex, PointCh point, Candidate[] candidates, int[] predecessors) {
+    }
+
+    /**
+     * the state of the match of a trace
+     */
+    private final class Match {
+        /**
+         * the consumer of the edges of the route, in order
+         */
+        private final IntConsumer edgeConsumer;
+        /**
+         * the consumer of the gaps of the route, called between the edges of two pieces which are not connected
+         */
+        private final Runnable gapConsumer;
+        /**
+         * the consumer of the matched points, in order
+         */
+        private final Consumer<MatchedPoint> pointConsumer;
+        /**
+         * the points whose candidate is not decided yet, in order
+         */
+        private final ArrayDeque<Step> window = new ArrayDeque<>();
+        /**
+         * the route lengths between pairs of nodes: a positive value is the length of the route, a negative one
+         * the opposite of a length under which there is no route, the least recently used pairs being removed
+         */
+        private final Map<Long, Float> routeLengths =
+                new LinkedHashMap<>(CACHE_CAPACITY, LOAD_FACTOR, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Float> eldest) {
+                        return size() > CACHE_CAPACITY;
+                    }
+                };
+        /**
+         * the logarithm of the probability of the most probable sequence ending at each candidate of the last
+         * step, up to a common constant
+         */
+        private double[] logProbabilities;
+        /**
+         * the last decided candidate, or null if there is none
+         */
+        private Candidate lastDecided;
+        /**
+         * the point of the trace of the last decided candidate, or null if there is none
+         */
+        private PointCh lastDecidedPoint;
+        /**
+         * the position of the start of the edge of the last decided candidate along the route
+         */
+        private double edgeStart;
+        /**
+         * the position of the last decided candidate along the route
+         */
+        private double lastRoutePosition;
+
+        /**
+         * constructor of Match
+         *
+         * @param edgeConsumer  the consumer of the edges of the route
+         * @param gapConsumer   the consumer of the gaps of the route
+         * @param pointConsumer the consumer of the matched points
+         */
+        Match(IntConsumer edgeConsumer, Runnable gapConsumer, Consumer<MatchedPoint> pointConsumer) {
+            this.edgeConsumer = edgeConsumer;
+            this.gapConsumer = gapConsumer;
+            this.pointConsumer = pointConsumer;
+        }
+
+        /**
+         * matches the points of the given trace, then decides the remaining ones
+         *
+         * @param trace the points of the trace
+         */
+        void run(Iterator<PointCh> trace) {
+            for (int traceIndex = 0; trace.hasNext(); ++traceIndex) {
+                PointCh point = trace.next();
+                Candidate[] candidates = candidates(point);
+                if (candidates.length == 0) continue;
+                if (!window.isEmpty() && !advance(traceIndex, point, candidates)) decideAll();
+                if (window.isEmpty()) start(traceIndex, point, candidates);
+                decideConverged();
+                if (window.size() > MAX_LAG) forceDecision();
+            }
+            decideAll();
+        }
+
+        /**
+         * starts a new sequence with the given point
+         *
+         * @param traceIndex the index of the point in the trace
+         * @param point      the point
+         * @param candidates the candidates of the point
+         */
+        private void start(int traceIndex, PointCh point, Candidate[] candidates) {
+            int[] predecessors = new int[candidates.length];
+            Arrays.fill(predecessors, NO_PREDECESSOR);
+            logProbabilities = new double[candidates.length];
+            for (int k = 0; k < candidates.length; ++k) logProbabilities[k] = emission(candidates[k]);
+            window.addLast(new Step(traceIndex, point, candidates, predecessors));
+        }
+
+        /**
+         * extends the sequences with the given point, by the Viterbi recurrence
+         *
+         * @param traceIndex the index of the point in the trace
+         * @param point      the point
+         * @param candidates the candidates of the point
+         * @return false if no candidate of the point can follow a candidate of the previous step, in which case
+         * nothing is changed
+         */
+        private boolean advance(int traceIndex, PointCh point, Candidate[] candidates) {
+            Step previous = window.peekLast();
+            double straightDistance = previous.point().distanceTo(point);
+            double maxLength = maxRouteLength(previous.point(), point);
+            computeRouteLengths(previous.candidates(), candidates, maxLength);
+
+            double[] next = new double[candidates.length];
+            int[] predecessors = new int[candidates.length];
+            double best = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < candidates.length; ++k) {
+                next[k] = Double.NEGATIVE_INFINITY;
+                predecessors[k] = NO_PREDECESSOR;
+                for (int j = 0; j < previous.candidates().length; ++j) {
+                    if (logProbabilities[j] == Double.NEGATIVE_INFINITY) continue;
+                    double length = routeLength(previous.candidates()[j], candidates[k]);
+                    if (!(length <= maxLength)) continue;
+                    double logProbability = logProbabilities[j] - Math.abs(length - straightDistance) / TRANSITION_BETA;
+                    if (logProbability > next[k]) {
+                        next[k] = logProbability;
+                        predecessors[k] = j;
+                    }
+                }
+                if (predecessors[k] != NO_PREDECESSOR) next[k] += emission(candidates[k]);
+                best = Math.max(best, next[k]);
+            }
+            if (best == Double.NEGATIVE_INFINITY) return false;
+            //the probabilities are shifted so that they do not drift along long traces
+            for (int k = 0; k < next.length; ++k) next[k] -= best;
+            logProbabilities = next;
+            window.addLast(new Step(traceIndex, point, candidates, predecessors));
+            return true;
+        }
+
+        /**
+         * decides the steps up to the last one through which all the sequences go, if there is one. The last
+         * step is never decided, so that the next point is still linked to it by a transition.
+         */
+        private void decideConverged() {
+            //the candidates of each step through which the sequences go, from the last step backwards
+            Set<Integer> alive = new HashSet<>();
+            for (int k = 0; k < logProbabilities.length; ++k)
+                if (logProbabilities[k] != Double.NEGATIVE_INFINITY) alive.add(k);
+            Iterator<Step> steps = window.descendingIterator();
+            for (int count = window.size(); steps.hasNext(); --count) {
+                Step step = steps.next();
+                if (count < window.size() && alive.size() == 1) {
+                    decide(count, alive.iterator().next());
+                    return;
+                }
+                Set<Integer> predecessors = new HashSet<>();
+                for (int k : alive) predecessors.add(step.predecessors()[k]);
+                alive = predecessors;
+            }
+        }
+
+        /**
+         * decides the oldest step with the most probable sequence, and drops the sequences which do not go
+         * through the chosen candidate
+         */
+        private void forceDecision() {
+            int best = bestCandidate();
+            int[] choices = choices(window.size(), best);
+            decide(1, choices[0]);
+            //the candidate of the oldest remaining step of each sequence, then of the decided step
+            for (int k = 0; k < logProbabilities.length; ++k) {
+                if (logProbabilities[k] == Double.NEGATIVE_INFINITY) continue;
+                int candidate = k;
+                Iterator<Step> steps = window.descendingIterator();
+                while (steps.hasNext()) candidate = steps.next().predecessors()[candidate];
+                if (candidate != choices[0]) logProbabilities[k] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        /**
+         * decides all the steps with the most probable sequence
+         */
+        private void decideAll() {
+            if (!window.isEmpty()) decide(window.size(), bestCandidate());
+        }
+
+        /**
+         * decides the given number of oldest steps, the last one with the given candidate, and the others with
+         * its ancestors
+         *
+         * @param count     the number of steps to decide
+         * @param candidate the index of the candidate of the last decided step
+         */
+        private void decide(int count, int candidate) {
+            int[] choices = choices(count, candidate);
+            for (int i = 0; i < count; ++i) {
+                Step step = window.pollFirst();
+                emit(step, step.candidates()[choices[i]]);
+            }
+        }
+
+        /**
+         * returns the candidates of the given number of oldest steps in the sequence ending at the given
+         * candidate of the last of them
+         *
+         * @param count     the number of steps
+         * @param candidate the index of the candidate of the last of the steps
+         * @return the index of the candidate of each step
+         */
+        private int[] choices(int count, int candidate) {
+            int[] choices = new int[count];
+            Iterator<Step> steps = window.iterator();
+            Step[] oldest = new Step[count];
+            for (int i = 0; i < count; ++i) oldest[i] = steps.next();
+            for (int i = count - 1; i >= 0; --i) {
+                choices[i] = candidate;
+                candidate = oldest[i].predecessors()[candidate];
+            }
+            return choices;
+        }
+
+        /**
+         * returns the index of the most probable candidate of the last step
+         *
+         * @return the index of the candidate
+         */
+        private int bestCandidate() {
+            int best = 0;
+            for (int k = 1; k < logProbabilities.length; ++k)
+                if (logProbabilities[k] > logProbabilities[best]) best = k;
+            return best;
+        }
+
+        /**
+         * gives the matched point of the given step to the consumer, after the edges linking it to the previous
+         * one, or after a gap if there is no route between them short enough
+         *
+         * @param step      the decided step
+         * @param candidate the candidate of the step
+         */
+        private void emit(Step step, Candidate candidate) {
+            if (lastDecided == null) {
+                edgeConsumer.accept(candidate.edgeId());
+                edgeStart = 0;
+            } else if (candidate.edgeId() != lastDecided.edgeId()
+                    || candidate.position() < lastDecided.position() - BACKWARD_TOLERANCE) {
+                edgeStart += graph.edgeLength(lastDecided.edgeId());
+                int fromNodeId = graph.edgeTargetNodeId(lastDecided.edgeId());
+                int toNodeId = graph.edgeSourceNodeId(candidate.edgeId());
+                int[] edgeIds = routeEdges(fromNodeId, toNodeId, maxRouteLength(lastDecidedPoint, step.point()));
+                if (edgeIds == null) {
+                    //the position goes on from the end of the previous piece, which is put before the next one
+                    gapConsumer.run();
+                } else {
+                    for (int edgeId : edgeIds) {
+                        edgeConsumer.accept(edgeId);
+                        edgeStart += graph.edgeLength(edgeId);
+                    }
+                }
+                edgeConsumer.accept(candidate.edgeId());
+                lastRoutePosition = edgeStart;
+            }
+            //the position along the route never goes back, even if the candidate goes back a little on its edge
+            lastRoutePosition = Math.max(lastRoutePosition, edgeStart + candidate.position());
+            lastDecided = candidate;
+            lastDecidedPoint = step.point();
+            pointConsumer.accept(new MatchedPoint(step.traceIndex(), candidate.point(), candidate.edgeId(),
+                    candidate.position(), lastRoutePosition));
+        }
+
+        /**
+         * returns the length of the route going from the first candidate to the second one, using the cached
+         * lengths between nodes
+         *
+         * @param from the first candidate
+         * @param to   the second candidate
+         * @return the length of the route, or positive infinity if it is not known to exist
+         */
+        private double routeLength(Candidate from, Candidate to) {
+            if (from.edgeId() == to.edgeId() && to.position() >= from.position() - BACKWARD_TOLERANCE)
+                return Math.max(0, to.position() - from.position());
+            float nodeLength = routeLengths.getOrDefault(pairKey(graph.edgeTargetNodeId(from.edgeId()),
+                    graph.edgeSourceNodeId(to.edgeId())), Float.NEGATIVE_INFINITY);
+            if (nodeLength < 0) return Double.POSITIVE_INFINITY;
+            return graph.edgeLength(from.edgeId()) - from.position() + nodeLength + to.position();
+        }
+
+        /**
+         * computes the lengths of the routes between the nodes leaving the first candidates and the nodes leading
+         * to the second ones which are not known in the cache for the given maximal length
+         *
+         * @param fromCandidates the candidates of the previous point
+         * @param toCandidates   the candidates of the next point
+         * @param maxLength      the maximal length of the routes
+         */
+        private void computeRouteLengths(Candidate[] fromCandidates, Candidate[] toCandidates, double maxLength) {
+            int[] toNodeIds = Arrays.stream(toCandidates)
+                    .mapToInt(candidate -> graph.edgeSourceNodeId(candidate.edgeId())).distinct().toArray();
+            int[] fromNodeIds = Arrays.stream(fromCandidates)
+                    .mapToInt(candidate -> graph.edgeTargetNodeId(candidate.edgeId())).distinct().toArray();
+            for (int fromNodeId : fromNodeIds) {
+                boolean known = true;
+                for (int toNodeId : toNodeIds) {
+                    Float length = routeLengths.get(pairKey(fromNodeId, toNodeId));
+                    if (length == null || (length < 0 && -length < maxLength)) known = false;
+                }
+                if (known) continue;
+                SearchWorkspace workspace = workspaces.get();
+                search(workspace, fromNodeId, toNodeIds, maxLength);
+                for (int toNodeId : toNodeIds) {
+                    routeLengths.put(pairKey(fromNodeId, toNodeId), workspace.isSettled(toNodeId)
+                            ? workspace.distance(toNodeId) : (float) -maxLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * returns the candidates of the given point: the closest position on each usable edge within the search
+     * radius
+     *
+     * @param point the point
+     * @return the candidates of the point, sorted by increasing distance
+     */
+    private Candidate[] candidates(PointCh point) {
+        int[] edgeIds = edgeIndex.edgesClosestTo(point, searchRadius, 2 * MAX_CANDIDATE_COUNT);
+        List<Candidate> candidates = new ArrayList<>();
+        for (int edgeId : edgeIds) {
+            if (candidates.size() == MAX_CANDIDATE_COUNT) break;
+            int fromNodeId = graph.edgeSourceNodeId(edgeId);
+            if (!isUsable(fromNodeId, edgeId)) continue;
+            double position = edgeIndex.positionClosestTo(edgeId, point);
+            PointCh matched = Edge.of(graph, edgeId, fromNodeId, graph.edgeTargetNodeId(edgeId)).pointAt(position);
+            candidates.add(new Candidate(edgeId, position, matched, matched.distanceTo(point)));
+        }
+        return candidates.toArray(new Candidate[0]);
+    }
+
+    /**
+     * returns the maximal length of the route between candidates of the given points, which bounds both the
+     * transitions and the routes linking the decided candidates
+     *
+     * @param from the first point of the trace
+     * @param to   the second point of the trace
+     * @return the maximal length of the route, in meters
+     */
+    private double maxRouteLength(PointCh from, PointCh to) {
+        return MAX_DETOUR_FACTOR * from.distanceTo(to) + 2 * searchRadius;
+    }
+
+    /**
+     * returns the logarithm of the probability of the given candidate, up to a constant
+     *
+     * @param candidate the candidate
+     * @return the logarithm of the probability of the candidate
+     */
+    private static double emission(Candidate candidate) {
+        double ratio = candidate.distance() / GPS_SIGMA;
+        return -0.5 * ratio * ratio;
+    }
+
+    /**
+     * returns the edges of the shortest route between the given nodes, if its length is at most the given one
+     *
+     * @param fromNodeId the identity of the first node
+     * @param toNodeId   the identity of the second node
+     * @param maxLength  the maximal length of the route
+     * @return the identities of the edges of the route, in order, or null if there is no such route
+     */
+    private int[] routeEdges(int fromNodeId, int toNodeId, double maxLength) {
+        if (fromNodeId == toNodeId) return new int[0];
+        SearchWorkspace workspace = workspaces.get();
+        search(workspace, fromNodeId, new int[]{toNodeId}, maxLength);
+        if (!workspace.isSettled(toNodeId)) return null;
+        int count = 0;
+        for (int nodeId = toNodeId; nodeId != fromNodeId; nodeId = workspace.predecessorNode(nodeId)) ++count;
+        int[] edgeIds = new int[count];
+        for (int nodeId = toNodeId; nodeId != fromNodeId; nodeId = workspace.predecessorNode(nodeId))
+            edgeIds[--count] = workspace.predecessorEdge(nodeId);
+        return edgeIds;
+    }
+
+    /**
+     * runs a Dijkstra search on the lengths of the usable edges from the given node, until all the given nodes
+     * are settled or the lengths exceed the given maximal length
+     *
+     * @param workspace    the workspace of the search
+     * @param sourceNodeId the identity of the node the search starts from
+     * @param targetNodeIds the identities of the nodes to settle
+     * @param maxLength    the maximal length of the routes
+     */
+    private void search(SearchWorkspace workspace, int sourceNodeId, int[] targetNodeIds, double maxLength) {
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        int remaining = targetNodeIds.length;
+        workspace.update(sourceNodeId, 0f, sourceNodeId, RouteComputer.NO_EDGE);
+        queue.insertOrDecrease(sourceNodeId, 0f);
+        while (!queue.isEmpty() && remaining > 0) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            for (int targetNodeId : targetNodeIds) if (targetNodeId == N) --remaining;
+            for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                int edgeId = graph.nodeOutEdgeId(N, i);
+                if (!isUsable(N, edgeId)) continue;
+                int Nbis = graph.edgeTargetNodeId(edgeId);
+                float d = distanceN + (float) graph.edgeLength(edgeId);
+                if (d <= maxLength && d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * returns whether the given edge can be used in its direction
+     *
+     * @param nodeId the identity of the node the edge starts from
+     * @param edgeId the identity of the edge
+     * @return true if the cost of the edge is finite
+     */
+    private boolean isUsable(int nodeId, int edgeId) {
+        return Double.isFinite(costFunction.costFactor(nodeId, edgeId));
+    }
+
+    /**
+     * returns the key of the given pair of nodes
+     *
+     * @param fromNodeId the identity of the first node
+     * @param toNodeId   the identity of the second node
+     * @return the identities of the nodes packed in a long
+     */
+    private static long pairKey(int fromNodeId, int toNodeId) {
+        return (long) fromNodeId << Integer.SIZE | toNodeId;
+    }
+}
@@ -0,0 +1,356 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * represents the overlay of a multi-level partition for a given cost function: for each cell of each level, the
+ * costs of the best routes between its boundary nodes staying inside the cell (its clique). Building it (the
+ * customization) only takes a few searches per boundary node, run in parallel over the cells, so that changing
+ * the cost function is cheap compared to the partition, which is shared.
+ * <p>
+ * A query is a bidirectional Dijkstra search which uses the original edges only in the finest cells of its
+ * starting and ending nodes, and, elsewhere, the cliques of the highest level whose cell contains neither of them
+ * (plus the edges leaving these cells). The cliques of the route are then unpacked into edges by searches
+ * restricted to their cell, on the level below.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class MultiLevelOverlay {
+    /**
+     * level of the nodes at which the original edges are used
+     */
+    private static final int EDGE_LEVEL = -1;
+    /**
+     * predecessor edge of a node reached through a clique
+     */
+    private static final int CLIQUE_ARC = -2;
+    /**
+     * predecessor edge of the source of a search, which has none
+     */
+    private static final int NO_EDGE = -1;
+    /**
+     * value of a node identity when there is no such node
+     */
+    private static final int NO_NODE = -1;
+
+    /**
+     * the graph of the overlay
+     */
+    private final Graph graph;
+    /**
+     * the partition of the overlay
+     */
+    private final MultiLevelPartition partition;
+    /**
+     * the cost function of the overlay
+     */
+    private final CostFunction costFunction;
+    /**
+     * for each level and each cell, the costs between its boundary nodes (row: from, column: to)
+     */
+    private final float[][][] cliques;
+    /**
+     * the workspaces of the forward searches (and of the customization), one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> forwardWorkspaces;
+    /**
+     * the workspaces of the backward searches, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
+    /**
+     * the workspaces of the searches unpacking the cliques, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> unpackingWorkspaces;
+
+    /**
+     * constructor of MultiLevelOverlay, computing the cliques level by level
+     *
+     * @param graph        the graph of the overlay
+     * @param partition    the partition of the nodes of the graph
+     * @param costFunction the cost function of the overlay
+     */
+    private MultiLevelOverlay(Graph graph, MultiLevelPartition partition, CostFunction costFunction) {
+        this.graph = graph;
+        this.partition = partition;
+        this.costFunction = costFunction;
+        this.cliques = new float[partition.levelCount()][][];
+        int nodeCount = graph.nodeCount();
+        this.forwardWorkspaces = SearchWorkspace.threadLocalPool(nodeCount, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+        this.backwardWorkspaces = SearchWorkspace.threadLocalPool(nodeCount, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+        this.unpackingWorkspaces = SearchWorkspace.threadLocalPool(nodeCount, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+
+        //each level is computed on the cliques of the level below it
+        for (int level = 0; level < partition.levelCount(); ++level) {
+            int currentLevel = level;
+            cliques[level] = IntStream.range(0, partition.cellCount(level)).parallel()
+                    .mapToObj(cell -> clique(currentLevel, cell))
+                    .toArray(float[][]::new);
+        }
+    }
+
+    /**
+     * computes the overlay of the given partition for the given cost function, using all the processors
+     *
+     * @param graph        the graph of the overlay
+     * @param partition    the partition of the nodes of the graph
+     * @param costFunction the cost function of the overlay
+     * @return the overlay of the partition for the cost function
+     */
+    public static MultiLevelOverlay customize(Graph graph, MultiLevelPartition partition, CostFunction costFunction) {
+        return new MultiLevelOverlay(graph, partition, costFunction);
+    }
+
+    /**
+     * returns the partition of the overlay
+     *
+     * @return the partition of the overlay
+     */
+    public MultiLevelPartition partition() {
+        return partition;
+    }
+
+    /**
+     * returns the cost function of the overlay
+     *
+     * @return the cost function of the overlay
+     */
+    public CostFunction costFunction() {
+        return costFunction;
+    }
+
+    /**
+     * returns the cost of the best route between two boundary nodes of the given cell staying inside it
+     *
+     * @param level     the level of the cell
+     * @param cell      the identity of the cell
+     * @param fromIndex the index of the starting node among the boundary nodes of the cell
+     * @param toIndex   the index of the ending node among the boundary nodes of the cell
+     * @return the cost of the best route, or positive infinity if there is none
+     */
+    public float cliqueCost(int level, int cell, int fromIndex, int toIndex) {
+        return cliques[level][cell][fromIndex * partition.boundaryNodeCount(level, cell) + toIndex];
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes, weighted with the cost function of the overlay
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @return the shortest Route between 2 nodes, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        SearchWorkspace forward = forwardWorkspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        forward.reset();
+        backward.reset();
+        NodePriorityQueue forwardQueue = forward.queue();
+        NodePriorityQueue backwardQueue = backward.queue();
+        forward.update(startNodeId, 0f, startNodeId, NO_EDGE);
+        forwardQueue.insertOrDecrease(startNodeId, 0f);
+        backward.update(endNodeId, 0f, endNodeId, NO_EDGE);
+        backwardQueue.insertOrDecrease(endNodeId, 0f);
+
+        Meeting meeting = new Meeting();
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (forwardQueue.minPriority() + backwardQueue.minPriority() >= meeting.cost) break;
+            boolean goForward = forwardQueue.minPriority() <= backwardQueue.minPriority();
+            SearchWorkspace workspace = goForward ? forward : backward;
+            int N = workspace.queue().removeMin();
+            workspace.settle(N);
+            relaxArcs(workspace, N, queryLevel(N, startNodeId, endNodeId), !goForward,
+                    EDGE_LEVEL, 0, goForward ? backward : forward, meeting);
+        }
+        if (meeting.nodeId == NO_NODE) return null;
+
+        //first half, found backwards in the forward search, then second half, whose predecessors in the backward
+        //search are the next nodes of the route
+        List<Edge> edges = new ArrayList<>();
+        List<int[]> steps = new ArrayList<>();
+        for (int nodeId = meeting.nodeId; nodeId != startNodeId; nodeId = forward.predecessorNode(nodeId))
+            steps.add(new int[]{forward.predecessorNode(nodeId), nodeId, forward.predecessorEdge(nodeId)});
+        Collections.reverse(steps);
+        for (int nodeId = meeting.nodeId; nodeId != endNodeId; nodeId = backward.predecessorNode(nodeId))
+            steps.add(new int[]{nodeId, backward.predecessorNode(nodeId), backward.predecessorEdge(nodeId)});
+        for (int[] step : steps) {
+            if (step[2] == CLIQUE_ARC) unpack(queryLevel(step[0], startNodeId, endNodeId), step[0], step[1], edges);
+            else edges.add(Edge.of(graph, step[2], step[0], step[1]));
+        }
+        return new SingleRoute(edges);
+    }
+
+    /**
+     * returns the level at which the arcs of the given node are used by a query: the highest level whose cell
+     * containing the node contains neither the starting nor the ending node, or EDGE_LEVEL if there is none
+     *
+     * @param nodeId      the identity of the node
+     * @param startNodeId the identity of the starting node of the query
+     * @param endNodeId   the identity of the ending node of the query
+     * @return the level of the node for the query
+     */
+    private int queryLevel(int nodeId, int startNodeId, int endNodeId) {
+        for (int level = partition.levelCount() - 1; level >= 0; --level) {
+            int cell = partition.cell(level, nodeId);
+            if (cell != partition.cell(level, startNodeId) && cell != partition.cell(level, endNodeId)) return level;
+        }
+        return EDGE_LEVEL;
+    }
+
+    /**
+     * computes the clique of the given cell, with one search from each of its boundary nodes, restricted to the
+     * cell and using the cliques of the level below (or the edges, for the finest level)
+     *
+     * @param level the level of the cell
+     * @param cell  the identity of the cell
+     * @return the costs between the boundary nodes of the cell
+     */
+    private float[] clique(int level, int cell) {
+        int count = partition.boundaryNodeCount(level, cell);
+        float[] clique = new float[count * count];
+        SearchWorkspace workspace = forwardWorkspaces.get();
+        for (int from = 0; from < count; ++from) {
+            cellSearch(workspace, level, cell, partition.boundaryNodeId(level, cell, from), NO_NODE);
+            for (int to = 0; to < count; ++to)
+                clique[from * count + to] = workspace.distance(partition.boundaryNodeId(level, cell, to));
+        }
+        return clique;
+    }
+
+    /**
+     * runs a search from the given node restricted to the given cell, using the cliques of the level below it
+     * (or the edges, for the finest level)
+     *
+     * @param workspace    the workspace of the search
+     * @param level        the level of the cell
+     * @param cell         the identity of the cell
+     * @param sourceNodeId the identity of the source of the search
+     * @param targetNodeId the identity of the node at which the search stops, or NO_NODE to explore the whole cell
+     */
+    private void cellSearch(SearchWorkspace workspace, int level, int cell, int sourceNodeId, int targetNodeId) {
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        workspace.update(sourceNodeId, 0f, sourceNodeId, NO_EDGE);
+        queue.insertOrDecrease(sourceNodeId, 0f);
+        while (!queue.isEmpty()) {
+            int N = queue.removeMin();
+            workspace.settle(N);
+            if (N == targetNodeId) return;
+            relaxArcs(workspace, N, level - 1, false, level, cell, null, null);
+        }
+    }
+
+    /**
+     * relaxes the arcs of the given (settled) node at the given level: the arcs of the clique of its cell and the
+     * edges leaving its cell, or all its edges at EDGE_LEVEL
+     *
+     * @param workspace       the workspace of the search
+     * @param N               the identity of the node
+     * @param level           the level of the node, or EDGE_LEVEL
+     * @param backward        true if the search goes backwards, along the arcs coming into the nodes
+     * @param restrictedLevel the level of the cell to which the search is restricted, or EDGE_LEVEL if none
+     * @param restrictedCell  the identity of the cell to which the search is restricted
+     * @param other           the workspace of the search going in the other direction, or null if none
+     * @param meeting         the best route found between the two searches, or null if there is only one
+     */
+    private void relaxArcs(SearchWorkspace workspace, int N, int level, boolean backward,
+                           int restrictedLevel, int restrictedCell, SearchWorkspace other, Meeting meeting) {
+        float distanceN = workspace.distance(N);
+        if (level != EDGE_LEVEL) {
+            int cell = partition.cell(level, N);
+            int index = partition.boundaryIndex(level, N);
+            assert index >= 0;
+            int count = partition.boundaryNodeCount(level, cell);
+            float[] clique = cliques[level][cell];
+            for (int j = 0; j < count; ++j) {
+                float cost = backward ? clique[j * count + index] : clique[index * count + j];
+                if (j == index || cost == Float.POSITIVE_INFINITY) continue;
+                relax(workspace, partition.boundaryNodeId(level, cell, j), distanceN + cost, N, CLIQUE_ARC,
+                        restrictedLevel, restrictedCell, other, meeting);
+            }
+        }
+        int degree = backward ? graph.nodeInDegree(N) : graph.nodeOutDegree(N);
+        for (int i = 0; i < degree; ++i) {
+            int edgeId = backward ? graph.nodeInEdgeId(N, i) : graph.nodeOutEdgeId(N, i);
+            int Nbis = backward ? graph.edgeSourceNodeId(edgeId) : graph.edgeTargetNodeId(edgeId);
+            //the edges inside the cell are replaced by its clique
+            if (level != EDGE_LEVEL && partition.cell(level, Nbis) == partition.cell(level, N)) continue;
+            //the cost of an edge is always evaluated in its own direction
+            double costFactor = costFunction.costFactor(backward ? Nbis : N, edgeId);
+            if (costFactor == Double.POSITIVE_INFINITY) continue;
+            relax(workspace, Nbis, distanceN + (float) (costFactor * graph.edgeLength(edgeId)), N, edgeId,
+                    restrictedLevel, restrictedCell, other, meeting);
+        }
+    }
+
+    /**
+     * records the given distance for the given node if it is better than the one already known and if the node
+     * is inside the cell to which the search is restricted
+     *
+     * @param workspace       the workspace of the search
+     * @param Nbis            the identity of the node
+     * @param d               the distance of the node through the arc
+     * @param N               the identity of the node the arc comes from
+     * @param edgeId          the identity of the edge, or CLIQUE_ARC
+     * @param restrictedLevel the level of the cell to which the search is restricted, or EDGE_LEVEL if none
+     * @param restrictedCell  the identity of the cell to which the search is restricted
+     * @param other           the workspace of the search going in the other direction, or null if none
+     * @param meeting         the best route found between the two searches, or null if there is only one
+     */
+    private void relax(SearchWorkspace workspace, int Nbis, float d, int N, int edgeId,
+                       int restrictedLevel, int restrictedCell, SearchWorkspace other, Meeting meeting) {
+        if (restrictedLevel != EDGE_LEVEL && partition.cell(restrictedLevel, Nbis) != restrictedCell) return;
+        if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+            workspace.update(Nbis, d, N, edgeId);
+            workspace.queue().insertOrDecrease(Nbis, d);
+            if (other != null && d + other.distance(Nbis) < meeting.cost) {
+                meeting.cost = d + other.distance(Nbis);
+                meeting.nodeId = Nbis;
+            }
+        }
+    }
+
+    /**
+     * appends to the given list the edges of the best route between two boundary nodes of a cell, staying inside
+     * it, which the clique of the cell links directly
+     *
+     * @param level      the level of the clique
+     * @param fromNodeId the identity of the starting node
+     * @param toNodeId   the identity of the ending node
+     * @param edges      the list to which the edges are appended
+     */
+    private void unpack(int level, int fromNodeId, int toNodeId, List<Edge> edges) {
+        SearchWorkspace workspace = unpackingWorkspaces.get();
+        cellSearch(workspace, level, partition.cell(level, fromNodeId), fromNodeId, toNodeId);
+        //the steps are read before unpacking the cliques of the level below, which reuses the workspace
+        List<int[]> steps = new ArrayList<>();
+        for (int nodeId = toNodeId; nodeId != fromNodeId; nodeId = workspace.predecessorNode(nodeId))
+            steps.add(new int[]{workspace.predecessorNode(nodeId), nodeId, workspace.predecessorEdge(nodeId)});
+        Collections.reverse(steps);
+        for (int[] step : steps) {
+            if (step[2] == CLIQUE_ARC) unpack(level - 1, step[0], step[1], edges);
+            else edges.add(Edge.of(graph, step[2], step[0], step[1]));
+        }
+    }
+
+    /**
+     * represents the best route found so far by the two searches of a query
+     */
+    private static final class Meeting {
+        /**
+         * the cost of the best route found so far
+         */
+        private float cost = Float.POSITIVE_INFINITY;
+        /**
+         * the node where the two halves of the best route meet
+         */
+        private int nodeId = NO_NODE;
+    }
+}
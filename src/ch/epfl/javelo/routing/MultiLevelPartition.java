@@ -0,0 +1,218 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphSectors;
+
+import java.util.Arrays;
+
+import static ch.epfl.javelo.data.GraphSectors.NUMBER_OF_SECTORS_ON_SIDE;
+
+/**
+ * represents a nested partition of the nodes of the graph in cells, on several levels, which does not depend on
+ * any cost function. The cells are squares of sectors of the graph: at a level of shift k, each cell is made of
+ * 2^k x 2^k sectors, and the cells of a level are included in the ones of the next level.
+ * <p>
+ * A node is a boundary node of a level if one of its edges links it to a node of another cell of that level.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class MultiLevelPartition {
+    /**
+     * shifts of the levels used when none are specified: cells of 1x1, 4x4 and 16x16 sectors
+     */
+    private static final int[] DEFAULT_LEVEL_SHIFTS = {0, 2, 4};
+    /**
+     * value of the index of a node which is not a boundary node
+     */
+    private static final int NOT_BOUNDARY = -1;
+
+    /**
+     * for each level, the base 2 logarithm of the number of sectors on a side of its cells
+     */
+    private final int[] levelShifts;
+    /**
+     * for each node, the identity of its sector
+     */
+    private final int[] nodeSectors;
+    /**
+     * for each level and each cell, the index in boundaryNodes of its first boundary node, followed by the total
+     * number of boundary nodes of the level
+     */
+    private final int[][] firstBoundaryNodes;
+    /**
+     * for each level, the boundary nodes, sorted by cell
+     */
+    private final int[][] boundaryNodes;
+    /**
+     * for each level and each node, its index among the boundary nodes of its cell, or NOT_BOUNDARY
+     */
+    private final int[][] boundaryIndices;
+
+    /**
+     * constructor of MultiLevelPartition
+     *
+     * @param levelShifts the shifts of the levels, from the finest one
+     * @param nodeSectors for each node, the identity of its sector
+     * @param graph       the graph whose nodes are partitioned
+     */
+    private MultiLevelPartition(int[] levelShifts, int[] nodeSectors, Graph graph) {
+        this.levelShifts = levelShifts;
+        this.nodeSectors = nodeSectors;
+        int levelCount = levelShifts.length;
+        int nodeCount = graph.nodeCount();
+        this.firstBoundaryNodes = new int[levelCount][];
+        this.boundaryNodes = new int[levelCount][];
+        this.boundaryIndices = new int[levelCount][];
+
+        for (int level = 0; level < levelCount; ++level) {
+            boolean[] isBoundary = new boolean[nodeCount];
+            for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+                for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                    int targetNodeId = graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, i));
+                    if (cell(level, nodeId) != cell(level, targetNodeId)) {
+                        isBoundary[nodeId] = true;
+                        isBoundary[targetNodeId] = true;
+                    }
+                }
+            }
+            //counting sort of the boundary nodes by cell
+            int[] first = new int[cellCount(level) + 1];
+            for (int nodeId = 0; nodeId < nodeCount; ++nodeId)
+                if (isBoundary[nodeId]) ++first[cell(level, nodeId) + 1];
+            for (int cell = 0; cell < cellCount(level); ++cell) first[cell + 1] += first[cell];
+            int[] nodes = new int[first[cellCount(level)]];
+            int[] indices = new int[nodeCount];
+            Arrays.fill(indices, NOT_BOUNDARY);
+            int[] nextFreeIndex = Arrays.copyOf(first, cellCount(level));
+            for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+                if (!isBoundary[nodeId]) continue;
+                int cell = cell(level, nodeId);
+                indices[nodeId] = nextFreeIndex[cell] - first[cell];
+                nodes[nextFreeIndex[cell]++] = nodeId;
+            }
+            firstBoundaryNodes[level] = first;
+            boundaryNodes[level] = nodes;
+            boundaryIndices[level] = indices;
+        }
+    }
+
+    /**
+     * returns the partition of the nodes of the given graph with the default levels
+     *
+     * @param graph the graph whose nodes are partitioned
+     * @return the partition of the nodes of the graph
+     */
+    public static MultiLevelPartition of(Graph graph) {
+        return of(graph, DEFAULT_LEVEL_SHIFTS);
+    }
+
+    /**
+     * returns the partition of the nodes of the given graph with the given levels. The sector of a node is given
+     * by the sectors of the graph, or by its coordinates if it does not belong to any of them.
+     *
+     * @param graph       the graph whose nodes are partitioned
+     * @param levelShifts for each level, from the finest one, the base 2 logarithm of the number of sectors on a
+     *                    side of its cells
+     * @return the partition of the nodes of the graph
+     * @throws IllegalArgumentException if there is no level, or if the shifts are not strictly increasing
+     *                                  or not between 0 and 6 (so that the top level still has several cells)
+     */
+    public static MultiLevelPartition of(Graph graph, int... levelShifts) {
+        Preconditions.checkArgument(levelShifts.length > 0 && levelShifts[0] >= 0
+                && levelShifts[levelShifts.length - 1] < Integer.numberOfTrailingZeros(NUMBER_OF_SECTORS_ON_SIDE));
+        for (int level = 1; level < levelShifts.length; ++level)
+            Preconditions.checkArgument(levelShifts[level - 1] < levelShifts[level]);
+
+        int nodeCount = graph.nodeCount();
+        int[] nodeSectors = new int[nodeCount];
+        Arrays.fill(nodeSectors, -1);
+        for (int sector = 0; sector < NUMBER_OF_SECTORS_ON_SIDE * NUMBER_OF_SECTORS_ON_SIDE; ++sector) {
+            GraphSectors.Sector nodes = graph.sector(sector);
+            for (int nodeId = nodes.startNodeId(); nodeId < Math.min(nodes.endNodeId(), nodeCount); ++nodeId)
+                nodeSectors[nodeId] = sector;
+        }
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId)
+            if (nodeSectors[nodeId] < 0)
+                nodeSectors[nodeId] = GraphSectors.sectorIdentityAt(graph.nodeE(nodeId), graph.nodeN(nodeId));
+        return new MultiLevelPartition(levelShifts.clone(), nodeSectors, graph);
+    }
+
+    /**
+     * returns the number of levels of the partition
+     *
+     * @return the number of levels of the partition
+     */
+    public int levelCount() {
+        return levelShifts.length;
+    }
+
+    /**
+     * returns the number of cells on a side of the given level
+     *
+     * @param level the level
+     * @return the number of cells on a side of the level
+     */
+    public int cellsOnSide(int level) {
+        return NUMBER_OF_SECTORS_ON_SIDE >> levelShifts[level];
+    }
+
+    /**
+     * returns the number of cells of the given level
+     *
+     * @param level the level
+     * @return the number of cells of the level
+     */
+    public int cellCount(int level) {
+        return cellsOnSide(level) * cellsOnSide(level);
+    }
+
+    /**
+     * returns the cell of the given level containing the given node
+     *
+     * @param level  the level
+     * @param nodeId the identity of the node
+     * @return the identity of the cell containing the node
+     */
+    public int cell(int level, int nodeId) {
+        int sector = nodeSectors[nodeId];
+        int x = (sector % NUMBER_OF_SECTORS_ON_SIDE) >> levelShifts[level];
+        int y = (sector / NUMBER_OF_SECTORS_ON_SIDE) >> levelShifts[level];
+        return cellsOnSide(level) * y + x;
+    }
+
+    /**
+     * returns the number of boundary nodes of the given cell
+     *
+     * @param level the level of the cell
+     * @param cell  the identity of the cell
+     * @return the number of boundary nodes of the cell
+     */
+    public int boundaryNodeCount(int level, int cell) {
+        return firstBoundaryNodes[level][cell + 1] - firstBoundaryNodes[level][cell];
+    }
+
+    /**
+     * returns the index-th boundary node of the given cell
+     *
+     * @param level the level of the cell
+     * @param cell  the identity of the cell
+     * @param index the index of the node among the boundary nodes of the cell
+     * @return the identity of the boundary node
+     */
+    public int boundaryNodeId(int level, int cell, int index) {
+        return boundaryNodes[level][firstBoundaryNodes[level][cell] + index];
+    }
+
+    /**
+     * returns the index of the given node among the boundary nodes of its cell of the given level
+     *
+     * @param level  the level
+     * @param nodeId the identity of the node
+     * @return the index of the node among the boundary nodes of its cell, or -1 if it is not a boundary node
+     */
+    public int boundaryIndex(int level, int nodeId) {
+        return boundaryIndices[level][nodeId];
+    }
+}
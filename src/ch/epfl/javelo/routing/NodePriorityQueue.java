@@ -0,0 +1,103 @@
+package ch.epfl.javelo.routing;
+
+import java.util.function.IntFunction;
+
+/**
+ * represents a priority queue of graph nodes, ordered by a float priority, that supports decrease-key
+ * and works only on primitive values (no boxing, no allocation per operation)
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public interface NodePriorityQueue {
+    /**
+     * returns whether the queue is empty
+     *
+     * @return true if the queue contains no node, false otherwise
+     */
+    boolean isEmpty();
+
+    /**
+     * returns the number of nodes in the queue
+     *
+     * @return the number of nodes in the queue
+     */
+    int size();
+
+    /**
+     * removes all the nodes from the queue
+     */
+    void clear();
+
+    /**
+     * returns whether the node with given identity is currently in the queue
+     *
+     * @param nodeId the identity of the node
+     * @return true if the node is in the queue, false otherwise
+     */
+    boolean contains(int nodeId);
+
+    /**
+     * adds the node with given identity to the queue, or lowers its priority if it is already in it
+     * (a priority greater than or equal to the current one is ignored)
+     *
+     * @param nodeId   the identity of the node
+     * @param priority the priority of the node, positive
+     */
+    void insertOrDecrease(int nodeId, float priority);
+
+    /**
+     * returns the smallest priority of the queue, without removing its node
+     *
+     * @return the smallest priority of the queue
+     * @throws java.util.NoSuchElementException if the queue is empty
+     */
+    float minPriority();
+
+    /**
+     * removes the node with the smallest priority from the queue and returns its identity
+     *
+     * @return the identity of the node with the smallest priority
+     * @throws java.util.NoSuchElementException if the queue is empty
+     */
+    int removeMin();
+
+    /**
+     * the different implementations of the queue, so that they can be selected and compared
+     */
+    enum Kind {
+        /**
+         * 4-ary heap stored in parallel primitive arrays
+         */
+        QUATERNARY_HEAP(QuaternaryHeap::new),
+        /**
+         * radix heap on the bits of the (positive) float priorities, which requires the extracted
+         * priorities to be monotone, as they are in Dijkstra and A* with a consistent heuristic
+         */
+        RADIX_HEAP(RadixHeap::new);
+
+        /**
+         * creates a queue able to hold the nodes of a graph of a given size
+         */
+        private final IntFunction<NodePriorityQueue> factory;
+
+        /**
+         * constructor of Kind
+         *
+         * @param factory creates a queue able to hold the nodes of a graph of a given size
+         */
+        Kind(IntFunction<NodePriorityQueue> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * creates a new, empty queue of this kind
+         *
+         * @param nodeCount the number of nodes of the graph (node identities go from 0 to nodeCount - 1)
+         * @return a new, empty queue of this kind
+         */
+        public NodePriorityQueue create(int nodeCount) {
+            return factory.apply(nodeCount);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * cost function applying the closures and multipliers of edge overrides to the costs of another cost function,
+ * whose cost is not evaluated for the closed edges
+ *
+ * @param base      the cost function giving the costs without overrides
+ * @param overrides the overrides of the edges
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public record OverridingCF(CostFunction base, EdgeOverrides overrides) implements CostFunction {
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        double multiplier = overrides.multiplier(edgeId);
+        return multiplier == Double.POSITIVE_INFINITY
+                ? Double.POSITIVE_INFINITY
+                : multiplier * base.costFactor(nodeId, edgeId);
+    }
+}
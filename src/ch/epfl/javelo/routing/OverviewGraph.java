@@ -0,0 +1,454 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * represents the overview of a graph: a coarse graph made of the junctions of its major roads and cycle routes,
+ * linked by arcs each standing for a chain of edges. It gives in a few milliseconds an approximate route, shown
+ * while the best route is computed.
+ * <p>
+ * A preview query reaches the closest overview nodes from the starting node, and from the ending node backward,
+ * with two small searches in the graph, then links them with a search in the overview graph. The route follows
+ * the major roads even where a shortcut would be better, so that it is only an approximation.
+ * <p>
+ * The overview nodes are stored by increasing identity of their node in the graph. Each arc takes 5 ints: its
+ * tail and head overview nodes, its cost (as float bits), and the index and number of its edges in the chains;
+ * the arcs are sorted by tail.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class OverviewGraph {
+    static final int OFFSET_TAIL = 0;
+    static final int OFFSET_HEAD = OFFSET_TAIL + 1;
+    static final int OFFSET_COST = OFFSET_HEAD + 1;
+    static final int OFFSET_CHAIN_START = OFFSET_COST + 1;
+    static final int OFFSET_CHAIN_LENGTH = OFFSET_CHAIN_START + 1;
+    static final int ARC_INTS = OFFSET_CHAIN_LENGTH + 1;
+    /**
+     * suffix of the name of the file containing the nodes
+     */
+    private static final String NODES_FILE_SUFFIX = "_overview_nodes.bin";
+    /**
+     * suffix of the name of the file containing the arcs
+     */
+    private static final String ARCS_FILE_SUFFIX = "_overview_arcs.bin";
+    /**
+     * suffix of the name of the file containing the chains of edges of the arcs
+     */
+    private static final String CHAINS_FILE_SUFFIX = "_overview_chains.bin";
+    /**
+     * number of overview nodes reached by the searches from the starting and ending nodes
+     */
+    private static final int ACCESS_NODE_COUNT = 4;
+    /**
+     * maximal number of nodes settled by the searches from the starting and ending nodes
+     */
+    private static final int MAX_ACCESS_SETTLED_NODES = 50_000;
+    /**
+     * value of an overview node index when there is no such node
+     */
+    private static final int NO_NODE = -1;
+
+    /**
+     * the graph of the overview
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the overview
+     */
+    private final CostFunction costFunction;
+    /**
+     * for each overview node, the identity of its node in the graph, by increasing identity
+     */
+    private final IntBuffer nodes;
+    /**
+     * the arcs of the overview, ARC_INTS ints per arc, sorted by tail
+     */
+    private final IntBuffer arcs;
+    /**
+     * the edges of the chains of the arcs, one after the other
+     */
+    private final IntBuffer chains;
+    /**
+     * the costs of the arcs, the ones stored with the arcs until the costs of the edges change
+     */
+    private volatile float[] arcCosts;
+    /**
+     * for each overview node, the index of its first out-arc, followed by the number of arcs
+     */
+    private final int[] firstOutArc;
+    /**
+     * the workspaces of the searches from the starting node, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> forwardWorkspaces;
+    /**
+     * the workspaces of the backward searches from the ending node, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
+    /**
+     * the workspaces of the searches in the overview graph, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> overviewWorkspaces;
+
+    /**
+     * constructor of OverviewGraph
+     *
+     * @param graph        the graph of the overview
+     * @param costFunction the cost function of the overview
+     * @param nodes        for each overview node, the identity of its node in the graph, by increasing identity
+     * @param arcs         the arcs of the overview, ARC_INTS ints per arc, sorted by tail
+     * @param chains       the edges of the chains of the arcs
+     * @throws IllegalArgumentException if there is not the same number of ints for each arc
+     */
+    OverviewGraph(Graph graph, CostFunction costFunction, IntBuffer nodes, IntBuffer arcs, IntBuffer chains) {
+        Preconditions.checkArgument(arcs.capacity() % ARC_INTS == 0);
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.nodes = nodes;
+        this.arcs = arcs;
+        this.chains = chains;
+        float[] storedCosts = new float[arcCount()];
+        for (int arc = 0; arc < storedCosts.length; ++arc)
+            storedCosts[arc] = Float.intBitsToFloat(arcInt(arc, OFFSET_COST));
+        this.arcCosts = storedCosts;
+
+        int nodeCount = nodeCount();
+        firstOutArc = new int[nodeCount + 1];
+        for (int arc = 0; arc < arcCount(); ++arc) ++firstOutArc[arcInt(arc, OFFSET_TAIL) + 1];
+        for (int node = 0; node < nodeCount; ++node) firstOutArc[node + 1] += firstOutArc[node];
+
+        this.forwardWorkspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), RouteComputer.DEFAULT_QUEUE_KIND);
+        this.backwardWorkspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), RouteComputer.DEFAULT_QUEUE_KIND);
+        this.overviewWorkspaces = SearchWorkspace.threadLocalPool(nodeCount, RouteComputer.DEFAULT_QUEUE_KIND);
+    }
+
+    /**
+     * returns the overview of the given graph stored in the files with the given name, next to the files of the
+     * graph (the files are memory-mapped)
+     *
+     * @param graph        the graph on which the overview was derived
+     * @param costFunction the cost function for which the overview was derived
+     * @param basePath     path of the directory containing the files
+     * @param name         name of the overview (typically the name of its cost function)
+     * @return the overview stored in the files
+     * @throws IOException if the files do not exist.
+     */
+    public static OverviewGraph loadFrom(Graph graph, CostFunction costFunction, Path basePath, String name)
+            throws IOException {
+        return new OverviewGraph(graph, costFunction,
+                readFile(basePath.resolve(name + NODES_FILE_SUFFIX)),
+                readFile(basePath.resolve(name + ARCS_FILE_SUFFIX)),
+                readFile(basePath.resolve(name + CHAINS_FILE_SUFFIX)));
+    }
+
+    /**
+     * computes the costs of the arcs again from their chains of edges, which must be done whenever the costs given
+     * by the cost function of the overview change, for instance when edges are closed. The files keep the costs
+     * for which the overview was derived.
+     */
+    public void updateArcCosts() {
+        float[] costs = new float[arcCount()];
+        for (int arc = 0; arc < costs.length; ++arc) {
+            int fromNodeId = graphNodeId(arcInt(arc, OFFSET_TAIL));
+            int chainStart = arcInt(arc, OFFSET_CHAIN_START);
+            double cost = 0;
+            for (int k = 0; k < arcInt(arc, OFFSET_CHAIN_LENGTH); ++k) {
+                int edgeId = chains.get(chainStart + k);
+                cost += costFunction.costFactor(fromNodeId, edgeId) * graph.edgeLength(edgeId);
+                fromNodeId = graph.edgeTargetNodeId(edgeId);
+            }
+            costs[arc] = (float) cost;
+        }
+        //the searches running meanwhile keep the costs they started with
+        arcCosts = costs;
+    }
+
+    /**
+     * writes the overview in the files with the given name, in the given directory, through memory-mapped buffers
+     *
+     * @param basePath path of the directory in which to write the files
+     * @param name     name of the overview (typically the name of its cost function)
+     * @throws IOException if the files cannot be written.
+     */
+    public void writeTo(Path basePath, String name) throws IOException {
+        writeFile(basePath.resolve(name + NODES_FILE_SUFFIX), nodes);
+        writeFile(basePath.resolve(name + ARCS_FILE_SUFFIX), arcs);
+        writeFile(basePath.resolve(name + CHAINS_FILE_SUFFIX), chains);
+    }
+
+    /**
+     * returns the number of nodes of the overview
+     *
+     * @return the number of nodes of the overview
+     */
+    public int nodeCount() {
+        return nodes.capacity();
+    }
+
+    /**
+     * returns the number of arcs of the overview
+     *
+     * @return the number of arcs of the overview
+     */
+    public int arcCount() {
+        return arcs.capacity() / ARC_INTS;
+    }
+
+    /**
+     * returns the identity in the graph of the given overview node
+     *
+     * @param node the index of the overview node
+     * @return the identity of its node in the graph
+     */
+    public int graphNodeId(int node) {
+        return nodes.get(node);
+    }
+
+    /**
+     * returns the overview node of the given node of the graph, by a binary search in the overview nodes
+     *
+     * @param nodeId the identity of a node of the graph
+     * @return the index of its overview node, or -1 if it is not in the overview
+     */
+    public int overviewNodeOf(int nodeId) {
+        int low = 0;
+        int high = nodeCount() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleNodeId = nodes.get(middle);
+            if (middleNodeId < nodeId) low = middle + 1;
+            else if (middleNodeId > nodeId) high = middle - 1;
+            else return middle;
+        }
+        return NO_NODE;
+    }
+
+    /**
+     * returns an approximate route between the given nodes, following the overview graph between the overview
+     * nodes reached from them. If the ending node is reached by the search from the starting node, the route is
+     * the best one.
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @return an approximate Route between the nodes, or null if no overview node was reached from one of them,
+     * or if the overview nodes reached are not linked
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public Route previewRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        SearchWorkspace forward = forwardWorkspaces.get();
+        int[] entries = accessSearch(forward, startNodeId, endNodeId, false);
+        List<Edge> edges = new ArrayList<>();
+        if (forward.isSettled(endNodeId)) {
+            addTreeEdges(forward, endNodeId, edges);
+            return new SingleRoute(edges);
+        }
+        SearchWorkspace backward = backwardWorkspaces.get();
+        int[] exits = accessSearch(backward, endNodeId, startNodeId, true);
+        if (entries.length == 0 || exits.length == 0) return null;
+
+        SearchWorkspace overview = overviewWorkspaces.get();
+        int exit = overviewSearch(overview, forward, backward, entries, endNodeId);
+        if (exit == NO_NODE) return null;
+
+        //the arcs of the overview route are found backward from the exit, up to the entry
+        List<Integer> routeArcs = new ArrayList<>();
+        int entry = exit;
+        while (overview.predecessorEdge(entry) != RouteComputer.NO_EDGE) {
+            routeArcs.add(overview.predecessorEdge(entry));
+            entry = overview.predecessorNode(entry);
+        }
+        Collections.reverse(routeArcs);
+
+        addTreeEdges(forward, graphNodeId(entry), edges);
+        for (int arc : routeArcs) {
+            int fromNodeId = graphNodeId(arcInt(arc, OFFSET_TAIL));
+            int chainStart = arcInt(arc, OFFSET_CHAIN_START);
+            for (int k = 0; k < arcInt(arc, OFFSET_CHAIN_LENGTH); ++k) {
+                int edgeId = chains.get(chainStart + k);
+                int toNodeId = graph.edgeTargetNodeId(edgeId);
+                edges.add(Edge.of(graph, edgeId, fromNodeId, toNodeId));
+                fromNodeId = toNodeId;
+            }
+        }
+        //in the backward tree, the predecessor of a node is the next node towards the ending node
+        for (int nodeId = graphNodeId(exit); nodeId != endNodeId; nodeId = backward.predecessorNode(nodeId))
+            edges.add(Edge.of(graph, backward.predecessorEdge(nodeId), nodeId, backward.predecessorNode(nodeId)));
+        return new SingleRoute(edges);
+    }
+
+    /**
+     * searches the best routes from (or towards, if backward) the given node, until ACCESS_NODE_COUNT overview
+     * nodes or the other node of the query are settled, or until MAX_ACCESS_SETTLED_NODES nodes are settled
+     *
+     * @param workspace   the workspace of the search
+     * @param rootNodeId  the identity of the node the search starts from
+     * @param otherNodeId the identity of the other node of the query
+     * @param backward    whether the search goes backward, along the in-edges
+     * @return the overview nodes settled by the search
+     */
+    private int[] accessSearch(SearchWorkspace workspace, int rootNodeId, int otherNodeId, boolean backward) {
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        workspace.update(rootNodeId, 0f, rootNodeId, RouteComputer.NO_EDGE);
+        queue.insertOrDecrease(rootNodeId, 0f);
+        int[] accessNodes = new int[ACCESS_NODE_COUNT];
+        int accessCount = 0;
+        int settledCount = 0;
+        while (!queue.isEmpty() && accessCount < ACCESS_NODE_COUNT && settledCount < MAX_ACCESS_SETTLED_NODES) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            ++settledCount;
+            if (N == otherNodeId) break;
+            int node = overviewNodeOf(N);
+            if (node != NO_NODE) accessNodes[accessCount++] = node;
+
+            int degree = backward ? graph.nodeInDegree(N) : graph.nodeOutDegree(N);
+            for (int i = 0; i < degree; ++i) {
+                int edgeId = backward ? graph.nodeInEdgeId(N, i) : graph.nodeOutEdgeId(N, i);
+                int Nbis = backward ? graph.edgeSourceNodeId(edgeId) : graph.edgeTargetNodeId(edgeId);
+                //the cost of an edge is always evaluated in its own direction
+                int edgeStartNodeId = backward ? Nbis : N;
+                float d = distanceN
+                        + (float) (costFunction.costFactor(edgeStartNodeId, edgeId) * graph.edgeLength(edgeId));
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
+            }
+        }
+        return Arrays.copyOf(accessNodes, accessCount);
+    }
+
+    /**
+     * searches the overview graph with A*, from all the entries at the cost of their route from the starting node,
+     * to the exit minimizing the cost of the overview route plus the cost of its route to the ending node
+     *
+     * @param overview  the workspace of the search in the overview graph
+     * @param forward   the workspace of the search from the starting node
+     * @param backward  the workspace of the search towards the ending node
+     * @param entries   the overview nodes settled by the search from the starting node
+     * @param endNodeId id of the Route's ending node
+     * @return the best exit, or NO_NODE if no exit can be reached
+     */
+    private int overviewSearch(SearchWorkspace overview, SearchWorkspace forward, SearchWorkspace backward,
+                               int[] entries, int endNodeId) {
+        overview.reset();
+        NodePriorityQueue queue = overview.queue();
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
+        float[] arcCosts = this.arcCosts;
+        float bestCost = Float.POSITIVE_INFINITY;
+        int bestExit = NO_NODE;
+        for (int entry : entries) {
+            float d = forward.distance(graphNodeId(entry));
+            overview.update(entry, d, entry, RouteComputer.NO_EDGE);
+            queue.insertOrDecrease(entry, d + distanceToTarget(entry, endE, endN));
+            if (backward.isSettled(graphNodeId(entry)) && d + backward.distance(graphNodeId(entry)) < bestCost) {
+                bestCost = d + backward.distance(graphNodeId(entry));
+                bestExit = entry;
+            }
+        }
+        while (!queue.isEmpty() && queue.minPriority() < bestCost) {
+            int N = queue.removeMin();
+            float distanceN = overview.distance(N);
+            overview.settle(N);
+            for (int arc = firstOutArc[N]; arc < firstOutArc[N + 1]; ++arc) {
+                int Nbis = arcInt(arc, OFFSET_HEAD);
+                float d = distanceN + arcCosts[arc];
+                if (d < overview.distance(Nbis) && !overview.isSettled(Nbis)) {
+                    overview.update(Nbis, d, N, arc);
+                    queue.insertOrDecrease(Nbis, d + distanceToTarget(Nbis, endE, endN));
+                    int nodeId = graphNodeId(Nbis);
+                    if (backward.isSettled(nodeId) && d + backward.distance(nodeId) < bestCost) {
+                        bestCost = d + backward.distance(nodeId);
+                        bestExit = Nbis;
+                    }
+                }
+            }
+        }
+        return bestExit;
+    }
+
+    /**
+     * adds to the given list the edges of the route from the root of the given (forward) tree to the given node
+     *
+     * @param tree   the workspace of the search from the starting node
+     * @param nodeId the identity of a node settled in the tree
+     * @param edges  the list to which the edges are added, in the order of the route
+     */
+    private void addTreeEdges(SearchWorkspace tree, int nodeId, List<Edge> edges) {
+        List<Edge> treeEdges = new ArrayList<>();
+        for (int n = nodeId; tree.predecessorEdge(n) != RouteComputer.NO_EDGE; n = tree.predecessorNode(n))
+            treeEdges.add(Edge.of(graph, tree.predecessorEdge(n), tree.predecessorNode(n), n));
+        Collections.reverse(treeEdges);
+        edges.addAll(treeEdges);
+    }
+
+    /**
+     * returns the distance between the node of the given overview node and the target point
+     *
+     * @param node    the index of the overview node
+     * @param targetE E coordinate of the target point
+     * @param targetN N coordinate of the target point
+     * @return the distance between the node and the target point
+     */
+    private float distanceToTarget(int node, double targetE, double targetN) {
+        int nodeId = graphNodeId(node);
+        return (float) Math.sqrt(Math2.squaredNorm(targetE - graph.nodeE(nodeId), targetN - graph.nodeN(nodeId)));
+    }
+
+    /**
+     * returns the int at the given offset of the given arc
+     *
+     * @param arc    the index of the arc
+     * @param offset the offset of the int in the arc
+     * @return the int at the given offset of the arc
+     */
+    private int arcInt(int arc, int offset) {
+        return arcs.get(ARC_INTS * arc + offset);
+    }
+
+    /**
+     * maps the given file, containing ints
+     *
+     * @param file the file to map
+     * @return the ints of the file
+     * @throws IOException if the file does not exist
+     */
+    private static IntBuffer readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+        }
+    }
+
+    /**
+     * writes the content of the given buffer in the given file, through a memory-mapped buffer
+     *
+     * @param file    the file to write
+     * @param content the ints to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeFile(Path file, IntBuffer content) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) content.capacity() * Integer.BYTES)
+                    .asIntBuffer()
+                    .put(content.duplicate().clear());
+        }
+    }
+}
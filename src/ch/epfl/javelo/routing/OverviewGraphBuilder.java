@@ -0,0 +1,283 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * derives the overview graph of a graph for a given cost function: only the usable edges of the major roads and
+ * of the cycle routes are kept, and the chains of nodes having exactly two neighbours through these edges are
+ * contracted, so that the overview nodes are the junctions of the kept network and each overview arc is a chain
+ * of edges between two junctions.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class OverviewGraphBuilder {
+    /**
+     * attributes of the edges kept by default: major roads and non-local cycle routes
+     */
+    public static final AttributeSet MAJOR_WAYS = AttributeSet.of(
+            HIGHWAY_TRUNK, HIGHWAY_PRIMARY, HIGHWAY_SECONDARY, ICN_YES, NCN_YES, RCN_YES);
+    /**
+     * value of the overview index of a node which is not a junction
+     */
+    private static final int NO_INDEX = -1;
+
+    /**
+     * the graph of the overview
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the overview
+     */
+    private final CostFunction costFunction;
+    /**
+     * the attributes an edge must have at least one of to be kept
+     */
+    private final AttributeSet keptAttributes;
+
+    /**
+     * constructor of OverviewGraphBuilder
+     *
+     * @param graph          the graph of the overview
+     * @param costFunction   the cost function of the overview
+     * @param keptAttributes the attributes an edge must have at least one of to be kept
+     */
+    private OverviewGraphBuilder(Graph graph, CostFunction costFunction, AttributeSet keptAttributes) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.keptAttributes = keptAttributes;
+    }
+
+    /**
+     * derives the overview graph of the given graph, keeping the major roads and the cycle routes
+     *
+     * @param graph        the graph of the overview
+     * @param costFunction the cost function of the overview
+     * @return the overview graph
+     */
+    public static OverviewGraph build(Graph graph, CostFunction costFunction) {
+        return build(graph, costFunction, MAJOR_WAYS);
+    }
+
+    /**
+     * derives the overview graph of the given graph, keeping the edges having one of the given attributes
+     *
+     * @param graph          the graph of the overview
+     * @param costFunction   the cost function of the overview
+     * @param keptAttributes the attributes an edge must have at least one of to be kept
+     * @return the overview graph
+     */
+    public static OverviewGraph build(Graph graph, CostFunction costFunction, AttributeSet keptAttributes) {
+        return new OverviewGraphBuilder(graph, costFunction, keptAttributes).build();
+    }
+
+    /**
+     * derives the overview graph of a graph for CityBikeCF and writes it next to the files of the graph
+     *
+     * @param args the path of the directory containing the graph, and optionally the name of the overview
+     *             ("citybike" by default)
+     * @throws IOException if the graph cannot be read or the overview cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "javelo-data");
+        String name = args.length > 1 ? args[1] : "citybike";
+        Graph graph = Graph.loadFrom(basePath);
+        CostFunction costFunction = new CityBikeCF(graph);
+        long start = System.nanoTime();
+        OverviewGraph overview = build(graph, costFunction);
+        System.out.printf("overview of %d nodes and %d arcs derived in %.1f s%n",
+                overview.nodeCount(), overview.arcCount(), (System.nanoTime() - start) / 1e9);
+        overview.writeTo(basePath, name);
+    }
+
+    /**
+     * derives the overview graph
+     *
+     * @return the overview graph
+     */
+    private OverviewGraph build() {
+        int nodeCount = graph.nodeCount();
+        int[] overviewIndices = new int[nodeCount];
+        int junctionCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            int neighbourCount = keptNeighbourCount(nodeId);
+            overviewIndices[nodeId] = neighbourCount > 0 && neighbourCount != 2 ? junctionCount++ : NO_INDEX;
+        }
+        int[] nodes = new int[junctionCount];
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId)
+            if (overviewIndices[nodeId] != NO_INDEX) nodes[overviewIndices[nodeId]] = nodeId;
+
+        //the arcs are produced by increasing tail, as the overview graph requires
+        IntArray arcs = new IntArray();
+        IntArray chains = new IntArray();
+        IntArray chain = new IntArray();
+        for (int tail = 0; tail < junctionCount; ++tail) {
+            int tailNodeId = nodes[tail];
+            for (int i = 0; i < graph.nodeOutDegree(tailNodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(tailNodeId, i);
+                if (!isKept(tailNodeId, edgeId)) continue;
+                chain.clear();
+                double cost = followChain(tailNodeId, edgeId, overviewIndices, chain);
+                if (chain.size() == 0) continue;
+                int headNodeId = graph.edgeTargetNodeId(chain.get(chain.size() - 1));
+                //a chain coming back to its junction is useless to a search
+                if (headNodeId == tailNodeId) continue;
+                arcs.add(tail);
+                arcs.add(overviewIndices[headNodeId]);
+                arcs.add(Float.floatToRawIntBits((float) cost));
+                arcs.add(chains.size());
+                arcs.add(chain.size());
+                for (int k = 0; k < chain.size(); ++k) chains.add(chain.get(k));
+            }
+        }
+        return new OverviewGraph(graph, costFunction, IntBuffer.wrap(nodes), IntBuffer.wrap(arcs.toArray()),
+                IntBuffer.wrap(chains.toArray()));
+    }
+
+    /**
+     * follows the chain starting with the given edge until it reaches a junction, and adds its edges to the given
+     * array
+     *
+     * @param tailNodeId      the junction the chain starts from
+     * @param firstEdgeId     the first edge of the chain
+     * @param overviewIndices for each node, its index in the overview graph, or NO_INDEX if it is not a junction
+     * @param chain           the array to which the edges of the chain are added, left empty if the chain cannot
+     *                        be followed up to a junction in the direction of its first edge
+     * @return the cost of the chain
+     */
+    private double followChain(int tailNodeId, int firstEdgeId, int[] overviewIndices, IntArray chain) {
+        double cost = 0;
+        int previousNodeId = tailNodeId;
+        int edgeId = firstEdgeId;
+        //a chain has at most as many edges as the graph has nodes, which also stops the cycles without junction
+        for (int step = 0; step < graph.nodeCount(); ++step) {
+            chain.add(edgeId);
+            cost += costFunction.costFactor(previousNodeId, edgeId) * graph.edgeLength(edgeId);
+            int nodeId = graph.edgeTargetNodeId(edgeId);
+            if (overviewIndices[nodeId] != NO_INDEX) return cost;
+            edgeId = nextEdge(nodeId, previousNodeId);
+            if (edgeId == NO_INDEX) break;
+            previousNodeId = nodeId;
+        }
+        chain.clear();
+        return cost;
+    }
+
+    /**
+     * returns the kept edge leaving the given node of a chain without going back to the previous node
+     *
+     * @param nodeId         the identity of a node having two neighbours
+     * @param previousNodeId the neighbour the chain comes from
+     * @return the identity of the edge, or NO_INDEX if there is none
+     */
+    private int nextEdge(int nodeId, int previousNodeId) {
+        for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+            int edgeId = graph.nodeOutEdgeId(nodeId, i);
+            if (graph.edgeTargetNodeId(edgeId) != previousNodeId && isKept(nodeId, edgeId)) return edgeId;
+        }
+        return NO_INDEX;
+    }
+
+    /**
+     * returns the number of distinct neighbours of the given node through kept edges, in either direction, up to 3
+     *
+     * @param nodeId the identity of the node
+     * @return the number of neighbours of the node, 3 if there are more
+     */
+    private int keptNeighbourCount(int nodeId) {
+        int first = NO_INDEX;
+        int second = NO_INDEX;
+        for (int i = 0; i < graph.nodeOutDegree(nodeId) + graph.nodeInDegree(nodeId); ++i) {
+            boolean out = i < graph.nodeOutDegree(nodeId);
+            int edgeId = out ? graph.nodeOutEdgeId(nodeId, i)
+                    : graph.nodeInEdgeId(nodeId, i - graph.nodeOutDegree(nodeId));
+            int neighbourId = out ? graph.edgeTargetNodeId(edgeId) : graph.edgeSourceNodeId(edgeId);
+            if (neighbourId == nodeId || !isKept(out ? nodeId : neighbourId, edgeId)
+                    || neighbourId == first || neighbourId == second) continue;
+            if (first == NO_INDEX) first = neighbourId;
+            else if (second == NO_INDEX) second = neighbourId;
+            else return 3;
+        }
+        return first == NO_INDEX ? 0 : second == NO_INDEX ? 1 : 2;
+    }
+
+    /**
+     * returns whether the given edge is kept in the overview: it must have one of the kept attributes, and a
+     * finite cost in its own direction
+     *
+     * @param nodeId the identity of the node the edge starts from
+     * @param edgeId the identity of the edge
+     * @return true if the edge is kept
+     */
+    private boolean isKept(int nodeId, int edgeId) {
+        return graph.edgeAttributes(edgeId).intersects(keptAttributes)
+                && Double.isFinite(costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId));
+    }
+
+    /**
+     * a growable array of ints
+     */
+    private static final class IntArray {
+        /**
+         * the values, followed by unused space
+         */
+        private int[] values = new int[16];
+        /**
+         * the number of values
+         */
+        private int size;
+
+        /**
+         * adds the given value at the end of the array
+         *
+         * @param value the value
+         */
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        /**
+         * returns the value at the given index
+         *
+         * @param index the index of the value
+         * @return the value at the given index
+         */
+        int get(int index) {
+            return values[index];
+        }
+
+        /**
+         * returns the number of values
+         *
+         * @return the number of values
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * removes all the values
+         */
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * returns the values of the array
+         *
+         * @return a new array containing the values
+         */
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.*;
+
+/**
+ * computes the Pareto frontier of the routes between two nodes for two criteria: their cost, given by the cost
+ * function, and their ascent, given by the elevation gains of their edges. A route belongs to the frontier if no
+ * other route is both cheaper and less steep.
+ * <p>
+ * The routes are found by a multi-criteria label-setting search: each label is a route from the starting node to
+ * a node, and a node keeps all its labels that are not dominated by another one. Labels are expanded by
+ * increasing cost plus the straight distance to the ending node (A* bound), so that the cheapest route reaches
+ * the ending node first. Labels are then pruned when their bound is above the maximal stretch of the cheapest
+ * route, when they are dominated by a route already found, or when they are epsilon-dominated, a label being
+ * dropped if another one is as cheap and climbs at most (1 + epsilon) times as much, plus ASCENT_RESOLUTION.
+ * The cost of the routes is therefore exact, and their ascent approximate.
+ * <p>
+ * The labels of a query are stored in primitive arrays, reused by the following queries of the same thread.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class ParetoRouteComputer {
+    /**
+     * relative tolerance on the ascent of the labels, used when none is specified
+     */
+    public static final float DEFAULT_EPSILON = 0.02f;
+    /**
+     * maximal extra cost of a route of the frontier relatively to the cheapest route, used when none is specified
+     */
+    public static final float DEFAULT_MAX_STRETCH = 0.5f;
+    /**
+     * absolute tolerance on the ascent of the labels, in meters, below which two ascents are considered equal
+     */
+    private static final float ASCENT_RESOLUTION = 1f;
+    /**
+     * value of a label identity when there is no such label
+     */
+    private static final int NO_LABEL = -1;
+    /**
+     * initial capacity of the arrays of the labels and of their queue
+     */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * the graph of the routes
+     */
+    private final Graph graph;
+    /**
+     * the cost function of the routes
+     */
+    private final CostFunction costFunction;
+    /**
+     * relative tolerance on the ascent of the labels
+     */
+    private final float epsilon;
+    /**
+     * maximal extra cost of a route of the frontier, relatively to the cheapest route
+     */
+    private final float maxStretch;
+    /**
+     * the labels of the queries, one store per thread
+     */
+    private final ThreadLocal<Labels> labelStores;
+
+    /**
+     * constructor of ParetoRouteComputer, using the default tolerance and stretch
+     *
+     * @param graph        the graph of the routes
+     * @param costFunction the cost function of the routes
+     */
+    public ParetoRouteComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, DEFAULT_EPSILON, DEFAULT_MAX_STRETCH);
+    }
+
+    /**
+     * constructor of ParetoRouteComputer
+     *
+     * @param graph        the graph of the routes
+     * @param costFunction the cost function of the routes
+     * @param epsilon      relative tolerance on the ascent of the labels (0 to only keep the tolerance of ASCENT_RESOLUTION)
+     * @param maxStretch   maximal extra cost of a route of the frontier, relatively to the cheapest route
+     * @throws IllegalArgumentException if the tolerance or the stretch is negative
+     */
+    public ParetoRouteComputer(Graph graph, CostFunction costFunction, float epsilon, float maxStretch) {
+        Preconditions.checkArgument(epsilon >= 0 && maxStretch >= 0);
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.epsilon = epsilon;
+        this.maxStretch = maxStretch;
+        this.labelStores = ThreadLocal.withInitial(() -> new Labels(graph.nodeCount()));
+    }
+
+    /**
+     * returns the routes of the Pareto frontier between the given nodes, by increasing cost and therefore by
+     * decreasing ascent: the first one is the cheapest route, the last one the least steep of the routes whose
+     * cost is at most the maximal stretch of the cheapest one
+     *
+     * @param startNodeId id of the starting node
+     * @param endNodeId   id of the ending node
+     * @return the routes of the frontier, or an empty list if there is no route
+     * @throws IllegalArgumentException if the starting node is the same as the ending one
+     */
+    public List<SingleRoute> paretoRoutesBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        Labels labels = labelStores.get();
+        labels.clear();
+        //coordinates of the endNode, read once for all the evaluations of the bound
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
+
+        int rootLabel = labels.add(startNodeId, 0f, 0f, NO_LABEL, RouteComputer.NO_EDGE);
+        labels.push(rootLabel, distanceToTarget(startNodeId, endE, endN));
+        float maxBound = Float.POSITIVE_INFINITY;
+        while (!labels.isQueueEmpty() && labels.minKey() <= maxBound) {
+            int label = labels.pop();
+            if (labels.isDead(label)) continue;
+            int N = labels.node(label);
+            if (N == endNodeId) {
+                //the first label reaching the endNode is the cheapest route, which gives the extent of the search
+                if (maxBound == Float.POSITIVE_INFINITY) maxBound = labels.cost(label) * (1 + maxStretch);
+                continue;
+            }
+            float costN = labels.cost(label);
+            float ascentN = labels.ascent(label);
+            for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                int edgeId = graph.nodeOutEdgeId(N, i);
+                float edgeCost = (float) (costFunction.costFactor(N, edgeId) * graph.edgeLength(edgeId));
+                if (edgeCost == Float.POSITIVE_INFINITY) continue;
+                int Nbis = graph.edgeTargetNodeId(edgeId);
+                float cost = costN + edgeCost;
+                float ascent = ascentN + (float) graph.edgeElevationGain(edgeId);
+                float bound = cost + distanceToTarget(Nbis, endE, endN);
+                if (bound > maxBound
+                        || isDominated(labels, endNodeId, bound, ascent)
+                        || isDominated(labels, Nbis, cost, ascent)) continue;
+                removeDominated(labels, Nbis, cost, ascent);
+                labels.push(labels.add(Nbis, cost, ascent, label, edgeId), bound);
+            }
+        }
+        return frontier(labels, endNodeId, maxBound);
+    }
+
+    /**
+     * returns whether a route of the given cost and ascent is epsilon-dominated by one of the labels of the given
+     * node, that is whether one of them is at most as expensive and climbs at most as much, up to the tolerance
+     *
+     * @param labels the labels of the query
+     * @param nodeId the identity of the node
+     * @param cost   the cost of the route
+     * @param ascent the ascent of the route
+     * @return true if the route is dominated by a label of the node
+     */
+    private boolean isDominated(Labels labels, int nodeId, float cost, float ascent) {
+        float maxAscent = ascent * (1 + epsilon) + ASCENT_RESOLUTION;
+        for (int label = labels.firstLabel(nodeId); label != NO_LABEL; label = labels.nextLabel(label)) {
+            if (labels.cost(label) <= cost && labels.ascent(label) <= maxAscent) return true;
+        }
+        return false;
+    }
+
+    /**
+     * removes from the given node the labels strictly dominated by a route of the given cost and ascent
+     *
+     * @param labels the labels of the query
+     * @param nodeId the identity of the node
+     * @param cost   the cost of the route
+     * @param ascent the ascent of the route
+     */
+    private static void removeDominated(Labels labels, int nodeId, float cost, float ascent) {
+        int previous = NO_LABEL;
+        for (int label = labels.firstLabel(nodeId); label != NO_LABEL; label = labels.nextLabel(label)) {
+            if (cost <= labels.cost(label) && ascent <= labels.ascent(label)) {
+                labels.remove(nodeId, previous, label);
+            } else {
+                previous = label;
+            }
+        }
+    }
+
+    /**
+     * builds the routes of the labels of the ending node, keeping only the ones not dominated by another one
+     *
+     * @param labels    the labels of the query
+     * @param endNodeId id of the ending node
+     * @param maxCost   the maximal cost of a route of the frontier, the labels reaching the ending node before the
+     *                  cheapest one was expanded being possibly more expensive
+     * @return the routes of the frontier, by increasing cost
+     */
+    private List<SingleRoute> frontier(Labels labels, int endNodeId, float maxCost) {
+        List<Integer> endLabels = new ArrayList<>();
+        for (int label = labels.firstLabel(endNodeId); label != NO_LABEL; label = labels.nextLabel(label))
+            endLabels.add(label);
+        endLabels.sort(Comparator.<Integer>comparingDouble(labels::cost).thenComparingDouble(labels::ascent));
+
+        List<SingleRoute> routes = new ArrayList<>();
+        float minAscent = Float.POSITIVE_INFINITY;
+        for (int label : endLabels) {
+            if (labels.cost(label) > maxCost || labels.ascent(label) >= minAscent) continue;
+            minAscent = labels.ascent(label);
+            List<Edge> edges = new ArrayList<>();
+            for (int l = label; labels.parent(l) != NO_LABEL; l = labels.parent(l)) {
+                edges.add(Edge.of(graph, labels.edge(l), labels.node(labels.parent(l)), labels.node(l)));
+            }
+            //reverse the list of edges because they were added from the last one
+            Collections.reverse(edges);
+            routes.add(new SingleRoute(edges));
+        }
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * returns the distance between the point corresponding to the node with given id and the target point
+     *
+     * @param nodeId  id of the node
+     * @param targetE E coordinate of the target point
+     * @param targetN N coordinate of the target point
+     * @return the distance between the node and the target point
+     */
+    private float distanceToTarget(int nodeId, double targetE, double targetN) {
+        return (float) Math.sqrt(Math2.squaredNorm(targetE - graph.nodeE(nodeId), targetN - graph.nodeN(nodeId)));
+    }
+
+    /**
+     * the labels of a query, stored in growable primitive arrays, with the list of the living labels of each
+     * node and the queue of the labels to expand, prioritized by their bound (a binary heap without decrease-key,
+     * the removed labels being skipped when they come out of it)
+     */
+    private static final class Labels {
+        /**
+         * the first living label of each node, NO_LABEL if there is none
+         */
+        private final int[] firstLabels;
+        /**
+         * for each label, the identity of its node
+         */
+        private int[] nodes;
+        /**
+         * for each label, the label its route comes from, NO_LABEL for the root
+         */
+        private int[] parents;
+        /**
+         * for each label, the identity of the edge from its parent
+         */
+        private int[] edges;
+        /**
+         * for each living label, the next living label of the same node, NO_LABEL if it is the last one
+         */
+        private int[] nextLabels;
+        /**
+         * for each label, the cost of its route
+         */
+        private float[] costs;
+        /**
+         * for each label, the ascent of its route, in meters
+         */
+        private float[] ascents;
+        /**
+         * for each label, whether it has been removed because a better one reached its node
+         */
+        private boolean[] dead;
+        /**
+         * the number of labels
+         */
+        private int count;
+        /**
+         * the labels of the queue, as a binary heap
+         */
+        private int[] heapLabels;
+        /**
+         * the keys of the labels of the queue, in the same order
+         */
+        private float[] heapKeys;
+        /**
+         * the number of labels in the queue
+         */
+        private int heapSize;
+
+        /**
+         * constructor of Labels
+         *
+         * @param nodeCount the number of nodes of the graph
+         */
+        Labels(int nodeCount) {
+            firstLabels = new int[nodeCount];
+            Arrays.fill(firstLabels, NO_LABEL);
+            nodes = new int[INITIAL_CAPACITY];
+            parents = new int[INITIAL_CAPACITY];
+            edges = new int[INITIAL_CAPACITY];
+            nextLabels = new int[INITIAL_CAPACITY];
+            costs = new float[INITIAL_CAPACITY];
+            ascents = new float[INITIAL_CAPACITY];
+            dead = new boolean[INITIAL_CAPACITY];
+            heapLabels = new int[INITIAL_CAPACITY];
+            heapKeys = new float[INITIAL_CAPACITY];
+        }
+
+        /**
+         * removes all the labels, only resetting the nodes that have some
+         */
+        void clear() {
+            for (int label = 0; label < count; ++label) firstLabels[nodes[label]] = NO_LABEL;
+            count = 0;
+            heapSize = 0;
+        }
+
+        /**
+         * adds a living label at the head of the list of its node
+         *
+         * @param nodeId the identity of the node of the label
+         * @param cost   the cost of the route of the label
+         * @param ascent the ascent of the route of the label
+         * @param parent the label the route comes from, NO_LABEL for the root
+         * @param edgeId the identity of the edge from the parent
+         * @return the identity of the new label
+         */
+        int add(int nodeId, float cost, float ascent, int parent, int edgeId) {
+            if (count == nodes.length) {
+                int capacity = 2 * count;
+                nodes = Arrays.copyOf(nodes, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                edges = Arrays.copyOf(edges, capacity);
+                nextLabels = Arrays.copyOf(nextLabels, capacity);
+                costs = Arrays.copyOf(costs, capacity);
+                ascents = Arrays.copyOf(ascents, capacity);
+                dead = Arrays.copyOf(dead, capacity);
+            }
+            int label = count++;
+            nodes[label] = nodeId;
+            costs[label] = cost;
+            ascents[label] = ascent;
+            parents[label] = parent;
+            edges[label] = edgeId;
+            dead[label] = false;
+            nextLabels[label] = firstLabels[nodeId];
+            firstLabels[nodeId] = label;
+            return label;
+        }
+
+        /**
+         * removes a label from the list of its node, and marks it as dead so that it is never expanded
+         *
+         * @param nodeId   the identity of the node of the label
+         * @param previous the label preceding it in the list, NO_LABEL if it is the first one
+         * @param label    the label to remove
+         */
+        void remove(int nodeId, int previous, int label) {
+            if (previous == NO_LABEL) firstLabels[nodeId] = nextLabels[label];
+            else nextLabels[previous] = nextLabels[label];
+            dead[label] = true;
+        }
+
+        /**
+         * returns the first living label of the given node
+         *
+         * @param nodeId the identity of the node
+         * @return its first living label, NO_LABEL if it has none
+         */
+        int firstLabel(int nodeId) {
+            return firstLabels[nodeId];
+        }
+
+        /**
+         * returns the living label following the given one in the list of its node
+         *
+         * @param label the label
+         * @return the next living label, NO_LABEL if it is the last one
+         */
+        int nextLabel(int label) {
+            return nextLabels[label];
+        }
+
+        /**
+         * returns the node of the given label
+         *
+         * @param label the label
+         * @return the identity of its node
+         */
+        int node(int label) {
+            return nodes[label];
+        }
+
+        /**
+         * returns the label the route of the given label comes from
+         *
+         * @param label the label
+         * @return its parent label, NO_LABEL for the root
+         */
+        int parent(int label) {
+            return parents[label];
+        }
+
+        /**
+         * returns the edge from the parent of the given label
+         *
+         * @param label the label
+         * @return the identity of the edge
+         */
+        int edge(int label) {
+            return edges[label];
+        }
+
+        /**
+         * returns the cost of the route of the given label
+         *
+         * @param label the label
+         * @return the cost of its route
+         */
+        float cost(int label) {
+            return costs[label];
+        }
+
+        /**
+         * returns the ascent of the route of the given label
+         *
+         * @param label the label
+         * @return the ascent of its route, in meters
+         */
+        float ascent(int label) {
+            return ascents[label];
+        }
+
+        /**
+         * returns whether the given label has been removed
+         *
+         * @param label the label
+         * @return true if it has been removed
+         */
+        boolean isDead(int label) {
+            return dead[label];
+        }
+
+        /**
+         * adds a label to the queue
+         *
+         * @param label the label
+         * @param key   its priority, the smallest one coming out first
+         */
+        void push(int label, float key) {
+            if (heapSize == heapLabels.length) {
+                heapLabels = Arrays.copyOf(heapLabels, 2 * heapSize);
+                heapKeys = Arrays.copyOf(heapKeys, 2 * heapSize);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heapKeys[parent] <= key) break;
+                heapLabels[i] = heapLabels[parent];
+                heapKeys[i] = heapKeys[parent];
+                i = parent;
+            }
+            heapLabels[i] = label;
+            heapKeys[i] = key;
+        }
+
+        /**
+         * removes the label of smallest key from the queue
+         *
+         * @return the label of smallest key
+         */
+        int pop() {
+            int min = heapLabels[0];
+            --heapSize;
+            int label = heapLabels[heapSize];
+            float key = heapKeys[heapSize];
+            int i = 0;
+            while (2 * i + 1 < heapSize) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) ++child;
+                if (key <= heapKeys[child]) break;
+                heapLabels[i] = heapLabels[child];
+                heapKeys[i] = heapKeys[child];
+                i = child;
+            }
+            heapLabels[i] = label;
+            heapKeys[i] = key;
+            return min;
+        }
+
+        /**
+         * returns the smallest key of the queue, which must not be empty
+         *
+         * @return the smallest key
+         */
+        float minKey() {
+            return heapKeys[0];
+        }
+
+        /**
+         * returns whether the queue is empty
+         *
+         * @return true if the queue is empty
+         */
+        boolean isQueueEmpty() {
+            return heapSize == 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * 4-ary min-heap of nodes stored in parallel int/float arrays, with decrease-key
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+final class QuaternaryHeap implements NodePriorityQueue {
+    /**
+     * number of children of each element of the heap
+     */
+    private static final int ARITY = 4;
+    /**
+     * log2 of ARITY, used to compute the index of a parent
+     */
+    private static final int ARITY_SHIFT = 2;
+    /**
+     * initial capacity of the heap arrays, which grow when needed
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * identities of the nodes, in heap order
+     */
+    private int[] nodes;
+    /**
+     * priorities of the nodes, in heap order
+     */
+    private float[] priorities;
+    /**
+     * for each node identity, its index in the heap arrays. The value is only meaningful if
+     * nodes[positions[nodeId]] == nodeId, which is why this array never has to be cleared
+     */
+    private final int[] positions;
+    /**
+     * number of nodes in the heap
+     */
+    private int size;
+
+    /**
+     * constructor of QuaternaryHeap
+     *
+     * @param nodeCount the number of nodes of the graph
+     */
+    QuaternaryHeap(int nodeCount) {
+        int capacity = Math.max(1, Math.min(INITIAL_CAPACITY, nodeCount));
+        this.nodes = new int[capacity];
+        this.priorities = new float[capacity];
+        this.positions = new int[nodeCount];
+        this.size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public boolean contains(int nodeId) {
+        int position = positions[nodeId];
+        return position < size && nodes[position] == nodeId;
+    }
+
+    @Override
+    public void insertOrDecrease(int nodeId, float priority) {
+        if (contains(nodeId)) {
+            int position = positions[nodeId];
+            if (priority < priorities[position]) siftUp(position, nodeId, priority);
+        } else {
+            if (size == nodes.length) grow();
+            siftUp(size++, nodeId, priority);
+        }
+    }
+
+    @Override
+    public float minPriority() {
+        if (size == 0) throw new NoSuchElementException();
+        return priorities[0];
+    }
+
+    @Override
+    public int removeMin() {
+        if (size == 0) throw new NoSuchElementException();
+        int minNodeId = nodes[0];
+        --size;
+        if (size > 0) siftDown(0, nodes[size], priorities[size]);
+        return minNodeId;
+    }
+
+    /**
+     * moves the given node up from the given index until the heap order is restored
+     *
+     * @param index    the index at which the node is (virtually) placed
+     * @param nodeId   the identity of the node
+     * @param priority the priority of the node
+     */
+    private void siftUp(int index, int nodeId, float priority) {
+        while (index > 0) {
+            int parent = (index - 1) >> ARITY_SHIFT;
+            if (priorities[parent] <= priority) break;
+            place(index, nodes[parent], priorities[parent]);
+            index = parent;
+        }
+        place(index, nodeId, priority);
+    }
+
+    /**
+     * moves the given node down from the given index until the heap order is restored
+     *
+     * @param index    the index at which the node is (virtually) placed
+     * @param nodeId   the identity of the node
+     * @param priority the priority of the node
+     */
+    private void siftDown(int index, int nodeId, float priority) {
+        while (true) {
+            int firstChild = (index << ARITY_SHIFT) + 1;
+            if (firstChild >= size) break;
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int minChild = firstChild;
+            for (int child = firstChild + 1; child < lastChild; ++child)
+                if (priorities[child] < priorities[minChild]) minChild = child;
+            if (priorities[minChild] >= priority) break;
+            place(index, nodes[minChild], priorities[minChild]);
+            index = minChild;
+        }
+        place(index, nodeId, priority);
+    }
+
+    /**
+     * stores the given node at the given index of the heap arrays
+     *
+     * @param index    the index in the heap arrays
+     * @param nodeId   the identity of the node
+     * @param priority the priority of the node
+     */
+    private void place(int index, int nodeId, float priority) {
+        nodes[index] = nodeId;
+        priorities[index] = priority;
+        positions[nodeId] = index;
+    }
+
+    /**
+     * doubles the capacity of the heap arrays (never beyond the number of nodes of the graph)
+     */
+    private void grow() {
+        int newCapacity = Math.min(Math.max(1, positions.length), nodes.length * 2);
+        nodes = Arrays.copyOf(nodes, newCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+    }
+}
@@ -0,0 +1,201 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * radix heap of nodes with decrease-key. The priorities, which are positive floats, are quantized to
+ * their IEEE 754 bit patterns, which are ordered exactly like the floats themselves, so no precision is lost.
+ * <p>
+ * As any radix heap, it requires the priorities to be monotone: a priority smaller than the last extracted one
+ * is raised to it. With the A* heuristic of RouteComputer, this only happens because of rounding errors.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+final class RadixHeap implements NodePriorityQueue {
+    /**
+     * number of buckets: one for the keys equal to the last extracted key, and one per bit of a positive int
+     */
+    private static final int BUCKET_COUNT = Integer.SIZE;
+    /**
+     * initial capacity of each bucket, which grows when needed
+     */
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+    /**
+     * for each bucket, the identities of its nodes
+     */
+    private final int[][] bucketNodes;
+    /**
+     * for each bucket, the keys of its nodes
+     */
+    private final int[][] bucketKeys;
+    /**
+     * for each bucket, the number of nodes it contains
+     */
+    private final int[] bucketSizes;
+    /**
+     * for each node identity, the bucket containing it. Only meaningful if the node is really there
+     * (see contains), which is why this array never has to be cleared
+     */
+    private final int[] bucketOf;
+    /**
+     * for each node identity, its index in its bucket
+     */
+    private final int[] slotOf;
+    /**
+     * last extracted key, all the keys in the heap are greater than or equal to it
+     */
+    private int lastKey;
+    /**
+     * number of nodes in the heap
+     */
+    private int size;
+
+    /**
+     * constructor of RadixHeap
+     *
+     * @param nodeCount the number of nodes of the graph
+     */
+    RadixHeap(int nodeCount) {
+        this.bucketNodes = new int[BUCKET_COUNT][INITIAL_BUCKET_CAPACITY];
+        this.bucketKeys = new int[BUCKET_COUNT][INITIAL_BUCKET_CAPACITY];
+        this.bucketSizes = new int[BUCKET_COUNT];
+        this.bucketOf = new int[nodeCount];
+        this.slotOf = new int[nodeCount];
+        this.lastKey = 0;
+        this.size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int b = 0; b < BUCKET_COUNT; ++b) bucketSizes[b] = 0;
+        lastKey = 0;
+        size = 0;
+    }
+
+    @Override
+    public boolean contains(int nodeId) {
+        int bucket = bucketOf[nodeId];
+        int slot = slotOf[nodeId];
+        return slot < bucketSizes[bucket] && bucketNodes[bucket][slot] == nodeId;
+    }
+
+    @Override
+    public void insertOrDecrease(int nodeId, float priority) {
+        int key = Math.max(keyOf(priority), lastKey);
+        if (contains(nodeId)) {
+            int bucket = bucketOf[nodeId];
+            if (key >= bucketKeys[bucket][slotOf[nodeId]]) return;
+            removeFromBucket(bucket, slotOf[nodeId]);
+            --size;
+        }
+        addToBucket(bucketIndex(key), nodeId, key);
+        ++size;
+    }
+
+    @Override
+    public float minPriority() {
+        if (size == 0) throw new NoSuchElementException();
+        refillFirstBucket();
+        return Float.intBitsToFloat(lastKey);
+    }
+
+    @Override
+    public int removeMin() {
+        if (size == 0) throw new NoSuchElementException();
+        refillFirstBucket();
+        int nodeId = bucketNodes[0][--bucketSizes[0]];
+        --size;
+        return nodeId;
+    }
+
+    /**
+     * makes sure that the first bucket (whose keys are all equal to the last extracted one) is not empty,
+     * by taking the first non-empty bucket, advancing the last key to its minimum and redistributing it.
+     * The heap must not be empty.
+     */
+    private void refillFirstBucket() {
+        if (bucketSizes[0] > 0) return;
+        int bucket = 1;
+        while (bucketSizes[bucket] == 0) ++bucket;
+
+        int[] nodes = bucketNodes[bucket];
+        int[] keys = bucketKeys[bucket];
+        int count = bucketSizes[bucket];
+        int minKey = keys[0];
+        for (int i = 1; i < count; ++i) minKey = Math.min(minKey, keys[i]);
+        lastKey = minKey;
+
+        //every key of the bucket now goes to a bucket of smaller index
+        bucketSizes[bucket] = 0;
+        for (int i = 0; i < count; ++i) addToBucket(bucketIndex(keys[i]), nodes[i], keys[i]);
+    }
+
+    /**
+     * returns the index of the bucket in which a key must be stored, given the last extracted key
+     *
+     * @param key the key, greater than or equal to lastKey
+     * @return the index of the bucket in which the key must be stored
+     */
+    private int bucketIndex(int key) {
+        return key == lastKey ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(key ^ lastKey);
+    }
+
+    /**
+     * appends a node to a bucket, growing it if needed
+     *
+     * @param bucket the index of the bucket
+     * @param nodeId the identity of the node
+     * @param key    the key of the node
+     */
+    private void addToBucket(int bucket, int nodeId, int key) {
+        int slot = bucketSizes[bucket]++;
+        if (slot == bucketNodes[bucket].length) {
+            bucketNodes[bucket] = Arrays.copyOf(bucketNodes[bucket], slot * 2);
+            bucketKeys[bucket] = Arrays.copyOf(bucketKeys[bucket], slot * 2);
+        }
+        bucketNodes[bucket][slot] = nodeId;
+        bucketKeys[bucket][slot] = key;
+        bucketOf[nodeId] = bucket;
+        slotOf[nodeId] = slot;
+    }
+
+    /**
+     * removes the node at the given slot of a bucket, by moving the last node of the bucket in its place
+     *
+     * @param bucket the index of the bucket
+     * @param slot   the slot of the node to remove
+     */
+    private void removeFromBucket(int bucket, int slot) {
+        int last = --bucketSizes[bucket];
+        if (slot != last) {
+            int movedNodeId = bucketNodes[bucket][last];
+            bucketNodes[bucket][slot] = movedNodeId;
+            bucketKeys[bucket][slot] = bucketKeys[bucket][last];
+            slotOf[movedNodeId] = slot;
+        }
+    }
+
+    /**
+     * returns the key corresponding to a priority: the bits of the float, which (for positive floats)
+     * are ordered like the floats themselves
+     *
+     * @param priority the priority
+     * @return the key corresponding to the priority
+     */
+    private static int keyOf(float priority) {
+        return priority > 0 ? Float.floatToRawIntBits(priority) : 0;
+    }
+}
@@ -1,12 +1,19 @@
 package ch.epfl.javelo.routing;
 
+import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.data.Graph;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 
 /**
  * represents the profile of a single or multiple itinerary
+ * <p>
+ * A RouteComputer can be used by several threads at once: each thread gets its own search workspaces, and the
+ * graph is only read. The incremental queries share a single retained tree, so that they run one at a time.
  *
  * @author Ambroise Aigueperse (341890)
  * @author Louis Roche (345620)
@@ -20,16 +27,110 @@ final public class RouteComputer {
      * the costFunction used to calculate the shortest Route
      */
     private final CostFunction costFunction;
+    /**
+     * the search workspaces, one per thread, reused from one query to the other
+     */
+    private final ThreadLocal<SearchWorkspace> workspaces;
+    /**
+     * the search workspaces of the backward searches of bidirectional queries, one per thread
+     */
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
+    /**
+     * the kind of priority queue used to explore the graph
+     */
+    private final NodePriorityQueue.Kind queueKind;
+    /**
+     * the connected components of the graph for the costfunction, used to reject at once the pairs of nodes
+     * between which there is no route, or null if they are not known
+     */
+    private final ConnectedComponents components;
+    /**
+     * the retained tree of the incremental queries: the workspace of a Dijkstra search from retainedSourceNodeId,
+     * whose settled nodes and queue are kept from one query to the other, or null if there is none
+     */
+    private SearchWorkspace retainedTree;
+    /**
+     * the source of the retained tree
+     */
+    private int retainedSourceNodeId;
+    /**
+     * the number of nodes settled in the retained tree
+     */
+    private int retainedSettledCount;
+    /**
+     * the trace recording the nodes settled by the searches, or null if they are not recorded
+     */
+    private volatile SearchTrace trace;
+    /**
+     * the kind of priority queue used when none is specified
+     */
+    static final NodePriorityQueue.Kind DEFAULT_QUEUE_KIND = NodePriorityQueue.Kind.QUATERNARY_HEAP;
+    /**
+     * number of landmarks used by a query, among the ones giving the best bounds between its nodes
+     */
+    private static final int ACTIVE_LANDMARK_COUNT = 4;
+    /**
+     * predecessor edge of the starting node, which has none
+     */
+    static final int NO_EDGE = -1;
+    /**
+     * value of a node identity when there is no such node
+     */
+    private static final int NO_NODE = -1;
+    /**
+     * maximal number of nodes settled in the retained tree, above which it is discarded to bound its memory
+     */
+    private static final int MAX_RETAINED_SETTLED_NODES = 1 << 21;
 
     /**
-     * constructor of RouteComputer
+     * constructor of RouteComputer, using the default kind of priority queue
      *
      * @param graph        the graph from which the route will be created
      * @param costFunction the costFunction used to calculate the shortest Route
      */
     public RouteComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, DEFAULT_QUEUE_KIND);
+    }
+
+    /**
+     * constructor of RouteComputer
+     *
+     * @param graph        the graph from which the route will be created
+     * @param costFunction the costFunction used to calculate the shortest Route
+     * @param queueKind    the kind of priority queue used to explore the graph
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, NodePriorityQueue.Kind queueKind) {
+        this(graph, costFunction, queueKind, null);
+    }
+
+    /**
+     * constructor of RouteComputer, using the default kind of priority queue and the given connected components
+     * to answer at once the queries between nodes that cannot be linked
+     *
+     * @param graph        the graph from which the route will be created
+     * @param costFunction the costFunction used to calculate the shortest Route
+     * @param components   the connected components of the graph, computed for the same costfunction
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, ConnectedComponents components) {
+        this(graph, costFunction, DEFAULT_QUEUE_KIND, components);
+    }
+
+    /**
+     * constructor of RouteComputer
+     *
+     * @param graph        the graph from which the route will be created
+     * @param costFunction the costFunction used to calculate the shortest Route
+     * @param queueKind    the kind of priority queue used to explore the graph
+     * @param components   the connected components of the graph computed for the same costfunction, or null
+     */
+    private RouteComputer(Graph graph, CostFunction costFunction, NodePriorityQueue.Kind queueKind,
+                          ConnectedComponents components) {
         this.graph = graph;
+        this.components = components;
         this.costFunction = costFunction;
+        this.workspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), queueKind);
+        this.backwardWorkspaces = SearchWorkspace.threadLocalPool(graph.nodeCount(), queueKind);
+        this.queueKind = queueKind;
     }
 
     /**
@@ -41,106 +142,700 @@ final public class RouteComputer {
      * @throws IllegalArgumentException if the starting node is the same as the destination
      */
     public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        return bestRouteBetween(startNodeId, endNodeId, SearchOptions.UNLIMITED).route();
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes, weighted with the costfunction, with a search that can be
+     * cancelled: the given condition is checked regularly, and the search stops as soon as it is true
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @param cancelled   the condition under which the search must stop, checked by the thread of the search
+     * @return the shortest Route between 2 nodes, weighted with the costfunction, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     * @throws CancellationException    if the search was cancelled before its end
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId, BooleanSupplier cancelled) {
+        SearchResult result = bestRouteBetween(startNodeId, endNodeId,
+                SearchOptions.UNLIMITED.withCancellation(cancelled));
+        if (result.status() == SearchResult.Status.CANCELLED) throw new CancellationException();
+        return result.route();
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes, weighted with the costfunction, with a search bounded by the
+     * given options: it stops as soon as it settled the maximal number of nodes, reached its deadline or was
+     * cancelled, and reports its progress to the consumer of the options
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @param options     the limits of the search
+     * @return the result of the search, containing the shortest Route if it was found
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public SearchResult bestRouteBetween(int startNodeId, int endNodeId, SearchOptions options) {
         Preconditions.checkArgument(startNodeId != endNodeId);
+        //coordinates of the endNode, read once for all the evaluations of the heuristic
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
+        return search(startNodeId, endNodeId, nodeId -> distanceToTarget(nodeId, endE, endN), null, options);
+    }
 
-        //record containing both the node identity and the super distance
-        // (sum of distance found by Dijkstra and distance between the node and the endNode)
-        record WeightedNode(int nodeId, float distance)
-                implements Comparable<WeightedNode> {
-            /**
-             * {@inheritDoc}
-             * @param that the WeightedNode that is compared to the current WeightedNode
-             */
-            @Override
-            public int compareTo(WeightedNode that) {
-                return Float.compare(this.distance, that.distance);
+    /**
+     * finds the shortest Route between 2 nodes, weighted with the costfunction, reusing the tree of the previous
+     * incremental query if it had the same starting node: if the ending node is already settled in it, the route
+     * is found at once, otherwise its Dijkstra search goes on from its saved queue until the ending node is
+     * settled. The tree is kept for the next incremental query, unless it grows above MAX_RETAINED_SETTLED_NODES,
+     * in which case it is discarded and the route is found by a normal query.
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @return the shortest Route between 2 nodes, weighted with the costfunction, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public Route incrementalBestRouteBetween(int startNodeId, int endNodeId) {
+        return incrementalBestRouteBetween(startNodeId, endNodeId, SearchOptions.UNLIMITED.cancellation());
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes like incrementalBestRouteBetween(int, int), with a search that can
+     * be cancelled. A cancelled search leaves the retained tree valid, so that the nodes it settled are reused.
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @param cancelled   the condition under which the search must stop, checked by the thread of the search
+     * @return the shortest Route between 2 nodes, weighted with the costfunction, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     * @throws CancellationException    if the search was cancelled before its end
+     */
+    public synchronized Route incrementalBestRouteBetween(int startNodeId, int endNodeId,
+                                                          BooleanSupplier cancelled) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        if (isSurelyUnreachable(startNodeId, endNodeId)) return null;
+        if (retainedTree == null || retainedSourceNodeId != startNodeId) {
+            if (retainedTree == null) retainedTree = new SearchWorkspace(graph.nodeCount(), queueKind);
+            retainedTree.reset();
+            retainedTree.update(startNodeId, 0f, startNodeId, NO_EDGE);
+            retainedTree.queue().insertOrDecrease(startNodeId, 0f);
+            retainedSourceNodeId = startNodeId;
+            retainedSettledCount = 0;
+        }
+        SearchWorkspace tree = retainedTree;
+        NodePriorityQueue queue = tree.queue();
+        SearchBudget budget = new SearchBudget(SearchOptions.UNLIMITED.withCancellation(cancelled));
+        SearchTrace.Recorder recorder = startRecording();
+        while (!tree.isSettled(endNodeId) && !queue.isEmpty()) {
+            if (retainedSettledCount >= MAX_RETAINED_SETTLED_NODES) {
+                //the partial search is dropped, so that the query is recorded once, by the search replacing it
+                invalidateRetainedTree();
+                return bestRouteBetween(startNodeId, endNodeId, cancelled);
+            }
+            //checked before a node is removed from the queue, so that the tree stays valid if the search stops
+            if (!budget.trySettle()) throw new CancellationException();
+            int N = queue.removeMin();
+            float distanceN = tree.distance(N);
+            tree.settle(N);
+            if (recorder != null) recorder.settled(N);
+            ++retainedSettledCount;
+            for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                int edgeId = graph.nodeOutEdgeId(N, i);
+                int Nbis = graph.edgeTargetNodeId(edgeId);
+                float d = distanceN + (float) (costFunction.costFactor(N, edgeId) * graph.edgeLength(edgeId));
+                if (d < tree.distance(Nbis) && !tree.isSettled(Nbis)) {
+                    tree.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d);
+                }
             }
         }
+        //a cancelled search is not recorded, since its nodes were settled for a route which is not used
+        if (recorder != null) recorder.finish();
+        return tree.isSettled(endNodeId) ? finalPath(tree, startNodeId, endNodeId) : null;
+    }
+
+    /**
+     * discards the retained tree of the incremental queries, and releases its memory. Must be called whenever
+     * the costs given by the costfunction change, since the tree would no longer contain the best routes.
+     */
+    public synchronized void invalidateRetainedTree() {
+        retainedTree = null;
+    }
 
-        float[] distances = new float[graph.nodeCount()];
-        int[] predecesseur = new int[graph.nodeCount()];
-        PriorityQueue<WeightedNode> en_exploration = new PriorityQueue<>();
+    /**
+     * sets the trace recording the nodes settled by the point to point searches (A*, bidirectional, incremental
+     * and between snap candidates) started from now on, or stops recording them if it is null. The searches of
+     * costMatrix are not recorded.
+     *
+     * @param trace the trace recording the settled nodes, or null
+     */
+    public void setSearchTrace(SearchTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes, weighted with the costfunction, using the lower bounds given by
+     * the landmarks (which must have been built for the same graph and cost function) as heuristic. Only the
+     * landmarks giving the best bounds between the 2 nodes are used.
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @param landmarks   the landmarks of the graph for the costfunction
+     * @return the shortest Route between 2 nodes, weighted with the costfunction, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId, Landmarks landmarks) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        int[] activeLandmarks = landmarks.bestLandmarks(startNodeId, endNodeId, ACTIVE_LANDMARK_COUNT);
+        return search(startNodeId, endNodeId, nodeId -> {
+            float bound = 0;
+            for (int landmark : activeLandmarks)
+                bound = Math.max(bound, landmarks.lowerBound(landmark, nodeId, endNodeId));
+            return bound;
+        }, null, SearchOptions.UNLIMITED).route();
+    }
 
-        //initiate all distances to positive infinity
-        for (int i = 0; i < distances.length; ++i) {
-            predecesseur[i] = 0;
-            distances[i] = Float.POSITIVE_INFINITY;
+    /**
+     * finds the shortest Route between 2 nodes, weighted with the costfunction, ignoring the edges whose flag for
+     * the region of the ending node is not set (the arc flags must have been computed for the same graph and cost
+     * function)
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @param arcFlags    the arc flags of the graph for the costfunction
+     * @return the shortest Route between 2 nodes, weighted with the costfunction, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId, ArcFlags arcFlags) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
+        return search(startNodeId, endNodeId, nodeId -> distanceToTarget(nodeId, endE, endN), arcFlags,
+                SearchOptions.UNLIMITED).route();
+    }
+
+    /**
+     * finds the shortest Route from one of the starting candidates to one of the ending candidates, the cost of a
+     * route being the sum of the offset of its starting node, of its own cost and of the offset of its ending
+     * node. All the starting candidates seed a single A* search, whose heuristic is the smallest sum of the
+     * distance to an ending candidate and of its offset, and which stops as soon as no queued node can improve the
+     * best ending candidate reached, so that the best pair is found without searching each pair.
+     *
+     * @param starts the candidates of the starting node
+     * @param ends   the candidates of the ending node
+     * @return the shortest Route, which starts at the chosen starting candidate and ends at the chosen ending one,
+     * or null if there is no route between the candidates
+     * @throws IllegalArgumentException if a node is both a starting and an ending candidate
+     */
+    public Route bestRouteBetween(SnapCandidates starts, SnapCandidates ends) {
+        for (int nodeId : starts.nodeIds()) Preconditions.checkArgument(!ends.contains(nodeId));
+        if (allSurelyUnreachable(starts, ends)) return null;
+        int[] endNodeIds = ends.nodeIds();
+        float[] endOffsets = ends.offsets();
+        //coordinates of the ending candidates, read once for all the evaluations of the heuristic
+        double[] endEs = new double[endNodeIds.length];
+        double[] endNs = new double[endNodeIds.length];
+        for (int k = 0; k < endNodeIds.length; ++k) {
+            endEs[k] = graph.nodeE(endNodeIds[k]);
+            endNs[k] = graph.nodeN(endNodeIds[k]);
+        }
+        Heuristic heuristic = nodeId -> {
+            float bound = Float.POSITIVE_INFINITY;
+            for (int k = 0; k < endNodeIds.length; ++k)
+                bound = Math.min(bound, distanceToTarget(nodeId, endEs[k], endNs[k]) + endOffsets[k]);
+            return bound;
+        };
+
+        SearchWorkspace workspace = workspaces.get();
+        workspace.reset();
+        NodePriorityQueue queue = workspace.queue();
+        for (int k = 0; k < starts.count(); ++k) {
+            int startNodeId = starts.nodeIds()[k];
+            float offset = starts.offsets()[k];
+            workspace.update(startNodeId, offset, startNodeId, NO_EDGE);
+            queue.insertOrDecrease(startNodeId, offset + heuristic.lowerBound(startNodeId));
+        }
+
+        //cost of the best route found so far, offsets included, and the ending candidate it reaches
+        float bestCost = Float.POSITIVE_INFINITY;
+        int bestEndNodeId = NO_NODE;
+        SearchTrace.Recorder recorder = startRecording();
+        while (!queue.isEmpty() && queue.minPriority() < bestCost) {
+            int N = queue.removeMin();
+            float distanceN = workspace.distance(N);
+            workspace.settle(N);
+            if (recorder != null) recorder.settled(N);
+            for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                int edgeId = graph.nodeOutEdgeId(N, i);
+                int Nbis = graph.edgeTargetNodeId(edgeId);
+                float d = distanceN + (float) (costFunction.costFactor(N, edgeId) * graph.edgeLength(edgeId));
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    workspace.update(Nbis, d, N, edgeId);
+                    queue.insertOrDecrease(Nbis, d + heuristic.lowerBound(Nbis));
+                    for (int k = 0; k < endNodeIds.length; ++k) {
+                        if (endNodeIds[k] == Nbis && d + endOffsets[k] < bestCost) {
+                            bestCost = d + endOffsets[k];
+                            bestEndNodeId = Nbis;
+                        }
+                    }
+                }
+            }
         }
+        if (recorder != null) recorder.finish();
+        if (bestEndNodeId == NO_NODE) return null;
+        //the starting candidate of the route is the root of the tree reaching the ending candidate
+        int startNodeId = bestEndNodeId;
+        while (workspace.predecessorEdge(startNodeId) != NO_EDGE) startNodeId = workspace.predecessorNode(startNodeId);
+        return finalPath(workspace, startNodeId, bestEndNodeId);
+    }
+
+    /**
+     * finds the shortest Routes between many pairs of nodes, spread over the threads of the common ForkJoinPool
+     * (or of the pool running the calling task), each one using its own search workspace
+     *
+     * @param startNodeIds ids of the Routes' starting nodes
+     * @param endNodeIds   ids of the Routes' ending nodes, in the same order
+     * @return the shortest Route between each pair of nodes, in the same order (null if there is none)
+     * @throws IllegalArgumentException if the arrays do not have the same length, or if a starting node is the same
+     *                                  as its destination
+     */
+    public List<Route> bestRoutesBetween(int[] startNodeIds, int[] endNodeIds) {
+        checkPairs(startNodeIds, endNodeIds);
+        Route[] routes = IntStream.range(0, startNodeIds.length).parallel()
+                .mapToObj(i -> bestRouteBetween(startNodeIds[i], endNodeIds[i]))
+                .toArray(Route[]::new);
+        return Collections.unmodifiableList(Arrays.asList(routes));
+    }
+
+    /**
+     * computes the cost, length and ascent of the shortest Routes between many pairs of nodes, spread over the
+     * threads of the common ForkJoinPool (or of the pool running the calling task), without building their edges
+     *
+     * @param startNodeIds ids of the Routes' starting nodes
+     * @param endNodeIds   ids of the Routes' ending nodes, in the same order
+     * @return the summaries of the shortest Routes, in the same order
+     * @throws IllegalArgumentException if the arrays do not have the same length, or if a starting node is the same
+     *                                  as its destination
+     */
+    public RouteSummaries bestRouteSummariesBetween(int[] startNodeIds, int[] endNodeIds) {
+        checkPairs(startNodeIds, endNodeIds);
+        int count = startNodeIds.length;
+        float[] costs = new float[count];
+        double[] lengths = new double[count];
+        double[] ascents = new double[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int startNodeId = startNodeIds[i];
+            int endNodeId = endNodeIds[i];
+            double endE = graph.nodeE(endNodeId);
+            double endN = graph.nodeN(endNodeId);
+            SearchTrace.Recorder recorder = startRecording();
+            SearchResult.Status status = aStar(startNodeId, endNodeId,
+                    nodeId -> distanceToTarget(nodeId, endE, endN), null, new SearchBudget(SearchOptions.UNLIMITED),
+                    recorder);
+            if (recorder != null) recorder.finish();
+            if (status != SearchResult.Status.FOUND) {
+                costs[i] = Float.POSITIVE_INFINITY;
+                return;
+            }
+            //the route is followed backwards in the workspace, as in finalPath, but only its totals are kept
+            SearchWorkspace workspace = workspaces.get();
+            costs[i] = workspace.distance(endNodeId);
+            for (int nodeId = endNodeId; nodeId != startNodeId; nodeId = workspace.predecessorNode(nodeId)) {
+                int edgeId = workspace.predecessorEdge(nodeId);
+                lengths[i] += graph.edgeLength(edgeId);
+                ascents[i] += graph.edgeElevationGain(edgeId);
+            }
+        });
+        return new RouteSummaries(costs, lengths, ascents);
+    }
+
+    /**
+     * computes the costs and lengths of the best routes between all the pairs of the given nodes, with one
+     * Dijkstra search from each node, stopped once all the other nodes it may reach are settled. The searches are
+     * spread over the threads of the common ForkJoinPool (or of the pool running the calling task).
+     *
+     * @param nodeIds ids of the nodes, all different
+     * @return the square matrix of the routes between the nodes, in the same order, whose diagonal is zero
+     * @throws IllegalArgumentException if a node appears twice
+     */
+    public DistanceMatrix costMatrix(int[] nodeIds) {
+        return costMatrix(nodeIds, SearchOptions.UNLIMITED.cancellation());
+    }
+
+    /**
+     * computes the costs and lengths of the best routes between all the pairs of the given nodes like
+     * costMatrix(int[]), with searches that can be cancelled. Each search checks the condition as often as the
+     * other searches do, so that a newer request does not wait for the whole matrix.
+     *
+     * @param nodeIds   ids of the nodes, all different
+     * @param cancelled the condition under which the searches must stop, checked by the threads of the searches
+     * @return the square matrix of the routes between the nodes, in the same order, whose diagonal is zero
+     * @throws IllegalArgumentException if a node appears twice
+     * @throws CancellationException    if the searches were cancelled before their end
+     */
+    public DistanceMatrix costMatrix(int[] nodeIds, BooleanSupplier cancelled) {
+        int count = nodeIds.length;
+        for (int i = 0; i < count; ++i)
+            for (int j = 0; j < i; ++j) Preconditions.checkArgument(nodeIds[i] != nodeIds[j]);
+        float[] costs = new float[count * count];
+        float[] lengths = new float[count * count];
+        //each source fills its own row, so that the threads never write at the same place
+        IntStream.range(0, count).parallel().forEach(i -> {
+            if (cancelled.getAsBoolean()) throw new CancellationException();
+            int sourceNodeId = nodeIds[i];
+            //a budget only counts the nodes of one search, so that each thread has its own
+            SearchBudget budget = new SearchBudget(SearchOptions.UNLIMITED.withCancellation(cancelled));
+            SearchWorkspace workspace = workspaces.get();
+            workspace.reset();
+            NodePriorityQueue queue = workspace.queue();
+            //the nodes the components show to be unreachable are not waited for
+            int remaining = 0;
+            for (int nodeId : nodeIds) if (!isSurelyUnreachable(sourceNodeId, nodeId)) ++remaining;
+            workspace.update(sourceNodeId, 0f, sourceNodeId, NO_EDGE);
+            queue.insertOrDecrease(sourceNodeId, 0f);
+            //the nodes are settled at most once, so that the search stops when they all are
+            while (!queue.isEmpty() && remaining > 0) {
+                if (!budget.trySettle()) throw new CancellationException();
+                int N = queue.removeMin();
+                float distanceN = workspace.distance(N);
+                workspace.settle(N);
+                for (int nodeId : nodeIds) if (nodeId == N) --remaining;
+                for (int k = 0; k < graph.nodeOutDegree(N); ++k) {
+                    int edgeId = graph.nodeOutEdgeId(N, k);
+                    int Nbis = graph.edgeTargetNodeId(edgeId);
+                    float d = distanceN + (float) (costFunction.costFactor(N, edgeId) * graph.edgeLength(edgeId));
+                    if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                        workspace.update(Nbis, d, N, edgeId);
+                        queue.insertOrDecrease(Nbis, d);
+                    }
+                }
+            }
+            for (int j = 0; j < count; ++j) {
+                int endNodeId = nodeIds[j];
+                int index = i * count + j;
+                if (!workspace.isSettled(endNodeId)) {
+                    costs[index] = Float.POSITIVE_INFINITY;
+                    lengths[index] = Float.POSITIVE_INFINITY;
+                    continue;
+                }
+                costs[index] = workspace.distance(endNodeId);
+                //the length is summed along the route, followed backwards in the tree
+                for (int nodeId = endNodeId; nodeId != sourceNodeId; nodeId = workspace.predecessorNode(nodeId))
+                    lengths[index] += (float) graph.edgeLength(workspace.predecessorEdge(nodeId));
+            }
+        });
+        return new DistanceMatrix(count, count, costs, lengths);
+    }
+
+    /**
+     * checks that the given arrays describe valid pairs of nodes
+     *
+     * @param startNodeIds ids of the starting nodes
+     * @param endNodeIds   ids of the ending nodes, in the same order
+     * @throws IllegalArgumentException if the arrays do not have the same length, or if a starting node is the same
+     *                                  as its destination
+     */
+    private static void checkPairs(int[] startNodeIds, int[] endNodeIds) {
+        Preconditions.checkArgument(startNodeIds.length == endNodeIds.length);
+        for (int i = 0; i < startNodeIds.length; ++i) Preconditions.checkArgument(startNodeIds[i] != endNodeIds[i]);
+    }
+
+    /**
+     * returns whether the connected components show that there is no route between the given nodes
+     *
+     * @param startNodeId id of the starting node
+     * @param endNodeId   id of the ending node
+     * @return true if the components are known and the ending node cannot be reached from the starting one
+     */
+    private boolean isSurelyUnreachable(int startNodeId, int endNodeId) {
+        return components != null && !components.mayReach(startNodeId, endNodeId);
+    }
+
+    /**
+     * returns whether the connected components show that there is no route between any pair of candidates
+     *
+     * @param starts the candidates of the starting node
+     * @param ends   the candidates of the ending node
+     * @return true if the components are known and no ending candidate can be reached from a starting one
+     */
+    private boolean allSurelyUnreachable(SnapCandidates starts, SnapCandidates ends) {
+        for (int startNodeId : starts.nodeIds())
+            for (int endNodeId : ends.nodeIds())
+                if (!isSurelyUnreachable(startNodeId, endNodeId)) return false;
+        return true;
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes with the A* algorithm bounded by the given options, and builds the
+     * result of the search
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @param heuristic   the lower bound of the cost from a node to the ending node
+     * @param arcFlags    the arc flags used to ignore edges, or null to use all of them
+     * @param options     the limits of the search
+     * @return the result of the search, containing the shortest Route if it was found
+     */
+    private SearchResult search(int startNodeId, int endNodeId, Heuristic heuristic, ArcFlags arcFlags,
+                                SearchOptions options) {
+        SearchBudget budget = new SearchBudget(options);
+        SearchTrace.Recorder recorder = startRecording();
+        SearchResult.Status status = aStar(startNodeId, endNodeId, heuristic, arcFlags, budget, recorder);
+        //only the searches which ended are recorded, not the ones cancelled or stopped by their budget
+        if (recorder != null && (status == SearchResult.Status.FOUND || status == SearchResult.Status.UNREACHABLE))
+            recorder.finish();
+        Route route = status == SearchResult.Status.FOUND
+                ? finalPath(workspaces.get(), startNodeId, endNodeId) : null;
+        return new SearchResult(status, route, budget.settledNodes());
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes with the A* algorithm, using the given (consistent) heuristic, in
+     * the workspace of the current thread, which contains the route afterwards
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @param heuristic   the lower bound of the cost from a node to the ending node
+     * @param arcFlags    the arc flags used to ignore edges, or null to use all of them
+     * @param budget      the budget of the search, charged for each settled node
+     * @param recorder    the recorder of the settled nodes, or null if they are not recorded
+     * @return FOUND if a route was found, UNREACHABLE if there is none, or the reason why the budget stopped the
+     * search
+     */
+    private SearchResult.Status aStar(int startNodeId, int endNodeId, Heuristic heuristic, ArcFlags arcFlags,
+                                      SearchBudget budget, SearchTrace.Recorder recorder) {
+        if (isSurelyUnreachable(startNodeId, endNodeId)) return SearchResult.Status.UNREACHABLE;
+        //region of the endNode, only the edges flagged for it lead to it through a best route
+        int endRegion = arcFlags == null ? 0 : arcFlags.region(endNodeId);
+        SearchWorkspace workspace = workspaces.get();
+        workspace.reset();
+        //nodes being explored, prioritized by their super distance
+        // (sum of distance found by Dijkstra and distance between the node and the endNode)
+        NodePriorityQueue en_exploration = workspace.queue();
 
         //distance of the starting node is 0 and it is initially added to en_exploration
-        distances[startNodeId] = 0f;
-        en_exploration.add(new WeightedNode(startNodeId, distances[startNodeId] + distanceToTarget(graph, startNodeId, endNodeId)));
+        float startBound = heuristic.lowerBound(startNodeId);
+        if (startBound == Float.POSITIVE_INFINITY) return SearchResult.Status.UNREACHABLE;
+        workspace.update(startNodeId, 0f, startNodeId, NO_EDGE);
+        en_exploration.insertOrDecrease(startNodeId, startBound);
 
         while (!en_exploration.isEmpty()) {
-            //N = WeightedNode in en_exploration with minimal distance
-            WeightedNode N = en_exploration.remove();
-            //if its distance is NEGATIVE_INFINITY (meaning it has already been checked), we discard it
-            //else we do the following
-            if (distances[N.nodeId] != Float.NEGATIVE_INFINITY) {
-                if (N.nodeId == endNodeId) return finalPath(predecesseur, startNodeId, endNodeId);
-                float distanceN = distances[N.nodeId];
-                //for each edge coming out of N
-                for (int i = 0; i < graph.nodeOutDegree(N.nodeId); ++i) {
-                    int edgeId = graph.nodeOutEdgeId(N.nodeId, i);
-                    //Nbis = end node of the considered edge
-                    WeightedNode Nbis = new WeightedNode(graph.edgeTargetNodeId(edgeId)
-                            , distances[graph.edgeTargetNodeId(edgeId)] + distanceToTarget(graph, graph.edgeTargetNodeId(edgeId)
-                            , endNodeId));
-                    //calculate the potential new distance of Nbis
-                    float d = distanceN + (float) (costFunction.costFactor(N.nodeId, edgeId) * graph.edgeLength(edgeId));
-                    //update the different Arrays and queues if the new distance to Nbis smaller than the previous one
-                    if (d < distances[Nbis.nodeId]) {
-                        distances[Nbis.nodeId] = d;
-                        predecesseur[Nbis.nodeId] = N.nodeId;
-                        en_exploration.add(new WeightedNode(Nbis.nodeId, distances[Nbis.nodeId] + distanceToTarget(graph, graph.edgeTargetNodeId(edgeId), endNodeId)));
+            if (!budget.trySettle()) return budget.stopStatus();
+            //N = node in en_exploration with minimal super distance. Thanks to decrease-key, a node is never
+            //twice in en_exploration, and once removed from it, it never comes back
+            int N = en_exploration.removeMin();
+            if (recorder != null) recorder.settled(N);
+            if (N == endNodeId) return SearchResult.Status.FOUND;
+            float distanceN = workspace.distance(N);
+            //specify that the node has been visited
+            workspace.settle(N);
+            //for each edge coming out of N
+            for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                int edgeId = graph.nodeOutEdgeId(N, i);
+                if (arcFlags != null && !arcFlags.isFlagged(edgeId, endRegion)) continue;
+                //Nbis = end node of the considered edge
+                int Nbis = graph.edgeTargetNodeId(edgeId);
+                //calculate the potential new distance of Nbis (nodes never reached have an infinite distance)
+                float d = distanceN + (float) (costFunction.costFactor(N, edgeId) * graph.edgeLength(edgeId));
+                //update the workspace and the queue if the new distance to Nbis smaller than the previous one
+                if (d < workspace.distance(Nbis) && !workspace.isSettled(Nbis)) {
+                    float bound = heuristic.lowerBound(Nbis);
+                    //an infinite bound means that the endNode cannot be reached from Nbis
+                    if (bound == Float.POSITIVE_INFINITY) continue;
+                    workspace.update(Nbis, d, N, edgeId);
+                    en_exploration.insertOrDecrease(Nbis, d + bound);
+                }
+            }
+        }
+        return SearchResult.Status.UNREACHABLE;
+    }
+
+    /**
+     * finds the shortest Route between 2 nodes, weighted with the costfunction, with a bidirectional A*: a
+     * forward search from the starting node along the out-edges and a backward search from the ending node along
+     * the in-edges, each one expanding the node with the smallest key in turn, until they meet.
+     * <p>
+     * Both searches use the average of the distances to the ending and starting nodes as (consistent) potential,
+     * so that the search can stop as soon as the sum of the smallest keys reaches the best route found.
+     * The cost of an edge is always evaluated in its own direction, so one-way streets are respected.
+     *
+     * @param startNodeId id of the Route's starting node
+     * @param endNodeId   id of the Route's ending node
+     * @return the shortest Route between 2 nodes, weighted with the costfunction, or null if there is none
+     * @throws IllegalArgumentException if the starting node is the same as the destination
+     */
+    public Route bidirectionalBestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        if (isSurelyUnreachable(startNodeId, endNodeId)) return null;
+
+        SearchWorkspace forward = workspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        forward.reset();
+        backward.reset();
+        NodePriorityQueue forwardQueue = forward.queue();
+        NodePriorityQueue backwardQueue = backward.queue();
+
+        double startE = graph.nodeE(startNodeId), startN = graph.nodeN(startNodeId);
+        double endE = graph.nodeE(endNodeId), endN = graph.nodeN(endNodeId);
+        //the potentials of both searches are shifted by half of this distance, so that they are never negative,
+        //and the sum of the potentials of a node is always equal to it
+        float straightDistance = distanceToTarget(startNodeId, endE, endN);
+
+        forward.update(startNodeId, 0f, startNodeId, NO_EDGE);
+        forwardQueue.insertOrDecrease(startNodeId, straightDistance);
+        backward.update(endNodeId, 0f, endNodeId, NO_EDGE);
+        backwardQueue.insertOrDecrease(endNodeId, straightDistance);
+
+        //cost of the best route found so far, and the node where its two halves meet
+        float bestCost = Float.POSITIVE_INFINITY;
+        int meetingNodeId = NO_NODE;
+
+        SearchTrace.Recorder recorder = startRecording();
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            float forwardMin = forwardQueue.minPriority();
+            float backwardMin = backwardQueue.minPriority();
+            if (forwardMin + backwardMin >= bestCost + straightDistance) break;
+
+            if (forwardMin <= backwardMin) {
+                int N = forwardQueue.removeMin();
+                float distanceN = forward.distance(N);
+                forward.settle(N);
+                if (recorder != null) recorder.settled(N);
+                for (int i = 0; i < graph.nodeOutDegree(N); ++i) {
+                    int edgeId = graph.nodeOutEdgeId(N, i);
+                    int Nbis = graph.edgeTargetNodeId(edgeId);
+                    float d = distanceN + (float) (costFunction.costFactor(N, edgeId) * graph.edgeLength(edgeId));
+                    if (d < forward.distance(Nbis) && !forward.isSettled(Nbis)) {
+                        forward.update(Nbis, d, N, edgeId);
+                        forwardQueue.insertOrDecrease(Nbis, d + bidirectionalPotential(Nbis, endE, endN,
+                                startE, startN, straightDistance));
+                        float cost = d + backward.distance(Nbis);
+                        if (cost < bestCost) {
+                            bestCost = cost;
+                            meetingNodeId = Nbis;
+                        }
+                    }
+                }
+            } else {
+                int N = backwardQueue.removeMin();
+                float distanceN = backward.distance(N);
+                backward.settle(N);
+                if (recorder != null) recorder.settledBackward(N);
+                for (int i = 0; i < graph.nodeInDegree(N); ++i) {
+                    int edgeId = graph.nodeInEdgeId(N, i);
+                    //Nbis = start node of the considered edge, whose cost is evaluated in its own direction
+                    int Nbis = graph.edgeSourceNodeId(edgeId);
+                    float d = distanceN + (float) (costFunction.costFactor(Nbis, edgeId) * graph.edgeLength(edgeId));
+                    if (d < backward.distance(Nbis) && !backward.isSettled(Nbis)) {
+                        backward.update(Nbis, d, N, edgeId);
+                        backwardQueue.insertOrDecrease(Nbis, d + bidirectionalPotential(Nbis, startE, startN,
+                                endE, endN, straightDistance));
+                        float cost = d + forward.distance(Nbis);
+                        if (cost < bestCost) {
+                            bestCost = cost;
+                            meetingNodeId = Nbis;
+                        }
                     }
                 }
-                //specify that the node has been visited
-                distances[N.nodeId] = Float.NEGATIVE_INFINITY;
             }
         }
-        return null;
+        if (recorder != null) recorder.finish();
+        if (meetingNodeId == NO_NODE) return null;
+
+        //first half, from the starting node to the meeting node, found backwards in the forward search
+        List<Edge> edges = new ArrayList<>();
+        int nodeId = meetingNodeId;
+        while (nodeId != startNodeId) {
+            int formerNodeId = forward.predecessorNode(nodeId);
+            edges.add(Edge.of(graph, forward.predecessorEdge(nodeId), formerNodeId, nodeId));
+            nodeId = formerNodeId;
+        }
+        Collections.reverse(edges);
+        //second half, from the meeting node to the ending node, whose predecessors in the backward search
+        //are the next nodes of the route
+        nodeId = meetingNodeId;
+        while (nodeId != endNodeId) {
+            int nextNodeId = backward.predecessorNode(nodeId);
+            edges.add(Edge.of(graph, backward.predecessorEdge(nodeId), nodeId, nextNodeId));
+            nodeId = nextNodeId;
+        }
+        return new SingleRoute(edges);
     }
 
     /**
-     * reconstructs recursively the route starting form startNodeId and ending at endNodeId with given predecesseur list
+     * starts the recording of a search in the trace, if there is one
      *
-     * @param predecesseur list where at each index corresponding to the id of a node, the id of the previous node in the path is stored
-     * @param startNodeId  id of the starting node of the route
-     * @param endNodeId    id of the ending node of the route
-     * @return the route starting form startNodeId and ending at endNodeId with given predecesseur list
+     * @return the recorder of the search, or null if no trace is set
      */
-    private Route finalPath(int[] predecesseur, int startNodeId, int endNodeId) {
+    private SearchTrace.Recorder startRecording() {
+        SearchTrace trace = this.trace;
+        return trace == null ? null : trace.start();
+    }
+
+    /**
+     * reconstructs the route starting form startNodeId and ending at endNodeId, by following the predecessor
+     * edges stored in the workspace backwards from endNodeId
+     *
+     * @param workspace   the workspace of the search that reached endNodeId
+     * @param startNodeId id of the starting node of the route
+     * @param endNodeId   id of the ending node of the route
+     * @return the route starting form startNodeId and ending at endNodeId
+     */
+    private Route finalPath(SearchWorkspace workspace, int startNodeId, int endNodeId) {
         List<Edge> edges = new ArrayList<>();
         int nodeId = endNodeId;
-        int formerNodeId;
-        //recursively get all the edges in the Route, starting from the last edge.
-        //the previous edge in the route is got given its toNodeId and its fromNodeId (=predecesseur[toNodeId]
-        do {
-            formerNodeId = predecesseur[nodeId];
-            for (int i = 0; i < graph.nodeOutDegree(formerNodeId); ++i) {
-                int edgeId = graph.nodeOutEdgeId(formerNodeId, i);
-                if (graph.edgeTargetNodeId(edgeId) == nodeId) {
-                    edges.add(Edge.of(graph, edgeId, formerNodeId, nodeId));
-                    nodeId = formerNodeId;
-                    break;
-                }
-            }
-        } while (formerNodeId != startNodeId);
-        //reverse the list of edges because they were added recursively from the last one
+        while (nodeId != startNodeId) {
+            int formerNodeId = workspace.predecessorNode(nodeId);
+            edges.add(Edge.of(graph, workspace.predecessorEdge(nodeId), formerNodeId, nodeId));
+            nodeId = formerNodeId;
+        }
+        //reverse the list of edges because they were added from the last one
         Collections.reverse(edges);
         return new SingleRoute(edges);
     }
 
     /**
-     * returns the distance between the points corresponding to the nodes with given id
+     * returns the distance between the point corresponding to the node with given id and the target point,
+     * computed on the raw coordinates of the node so that no PointCh is allocated
      *
-     * @param graph        the graph containing the nodes
-     * @param nodeId       id of the first node
-     * @param targetNodeId id of the second node
-     * @return the distance between the points corresponding to the nodes with given id
+     * @param nodeId  id of the node
+     * @param targetE E coordinate of the target point
+     * @param targetN N coordinate of the target point
+     * @return the distance between the point corresponding to the node with given id and the target point
+     */
+    private float distanceToTarget(int nodeId, double targetE, double targetN) {
+        return (float) Math.sqrt(Math2.squaredNorm(targetE - graph.nodeE(nodeId), targetN - graph.nodeN(nodeId)));
+    }
+
+    /**
+     * returns the potential of a node for one of the two searches of a bidirectional query: half of the
+     * difference between its distance to the target of the search and its distance to the source of the search,
+     * shifted by half of the distance between them so that it is positive
+     *
+     * @param nodeId           id of the node
+     * @param targetE          E coordinate of the target of the search
+     * @param targetN          N coordinate of the target of the search
+     * @param sourceE          E coordinate of the source of the search
+     * @param sourceN          N coordinate of the source of the search
+     * @param straightDistance distance between the source and the target
+     * @return the potential of the node
+     */
+    private float bidirectionalPotential(int nodeId, double targetE, double targetN, double sourceE, double sourceN,
+                                         float straightDistance) {
+        return (distanceToTarget(nodeId, targetE, targetN) - distanceToTarget(nodeId, sourceE, sourceN)
+                + straightDistance) / 2;
+    }
+
+    /**
+     * represents a lower bound of the cost of the best route from a node to the ending node of a query
      */
-    private float distanceToTarget(Graph graph, int nodeId, int targetNodeId) {
-        return (float) graph.nodePoint(nodeId).distanceTo(graph.nodePoint(targetNodeId));
+    @FunctionalInterface
+    private interface Heuristic {
+        /**
+         * returns a lower bound of the cost from the given node to the ending node
+         *
+         * @param nodeId id of the node
+         * @return a lower bound of the cost, or positive infinity if the ending node cannot be reached
+         */
+        float lowerBound(int nodeId);
     }
 }
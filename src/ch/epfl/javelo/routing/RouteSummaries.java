@@ -0,0 +1,47 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * represents the summaries of a batch of best routes: their cost, length and ascent, without their edges.
+ * The index of a summary is the index of the pair of nodes of the route in the batch.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+
+/**
+ * @param costs     the costs of the routes, positive infinity if there is no route between the nodes
+ * @param lengths   the lengths of the routes, in meters (0 if there is no route)
+ * @param ascents   the total positive elevations of the routes, in meters (0 if there is no route)
+ */
+public record RouteSummaries(float[] costs, double[] lengths, double[] ascents) {
+
+    /**
+     * compact constructor of RouteSummaries
+     *
+     * @throws IllegalArgumentException if the arrays do not have the same length
+     */
+    public RouteSummaries {
+        Preconditions.checkArgument(costs.length == lengths.length && costs.length == ascents.length);
+    }
+
+    /**
+     * returns the number of routes of the batch
+     *
+     * @return the number of routes of the batch
+     */
+    public int count() {
+        return costs.length;
+    }
+
+    /**
+     * returns whether there is a route between the index-th pair of nodes of the batch
+     *
+     * @param index the index of the pair of nodes
+     * @return true if there is a route between the nodes
+     */
+    public boolean hasRoute(int index) {
+        return costs[index] != Float.POSITIVE_INFINITY;
+    }
+}
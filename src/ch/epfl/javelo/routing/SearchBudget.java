@@ -0,0 +1,83 @@
+package ch.epfl.javelo.routing;
+
+import java.time.Instant;
+
+/**
+ * counts the nodes settled by a single search, and tells it when it must stop according to its search options.
+ * The maximal number of settled nodes is checked at each node, while the clock and the cancellation condition,
+ * which are more expensive, are only checked every CHECK_INTERVAL nodes.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+final class SearchBudget {
+    /**
+     * number of nodes settled between two checks of the deadline and of the cancellation condition
+     */
+    static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * the options of the search
+     */
+    private final SearchOptions options;
+    /**
+     * the number of nodes settled so far
+     */
+    private int settledNodes;
+    /**
+     * the reason why the search must stop, or null if it may go on
+     */
+    private SearchResult.Status stopStatus;
+
+    /**
+     * constructor of SearchBudget
+     *
+     * @param options the options of the search
+     */
+    SearchBudget(SearchOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * counts a node about to be settled, and returns whether the search may settle it
+     *
+     * @return true if the search may go on, false if it must stop before settling the node
+     */
+    boolean trySettle() {
+        if (settledNodes >= options.maxSettledNodes()) {
+            stopStatus = SearchResult.Status.BUDGET_EXCEEDED;
+            return false;
+        }
+        ++settledNodes;
+        if (settledNodes % CHECK_INTERVAL == 0) {
+            if (options.cancellation().getAsBoolean()) {
+                stopStatus = SearchResult.Status.CANCELLED;
+                return false;
+            }
+            if (options.hasDeadline() && Instant.now().isAfter(options.deadline())) {
+                stopStatus = SearchResult.Status.BUDGET_EXCEEDED;
+                return false;
+            }
+        }
+        if (settledNodes % options.progressInterval() == 0) options.progress().accept(settledNodes);
+        return true;
+    }
+
+    /**
+     * returns the number of nodes settled so far
+     *
+     * @return the number of nodes settled so far
+     */
+    int settledNodes() {
+        return settledNodes;
+    }
+
+    /**
+     * returns the reason why the search had to stop
+     *
+     * @return BUDGET_EXCEEDED or CANCELLED, or null if trySettle never returned false
+     */
+    SearchResult.Status stopStatus() {
+        return stopStatus;
+    }
+}
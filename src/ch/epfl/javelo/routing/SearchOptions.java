@@ -0,0 +1,112 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * represents the limits of a search for a best route: the maximal number of nodes it may settle, the instant
+ * after which it must stop, the condition under which it is cancelled, and the consumer of its progress.
+ * <p>
+ * The options are immutable: UNLIMITED sets no limit, and the other options are derived from it with the
+ * with... methods, for example {@code SearchOptions.UNLIMITED.withMaxSettledNodes(100_000).withTimeout(timeout)}.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+
+/**
+ * @param maxSettledNodes  the maximal number of nodes the search may settle
+ * @param deadline         the instant after which the search must stop, Instant.MAX if there is none
+ * @param cancellation     the condition under which the search must stop, checked by the thread of the search
+ * @param progress         the consumer of the number of nodes settled so far, called by the thread of the search
+ * @param progressInterval the number of nodes settled between two calls of the consumer of the progress
+ */
+public record SearchOptions(int maxSettledNodes, Instant deadline, BooleanSupplier cancellation,
+                            IntConsumer progress, int progressInterval) {
+    /**
+     * the options of a search without any limit, whose progress is not reported
+     */
+    public static final SearchOptions UNLIMITED =
+            new SearchOptions(Integer.MAX_VALUE, Instant.MAX, () -> false, settledNodes -> {}, Integer.MAX_VALUE);
+
+    /**
+     * compact constructor of SearchOptions
+     *
+     * @throws IllegalArgumentException if the maximal number of settled nodes or the interval of the progress is
+     *                                  not strictly positive
+     * @throws NullPointerException     if the deadline, the cancellation condition or the consumer is null
+     */
+    public SearchOptions {
+        Preconditions.checkArgument(maxSettledNodes > 0 && progressInterval > 0);
+        Objects.requireNonNull(deadline);
+        Objects.requireNonNull(cancellation);
+        Objects.requireNonNull(progress);
+    }
+
+    /**
+     * returns the same options, with the given maximal number of settled nodes
+     *
+     * @param maxSettledNodes the maximal number of nodes the search may settle
+     * @return the same options, with the given maximal number of settled nodes
+     * @throws IllegalArgumentException if the number is not strictly positive
+     */
+    public SearchOptions withMaxSettledNodes(int maxSettledNodes) {
+        return new SearchOptions(maxSettledNodes, deadline, cancellation, progress, progressInterval);
+    }
+
+    /**
+     * returns the same options, with the given deadline
+     *
+     * @param deadline the instant after which the search must stop
+     * @return the same options, with the given deadline
+     */
+    public SearchOptions withDeadline(Instant deadline) {
+        return new SearchOptions(maxSettledNodes, deadline, cancellation, progress, progressInterval);
+    }
+
+    /**
+     * returns the same options, with a deadline at the given duration from now
+     *
+     * @param timeout the duration after which the search must stop, counted from now
+     * @return the same options, with a deadline at the given duration from now
+     */
+    public SearchOptions withTimeout(Duration timeout) {
+        return withDeadline(Instant.now().plus(timeout));
+    }
+
+    /**
+     * returns the same options, with the given cancellation condition
+     *
+     * @param cancellation the condition under which the search must stop, checked by the thread of the search
+     * @return the same options, with the given cancellation condition
+     */
+    public SearchOptions withCancellation(BooleanSupplier cancellation) {
+        return new SearchOptions(maxSettledNodes, deadline, cancellation, progress, progressInterval);
+    }
+
+    /**
+     * returns the same options, with the given consumer of the progress
+     *
+     * @param progress         the consumer of the number of nodes settled so far
+     * @param progressInterval the number of nodes settled between two calls of the consumer
+     * @return the same options, with the given consumer of the progress
+     * @throws IllegalArgumentException if the interval is not strictly positive
+     */
+    public SearchOptions withProgress(IntConsumer progress, int progressInterval) {
+        return new SearchOptions(maxSettledNodes, deadline, cancellation, progress, progressInterval);
+    }
+
+    /**
+     * returns whether the search has a deadline
+     *
+     * @return true if the deadline is not Instant.MAX
+     */
+    public boolean hasDeadline() {
+        return !deadline.equals(Instant.MAX);
+    }
+}
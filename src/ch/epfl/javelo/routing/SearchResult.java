@@ -0,0 +1,60 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * represents the result of a search for a best route done with search options: how the search ended, the route
+ * it found, and the number of nodes it settled
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+
+/**
+ * @param status       how the search ended
+ * @param route        the best route, or null if the status is not FOUND
+ * @param settledNodes the number of nodes settled by the search
+ */
+public record SearchResult(Status status, Route route, int settledNodes) {
+
+    /**
+     * the different ways a search can end
+     */
+    public enum Status {
+        /**
+         * the best route has been found
+         */
+        FOUND,
+        /**
+         * there is no route between the nodes
+         */
+        UNREACHABLE,
+        /**
+         * the search settled the maximal number of nodes, or reached its deadline, before finding the route
+         */
+        BUDGET_EXCEEDED,
+        /**
+         * the search has been cancelled before finding the route
+         */
+        CANCELLED
+    }
+
+    /**
+     * compact constructor of SearchResult
+     *
+     * @throws IllegalArgumentException if there is a route without the status FOUND or the other way round, or
+     *                                  if the number of settled nodes is negative
+     */
+    public SearchResult {
+        Preconditions.checkArgument((status == Status.FOUND) == (route != null) && settledNodes >= 0);
+    }
+
+    /**
+     * returns whether the search has been stopped before its end, so that a route may exist even if none was found
+     *
+     * @return true if the status is BUDGET_EXCEEDED or CANCELLED
+     */
+    public boolean isIncomplete() {
+        return status == Status.BUDGET_EXCEEDED || status == Status.CANCELLED;
+    }
+}
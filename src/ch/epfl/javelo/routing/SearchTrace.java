@@ -0,0 +1,177 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ * records the nodes settled by the searches of a RouteComputer, in the order in which they were settled, along
+ * with the number of searches and the time they took. It is meant to compare the search spaces of the kinds of
+ * queries, and costs nothing when no trace is set on the route computer.
+ * <p>
+ * Each search records its nodes in its own buffer, which is only appended to the trace once the search is over,
+ * so that a trace can be shared by searches running in several threads and read by another one. A search which
+ * is cancelled, or stopped by its budget, is never appended, so that the trace only contains the searches whose
+ * result was used. The nodes of a backward search are stored as the complement of their identity, so that a
+ * single array of ints is kept.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class SearchTrace {
+    /**
+     * initial capacity of the buffers of the settled nodes
+     */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * the settled nodes of the finished searches, backward ones being complemented
+     */
+    private int[] settledNodes = new int[INITIAL_CAPACITY];
+    /**
+     * the number of settled nodes recorded
+     */
+    private int settledCount;
+    /**
+     * the number of finished searches
+     */
+    private int searchCount;
+    /**
+     * the total duration of the finished searches, in nanoseconds
+     */
+    private long searchNanos;
+
+    /**
+     * returns what was recorded since the last call to this method, and empties the trace
+     *
+     * @return the snapshot of the searches recorded since the last call
+     */
+    public synchronized Snapshot drain() {
+        Snapshot snapshot = new Snapshot(Arrays.copyOf(settledNodes, settledCount), searchCount, searchNanos);
+        settledCount = 0;
+        searchCount = 0;
+        searchNanos = 0;
+        return snapshot;
+    }
+
+    /**
+     * starts the recording of a search, to be done by the thread of the search
+     *
+     * @return the recorder of the search
+     */
+    Recorder start() {
+        return new Recorder();
+    }
+
+    /**
+     * appends the nodes of a finished search to the trace
+     *
+     * @param nodes the settled nodes of the search
+     * @param count the number of settled nodes
+     * @param nanos the duration of the search, in nanoseconds
+     */
+    private synchronized void append(int[] nodes, int count, long nanos) {
+        if (settledCount + count > settledNodes.length)
+            settledNodes = Arrays.copyOf(settledNodes, Math.max(2 * settledNodes.length, settledCount + count));
+        System.arraycopy(nodes, 0, settledNodes, settledCount, count);
+        settledCount += count;
+        ++searchCount;
+        searchNanos += nanos;
+    }
+
+    /**
+     * recorder of a single search, only used by the thread of the search
+     */
+    final class Recorder {
+        /**
+         * the settled nodes of the search, backward ones being complemented
+         */
+        private int[] nodes = new int[INITIAL_CAPACITY];
+        /**
+         * the number of settled nodes
+         */
+        private int count;
+        /**
+         * the value of System.nanoTime() when the search started
+         */
+        private final long startNanos = System.nanoTime();
+
+        /**
+         * records a node settled by a forward search
+         *
+         * @param nodeId the identity of the node
+         */
+        void settled(int nodeId) {
+            if (count == nodes.length) nodes = Arrays.copyOf(nodes, 2 * count);
+            nodes[count++] = nodeId;
+        }
+
+        /**
+         * records a node settled by a backward search
+         *
+         * @param nodeId the identity of the node
+         */
+        void settledBackward(int nodeId) {
+            settled(~nodeId);
+        }
+
+        /**
+         * ends the search, and appends what it recorded to the trace. It is not called for a search which did
+         * not end, whose recorder is simply dropped.
+         */
+        void finish() {
+            append(nodes, count, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * nodes settled by a series of searches, and the time they took
+     *
+     * @param settledNodes the settled nodes in order, the ones settled by backward searches being complemented
+     * @param searchCount  the number of searches
+     * @param searchNanos  the total duration of the searches, in nanoseconds
+     */
+    public record Snapshot(int[] settledNodes, int searchCount, long searchNanos) {
+
+        /**
+         * returns the number of settled nodes, a node settled by several searches being counted each time
+         *
+         * @return the number of settled nodes
+         */
+        public int settledCount() {
+            return settledNodes.length;
+        }
+
+        /**
+         * returns the identity of the node settled at the given index
+         *
+         * @param index the index of the node in the order of settlement
+         * @return the identity of the node
+         * @throws IndexOutOfBoundsException if the index is invalid
+         */
+        public int nodeId(int index) {
+            int node = settledNodes[index];
+            return node >= 0 ? node : ~node;
+        }
+
+        /**
+         * returns whether the node at the given index was settled by a backward search
+         *
+         * @param index the index of the node in the order of settlement
+         * @return true if the node was settled by a backward search
+         * @throws IndexOutOfBoundsException if the index is invalid
+         */
+        public boolean isBackward(int index) {
+            return settledNodes[index] < 0;
+        }
+
+        /**
+         * returns the number of nodes settled by backward searches
+         *
+         * @return the number of nodes settled by backward searches
+         */
+        public int backwardCount() {
+            int backwardCount = 0;
+            for (int node : settledNodes) if (node < 0) ++backwardCount;
+            return backwardCount;
+        }
+    }
+}
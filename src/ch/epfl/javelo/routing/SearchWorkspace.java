@@ -0,0 +1,180 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ * represents the memory used by a search in the graph (distances, predecessors and priority queue), which is
+ * allocated once and reused from one search to the other. Resetting it takes constant time: every node is
+ * stamped with the generation of the search that last reached it, and a node whose stamp is not the current
+ * generation is considered as never reached.
+ * <p>
+ * A workspace must only be used by one search at a time, see threadLocalPool.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+final class SearchWorkspace {
+    /**
+     * bit of a stamp indicating that the node is settled (its distance is final)
+     */
+    private static final int SETTLED_BIT = 1;
+    /**
+     * largest generation that can be stored in a stamp, along with the settled bit
+     */
+    private static final int MAX_GENERATION = Integer.MAX_VALUE >> 1;
+
+    /**
+     * for each node, the distance (cost) found from the source of the search
+     */
+    private final float[] distances;
+    /**
+     * for each node, the node preceding it in the search tree
+     */
+    private final int[] predecessorNodes;
+    /**
+     * for each node, the edge linking its predecessor to it in the search tree
+     */
+    private final int[] predecessorEdges;
+    /**
+     * for each node, the generation of the last search which reached it (shifted by one bit) and the settled bit
+     */
+    private final int[] stamps;
+    /**
+     * the priority queue of the search
+     */
+    private final NodePriorityQueue queue;
+    /**
+     * the generation of the current search
+     */
+    private int generation;
+
+    /**
+     * constructor of SearchWorkspace
+     *
+     * @param nodeCount the number of nodes of the graph
+     * @param queueKind the kind of priority queue to use
+     */
+    SearchWorkspace(int nodeCount, NodePriorityQueue.Kind queueKind) {
+        this.distances = new float[nodeCount];
+        this.predecessorNodes = new int[nodeCount];
+        this.predecessorEdges = new int[nodeCount];
+        this.stamps = new int[nodeCount];
+        this.queue = queueKind.create(nodeCount);
+        this.generation = 0;
+    }
+
+    /**
+     * returns a pool giving each thread its own workspace, created the first time the thread needs it
+     *
+     * @param nodeCount the number of nodes of the graph
+     * @param queueKind the kind of priority queue to use
+     * @return a pool giving each thread its own workspace
+     */
+    static ThreadLocal<SearchWorkspace> threadLocalPool(int nodeCount, NodePriorityQueue.Kind queueKind) {
+        return ThreadLocal.withInitial(() -> new SearchWorkspace(nodeCount, queueKind));
+    }
+
+    /**
+     * prepares the workspace for a new search, in constant time (except once every billion searches)
+     */
+    void reset() {
+        if (generation == MAX_GENERATION) {
+            Arrays.fill(stamps, 0);
+            generation = 0;
+        }
+        ++generation;
+        queue.clear();
+    }
+
+    /**
+     * returns the number of nodes of the graph
+     *
+     * @return the number of nodes of the graph
+     */
+    int nodeCount() {
+        return stamps.length;
+    }
+
+    /**
+     * returns the priority queue of the search
+     *
+     * @return the priority queue of the search
+     */
+    NodePriorityQueue queue() {
+        return queue;
+    }
+
+    /**
+     * returns whether the node has been reached by the current search
+     *
+     * @param nodeId the identity of the node
+     * @return true if the node has been reached by the current search
+     */
+    boolean isReached(int nodeId) {
+        return stamps[nodeId] >>> 1 == generation;
+    }
+
+    /**
+     * returns whether the node has been settled by the current search
+     *
+     * @param nodeId the identity of the node
+     * @return true if the node has been settled by the current search
+     */
+    boolean isSettled(int nodeId) {
+        return stamps[nodeId] == (generation << 1 | SETTLED_BIT);
+    }
+
+    /**
+     * returns the distance of the node found by the current search
+     *
+     * @param nodeId the identity of the node
+     * @return the distance of the node, or positive infinity if it has not been reached
+     */
+    float distance(int nodeId) {
+        return isReached(nodeId) ? distances[nodeId] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * returns the node preceding the given (reached) node in the search tree
+     *
+     * @param nodeId the identity of the node
+     * @return the node preceding the given node in the search tree
+     */
+    int predecessorNode(int nodeId) {
+        return predecessorNodes[nodeId];
+    }
+
+    /**
+     * returns the edge linking the predecessor of the given (reached) node to it
+     *
+     * @param nodeId the identity of the node
+     * @return the edge linking the predecessor of the given node to it
+     */
+    int predecessorEdge(int nodeId) {
+        return predecessorEdges[nodeId];
+    }
+
+    /**
+     * records a (better) distance for the given node, which becomes reached but not settled
+     *
+     * @param nodeId          the identity of the node
+     * @param distance        the distance of the node
+     * @param predecessorNode the node preceding it in the search tree
+     * @param predecessorEdge the edge linking the predecessor to it
+     */
+    void update(int nodeId, float distance, int predecessorNode, int predecessorEdge) {
+        distances[nodeId] = distance;
+        predecessorNodes[nodeId] = predecessorNode;
+        predecessorEdges[nodeId] = predecessorEdge;
+        stamps[nodeId] = generation << 1;
+    }
+
+    /**
+     * marks the given (reached) node as settled
+     *
+     * @param nodeId the identity of the node
+     */
+    void settle(int nodeId) {
+        stamps[nodeId] = generation << 1 | SETTLED_BIT;
+    }
+}
@@ -0,0 +1,88 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.function.IntPredicate;
+
+/**
+ * represents the nodes a point of a route may be snapped to, each one with an offset: the cost of going from the
+ * point to the node, added to the cost of the routes going through it. A search between two sets of candidates
+ * chooses the pair of nodes minimizing the cost of the route plus both offsets.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+
+/**
+ * @param nodeIds the identities of the candidate nodes, all different
+ * @param offsets the offset of each candidate node, in the same order
+ */
+public record SnapCandidates(int[] nodeIds, float[] offsets) {
+
+    /**
+     * compact constructor of SnapCandidates
+     *
+     * @throws IllegalArgumentException if there is no candidate, if the arrays do not have the same length, if an
+     *                                  offset is negative or not finite, or if a node appears twice
+     */
+    public SnapCandidates {
+        Preconditions.checkArgument(nodeIds.length > 0 && nodeIds.length == offsets.length);
+        for (int i = 0; i < nodeIds.length; ++i) {
+            Preconditions.checkArgument(offsets[i] >= 0 && Float.isFinite(offsets[i]));
+            for (int j = 0; j < i; ++j) Preconditions.checkArgument(nodeIds[i] != nodeIds[j]);
+        }
+    }
+
+    /**
+     * returns the candidates made of the single given node, without offset
+     *
+     * @param nodeId the identity of the node
+     * @return the candidates made of the given node
+     */
+    public static SnapCandidates of(int nodeId) {
+        return new SnapCandidates(new int[]{nodeId}, new float[]{0f});
+    }
+
+    /**
+     * returns the nodes of the graph closest to the given point, the offset of each one being its distance to the
+     * point
+     *
+     * @param graph          the graph of the nodes
+     * @param point          the point to snap
+     * @param searchDistance the radius of the circle in which the nodes are searched
+     * @param maxCount       the maximal number of candidates
+     * @param filter         the condition a node must satisfy to be a candidate
+     * @return the candidates of the point, or null if there is no node satisfying the filter within the radius
+     * @throws IllegalArgumentException if maxCount is not strictly positive
+     */
+    public static SnapCandidates around(Graph graph, PointCh point, double searchDistance, int maxCount,
+                                        IntPredicate filter) {
+        int[] nodeIds = graph.nodesClosestTo(point, searchDistance, maxCount, filter);
+        if (nodeIds.length == 0) return null;
+        float[] offsets = new float[nodeIds.length];
+        for (int i = 0; i < nodeIds.length; ++i) offsets[i] = (float) graph.nodePoint(nodeIds[i]).distanceTo(point);
+        return new SnapCandidates(nodeIds, offsets);
+    }
+
+    /**
+     * returns the number of candidates
+     *
+     * @return the number of candidates
+     */
+    public int count() {
+        return nodeIds.length;
+    }
+
+    /**
+     * returns whether the given node is one of the candidates
+     *
+     * @param nodeId the identity of the node
+     * @return true if the node is a candidate
+     */
+    public boolean contains(int nodeId) {
+        for (int candidate : nodeIds) if (candidate == nodeId) return true;
+        return false;
+    }
+}
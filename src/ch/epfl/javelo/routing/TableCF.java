@@ -0,0 +1,17 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * cost function reading the cost factors of the edges in a cost table, instead of evaluating them at each
+ * relaxation
+ *
+ * @param table the table of the cost factors of the edges
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public record TableCF(CostTable table) implements CostFunction {
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        return table.costFactor(edgeId);
+    }
+}
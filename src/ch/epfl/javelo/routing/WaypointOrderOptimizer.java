@@ -0,0 +1,312 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * finds an order of visit of waypoints minimizing the cost of the route going through them, given the costs of
+ * the best routes between them: an open path, whose first and last waypoints can be fixed.
+ * <p>
+ * The path is turned into a tour by adding a virtual node, linked for free to the waypoints which may start or
+ * end the path. A first tour is built with the nearest neighbour heuristic, then improved by 2-opt moves
+ * (reversing a part of the tour) and Or-opt moves (moving a part of at most three waypoints elsewhere) until none
+ * of them makes it cheaper. The costs are not assumed to be symmetric, so that a reversed part of the tour is
+ * costed in its new direction.
+ *
+ * @author Louis ROCHE (345620)
+ * @author Ambroise AIGUEPERSE (341890)
+ */
+public final class WaypointOrderOptimizer {
+    /**
+     * cost of the links which cannot be used: between waypoints without route, or linking the virtual node to a
+     * waypoint which cannot start or end the path
+     */
+    private static final double FORBIDDEN_COST = 1e12;
+    /**
+     * minimal decrease of the cost for a move to be done, which prevents loops caused by rounding errors
+     */
+    private static final double MIN_GAIN = 1e-3;
+    /**
+     * maximal number of waypoints of a part moved by an Or-opt move
+     */
+    private static final int MAX_MOVED_LENGTH = 3;
+    /**
+     * maximal number of rounds of improvement, which bounds the time taken by large instances
+     */
+    private static final int MAX_ROUNDS = 1000;
+
+    /**
+     * the number of nodes of the tour: the waypoints followed by the virtual node
+     */
+    private final int size;
+    /**
+     * the costs of the links between the nodes of the tour, row by row
+     */
+    private final double[] costs;
+    /**
+     * the nodes of the tour in order of visit, starting with the virtual node
+     */
+    private int[] tour;
+
+    /**
+     * constructor of WaypointOrderOptimizer
+     *
+     * @param matrix     the square matrix of the costs between the waypoints
+     * @param fixedFirst whether the first waypoint must stay the first one
+     * @param fixedLast  whether the last waypoint must stay the last one
+     */
+    private WaypointOrderOptimizer(DistanceMatrix matrix, boolean fixedFirst, boolean fixedLast) {
+        int count = matrix.sourceCount();
+        this.size = count + 1;
+        this.costs = new double[size * size];
+        for (int i = 0; i < count; ++i) {
+            for (int j = 0; j < count; ++j)
+                costs[i * size + j] = matrix.hasRoute(i, j) ? matrix.cost(i, j) : FORBIDDEN_COST;
+            costs[count * size + i] = !fixedFirst || i == 0 ? 0 : FORBIDDEN_COST;
+            costs[i * size + count] = !fixedLast || i == count - 1 ? 0 : FORBIDDEN_COST;
+        }
+    }
+
+    /**
+     * returns the order of visit of the waypoints minimizing, as far as the heuristics can tell, the cost of the
+     * route going through them
+     *
+     * @param matrix     the square matrix of the costs between the waypoints, in their current order
+     * @param fixedFirst whether the first waypoint must stay the first one
+     * @param fixedLast  whether the last waypoint must stay the last one
+     * @return the indices of the waypoints in their new order of visit
+     * @throws IllegalArgumentException if the matrix is not square
+     */
+    public static int[] optimalOrder(DistanceMatrix matrix, boolean fixedFirst, boolean fixedLast) {
+        Preconditions.checkArgument(matrix.sourceCount() == matrix.targetCount());
+        int count = matrix.sourceCount();
+        if (count <= 2) {
+            int[] order = new int[count];
+            for (int i = 0; i < count; ++i) order[i] = i;
+            //two waypoints can only be swapped if none of them is fixed
+            if (count == 2 && !fixedFirst && !fixedLast && matrix.cost(1, 0) < matrix.cost(0, 1))
+                return new int[]{1, 0};
+            return order;
+        }
+        return new WaypointOrderOptimizer(matrix, fixedFirst, fixedLast).optimize();
+    }
+
+    /**
+     * returns the order of visit of the waypoints placed on the given nodes minimizing, as far as the heuristics
+     * can tell, the cost of the route going through them. The costs between the nodes are computed in parallel
+     * by the route computer, once per node even if several waypoints share it.
+     *
+     * @param routeComputer the route computer giving the costs between the nodes
+     * @param nodeIds       the identities of the nodes of the waypoints, in their current order
+     * @param fixedFirst    whether the first waypoint must stay the first one
+     * @param fixedLast     whether the last waypoint must stay the last one
+     * @return the indices of the waypoints in their new order of visit
+     */
+    public static int[] optimalOrder(RouteComputer routeComputer, int[] nodeIds, boolean fixedFirst,
+                                     boolean fixedLast) {
+        return optimalOrder(routeComputer, nodeIds, fixedFirst, fixedLast, SearchOptions.UNLIMITED.cancellation());
+    }
+
+    /**
+     * returns the order of visit of the waypoints placed on the given nodes like
+     * optimalOrder(RouteComputer, int[], boolean, boolean), with searches that can be cancelled
+     *
+     * @param routeComputer the route computer giving the costs between the nodes
+     * @param nodeIds       the identities of the nodes of the waypoints, in their current order
+     * @param fixedFirst    whether the first waypoint must stay the first one
+     * @param fixedLast     whether the last waypoint must stay the last one
+     * @param cancelled     the condition under which the searches must stop
+     * @return the indices of the waypoints in their new order of visit
+     * @throws CancellationException if the searches were cancelled before their end
+     */
+    public static int[] optimalOrder(RouteComputer routeComputer, int[] nodeIds, boolean fixedFirst,
+                                     boolean fixedLast, BooleanSupplier cancelled) {
+        return optimalOrder(distinctNodeIds -> routeComputer.costMatrix(distinctNodeIds, cancelled), nodeIds,
+                fixedFirst, fixedLast);
+    }
+
+    /**
+     * returns the order of visit of the waypoints placed on the given nodes like
+     * optimalOrder(RouteComputer, int[], boolean, boolean), with the costs between the nodes given by the
+     * buckets of a contraction hierarchy, which is much faster than a search from each node
+     *
+     * @param manyToManyComputer the computer giving the costs between the nodes
+     * @param nodeIds            the identities of the nodes of the waypoints, in their current order
+     * @param fixedFirst         whether the first waypoint must stay the first one
+     * @param fixedLast          whether the last waypoint must stay the last one
+     * @return the indices of the waypoints in their new order of visit
+     */
+    public static int[] optimalOrder(ManyToManyComputer manyToManyComputer, int[] nodeIds, boolean fixedFirst,
+                                     boolean fixedLast) {
+        return optimalOrder(distinctNodeIds -> manyToManyComputer.matrix(distinctNodeIds, distinctNodeIds), nodeIds,
+                fixedFirst, fixedLast);
+    }
+
+    /**
+     * returns the order of visit of the waypoints placed on the given nodes, given the function computing the
+     * matrix of the costs between distinct nodes
+     *
+     * @param nodeMatrixOf the function giving the square matrix of the costs between the given distinct nodes
+     * @param nodeIds      the identities of the nodes of the waypoints, in their current order
+     * @param fixedFirst   whether the first waypoint must stay the first one
+     * @param fixedLast    whether the last waypoint must stay the last one
+     * @return the indices of the waypoints in their new order of visit
+     */
+    private static int[] optimalOrder(Function<int[], DistanceMatrix> nodeMatrixOf, int[] nodeIds,
+                                      boolean fixedFirst, boolean fixedLast) {
+        int[] distinctNodeIds = Arrays.stream(nodeIds).distinct().toArray();
+        DistanceMatrix nodeMatrix = nodeMatrixOf.apply(distinctNodeIds);
+        int count = nodeIds.length;
+        //index of the node of each waypoint in the matrix of the nodes
+        int[] nodeIndices = new int[count];
+        for (int i = 0; i < count; ++i)
+            for (int k = 0; k < distinctNodeIds.length; ++k) if (distinctNodeIds[k] == nodeIds[i]) nodeIndices[i] = k;
+        float[] costs = new float[count * count];
+        float[] lengths = new float[count * count];
+        for (int i = 0; i < count; ++i) {
+            for (int j = 0; j < count; ++j) {
+                costs[i * count + j] = nodeMatrix.cost(nodeIndices[i], nodeIndices[j]);
+                lengths[i * count + j] = nodeMatrix.length(nodeIndices[i], nodeIndices[j]);
+            }
+        }
+        return optimalOrder(new DistanceMatrix(count, count, costs, lengths), fixedFirst, fixedLast);
+    }
+
+    /**
+     * builds and improves the tour, and returns the order of the waypoints it gives
+     *
+     * @return the indices of the waypoints in their order of visit
+     */
+    private int[] optimize() {
+        nearestNeighbourTour();
+        for (int round = 0; round < MAX_ROUNDS; ++round) {
+            boolean improved = twoOpt();
+            improved |= orOpt();
+            if (!improved) break;
+        }
+        return Arrays.copyOfRange(tour, 1, size);
+    }
+
+    /**
+     * builds the tour starting from the virtual node and going each time to the closest node not visited yet
+     */
+    private void nearestNeighbourTour() {
+        tour = new int[size];
+        boolean[] visited = new boolean[size];
+        int virtualNode = size - 1;
+        tour[0] = virtualNode;
+        visited[virtualNode] = true;
+        for (int position = 1; position < size; ++position) {
+            int previous = tour[position - 1];
+            int next = -1;
+            for (int node = 0; node < size; ++node)
+                if (!visited[node] && (next == -1 || cost(previous, node) < cost(previous, next))) next = node;
+            tour[position] = next;
+            visited[next] = true;
+        }
+    }
+
+    /**
+     * does the best 2-opt move of each starting position of the reversed part, as long as it makes the tour
+     * cheaper
+     *
+     * @return true if the tour was improved
+     */
+    private boolean twoOpt() {
+        boolean improved = false;
+        for (int i = 1; i < size - 1; ++i) {
+            double forward = 0;
+            double backward = 0;
+            double bestGain = MIN_GAIN;
+            int bestJ = -1;
+            for (int j = i + 1; j < size; ++j) {
+                //costs of the part from i to j, in both directions
+                forward += cost(tour[j - 1], tour[j]);
+                backward += cost(tour[j], tour[j - 1]);
+                int before = tour[i - 1];
+                int after = tour[(j + 1) % size];
+                double gain = cost(before, tour[i]) + forward + cost(tour[j], after)
+                        - cost(before, tour[j]) - backward - cost(tour[i], after);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestJ = j;
+                }
+            }
+            if (bestJ != -1) {
+                for (int a = i, b = bestJ; a < b; ++a, --b) {
+                    int node = tour[a];
+                    tour[a] = tour[b];
+                    tour[b] = node;
+                }
+                improved = true;
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * does the first Or-opt move found for each part of the tour, as long as it makes the tour cheaper
+     *
+     * @return true if the tour was improved
+     */
+    private boolean orOpt() {
+        boolean improved = false;
+        for (int length = 1; length <= MAX_MOVED_LENGTH; ++length) {
+            for (int i = 1; i + length <= size; ++i) {
+                int first = tour[i];
+                int last = tour[i + length - 1];
+                int before = tour[i - 1];
+                int after = tour[(i + length) % size];
+                double removalGain = cost(before, first) + cost(last, after) - cost(before, after);
+                //the part is inserted between the positions p and p + 1, outside of it
+                for (int p = 0; p < size; ++p) {
+                    if (i - 1 <= p && p <= i + length - 1) continue;
+                    int from = tour[p];
+                    int to = tour[(p + 1) % size];
+                    double insertionCost = cost(from, first) + cost(last, to) - cost(from, to);
+                    if (removalGain - insertionCost > MIN_GAIN) {
+                        move(i, length, p);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * moves the part of the tour of the given length starting at the given position, so that it follows the
+     * node at position p
+     *
+     * @param i      the position of the first node of the part
+     * @param length the number of nodes of the part
+     * @param p      the position of the node the part must follow, outside of the part
+     */
+    private void move(int i, int length, int p) {
+        int[] part = Arrays.copyOfRange(tour, i, i + length);
+        int[] rest = new int[size - length];
+        System.arraycopy(tour, 0, rest, 0, i);
+        System.arraycopy(tour, i + length, rest, i, size - i - length);
+        //position of the node the part follows, once the part is removed
+        int insertion = (p < i ? p : p - length) + 1;
+        System.arraycopy(rest, 0, tour, 0, insertion);
+        System.arraycopy(part, 0, tour, insertion, length);
+        System.arraycopy(rest, insertion, tour, insertion + length, rest.length - insertion);
+    }
+
+    /**
+     * returns the cost of the link between the given nodes of the tour
+     *
+     * @param from the node the link starts from
+     * @param to   the node the link ends at
+     * @return the cost of the link
+     */
+    private double cost(int from, int to) {
+        return costs[from * size + to];
+    }
+}
@@ -0,0 +1,74 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeIndexTest {
+
+    private static double distanceToEdge(Graph graph, int edgeId, PointCh point) {
+        PointCh from = graph.nodePoint(graph.edgeSourceNodeId(edgeId));
+        PointCh to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+        double dE = to.e() - from.e(), dN = to.n() - from.n();
+        double squaredLength = dE * dE + dN * dN;
+        double t = squaredLength == 0 ? 0
+                : Math.max(0, Math.min(1, ((point.e() - from.e()) * dE + (point.n() - from.n()) * dN) / squaredLength));
+        return Math.hypot(point.e() - (from.e() + t * dE), point.n() - (from.n() + t * dN));
+    }
+
+    @Test
+    void edgesClosestToGivesTheSameEdgesAsAnExhaustiveSearch() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        EdgeIndex index = new EdgeIndex(graph, 70);
+        PointCh first = graph.nodePoint(0);
+        for (int i = 0; i < 500; ++i) {
+            PointCh point = new PointCh(first.e() + rng.nextDouble(-100, 1300), first.n() + rng.nextDouble(-100, 1300));
+            double distance = rng.nextDouble(0, 120);
+            int[] expected = java.util.stream.IntStream.range(0, graph.edgeCount())
+                    .filter(edgeId -> distanceToEdge(graph, edgeId, point) <= distance)
+                    .boxed()
+                    .sorted((a, b) -> Double.compare(distanceToEdge(graph, a, point), distanceToEdge(graph, b, point)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            int[] actual = index.edgesClosestTo(point, distance, graph.edgeCount());
+            assertEquals(expected.length, actual.length);
+            for (int k = 0; k < actual.length; ++k)
+                assertEquals(distanceToEdge(graph, expected[k], point), distanceToEdge(graph, actual[k], point), 1e-6);
+            int[] sorted = actual.clone();
+            Arrays.sort(sorted);
+            for (int k = 1; k < sorted.length; ++k) assertNotEquals(sorted[k - 1], sorted[k]);
+        }
+    }
+
+    @Test
+    void edgesClosestToKeepsTheClosestEdges() {
+        Graph graph = TestGraphs.grid(10, 10, 40, 2022);
+        EdgeIndex index = new EdgeIndex(graph);
+        PointCh point = graph.nodePoint(graph.edgeSourceNodeId(7));
+        int[] all = index.edgesClosestTo(point, 100, 1000);
+        int[] closest = index.edgesClosestTo(point, 100, 3);
+        assertArrayEquals(Arrays.copyOf(all, 3), closest);
+        assertThrows(IllegalArgumentException.class, () -> index.edgesClosestTo(point, 100, 0));
+        assertThrows(IllegalArgumentException.class, () -> index.edgesClosestTo(point, -1, 3));
+    }
+
+    @Test
+    void positionClosestToIsOnTheEdge() {
+        Graph graph = TestGraphs.grid(10, 10, 40, 2022);
+        EdgeIndex index = new EdgeIndex(graph);
+        for (int edgeId = 0; edgeId < graph.edgeCount(); ++edgeId) {
+            PointCh from = graph.nodePoint(graph.edgeSourceNodeId(edgeId));
+            PointCh to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+            assertEquals(0, index.positionClosestTo(edgeId, from), 1e-6);
+            assertEquals(graph.edgeLength(edgeId), index.positionClosestTo(edgeId, to), 1e-6);
+            PointCh middle = new PointCh((from.e() + to.e()) / 2, (from.n() + to.n()) / 2);
+            assertEquals(graph.edgeLength(edgeId) / 2, index.positionClosestTo(edgeId, middle), 1e-6);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.routing.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphInEdgesTest {
+
+    @Test
+    void inEdgesAreExactlyTheReversedOutEdges() {
+        Graph graph = TestGraphs.grid(12, 9, 50, 2022);
+        int[] inCount = new int[graph.nodeCount()];
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                assertEquals(nodeId, graph.edgeSourceNodeId(edgeId));
+                ++inCount[graph.edgeTargetNodeId(edgeId)];
+            }
+        }
+        int total = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+            assertEquals(inCount[nodeId], graph.nodeInDegree(nodeId));
+            for (int i = 0; i < graph.nodeInDegree(nodeId); ++i)
+                assertEquals(nodeId, graph.edgeTargetNodeId(graph.nodeInEdgeId(nodeId, i)));
+            total += graph.nodeInDegree(nodeId);
+        }
+        assertEquals(graph.edgeCount(), total);
+    }
+}
@@ -239,4 +239,43 @@ class GraphTest {
         assertEquals(496,func2.applyAsDouble(34),1);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void nodeCoordinatesMatchNodePoint() {
+        Graph graph = ch.epfl.javelo.routing.TestGraphs.grid(10, 10, 50, 2022);
+        for (int i = 0; i < graph.nodeCount(); ++i) {
+            assertEquals(graph.nodePoint(i).e(), graph.nodeE(i));
+            assertEquals(graph.nodePoint(i).n(), graph.nodeN(i));
+        }
+    }
+
+    @Test
+    void nodeClosestToWithFilterOnlyReturnsAcceptedNodes() {
+        Graph graph = ch.epfl.javelo.routing.TestGraphs.grid(10, 10, 50, 2022);
+        for (int i = 0; i < graph.nodeCount(); ++i) {
+            PointCh point = graph.nodePoint(i);
+            assertEquals(graph.nodeClosestTo(point, 100), graph.nodeClosestTo(point, 100, nodeId -> true));
+            int closest = graph.nodeClosestTo(point, 100, nodeId -> nodeId % 2 == 0);
+            assertTrue(closest == -1 || closest % 2 == 0);
+            if (i % 2 == 0) assertEquals(i, closest);
+        }
+        assertEquals(-1, graph.nodeClosestTo(graph.nodePoint(0), 100, nodeId -> false));
+    }
+
+    @Test
+    void nodesClosestToAreSortedByDistance() {
+        Graph graph = ch.epfl.javelo.routing.TestGraphs.grid(10, 10, 50, 2022);
+        for (int i = 0; i < graph.nodeCount(); ++i) {
+            PointCh point = graph.nodePoint(i);
+            int[] nodeIds = graph.nodesClosestTo(point, 120, 5, nodeId -> true);
+            assertEquals(5, nodeIds.length);
+            assertEquals(graph.nodeClosestTo(point, 120), nodeIds[0]);
+            for (int k = 1; k < nodeIds.length; ++k)
+                assertTrue(graph.nodePoint(nodeIds[k - 1]).distanceTo(point)
+                        <= graph.nodePoint(nodeIds[k]).distanceTo(point));
+        }
+        assertEquals(0, graph.nodesClosestTo(graph.nodePoint(0), 100, 3, nodeId -> false).length);
+        assertThrows(IllegalArgumentException.class,
+                () -> graph.nodesClosestTo(graph.nodePoint(0), 100, 0, nodeId -> true));
+    }
+}
@@ -0,0 +1,59 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlternativeRoutesComputerTest {
+
+    @Test
+    void routesBetweenStartsWithTheBestRouteAndGivesValidAlternatives() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        AlternativeRoutesComputer computer = new AlternativeRoutesComputer(graph, costFunction);
+        int alternativeCount = 0;
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 50)) {
+            int start = pair[0];
+            int end = pair[1];
+            Route expected = routeComputer.bestRouteBetween(start, end);
+            List<SingleRoute> routes = computer.routesBetween(start, end, 3);
+            if (expected == null) {
+                assertTrue(routes.isEmpty());
+                continue;
+            }
+            assertTrue(1 <= routes.size() && routes.size() <= 3);
+            double bestCost = TestGraphs.cost(graph, costFunction, expected);
+            assertEquals(bestCost, TestGraphs.cost(graph, costFunction, routes.get(0)), 1e-3 * bestCost);
+            for (SingleRoute route : routes) {
+                assertEquals(start, route.edges().get(0).fromNodeId());
+                assertEquals(end, route.edges().get(route.edges().size() - 1).toNodeId());
+                Set<Integer> nodeIds = new HashSet<>();
+                nodeIds.add(start);
+                for (int j = 0; j < route.edges().size(); ++j) {
+                    if (j > 0) assertEquals(route.edges().get(j - 1).toNodeId(), route.edges().get(j).fromNodeId());
+                    assertTrue(nodeIds.add(route.edges().get(j).toNodeId()));
+                }
+                assertTrue(TestGraphs.cost(graph, costFunction, route) <= 1.25 * bestCost + 1e-3 * bestCost);
+            }
+            alternativeCount += routes.size() - 1;
+        }
+        assertTrue(alternativeCount > 0);
+    }
+
+    @Test
+    void routesBetweenRespectsTheMaximalCount() {
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        AlternativeRoutesComputer computer = new AlternativeRoutesComputer(graph, new CityBikeCF(graph));
+        assertTrue(computer.routesBetween(0, graph.nodeCount() - 1, 1).size() <= 1);
+        assertThrows(IllegalArgumentException.class, () -> computer.routesBetween(0, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> computer.routesBetween(3, 3, 2));
+    }
+}
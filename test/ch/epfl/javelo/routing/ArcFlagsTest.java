@@ -0,0 +1,59 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArcFlagsTest {
+
+    @Test
+    void prunedRoutesHaveTheSameCostAsUnprunedOnes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(60, 50, 1500, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        ArcFlags arcFlags = ArcFlagsBuilder.build(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 300))
+            TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(pair[0], pair[1]),
+                    routeComputer.bestRouteBetween(pair[0], pair[1], arcFlags));
+    }
+
+    @Test
+    void edgesInsideARegionAreFlaggedForIt() {
+        Graph graph = TestGraphs.grid(60, 50, 1500, 2022);
+        ArcFlags arcFlags = ArcFlagsBuilder.build(graph, new CityBikeCF(graph), 5);
+        assertEquals(16, arcFlags.regionCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                int region = arcFlags.region(nodeId);
+                if (arcFlags.region(graph.edgeTargetNodeId(edgeId)) == region)
+                    assertTrue(arcFlags.isFlagged(edgeId, region));
+            }
+        }
+    }
+
+    @Test
+    void flagsAreTheSameOnceWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.grid(30, 30, 1500, 2022);
+        ArcFlags built = ArcFlagsBuilder.build(graph, new CityBikeCF(graph));
+        built.writeTo(directory, "citybike");
+        ArcFlags loaded = ArcFlags.loadFrom(graph, directory, "citybike");
+        assertEquals(built.regionCount(), loaded.regionCount());
+        for (int edgeId = 0; edgeId < graph.edgeCount(); ++edgeId)
+            for (int region = 0; region < built.regionCount(); ++region)
+                assertEquals(built.isFlagged(edgeId, region), loaded.isFlagged(edgeId, region));
+    }
+
+    @Test
+    void buildThrowsWithTooManyRegions() {
+        Graph graph = TestGraphs.grid(3, 3, 40, 2022);
+        assertThrows(IllegalArgumentException.class, () -> ArcFlagsBuilder.build(graph, new CityBikeCF(graph), 3));
+    }
+}
@@ -0,0 +1,89 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectedComponentsTest {
+
+    @Test
+    void mayReachIsTrueWheneverThereIsARoute() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        ConnectedComponents components = ConnectedComponentsBuilder.build(graph, costFunction);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 300))
+            if (routeComputer.bestRouteBetween(pair[0], pair[1]) != null)
+                assertTrue(components.mayReach(pair[0], pair[1]));
+    }
+
+    @Test
+    void strongComponentsAreTheSetsOfMutuallyReachableNodes() {
+        Graph graph = TestGraphs.grid(8, 8, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        ConnectedComponents components = ConnectedComponentsBuilder.build(graph, costFunction);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int nodeCount = graph.nodeCount();
+        boolean[][] reaches = new boolean[nodeCount][nodeCount];
+        for (int from = 0; from < nodeCount; ++from)
+            for (int to = 0; to < nodeCount; ++to)
+                reaches[from][to] = from == to || routeComputer.bestRouteBetween(from, to) != null;
+        for (int from = 0; from < nodeCount; ++from) {
+            for (int to = 0; to < nodeCount; ++to) {
+                boolean mutual = reaches[from][to] && reaches[to][from];
+                assertEquals(mutual, components.strongComponent(from) == components.strongComponent(to));
+                if (reaches[from][to]) assertTrue(components.mayReach(from, to));
+            }
+        }
+    }
+
+    @Test
+    void routeComputerGivesTheSameRoutesWithComponents() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer plain = new RouteComputer(graph, costFunction);
+        RouteComputer withComponents = new RouteComputer(graph, costFunction,
+                ConnectedComponentsBuilder.build(graph, costFunction));
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 100)) {
+            Route expected = plain.bestRouteBetween(pair[0], pair[1]);
+            Route actual = withComponents.bestRouteBetween(pair[0], pair[1]);
+            assertEquals(expected == null, actual == null);
+            if (expected != null)
+                assertEquals(TestGraphs.cost(graph, costFunction, expected),
+                        TestGraphs.cost(graph, costFunction, actual), 1e-6);
+            TestGraphs.assertSameRouteCost(graph, costFunction, expected,
+                    withComponents.incrementalBestRouteBetween(pair[0], pair[1]));
+        }
+    }
+
+    @Test
+    void componentsAreTheSameOnceWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        ConnectedComponents built = ConnectedComponentsBuilder.build(graph, new CityBikeCF(graph));
+        built.writeTo(directory, "citybike");
+        ConnectedComponents loaded = ConnectedComponents.loadFrom(graph, directory, "citybike");
+        assertEquals(graph.nodeCount(), loaded.nodeCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+            assertEquals(built.strongComponent(nodeId), loaded.strongComponent(nodeId));
+            assertEquals(built.weakComponent(nodeId), loaded.weakComponent(nodeId));
+            assertEquals(built.isInLargestComponent(nodeId), loaded.isInLargestComponent(nodeId));
+        }
+    }
+
+    @Test
+    void loadFromThrowsOnComponentsOfAnotherGraph(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.grid(20, 20, 40, 2022);
+        Graph otherGraph = TestGraphs.grid(10, 10, 40, 2022);
+        ConnectedComponentsBuilder.build(graph, new CityBikeCF(graph)).writeTo(directory, "citybike");
+        assertThrows(IllegalArgumentException.class,
+                () -> ConnectedComponents.loadFrom(otherGraph, directory, "citybike"));
+    }
+}
@@ -0,0 +1,62 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractionHierarchyTest {
+
+    private static void assertSameRoutes(Graph graph, CostFunction costFunction,
+                                         ContractionHierarchy hierarchy, int queryCount) {
+        var rng = newRandom();
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, queryCount)) {
+            Route expected = routeComputer.bestRouteBetween(pair[0], pair[1]);
+            Route actual = hierarchy.bestRouteBetween(pair[0], pair[1]);
+            TestGraphs.assertSameRouteCost(graph, costFunction, expected, actual);
+            //the shortcuts must be unpacked into the edges they replace
+            if (expected != null)
+                assertEquals(expected.length(), actual.length(), 1e-3 * expected.length() + 1e-3);
+        }
+    }
+
+    @Test
+    void hierarchyRoutesHaveTheSameCostAsRouteComputerOnes() {
+        Graph graph = TestGraphs.grid(50, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        assertSameRoutes(graph, costFunction, ContractionHierarchyBuilder.build(graph, costFunction), 300);
+    }
+
+    @Test
+    void hierarchyIsTheSameOnceWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.grid(20, 20, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        ContractionHierarchy built = ContractionHierarchyBuilder.build(graph, costFunction);
+        built.writeTo(directory, "citybike");
+        ContractionHierarchy loaded = ContractionHierarchy.loadFrom(graph, directory, "citybike");
+        assertEquals(built.arcCount(), loaded.arcCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId)
+            assertEquals(built.rank(nodeId), loaded.rank(nodeId));
+        assertSameRoutes(graph, costFunction, loaded, 100);
+    }
+
+    @Test
+    void hierarchyRoutesMatchRouteComputerOnLausanne() throws IOException {
+        Graph graph = Graph.loadFrom(Path.of("lausanne"));
+        CostFunction costFunction = new CityBikeCF(graph);
+        assertSameRoutes(graph, costFunction, ContractionHierarchyBuilder.build(graph, costFunction), 200);
+    }
+
+    @Test
+    void hierarchyThrowsOnIdenticalNodes() {
+        Graph graph = TestGraphs.grid(3, 3, 40, 2022);
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> hierarchy.bestRouteBetween(4, 4));
+    }
+}
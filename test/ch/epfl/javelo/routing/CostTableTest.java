@@ -0,0 +1,64 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CostTableTest {
+
+    @Test
+    void tableContainsTheCostOfEachEdge() {
+        Graph graph = TestGraphs.grid(30, 30, 50, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        CostTable table = CostTableBuilder.build(graph, costFunction);
+        CostFunction tableCostFunction = new TableCF(table);
+        assertEquals(graph.edgeCount(), table.edgeCount());
+        int infiniteCosts = 0;
+        for (int edgeId = 0; edgeId < graph.edgeCount(); ++edgeId) {
+            int nodeId = graph.edgeSourceNodeId(edgeId);
+            double expected = costFunction.costFactor(nodeId, edgeId);
+            assertEquals((float) expected, table.costFactor(edgeId));
+            assertEquals((float) expected, tableCostFunction.costFactor(nodeId, edgeId));
+            if (expected == Double.POSITIVE_INFINITY) ++infiniteCosts;
+        }
+        assertTrue(infiniteCosts > 0);
+    }
+
+    @Test
+    void routesAreTheSameWithTheTable() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 50, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RouteComputer tableRouteComputer = new RouteComputer(graph,
+                new TableCF(CostTableBuilder.build(graph, costFunction)));
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 50))
+            TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(pair[0], pair[1]),
+                    tableRouteComputer.bestRouteBetween(pair[0], pair[1]));
+    }
+
+    @Test
+    void tableIsTheSameOnceWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.grid(20, 20, 50, 2022);
+        CostTable table = CostTableBuilder.build(graph, new CityBikeCF(graph));
+        table.writeTo(directory, "test");
+        CostTable loaded = CostTable.loadFrom(graph, directory, "test");
+        assertEquals(table.edgeCount(), loaded.edgeCount());
+        for (int edgeId = 0; edgeId < graph.edgeCount(); ++edgeId)
+            assertEquals(table.costFactor(edgeId), loaded.costFactor(edgeId));
+    }
+
+    @Test
+    void loadFromThrowsOnTableOfAnotherGraph(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.grid(20, 20, 50, 2022);
+        Graph otherGraph = TestGraphs.grid(10, 10, 50, 2022);
+        CostTableBuilder.build(graph, new CityBikeCF(graph)).writeTo(directory, "test");
+        assertThrows(IllegalArgumentException.class, () -> CostTable.loadFrom(otherGraph, directory, "test"));
+    }
+}
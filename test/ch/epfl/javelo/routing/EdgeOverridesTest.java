@@ -0,0 +1,144 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeOverridesTest {
+
+    @Test
+    void edgesWithoutOverrideKeepTheirCost() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(20, 20, 50, 2022);
+        CostFunction base = new CityBikeCF(graph);
+        EdgeOverrides overrides = new EdgeOverrides(graph.edgeCount());
+        CostFunction overriding = new OverridingCF(base, overrides);
+        for (int i = 0; i < 1000; ++i) {
+            int edgeId = rng.nextInt(graph.edgeCount());
+            int nodeId = graph.edgeSourceNodeId(edgeId);
+            assertEquals(base.costFactor(nodeId, edgeId), overriding.costFactor(nodeId, edgeId));
+        }
+    }
+
+    @Test
+    void closedAndMultipliedEdgesChangeTheCosts() {
+        Graph graph = TestGraphs.grid(20, 20, 50, 2022);
+        CostFunction base = new CityBikeCF(graph);
+        EdgeOverrides overrides = new EdgeOverrides(graph.edgeCount());
+        CostFunction overriding = new OverridingCF(base, overrides);
+        int edgeId = graph.edgeCount() - 1;
+        int nodeId = graph.edgeSourceNodeId(edgeId);
+        overrides.setClosed(edgeId, true);
+        assertTrue(overrides.isClosed(edgeId));
+        assertEquals(Double.POSITIVE_INFINITY, overriding.costFactor(nodeId, edgeId));
+        overrides.setClosed(edgeId, false);
+        assertEquals(base.costFactor(nodeId, edgeId), overriding.costFactor(nodeId, edgeId));
+        overrides.setMultiplier(edgeId, 3);
+        assertEquals(3 * base.costFactor(nodeId, edgeId), overriding.costFactor(nodeId, edgeId));
+        overrides.setMultiplier(edgeId, 1);
+        assertEquals(1, overrides.multiplier(edgeId));
+        overrides.setMultiplier(edgeId, 2);
+        overrides.clear();
+        assertEquals(1, overrides.multiplier(edgeId));
+    }
+
+    @Test
+    void routesAvoidTheClosedEdges() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 50, 2022);
+        CostFunction base = new CityBikeCF(graph);
+        EdgeOverrides overrides = new EdgeOverrides(graph.edgeCount());
+        RouteComputer routeComputer = new RouteComputer(graph, new OverridingCF(base, overrides));
+        int checkedRoutes = 0;
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 20)) {
+            int startNodeId = pair[0];
+            int endNodeId = pair[1];
+            overrides.clear();
+            Route route = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            if (route == null || route.edges().size() < 3) continue;
+            Edge middle = route.edges().get(route.edges().size() / 2);
+            for (int edgeId = 0; edgeId < graph.edgeCount(); ++edgeId) {
+                if (graph.edgeSourceNodeId(edgeId) == middle.fromNodeId()
+                        && graph.edgeTargetNodeId(edgeId) == middle.toNodeId()) overrides.setClosed(edgeId, true);
+            }
+            Route detour = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            if (detour == null) continue;
+            for (Edge edge : detour.edges())
+                assertFalse(edge.fromNodeId() == middle.fromNodeId() && edge.toNodeId() == middle.toNodeId());
+            assertTrue(TestGraphs.cost(graph, base, detour) >= TestGraphs.cost(graph, base, route) - 1e-3);
+            ++checkedRoutes;
+        }
+        assertTrue(checkedRoutes > 5);
+    }
+
+    @Test
+    void listenersAreCalledAfterEachChange() {
+        EdgeOverrides overrides = new EdgeOverrides(100);
+        AtomicInteger calls = new AtomicInteger();
+        Runnable listener = calls::incrementAndGet;
+        overrides.addListener(listener);
+        overrides.setClosed(3, true);
+        overrides.setMultiplier(4, 2);
+        overrides.clear();
+        assertEquals(3, calls.get());
+        overrides.removeListener(listener);
+        overrides.setClosed(3, true);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void invalidOverridesAreRejected() {
+        EdgeOverrides overrides = new EdgeOverrides(100);
+        assertThrows(IllegalArgumentException.class, () -> overrides.setClosed(100, true));
+        assertThrows(IllegalArgumentException.class, () -> overrides.setClosed(-1, true));
+        assertThrows(IllegalArgumentException.class, () -> overrides.setMultiplier(5, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> overrides.setMultiplier(5, Double.NaN));
+    }
+
+    @Test
+    void loadFromReplacesTheOverridesOnce(@TempDir Path directory) throws IOException {
+        EdgeOverrides overrides = new EdgeOverrides(200);
+        overrides.setClosed(7, true);
+        overrides.setMultiplier(8, 5);
+        AtomicInteger calls = new AtomicInteger();
+        overrides.addListener(calls::incrementAndGet);
+        Path file = directory.resolve("closures.txt");
+        Files.writeString(file, """
+                # roadworks
+                close 12
+                close 150
+
+                multiply 64 2.5
+                """);
+        overrides.loadFrom(file);
+        assertEquals(1, calls.get());
+        assertFalse(overrides.isClosed(7));
+        assertEquals(1, overrides.multiplier(8));
+        assertTrue(overrides.isClosed(12));
+        assertTrue(overrides.isClosed(150));
+        assertFalse(overrides.isClosed(13));
+        assertEquals(2.5, overrides.multiplier(64));
+    }
+
+    @Test
+    void loadFromLeavesTheOverridesUnchangedIfTheFileIsInvalid(@TempDir Path directory) throws IOException {
+        EdgeOverrides overrides = new EdgeOverrides(200);
+        overrides.setClosed(7, true);
+        Path file = directory.resolve("closures.txt");
+        for (String content : new String[]{"close 12\nopen 13\n", "close 200\n", "multiply 5 0.5\n", "close\n",
+                "multiply 5\n", "close 1.5\n", "close 1e1\n", "close 3.0\n", "open 0x1\n"}) {
+            Files.writeString(file, content);
+            assertThrows(IllegalArgumentException.class, () -> overrides.loadFrom(file));
+            assertTrue(overrides.isClosed(7));
+            assertFalse(overrides.isClosed(12));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphSectors;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsochroneComputerTest {
+
+    private static Map<Integer, Float> asMap(Isochrone isochrone) {
+        Map<Integer, Float> costs = new HashMap<>();
+        for (int i = 0; i < isochrone.count(); ++i)
+            assertNull(costs.put(isochrone.nodeIds()[i], isochrone.costs()[i]));
+        return costs;
+    }
+
+    @Test
+    void reachableFromGivesTheCostsOfTheBestRoutes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 1500, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        IsochroneComputer isochroneComputer = new IsochroneComputer(graph, costFunction);
+        for (int source : TestGraphs.randomNodeIds(graph, rng, 20)) {
+            double budget = 500 + rng.nextDouble() * 10_000;
+            Map<Integer, Float> costs = asMap(isochroneComputer.reachableFrom(source, budget));
+            for (int target : TestGraphs.randomNodeIdsOtherThan(graph, rng, 20, source)) {
+                Route route = routeComputer.bestRouteBetween(source, target);
+                double cost = route == null ? Double.POSITIVE_INFINITY : TestGraphs.cost(graph, costFunction, route);
+                if (cost <= budget - 1e-2 * budget) {
+                    assertTrue(costs.containsKey(target));
+                    assertEquals(cost, costs.get(target), 1e-3 * cost);
+                } else if (cost > budget + 1e-2 * budget) {
+                    assertFalse(costs.containsKey(target));
+                }
+            }
+        }
+    }
+
+    @Test
+    void reachableFromSortsTheNodesByCostAndRespectsTheBudget() {
+        Graph graph = TestGraphs.grid(30, 30, 1500, 2022);
+        Isochrone isochrone = new IsochroneComputer(graph, new CityBikeCF(graph)).reachableFrom(42, 5000);
+        assertEquals(42, isochrone.nodeIds()[0]);
+        assertEquals(0f, isochrone.costs()[0]);
+        for (int i = 1; i < isochrone.count(); ++i) {
+            assertTrue(isochrone.costs()[i - 1] <= isochrone.costs()[i]);
+            assertTrue(isochrone.costs()[i] <= 5000);
+        }
+    }
+
+    @Test
+    void parallelSearchFindsTheSameNodesAsTheSequentialOne() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(50, 50, 1500, 2022);
+        IsochroneComputer isochroneComputer = new IsochroneComputer(graph, new CityBikeCF(graph));
+        for (int source : TestGraphs.randomNodeIds(graph, rng, 30)) {
+            double budget = rng.nextDouble() * 20_000;
+            double delta = 50 + rng.nextDouble() * 1000;
+            Isochrone sequential = isochroneComputer.reachableFrom(source, budget);
+            Isochrone parallel = isochroneComputer.reachableFromInParallel(source, budget, delta);
+            Map<Integer, Float> expected = asMap(sequential);
+            Map<Integer, Float> actual = asMap(parallel);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<Integer, Float> entry : expected.entrySet())
+                assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-3f * entry.getValue());
+            for (int j = 1; j < parallel.count(); ++j)
+                assertTrue(parallel.costs()[j - 1] <= parallel.costs()[j]);
+        }
+    }
+
+    @Test
+    void outlineSectorsAreCoveredSectors() {
+        Graph graph = TestGraphs.grid(40, 40, 1500, 2022);
+        int source = 820;
+        Isochrone isochrone = new IsochroneComputer(graph, new CityBikeCF(graph)).reachableFrom(source, 15_000);
+        BitSet covered = isochrone.coveredSectors(graph);
+        BitSet outline = isochrone.outlineSectors(graph);
+        assertTrue(covered.get(GraphSectors.sectorIdentityAt(graph.nodeE(source), graph.nodeN(source))));
+        assertFalse(outline.isEmpty());
+        BitSet outside = (BitSet) outline.clone();
+        outside.andNot(covered);
+        assertTrue(outside.isEmpty());
+        assertTrue(outline.cardinality() <= covered.cardinality());
+    }
+
+    @Test
+    void searchesThrowWithInvalidBudget() {
+        Graph graph = TestGraphs.grid(3, 3, 40, 2022);
+        IsochroneComputer isochroneComputer = new IsochroneComputer(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> isochroneComputer.reachableFrom(0, -1));
+        assertThrows(IllegalArgumentException.class, () -> isochroneComputer.reachableFromInParallel(0, 100, 0));
+        assertThrows(IllegalArgumentException.class, () -> isochroneComputer.reachableFromInParallel(0, 1e9, 1));
+    }
+}
@@ -0,0 +1,73 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LandmarksTest {
+
+    @Test
+    void lowerBoundsAreSmallerThanTheCostOfTheBestRoutes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        Landmarks landmarks = LandmarksBuilder.build(graph, costFunction, 6, LandmarksBuilder.Selection.FARTHEST);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 100)) {
+            Route route = routeComputer.bestRouteBetween(pair[0], pair[1]);
+            double cost = route == null ? Double.POSITIVE_INFINITY : TestGraphs.cost(graph, costFunction, route);
+            for (int landmark = 0; landmark < landmarks.count(); ++landmark)
+                assertTrue(landmarks.lowerBound(landmark, pair[0], pair[1]) <= cost * (1 + 1e-4));
+        }
+    }
+
+    @Test
+    void landmarkRoutesHaveTheSameCostAsEuclideanOnes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (LandmarksBuilder.Selection selection : LandmarksBuilder.Selection.values()) {
+            Landmarks landmarks = LandmarksBuilder.build(graph, costFunction, 8, selection);
+            for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 200))
+                TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(pair[0], pair[1]),
+                        routeComputer.bestRouteBetween(pair[0], pair[1], landmarks));
+        }
+    }
+
+    @Test
+    void bestLandmarksAreSortedByBound() {
+        Graph graph = TestGraphs.grid(20, 20, 40, 2022);
+        Landmarks landmarks = LandmarksBuilder.build(graph, new CityBikeCF(graph), 8, LandmarksBuilder.Selection.AVOID);
+        int[] best = landmarks.bestLandmarks(0, graph.nodeCount() - 1, 3);
+        assertEquals(3, best.length);
+        for (int i = 1; i < best.length; ++i)
+            assertTrue(landmarks.lowerBound(best[i - 1], 0, graph.nodeCount() - 1)
+                    >= landmarks.lowerBound(best[i], 0, graph.nodeCount() - 1));
+        for (int landmark = 0; landmark < landmarks.count(); ++landmark)
+            assertTrue(landmarks.lowerBound(landmark, 0, graph.nodeCount() - 1)
+                    <= landmarks.lowerBound(best[0], 0, graph.nodeCount() - 1));
+    }
+
+    @Test
+    void landmarksAreTheSameOnceWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.grid(20, 20, 40, 2022);
+        Landmarks built = LandmarksBuilder.build(graph, new CityBikeCF(graph), 5, LandmarksBuilder.Selection.AVOID);
+        built.writeTo(directory, "citybike");
+        Landmarks loaded = Landmarks.loadFrom(directory, "citybike");
+        assertEquals(built.count(), loaded.count());
+        for (int landmark = 0; landmark < built.count(); ++landmark) {
+            assertEquals(built.landmarkNodeId(landmark), loaded.landmarkNodeId(landmark));
+            for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+                assertEquals(built.costFromLandmark(landmark, nodeId), loaded.costFromLandmark(landmark, nodeId));
+                assertEquals(built.costToLandmark(landmark, nodeId), loaded.costToLandmark(landmark, nodeId));
+            }
+        }
+    }
+}
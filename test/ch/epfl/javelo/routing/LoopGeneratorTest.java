@@ -0,0 +1,55 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoopGeneratorTest {
+
+    @Test
+    void loopsFromGivesClosedLoopsOfTheTargetLength() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(80, 80, 40, 2022);
+        LoopGenerator generator = new LoopGenerator(graph, new CityBikeCF(graph));
+        double targetLength = 4000;
+        int loopCount = 0;
+        for (int i = 0; i < 10; ++i) {
+            int origin = rng.nextInt(graph.nodeCount());
+            List<Route> loops = generator.loopsFrom(origin, targetLength, 0.15, 3, Duration.ofSeconds(10));
+            assertTrue(loops.size() <= 3);
+            for (Route loop : loops) {
+                List<Edge> edges = loop.edges();
+                assertEquals(origin, edges.get(0).fromNodeId());
+                assertEquals(origin, edges.get(edges.size() - 1).toNodeId());
+                for (int j = 1; j < edges.size(); ++j)
+                    assertEquals(edges.get(j - 1).toNodeId(), edges.get(j).fromNodeId());
+                assertEquals(targetLength, loop.length(), 0.15 * targetLength);
+            }
+            loopCount += loops.size();
+        }
+        assertTrue(loopCount > 0);
+    }
+
+    @Test
+    void loopsFromReturnsNothingWhenTheBudgetIsSpent() {
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        LoopGenerator generator = new LoopGenerator(graph, new CityBikeCF(graph));
+        assertEquals(List.of(), generator.loopsFrom(graph.nodeCount() / 2, 2000, 0.1, 3, Duration.ZERO));
+    }
+
+    @Test
+    void loopsFromThrowsOnInvalidArguments() {
+        Graph graph = TestGraphs.grid(10, 10, 40, 2022);
+        LoopGenerator generator = new LoopGenerator(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> generator.loopsFrom(0, 0, 3));
+        assertThrows(IllegalArgumentException.class, () -> generator.loopsFrom(0, 1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> generator.loopsFrom(0, 1000, 1, 3, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> generator.loopsFrom(0, 1000, 0.1, 3, Duration.ofSeconds(-1)));
+    }
+}
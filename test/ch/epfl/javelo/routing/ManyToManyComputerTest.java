@@ -0,0 +1,60 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManyToManyComputerTest {
+
+    @Test
+    void matrixHasTheCostsAndLengthsOfTheBestRoutes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        ManyToManyComputer computer = new ManyToManyComputer(ContractionHierarchyBuilder.build(graph, costFunction));
+        int[] sources = rng.ints(15, 0, graph.nodeCount()).toArray();
+        int[] targets = rng.ints(20, 0, graph.nodeCount()).toArray();
+        DistanceMatrix matrix = computer.matrix(sources, targets);
+        assertEquals(15, matrix.sourceCount());
+        assertEquals(20, matrix.targetCount());
+        for (int i = 0; i < sources.length; ++i) {
+            for (int j = 0; j < targets.length; ++j) {
+                if (sources[i] == targets[j]) {
+                    assertEquals(0f, matrix.cost(i, j));
+                    continue;
+                }
+                Route route = routeComputer.bestRouteBetween(sources[i], targets[j]);
+                if (route == null) {
+                    assertFalse(matrix.hasRoute(i, j));
+                    continue;
+                }
+                double cost = TestGraphs.cost(graph, costFunction, route);
+                assertEquals(cost, matrix.cost(i, j), 1e-3 * cost);
+                assertEquals(route.length(), matrix.length(i, j), 1e-3 * route.length() + 1e-2);
+            }
+        }
+    }
+
+    @Test
+    void matrixOfANodeToItselfIsZero() {
+        Graph graph = TestGraphs.grid(10, 10, 40, 2022);
+        ManyToManyComputer computer = new ManyToManyComputer(
+                ContractionHierarchyBuilder.build(graph, new CityBikeCF(graph)));
+        DistanceMatrix matrix = computer.matrix(new int[]{7, 7}, new int[]{7});
+        assertEquals(0f, matrix.cost(0, 0));
+        assertEquals(0f, matrix.length(1, 0));
+    }
+
+    @Test
+    void matrixCanBeEmpty() {
+        Graph graph = TestGraphs.grid(10, 10, 40, 2022);
+        ManyToManyComputer computer = new ManyToManyComputer(
+                ContractionHierarchyBuilder.build(graph, new CityBikeCF(graph)));
+        DistanceMatrix matrix = computer.matrix(new int[0], new int[]{1, 2});
+        assertEquals(0, matrix.costs().length);
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.cost(0, 0));
+    }
+}
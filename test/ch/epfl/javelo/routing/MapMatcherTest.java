@@ -0,0 +1,131 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapMatcherTest {
+
+    private static List<PointCh> noisyTrace(Route route, double step, double noise, RandomGenerator rng) {
+        List<PointCh> trace = new ArrayList<>();
+        for (double position = 0; position <= route.length(); position += step) {
+            PointCh point = route.pointAt(position);
+            trace.add(new PointCh(point.e() + rng.nextGaussian() * noise, point.n() + rng.nextGaussian() * noise));
+        }
+        return trace;
+    }
+
+    @Test
+    void matchFindsTheRouteOfANoisyTrace() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        MapMatcher matcher = new MapMatcher(graph, costFunction);
+        int matchedRoutes = 0;
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 20)) {
+            Route route = routeComputer.bestRouteBetween(pair[0], pair[1]);
+            if (route == null || route.length() < 300) continue;
+            List<PointCh> trace = noisyTrace(route, 15, 4, rng);
+            MapMatcher.MatchedTrace matched = matcher.match(trace);
+            assertNotNull(matched.route());
+            assertEquals(trace.size(), matched.points().size());
+            int closePoints = 0;
+            double previousPosition = 0;
+            for (MapMatcher.MatchedPoint point : matched.points()) {
+                PointCh truth = route.pointAt(point.traceIndex() * 15d);
+                if (point.point().distanceTo(truth) < 15) ++closePoints;
+                assertTrue(point.routePosition() >= previousPosition);
+                previousPosition = point.routePosition();
+                //the position along the route does not go back with a point moving back a little on its edge
+                assertTrue(point.point().distanceTo(matched.route().pointAt(point.routePosition())) <= 20);
+            }
+            assertTrue(closePoints >= 0.9 * trace.size());
+            List<Edge> edges = matched.route().edges();
+            for (int j = 1; j < edges.size(); ++j) assertEquals(edges.get(j - 1).toNodeId(), edges.get(j).fromNodeId());
+            ++matchedRoutes;
+        }
+        assertTrue(matchedRoutes > 5);
+    }
+
+    @Test
+    void streamingMatchGivesTheSamePoints() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        Route route = null;
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        while (route == null || route.length() < 1000) {
+            int[] pair = TestGraphs.randomNodePairs(graph, rng, 1)[0];
+            route = routeComputer.bestRouteBetween(pair[0], pair[1]);
+        }
+        //a long trace, going back and forth along the route
+        List<PointCh> trace = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            List<PointCh> part = noisyTrace(route, 10, 4, rng);
+            if (i % 2 == 1) java.util.Collections.reverse(part);
+            trace.addAll(part);
+        }
+        MapMatcher matcher = new MapMatcher(graph, costFunction);
+        List<MapMatcher.MatchedPoint> streamed = new ArrayList<>();
+        matcher.match(trace.iterator(), streamed::add);
+        assertEquals(matcher.match(trace).points(), streamed);
+        for (int i = 1; i < streamed.size(); ++i)
+            assertTrue(streamed.get(i - 1).traceIndex() < streamed.get(i).traceIndex());
+    }
+
+    @Test
+    void matchIgnoresThePointsFarFromTheGraph() {
+        Graph graph = TestGraphs.grid(10, 10, 40, 2022);
+        MapMatcher matcher = new MapMatcher(graph, new CityBikeCF(graph));
+        PointCh far = new PointCh(graph.nodeE(0) - 1000, graph.nodeN(0) - 1000);
+        MapMatcher.MatchedTrace matched = matcher.match(List.of(far, far));
+        assertNull(matched.route());
+        assertTrue(matched.points().isEmpty());
+    }
+
+    @Test
+    void matchSplitsTheRouteWhereThePartsAreNotLinkedByAShortRoute() {
+        //two lines of nodes 240 meters apart, linked only by a detour of several kilometers
+        double[] e = new double[21];
+        double[] n = new double[21];
+        List<int[]> ways = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            e[i] = 2_530_000 + (i < 10 ? i * 40 : 600 + (i - 10) * 40);
+            n[i] = 1_150_000;
+            if (i != 9 && i != 19) ways.add(new int[]{i, i + 1, 0});
+        }
+        e[20] = 2_530_480;
+        n[20] = 1_152_000;
+        ways.add(new int[]{9, 20, 0});
+        ways.add(new int[]{20, 10, 0});
+        Graph graph = TestGraphs.build(e, n, ways, newRandom());
+        MapMatcher matcher = new MapMatcher(graph, new CityBikeCF(graph));
+        List<PointCh> trace = new ArrayList<>();
+        for (double x = 0; x <= 960; x += 15)
+            if (x < 360 || x >= 600) trace.add(new PointCh(2_530_000 + x, 1_150_000 + 3));
+
+        MapMatcher.MatchedTrace matched = matcher.match(trace);
+        assertEquals(trace.size(), matched.points().size());
+        assertTrue(matched.route() instanceof MultiRoute);
+        assertTrue(matched.route().length() < 1000);
+        List<Edge> edges = matched.route().edges();
+        int gaps = 0;
+        for (int j = 1; j < edges.size(); ++j)
+            if (edges.get(j - 1).toNodeId() != edges.get(j).fromNodeId()) ++gaps;
+        assertEquals(1, gaps);
+        double previousPosition = 0;
+        for (MapMatcher.MatchedPoint point : matched.points()) {
+            assertTrue(point.routePosition() >= previousPosition);
+            previousPosition = point.routePosition();
+            assertTrue(point.point().distanceTo(matched.route().pointAt(point.routePosition())) <= 20);
+        }
+    }
+}
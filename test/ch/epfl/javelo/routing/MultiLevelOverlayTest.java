@@ -0,0 +1,69 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiLevelOverlayTest {
+
+    private static void assertSameRoutes(Graph graph, CostFunction costFunction, MultiLevelOverlay overlay) {
+        var rng = newRandom();
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 200))
+            TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(pair[0], pair[1]),
+                    overlay.bestRouteBetween(pair[0], pair[1]));
+    }
+
+    @Test
+    void partitionCellsAreNestedAndBoundaryNodesAreTheOnesOfCutEdges() {
+        Graph graph = TestGraphs.grid(60, 40, 400, 2022);
+        MultiLevelPartition partition = MultiLevelPartition.of(graph, 0, 1, 3);
+        for (int level = 0; level < partition.levelCount(); ++level) {
+            for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+                boolean cut = false;
+                for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i)
+                    cut |= partition.cell(level, graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, i)))
+                            != partition.cell(level, nodeId);
+                for (int i = 0; i < graph.nodeInDegree(nodeId); ++i)
+                    cut |= partition.cell(level, graph.edgeSourceNodeId(graph.nodeInEdgeId(nodeId, i)))
+                            != partition.cell(level, nodeId);
+                int index = partition.boundaryIndex(level, nodeId);
+                assertEquals(cut, index >= 0);
+                if (cut)
+                    assertEquals(nodeId, partition.boundaryNodeId(level, partition.cell(level, nodeId), index));
+                if (level > 0 && cut) assertTrue(partition.boundaryIndex(level - 1, nodeId) >= 0);
+            }
+        }
+    }
+
+    @Test
+    void partitionThrowsOnInvalidLevels() {
+        Graph graph = TestGraphs.grid(3, 3, 40, 2022);
+        assertThrows(IllegalArgumentException.class, () -> MultiLevelPartition.of(graph, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> MultiLevelPartition.of(graph, 0, 7));
+        assertThrows(IllegalArgumentException.class, () -> MultiLevelPartition.of(graph, new int[0]));
+    }
+
+    @Test
+    void overlayRoutesHaveTheSameCostAsRouteComputerOnes() {
+        Graph graph = TestGraphs.grid(60, 50, 400, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        MultiLevelPartition partition = MultiLevelPartition.of(graph, 0, 1, 2);
+        assertSameRoutes(graph, costFunction, MultiLevelOverlay.customize(graph, partition, costFunction));
+    }
+
+    @Test
+    void partitionIsSharedByTheOverlaysOfSeveralCostFunctions() {
+        Graph graph = TestGraphs.grid(60, 50, 400, 2022);
+        MultiLevelPartition partition = MultiLevelPartition.of(graph, 0, 2);
+        CostFunction cityBike = new CityBikeCF(graph);
+        CostFunction lengthOnly = (nodeId, edgeId) -> 1;
+        MultiLevelOverlay cityBikeOverlay = MultiLevelOverlay.customize(graph, partition, cityBike);
+        MultiLevelOverlay lengthOverlay = MultiLevelOverlay.customize(graph, partition, lengthOnly);
+        assertSame(cityBikeOverlay.partition(), lengthOverlay.partition());
+        assertSameRoutes(graph, cityBike, cityBikeOverlay);
+        assertSameRoutes(graph, lengthOnly, lengthOverlay);
+    }
+}
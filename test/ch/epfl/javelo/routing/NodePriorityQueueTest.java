@@ -0,0 +1,86 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodePriorityQueueTest {
+
+    @Test
+    void emptyQueueThrows() {
+        for (NodePriorityQueue.Kind kind : NodePriorityQueue.Kind.values()) {
+            NodePriorityQueue queue = kind.create(10);
+            assertTrue(queue.isEmpty());
+            assertThrows(NoSuchElementException.class, queue::removeMin);
+            assertThrows(NoSuchElementException.class, queue::minPriority);
+        }
+    }
+
+    @Test
+    void decreaseKeyKeepsASingleEntryPerNode() {
+        for (NodePriorityQueue.Kind kind : NodePriorityQueue.Kind.values()) {
+            NodePriorityQueue queue = kind.create(10);
+            queue.insertOrDecrease(3, 10f);
+            queue.insertOrDecrease(4, 5f);
+            queue.insertOrDecrease(3, 2f);
+            queue.insertOrDecrease(4, 7f);
+            assertEquals(2, queue.size());
+            assertTrue(queue.contains(3));
+            assertEquals(2f, queue.minPriority());
+            assertEquals(3, queue.removeMin());
+            assertFalse(queue.contains(3));
+            assertEquals(4, queue.removeMin());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    void clearEmptiesTheQueue() {
+        for (NodePriorityQueue.Kind kind : NodePriorityQueue.Kind.values()) {
+            NodePriorityQueue queue = kind.create(10);
+            for (int i = 0; i < 10; ++i) queue.insertOrDecrease(i, i + 1);
+            queue.clear();
+            assertTrue(queue.isEmpty());
+            for (int i = 0; i < 10; ++i) assertFalse(queue.contains(i));
+            queue.insertOrDecrease(7, 1f);
+            assertEquals(7, queue.removeMin());
+        }
+    }
+
+    @Test
+    void queuesExtractNodesInPriorityOrderWithMonotonePriorities() {
+        var rng = newRandom();
+        int nodeCount = 2_000;
+        for (NodePriorityQueue.Kind kind : NodePriorityQueue.Kind.values()) {
+            NodePriorityQueue queue = kind.create(nodeCount);
+            float[] priorities = new float[nodeCount];
+            boolean[] removed = new boolean[nodeCount];
+            Arrays.fill(priorities, Float.POSITIVE_INFINITY);
+            float last = 0;
+            for (int i = 0; i < RANDOM_ITERATIONS * 10; ++i) {
+                if (rng.nextInt(3) > 0 || queue.isEmpty()) {
+                    //Dijkstra-like: new priorities are never smaller than the last extracted one
+                    int nodeId = rng.nextInt(nodeCount);
+                    if (removed[nodeId]) continue;
+                    float priority = last + rng.nextFloat(0, 1000);
+                    queue.insertOrDecrease(nodeId, priority);
+                    priorities[nodeId] = Math.min(priorities[nodeId], priority);
+                } else {
+                    float expected = Float.POSITIVE_INFINITY;
+                    for (int n = 0; n < nodeCount; ++n)
+                        if (!removed[n]) expected = Math.min(expected, priorities[n]);
+                    assertEquals(expected, queue.minPriority());
+                    int nodeId = queue.removeMin();
+                    assertEquals(expected, priorities[nodeId]);
+                    removed[nodeId] = true;
+                    last = expected;
+                }
+            }
+        }
+    }
+}
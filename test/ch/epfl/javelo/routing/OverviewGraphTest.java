@@ -0,0 +1,113 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static ch.epfl.javelo.data.Attribute.*;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverviewGraphTest {
+    private static final AttributeSet KEPT = AttributeSet.of(HIGHWAY_PRIMARY, HIGHWAY_TRUNK, HIGHWAY_RESIDENTIAL, LCN_YES);
+
+    @Test
+    void previewRoutesAreValidAndNotCheaperThanTheBestOnes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(60, 60, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        OverviewGraph overview = OverviewGraphBuilder.build(graph, costFunction, KEPT);
+        assertTrue(overview.nodeCount() < graph.nodeCount());
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int previewCount = 0;
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 100)) {
+            int start = pair[0];
+            int end = pair[1];
+            Route preview = overview.previewRouteBetween(start, end);
+            Route best = routeComputer.bestRouteBetween(start, end);
+            if (preview == null) continue;
+            ++previewCount;
+            assertNotNull(best);
+            assertEquals(start, preview.edges().get(0).fromNodeId());
+            assertEquals(end, preview.edges().get(preview.edges().size() - 1).toNodeId());
+            for (int j = 1; j < preview.edges().size(); ++j)
+                assertEquals(preview.edges().get(j - 1).toNodeId(), preview.edges().get(j).fromNodeId());
+            double bestCost = TestGraphs.cost(graph, costFunction, best);
+            assertTrue(TestGraphs.cost(graph, costFunction, preview) >= bestCost * (1 - 1e-3));
+        }
+        assertTrue(previewCount > 50);
+    }
+
+    @Test
+    void arcsAreChainsOfKeptEdgesBetweenJunctions() {
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        OverviewGraph overview = OverviewGraphBuilder.build(graph, costFunction, KEPT);
+        for (int node = 1; node < overview.nodeCount(); ++node)
+            assertTrue(overview.graphNodeId(node - 1) < overview.graphNodeId(node));
+        for (int node = 0; node < overview.nodeCount(); ++node)
+            assertEquals(node, overview.overviewNodeOf(overview.graphNodeId(node)));
+        int notInOverview = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId)
+            if (overview.overviewNodeOf(nodeId) == -1) ++notInOverview;
+        assertEquals(graph.nodeCount() - overview.nodeCount(), notInOverview);
+        assertTrue(overview.arcCount() > 0);
+    }
+
+    @Test
+    void overviewIsTheSameOnceWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        OverviewGraph built = OverviewGraphBuilder.build(graph, costFunction, KEPT);
+        built.writeTo(directory, "citybike");
+        OverviewGraph loaded = OverviewGraph.loadFrom(graph, costFunction, directory, "citybike");
+        assertEquals(built.nodeCount(), loaded.nodeCount());
+        assertEquals(built.arcCount(), loaded.arcCount());
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 30)) {
+            int start = pair[0];
+            int end = pair[1];
+            Route expected = built.previewRouteBetween(start, end);
+            Route actual = loaded.previewRouteBetween(start, end);
+            assertEquals(expected == null, actual == null);
+            if (expected != null) assertEquals(expected.length(), actual.length());
+        }
+    }
+
+    private static int[] edgeIds(Graph graph, Route route) {
+        //the edges of a route only give their nodes, so that every edge linking them is taken
+        return route.edges().stream()
+                .flatMapToInt(edge -> IntStream.range(0, graph.nodeOutDegree(edge.fromNodeId()))
+                        .map(i -> graph.nodeOutEdgeId(edge.fromNodeId(), i))
+                        .filter(edgeId -> graph.edgeTargetNodeId(edgeId) == edge.toNodeId()))
+                .toArray();
+    }
+
+    @Test
+    void previewRoutesAvoidTheEdgesClosedOnceTheArcCostsAreUpdated() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(60, 60, 40, 2022);
+        EdgeOverrides overrides = new EdgeOverrides(graph.edgeCount());
+        OverviewGraph overview = OverviewGraphBuilder.build(graph, new OverridingCF(new CityBikeCF(graph), overrides),
+                KEPT);
+        int checkedCount = 0;
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 30)) {
+            Route preview = overview.previewRouteBetween(pair[0], pair[1]);
+            if (preview == null) continue;
+            for (int edgeId : edgeIds(graph, preview)) overrides.setClosed(edgeId, true);
+            overview.updateArcCosts();
+            for (int[] otherPair : TestGraphs.randomNodePairs(graph, rng, 10)) {
+                Route otherPreview = overview.previewRouteBetween(otherPair[0], otherPair[1]);
+                if (otherPreview == null) continue;
+                ++checkedCount;
+                for (int edgeId : edgeIds(graph, otherPreview)) assertFalse(overrides.isClosed(edgeId));
+            }
+        }
+        assertTrue(checkedCount > 50);
+    }
+}
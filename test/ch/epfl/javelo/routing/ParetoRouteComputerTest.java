@@ -0,0 +1,94 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParetoRouteComputerTest {
+
+    private static double ascent(Graph graph, Route route) {
+        double ascent = 0;
+        for (Edge edge : route.edges()) {
+            for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); ++i) {
+                int edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+                if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId() && graph.edgeLength(edgeId) == edge.length()) {
+                    ascent += graph.edgeElevationGain(edgeId);
+                    break;
+                }
+            }
+        }
+        return ascent;
+    }
+
+    @Test
+    void frontierStartsWithTheCheapestRouteAndTradesCostForAscent() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        ParetoRouteComputer computer = new ParetoRouteComputer(graph, costFunction);
+        int tradeOffCount = 0;
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 40)) {
+            int start = pair[0];
+            int end = pair[1];
+            Route expected = routeComputer.bestRouteBetween(start, end);
+            List<SingleRoute> routes = computer.paretoRoutesBetween(start, end);
+            if (expected == null) {
+                assertTrue(routes.isEmpty());
+                continue;
+            }
+            double bestCost = TestGraphs.cost(graph, costFunction, expected);
+            assertEquals(bestCost, TestGraphs.cost(graph, costFunction, routes.get(0)), 1e-3 * bestCost);
+            double previousCost = Double.NEGATIVE_INFINITY;
+            double previousAscent = Double.POSITIVE_INFINITY;
+            for (SingleRoute route : routes) {
+                assertEquals(start, route.edges().get(0).fromNodeId());
+                assertEquals(end, route.edges().get(route.edges().size() - 1).toNodeId());
+                for (int j = 1; j < route.edges().size(); ++j)
+                    assertEquals(route.edges().get(j - 1).toNodeId(), route.edges().get(j).fromNodeId());
+                double cost = TestGraphs.cost(graph, costFunction, route);
+                double ascent = ascent(graph, route);
+                assertTrue(cost > previousCost - 1e-3 && ascent < previousAscent + 1e-3);
+                assertTrue(cost <= (1 + ParetoRouteComputer.DEFAULT_MAX_STRETCH) * bestCost * (1 + 1e-3));
+                previousCost = cost;
+                previousAscent = ascent;
+            }
+            tradeOffCount += routes.size() - 1;
+        }
+        assertTrue(tradeOffCount > 0);
+    }
+
+    @Test
+    void noRouteOfTheFrontierIsDominatedByABestRoute() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(20, 20, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        ParetoRouteComputer exact = new ParetoRouteComputer(graph, costFunction, 0, 10);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 20)) {
+            int start = pair[0];
+            int end = pair[1];
+            Route best = routeComputer.bestRouteBetween(start, end);
+            if (best == null) continue;
+            double bestAscent = ascent(graph, best);
+            List<SingleRoute> routes = exact.paretoRoutesBetween(start, end);
+            //the cheapest route can only be on the frontier, or be replaced by one as cheap which climbs less
+            assertTrue(ascent(graph, routes.get(0)) <= bestAscent + 1e-3);
+            assertTrue(ascent(graph, routes.get(routes.size() - 1)) <= bestAscent + 1e-3);
+        }
+    }
+
+    @Test
+    void constructorAndQueriesRejectInvalidArguments() {
+        Graph graph = TestGraphs.grid(5, 5, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        assertThrows(IllegalArgumentException.class, () -> new ParetoRouteComputer(graph, costFunction, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ParetoRouteComputer(graph, costFunction, 0, -1));
+        ParetoRouteComputer computer = new ParetoRouteComputer(graph, costFunction);
+        assertThrows(IllegalArgumentException.class, () -> computer.paretoRoutesBetween(3, 3));
+    }
+}
@@ -0,0 +1,112 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteComputerBatchTest {
+
+    private static int[] column(int[][] pairs, int index) {
+        return Arrays.stream(pairs).mapToInt(pair -> pair[index]).toArray();
+    }
+
+    @Test
+    void batchRoutesAreTheOnesOfSingleQueries() {
+        Graph graph = TestGraphs.grid(40, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int[][] pairs = TestGraphs.randomNodePairs(graph, newRandom(), 500);
+        List<Route> routes = routeComputer.bestRoutesBetween(column(pairs, 0), column(pairs, 1));
+        assertEquals(500, routes.size());
+        for (int i = 0; i < routes.size(); ++i) {
+            Route expected = routeComputer.bestRouteBetween(pairs[i][0], pairs[i][1]);
+            if (expected == null) {
+                assertNull(routes.get(i));
+                continue;
+            }
+            assertEquals(expected.edges(), routes.get(i).edges());
+        }
+    }
+
+    @Test
+    void batchSummariesMatchTheRoutes() {
+        Graph graph = TestGraphs.grid(40, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int[][] pairs = TestGraphs.randomNodePairs(graph, newRandom(), 500);
+        RouteSummaries summaries = routeComputer.bestRouteSummariesBetween(column(pairs, 0), column(pairs, 1));
+        assertEquals(500, summaries.count());
+        for (int i = 0; i < summaries.count(); ++i) {
+            Route route = routeComputer.bestRouteBetween(pairs[i][0], pairs[i][1]);
+            assertEquals(route != null, summaries.hasRoute(i));
+            if (route == null) continue;
+            double cost = TestGraphs.cost(graph, costFunction, route);
+            assertEquals(cost, summaries.costs()[i], 1e-4 * cost);
+            assertEquals(route.length(), summaries.lengths()[i], 1e-6 * route.length());
+            double ascent = 0;
+            for (Edge edge : route.edges()) ascent += graph.edgeElevationGain(edgeId(graph, edge));
+            assertEquals(ascent, summaries.ascents()[i], 1e-6);
+        }
+    }
+
+    @Test
+    void costMatrixMatchesTheRoutes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int[] nodeIds = rng.ints(0, graph.nodeCount()).distinct().limit(12).toArray();
+        DistanceMatrix matrix = routeComputer.costMatrix(nodeIds);
+        assertEquals(12, matrix.sourceCount());
+        assertEquals(12, matrix.targetCount());
+        for (int i = 0; i < nodeIds.length; ++i) {
+            for (int j = 0; j < nodeIds.length; ++j) {
+                if (i == j) {
+                    assertEquals(0, matrix.cost(i, j));
+                    continue;
+                }
+                Route route = routeComputer.bestRouteBetween(nodeIds[i], nodeIds[j]);
+                assertEquals(route != null, matrix.hasRoute(i, j));
+                if (route == null) continue;
+                double cost = TestGraphs.cost(graph, costFunction, route);
+                assertEquals(cost, matrix.cost(i, j), 1e-4 * cost);
+                assertEquals(route.length(), matrix.length(i, j), 1e-4 * route.length());
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> routeComputer.costMatrix(new int[]{1, 2, 1}));
+    }
+
+    @Test
+    void costMatrixStopsWhenCancelled() {
+        Graph graph = TestGraphs.grid(60, 60, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        int[] nodeIds = {0, graph.nodeCount() - 1, graph.nodeCount() / 2};
+        assertThrows(CancellationException.class, () -> routeComputer.costMatrix(nodeIds, () -> true));
+        DistanceMatrix matrix = routeComputer.costMatrix(nodeIds, () -> false);
+        assertTrue(matrix.hasRoute(0, 1));
+    }
+
+    private static int edgeId(Graph graph, Edge edge) {
+        for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); ++i) {
+            int edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+            if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId()) return edgeId;
+        }
+        throw new AssertionError();
+    }
+
+    @Test
+    void batchThrowsOnInvalidPairs() {
+        Graph graph = TestGraphs.grid(3, 3, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class,
+                () -> routeComputer.bestRouteSummariesBetween(new int[]{1, 2}, new int[]{3}));
+        assertThrows(IllegalArgumentException.class,
+                () -> routeComputer.bestRoutesBetween(new int[]{1, 2}, new int[]{3, 2}));
+    }
+}
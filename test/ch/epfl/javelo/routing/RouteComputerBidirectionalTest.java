@@ -0,0 +1,30 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteComputerBidirectionalTest {
+
+    @Test
+    void bidirectionalRoutesHaveTheSameCostAsUnidirectionalOnes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        for (NodePriorityQueue.Kind kind : NodePriorityQueue.Kind.values()) {
+            RouteComputer routeComputer = new RouteComputer(graph, costFunction, kind);
+            for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 200))
+                TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(pair[0], pair[1]),
+                        routeComputer.bidirectionalBestRouteBetween(pair[0], pair[1]));
+        }
+    }
+
+    @Test
+    void bidirectionalThrowsOnIdenticalNodes() {
+        Graph graph = TestGraphs.grid(3, 3, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> routeComputer.bidirectionalBestRouteBetween(4, 4));
+    }
+}
@@ -0,0 +1,107 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteComputerBudgetTest {
+
+    @Test
+    void unlimitedSearchFindsTheSameRoutes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 50)) {
+            Route expected = routeComputer.bestRouteBetween(pair[0], pair[1]);
+            SearchResult result = routeComputer.bestRouteBetween(pair[0], pair[1], SearchOptions.UNLIMITED);
+            assertFalse(result.isIncomplete());
+            if (expected == null) {
+                assertEquals(SearchResult.Status.UNREACHABLE, result.status());
+                assertNull(result.route());
+            } else {
+                assertEquals(SearchResult.Status.FOUND, result.status());
+                assertTrue(result.settledNodes() > 0);
+                assertEquals(TestGraphs.cost(graph, costFunction, expected),
+                        TestGraphs.cost(graph, costFunction, result.route()));
+            }
+        }
+    }
+
+    @Test
+    void searchStopsAfterTheMaximalNumberOfSettledNodes() {
+        Graph graph = TestGraphs.grid(100, 100, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        int end = graph.nodeCount() - 1;
+        SearchResult result = routeComputer.bestRouteBetween(0, end, SearchOptions.UNLIMITED.withMaxSettledNodes(100));
+        assertEquals(SearchResult.Status.BUDGET_EXCEEDED, result.status());
+        assertTrue(result.isIncomplete());
+        assertNull(result.route());
+        assertEquals(100, result.settledNodes());
+    }
+
+    @Test
+    void searchStopsAtItsDeadline() {
+        Graph graph = TestGraphs.grid(100, 100, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        int end = graph.nodeCount() - 1;
+        SearchResult result = routeComputer.bestRouteBetween(0, end,
+                SearchOptions.UNLIMITED.withDeadline(Instant.now().minusSeconds(1)));
+        assertEquals(SearchResult.Status.BUDGET_EXCEEDED, result.status());
+        assertEquals(SearchBudget.CHECK_INTERVAL, result.settledNodes());
+    }
+
+    @Test
+    void cancelledSearchReturnsCancelled() {
+        Graph graph = TestGraphs.grid(100, 100, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        int end = graph.nodeCount() - 1;
+        SearchResult result = routeComputer.bestRouteBetween(0, end,
+                SearchOptions.UNLIMITED.withCancellation(() -> true));
+        assertEquals(SearchResult.Status.CANCELLED, result.status());
+        assertNull(result.route());
+    }
+
+    @Test
+    void progressIsReportedEveryInterval() {
+        Graph graph = TestGraphs.grid(60, 60, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        List<Integer> reported = new ArrayList<>();
+        SearchResult result = routeComputer.bestRouteBetween(0, graph.nodeCount() - 1,
+                SearchOptions.UNLIMITED.withMaxSettledNodes(1000).withProgress(reported::add, 300));
+        assertEquals(List.of(300, 600, 900), reported);
+        assertEquals(1000, result.settledNodes());
+    }
+
+    @Test
+    void unreachableQueriesSettleNoNodeWithComponents() {
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        ConnectedComponents components = ConnectedComponentsBuilder.build(graph, costFunction);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction, components);
+        int checked = 0;
+        for (int start = 0; start < graph.nodeCount() && checked < 10; ++start) {
+            int end = graph.nodeCount() - 1 - start;
+            if (start == end || components.mayReach(start, end)) continue;
+            SearchResult result = routeComputer.bestRouteBetween(start, end, SearchOptions.UNLIMITED);
+            assertEquals(SearchResult.Status.UNREACHABLE, result.status());
+            assertEquals(0, result.settledNodes());
+            ++checked;
+        }
+    }
+
+    @Test
+    void optionsRejectInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> SearchOptions.UNLIMITED.withMaxSettledNodes(0));
+        assertThrows(IllegalArgumentException.class, () -> SearchOptions.UNLIMITED.withProgress(n -> {}, 0));
+        assertThrows(NullPointerException.class, () -> SearchOptions.UNLIMITED.withCancellation(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SearchResult(SearchResult.Status.FOUND, null, 0));
+    }
+}
@@ -0,0 +1,29 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteComputerCancellationTest {
+
+    @Test
+    void cancelledSearchThrowsAndLeavesTheComputerUsable() {
+        Graph graph = TestGraphs.grid(100, 100, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int end = graph.nodeCount() - 1;
+        AtomicInteger checks = new AtomicInteger();
+        assertThrows(CancellationException.class,
+                () -> routeComputer.bestRouteBetween(0, end, () -> checks.incrementAndGet() > 2));
+        assertEquals(3, checks.get());
+
+        Route expected = routeComputer.bestRouteBetween(0, end);
+        Route actual = routeComputer.bestRouteBetween(0, end, () -> false);
+        assertNotNull(actual);
+        assertEquals(TestGraphs.cost(graph, costFunction, expected), TestGraphs.cost(graph, costFunction, actual));
+    }
+}
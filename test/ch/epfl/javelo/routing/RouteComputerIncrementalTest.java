@@ -0,0 +1,51 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteComputerIncrementalTest {
+
+    @Test
+    void incrementalRoutesAreTheBestOnes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int start : TestGraphs.randomNodeIds(graph, rng, 5)) {
+            for (int end : TestGraphs.randomNodeIdsOtherThan(graph, rng, 40, start))
+                TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(start, end),
+                        routeComputer.incrementalBestRouteBetween(start, end));
+        }
+    }
+
+    @Test
+    void cancelledIncrementalSearchCanBeResumed() {
+        Graph graph = TestGraphs.grid(100, 100, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int end = graph.nodeCount() - 1;
+        assertThrows(CancellationException.class,
+                () -> routeComputer.incrementalBestRouteBetween(0, end, () -> true));
+        TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(0, end),
+                routeComputer.incrementalBestRouteBetween(0, end));
+        //the ending node and all the nodes closer to the start are now settled
+        TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(0, 150),
+                routeComputer.incrementalBestRouteBetween(0, 150, () -> true));
+    }
+
+    @Test
+    void invalidatedTreeIsBuiltAgain() {
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        Route first = routeComputer.incrementalBestRouteBetween(5, 800);
+        routeComputer.invalidateRetainedTree();
+        TestGraphs.assertSameRouteCost(graph, costFunction, first, routeComputer.incrementalBestRouteBetween(5, 800));
+        assertThrows(IllegalArgumentException.class, () -> routeComputer.incrementalBestRouteBetween(3, 3));
+    }
+}
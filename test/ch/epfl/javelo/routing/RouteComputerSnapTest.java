@@ -0,0 +1,74 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteComputerSnapTest {
+
+    private static int indexOf(SnapCandidates candidates, int nodeId) {
+        for (int k = 0; k < candidates.count(); ++k) if (candidates.nodeIds()[k] == nodeId) return k;
+        return -1;
+    }
+
+    @Test
+    void bestRouteBetweenCandidatesIsTheBestOfAllPairs() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(40, 40, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 40)) {
+            PointCh startPoint = graph.nodePoint(pair[0]);
+            PointCh endPoint = graph.nodePoint(pair[1]);
+            SnapCandidates starts = SnapCandidates.around(graph, startPoint, 100, 4, nodeId -> true);
+            SnapCandidates ends = SnapCandidates.around(graph, endPoint, 100, 4, nodeId -> !starts.contains(nodeId));
+            if (ends == null) continue;
+
+            double expected = Double.POSITIVE_INFINITY;
+            for (int s = 0; s < starts.count(); ++s) {
+                for (int e = 0; e < ends.count(); ++e) {
+                    Route route = routeComputer.bestRouteBetween(starts.nodeIds()[s], ends.nodeIds()[e]);
+                    if (route == null) continue;
+                    expected = Math.min(expected, starts.offsets()[s] + TestGraphs.cost(graph, costFunction, route)
+                            + ends.offsets()[e]);
+                }
+            }
+            Route route = routeComputer.bestRouteBetween(starts, ends);
+            if (expected == Double.POSITIVE_INFINITY) {
+                assertNull(route);
+                continue;
+            }
+            int s = indexOf(starts, route.edges().get(0).fromNodeId());
+            int e = indexOf(ends, route.edges().get(route.edges().size() - 1).toNodeId());
+            assertTrue(s >= 0 && e >= 0);
+            double actual = starts.offsets()[s] + TestGraphs.cost(graph, costFunction, route) + ends.offsets()[e];
+            assertEquals(expected, actual, 1e-3 * expected);
+        }
+    }
+
+    @Test
+    void singleCandidatesGiveTheBestRouteBetweenTheNodes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 30))
+            TestGraphs.assertSameRouteCost(graph, costFunction, routeComputer.bestRouteBetween(pair[0], pair[1]),
+                    routeComputer.bestRouteBetween(SnapCandidates.of(pair[0]), SnapCandidates.of(pair[1])));
+    }
+
+    @Test
+    void candidatesRejectInvalidArguments() {
+        Graph graph = TestGraphs.grid(10, 10, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> new SnapCandidates(new int[0], new float[0]));
+        assertThrows(IllegalArgumentException.class, () -> new SnapCandidates(new int[]{1, 1}, new float[]{0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> new SnapCandidates(new int[]{1}, new float[]{-1}));
+        assertThrows(IllegalArgumentException.class, () -> routeComputer.bestRouteBetween(
+                new SnapCandidates(new int[]{1, 2}, new float[]{0, 0}), SnapCandidates.of(2)));
+        assertNull(SnapCandidates.around(graph, graph.nodePoint(0), 100, 3, nodeId -> false));
+    }
+}
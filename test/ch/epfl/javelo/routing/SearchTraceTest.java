@@ -0,0 +1,120 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTraceTest {
+
+    @Test
+    void traceRecordsTheSettledNodesOfEachSearch() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 50, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        SearchTrace trace = new SearchTrace();
+        routeComputer.setSearchTrace(trace);
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 10)) {
+            int startNodeId = pair[0];
+            int endNodeId = pair[1];
+            SearchResult result = routeComputer.bestRouteBetween(startNodeId, endNodeId, SearchOptions.UNLIMITED);
+            SearchTrace.Snapshot snapshot = trace.drain();
+            assertEquals(1, snapshot.searchCount());
+            assertEquals(result.settledNodes(), snapshot.settledCount());
+            assertEquals(0, snapshot.backwardCount());
+            assertTrue(snapshot.searchNanos() > 0);
+            Set<Integer> nodeIds = new HashSet<>();
+            for (int k = 0; k < snapshot.settledCount(); ++k) assertTrue(nodeIds.add(snapshot.nodeId(k)));
+            if (snapshot.settledCount() > 0) assertEquals(startNodeId, snapshot.nodeId(0));
+        }
+    }
+
+    @Test
+    void bidirectionalSearchesRecordBothDirections() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 50, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        SearchTrace trace = new SearchTrace();
+        routeComputer.setSearchTrace(trace);
+        int searches = 0;
+        for (int[] pair : TestGraphs.randomNodePairs(graph, rng, 10)) {
+            int startNodeId = pair[0];
+            int endNodeId = pair[1];
+            if (routeComputer.bidirectionalBestRouteBetween(startNodeId, endNodeId) == null) continue;
+            ++searches;
+        }
+        SearchTrace.Snapshot snapshot = trace.drain();
+        assertTrue(snapshot.searchCount() >= searches);
+        assertTrue(snapshot.backwardCount() > 0);
+        assertTrue(snapshot.backwardCount() < snapshot.settledCount());
+        for (int k = 0; k < snapshot.settledCount(); ++k) {
+            int nodeId = snapshot.nodeId(k);
+            assertTrue(nodeId >= 0 && nodeId < graph.nodeCount());
+            assertEquals(snapshot.settledNodes()[k] < 0, snapshot.isBackward(k));
+        }
+    }
+
+    @Test
+    void drainEmptiesTheTraceAndNothingIsRecordedWithoutIt() {
+        Graph graph = TestGraphs.grid(20, 20, 50, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        SearchTrace trace = new SearchTrace();
+        routeComputer.setSearchTrace(trace);
+        routeComputer.bestRouteBetween(0, graph.nodeCount() - 1);
+        routeComputer.bestRouteBetween(graph.nodeCount() - 1, 0);
+        SearchTrace.Snapshot snapshot = trace.drain();
+        assertEquals(2, snapshot.searchCount());
+        SearchTrace.Snapshot empty = trace.drain();
+        assertEquals(0, empty.searchCount());
+        assertEquals(0, empty.settledCount());
+        assertEquals(0, empty.searchNanos());
+
+        routeComputer.setSearchTrace(null);
+        routeComputer.bestRouteBetween(0, graph.nodeCount() - 1);
+        assertEquals(0, trace.drain().searchCount());
+    }
+
+    @Test
+    void parallelSearchesAreAllRecorded() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.grid(30, 30, 50, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        SearchTrace trace = new SearchTrace();
+        routeComputer.setSearchTrace(trace);
+        int count = 50;
+        int[] startNodeIds = new int[count];
+        int[] endNodeIds = new int[count];
+        for (int i = 0; i < count; ++i) {
+            startNodeIds[i] = rng.nextInt(graph.nodeCount() / 2);
+            endNodeIds[i] = graph.nodeCount() / 2 + rng.nextInt(graph.nodeCount() / 2);
+        }
+        routeComputer.bestRouteSummariesBetween(startNodeIds, endNodeIds);
+        assertEquals(count, trace.drain().searchCount());
+    }
+
+    @Test
+    void searchesWhichDidNotEndAreNotRecorded() {
+        //large enough for the cancellation condition to be checked before the end of the searches
+        Graph graph = TestGraphs.grid(60, 60, 50, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        SearchTrace trace = new SearchTrace();
+        routeComputer.setSearchTrace(trace);
+        int endNodeId = graph.nodeCount() - 1;
+        assertThrows(CancellationException.class, () -> routeComputer.bestRouteBetween(0, endNodeId, () -> true));
+        assertThrows(CancellationException.class,
+                () -> routeComputer.incrementalBestRouteBetween(0, endNodeId, () -> true));
+        SearchResult stopped = routeComputer.bestRouteBetween(0, endNodeId,
+                SearchOptions.UNLIMITED.withMaxSettledNodes(10));
+        assertEquals(SearchResult.Status.BUDGET_EXCEEDED, stopped.status());
+        assertEquals(0, trace.drain().searchCount());
+
+        //the incremental search going on from the cancelled one is recorded once it ends
+        assertNotNull(routeComputer.incrementalBestRouteBetween(0, endNodeId));
+        assertEquals(1, trace.drain().searchCount());
+    }
+}
@@ -0,0 +1,58 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchWorkspaceTest {
+
+    @Test
+    void resetForgetsThePreviousSearch() {
+        SearchWorkspace workspace = new SearchWorkspace(5, NodePriorityQueue.Kind.QUATERNARY_HEAP);
+        workspace.reset();
+        workspace.update(2, 10f, 1, 7);
+        workspace.settle(2);
+        workspace.update(3, 12f, 2, 8);
+        workspace.queue().insertOrDecrease(3, 12f);
+        assertTrue(workspace.isSettled(2));
+        assertTrue(workspace.isReached(3));
+        assertFalse(workspace.isSettled(3));
+        assertEquals(10f, workspace.distance(2));
+        assertEquals(2, workspace.predecessorNode(3));
+        assertEquals(8, workspace.predecessorEdge(3));
+
+        workspace.reset();
+        for (int i = 0; i < workspace.nodeCount(); ++i) {
+            assertFalse(workspace.isReached(i));
+            assertFalse(workspace.isSettled(i));
+            assertEquals(Float.POSITIVE_INFINITY, workspace.distance(i));
+        }
+        assertTrue(workspace.queue().isEmpty());
+    }
+
+    @Test
+    void threadLocalPoolGivesOneWorkspacePerThread() throws InterruptedException {
+        ThreadLocal<SearchWorkspace> pool = SearchWorkspace.threadLocalPool(5, NodePriorityQueue.Kind.RADIX_HEAP);
+        SearchWorkspace mine = pool.get();
+        assertSame(mine, pool.get());
+        SearchWorkspace[] other = new SearchWorkspace[1];
+        Thread thread = new Thread(() -> other[0] = pool.get());
+        thread.start();
+        thread.join();
+        assertNotNull(other[0]);
+        assertNotSame(mine, other[0]);
+    }
+
+    @Test
+    void routeComputerReusesItsWorkspaceCorrectly() {
+        var graph = TestGraphs.grid(20, 20, 40, 2022);
+        var costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int i = 1; i < 50; ++i) {
+            Route route = routeComputer.bestRouteBetween(0, i * 7);
+            if (route == null) continue;
+            assertEquals(0, route.edges().get(0).fromNodeId());
+            assertEquals(i * 7, route.edges().get(route.edges().size() - 1).toNodeId());
+        }
+    }
+}
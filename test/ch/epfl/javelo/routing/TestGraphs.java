@@ -0,0 +1,200 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.*;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+import static ch.epfl.javelo.data.Attribute.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * builds small in-memory graphs, with the same binary layout as the real ones, to test the routing algorithms
+ * without the lausanne data
+ */
+public final class TestGraphs {
+    private static final int SECTORS_PER_SIDE = 128;
+    private static final double SECTOR_WIDTH = SwissBounds.WIDTH / SECTORS_PER_SIDE;
+    private static final double SECTOR_HEIGHT = SwissBounds.HEIGHT / SECTORS_PER_SIDE;
+    private static final double ORIGIN_E = 2_530_000;
+    private static final double ORIGIN_N = 1_150_000;
+
+    // Attribute sets used by the edges: index 0 is a plain cycle route, the others exercise CityBikeCF
+    public static final List<AttributeSet> ATTRIBUTE_SETS = List.of(
+            AttributeSet.of(HIGHWAY_CYCLEWAY, LCN_YES),
+            AttributeSet.of(HIGHWAY_RESIDENTIAL),
+            AttributeSet.of(HIGHWAY_TRACK, TRACKTYPE_GRADE3),
+            AttributeSet.of(HIGHWAY_PRIMARY),
+            AttributeSet.of(HIGHWAY_TRUNK),
+            AttributeSet.of(HIGHWAY_STEPS),
+            AttributeSet.of(HIGHWAY_RESIDENTIAL, ONEWAY_YES),
+            AttributeSet.of(HIGHWAY_MOTORWAY));
+
+    private TestGraphs() {
+    }
+
+    /**
+     * returns a width x height grid graph with two edges (one per direction) between neighbouring nodes,
+     * random edge attributes and elevation gains, and slightly jittered node positions
+     */
+    public static Graph grid(int width, int height, double spacing, long seed) {
+        RandomGenerator rng = RandomGeneratorFactory.getDefault().create(seed);
+        int count = width * height;
+        double[] e = new double[count];
+        double[] n = new double[count];
+        for (int y = 0; y < height; ++y)
+            for (int x = 0; x < width; ++x) {
+                e[y * width + x] = ORIGIN_E + x * spacing + rng.nextDouble(-spacing / 5, spacing / 5);
+                n[y * width + x] = ORIGIN_N + y * spacing + rng.nextDouble(-spacing / 5, spacing / 5);
+            }
+
+        List<int[]> ways = new ArrayList<>();
+        for (int y = 0; y < height; ++y)
+            for (int x = 0; x < width; ++x) {
+                int id = y * width + x;
+                if (x + 1 < width) ways.add(new int[]{id, id + 1, rng.nextInt(ATTRIBUTE_SETS.size())});
+                if (y + 1 < height) ways.add(new int[]{id, id + width, rng.nextInt(ATTRIBUTE_SETS.size())});
+            }
+        return build(e, n, ways, rng);
+    }
+
+    /**
+     * returns the graph made of the given nodes and two-way ways (from, to, attributeIndex); each way gives
+     * an edge from->to and an inverted edge to->from. Nodes are renumbered so that they are sorted by sector
+     */
+    public static Graph build(double[] e, double[] n, List<int[]> ways, RandomGenerator rng) {
+        int count = e.length;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; ++i) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> sectorOf(e[i], n[i])).thenComparingInt(i -> i));
+        int[] newId = new int[count];
+        for (int i = 0; i < count; ++i) newId[order[i]] = i;
+
+        List<List<int[]>> outEdges = new ArrayList<>();
+        for (int i = 0; i < count; ++i) outEdges.add(new ArrayList<>());
+        for (int[] way : ways) {
+            int from = newId[way[0]], to = newId[way[1]];
+            double dx = e[way[1]] - e[way[0]], dy = n[way[1]] - n[way[0]];
+            int length = (int) Math.ceil(Math.hypot(dx, dy) * (1 + rng.nextDouble(0.3)) * 16);
+            int gain1 = rng.nextInt(Math.max(1, length / 8));
+            int gain2 = rng.nextInt(Math.max(1, length / 8));
+            outEdges.get(from).add(new int[]{to, 0, length, gain1, way[2]});
+            outEdges.get(to).add(new int[]{from, 1, length, gain2, way[2]});
+        }
+
+        int edgeCount = 2 * ways.size();
+        ByteBuffer edgesBuffer = ByteBuffer.allocate(edgeCount * 10);
+        IntBuffer nodesBuffer = IntBuffer.allocate(count * 3);
+        int edgeId = 0;
+        for (int id = 0; id < count; ++id) {
+            int old = order[id];
+            List<int[]> out = outEdges.get(id);
+            nodesBuffer.put((int) Math.round(e[old] * 16));
+            nodesBuffer.put((int) Math.round(n[old] * 16));
+            nodesBuffer.put((out.size() << 28) | edgeId);
+            for (int[] edge : out) {
+                edgesBuffer.putInt(edge[1] == 1 ? ~edge[0] : edge[0]);
+                edgesBuffer.putShort((short) edge[2]);
+                edgesBuffer.putShort((short) edge[3]);
+                edgesBuffer.putShort((short) edge[4]);
+                ++edgeId;
+            }
+        }
+
+        ByteBuffer sectorsBuffer = ByteBuffer.allocate(SECTORS_PER_SIDE * SECTORS_PER_SIDE * 6);
+        int id = 0;
+        for (int sector = 0; sector < SECTORS_PER_SIDE * SECTORS_PER_SIDE; ++sector) {
+            int first = id;
+            while (id < count && sectorOf(e[order[id]], n[order[id]]) == sector) ++id;
+            sectorsBuffer.putInt(first);
+            sectorsBuffer.putShort((short) (id - first));
+        }
+
+        return new Graph(new GraphNodes(nodesBuffer.rewind()), new GraphSectors(sectorsBuffer.rewind()),
+                new GraphEdges(edgesBuffer.rewind(), IntBuffer.allocate(edgeCount), ShortBuffer.allocate(0)),
+                ATTRIBUTE_SETS);
+    }
+
+    /**
+     * returns the cost of a route according to the given cost function, taking for each of its edges
+     * the cheapest graph edge linking its nodes
+     */
+    public static double cost(Graph graph, CostFunction costFunction, Route route) {
+        double cost = 0;
+        for (Edge edge : route.edges()) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); ++i) {
+                int edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+                if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId())
+                    best = Math.min(best, costFunction.costFactor(edge.fromNodeId(), edgeId) * graph.edgeLength(edgeId));
+            }
+            cost += best;
+        }
+        return cost;
+    }
+
+    /**
+     * returns the given number of random nodes of the graph
+     */
+    public static int[] randomNodeIds(Graph graph, RandomGenerator rng, int count) {
+        return rng.ints(count, 0, graph.nodeCount()).toArray();
+    }
+
+    /**
+     * returns the given number of random nodes of the graph, all different from the given one, so that they can
+     * be the ends of routes starting from it
+     */
+    public static int[] randomNodeIdsOtherThan(Graph graph, RandomGenerator rng, int count, int excludedNodeId) {
+        int[] nodeIds = rng.ints(count, 0, graph.nodeCount() - 1).toArray();
+        for (int i = 0; i < count; ++i) if (nodeIds[i] >= excludedNodeId) ++nodeIds[i];
+        return nodeIds;
+    }
+
+    /**
+     * returns the given number of pairs of distinct random nodes of the graph, as {startNodeId, endNodeId}
+     */
+    public static int[][] randomNodePairs(Graph graph, RandomGenerator rng, int count) {
+        int[][] pairs = new int[count][];
+        for (int i = 0; i < count; ++i) {
+            int start = rng.nextInt(graph.nodeCount());
+            pairs[i] = new int[]{start, randomNodeIdsOtherThan(graph, rng, 1, start)[0]};
+        }
+        return pairs;
+    }
+
+    /**
+     * checks that a route found by another technique is as good as the expected one, found by a plain
+     * RouteComputer: either both are null, or the actual route is connected, links the same nodes, and has the
+     * same cost according to the given cost function, up to a relative tolerance of 1e-3
+     */
+    public static void assertSameRouteCost(Graph graph, CostFunction costFunction, Route expected, Route actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        List<Edge> expectedEdges = expected.edges();
+        List<Edge> actualEdges = actual.edges();
+        assertEquals(expectedEdges.get(0).fromNodeId(), actualEdges.get(0).fromNodeId());
+        assertEquals(expectedEdges.get(expectedEdges.size() - 1).toNodeId(),
+                actualEdges.get(actualEdges.size() - 1).toNodeId());
+        for (int j = 1; j < actualEdges.size(); ++j)
+            assertEquals(actualEdges.get(j - 1).toNodeId(), actualEdges.get(j).fromNodeId());
+        double expectedCost = cost(graph, costFunction, expected);
+        assertEquals(expectedCost, cost(graph, costFunction, actual), 1e-3 * expectedCost);
+    }
+
+    private static int sectorOf(double e, double n) {
+        int x = (int) ((e - SwissBounds.MIN_E) / SECTOR_WIDTH);
+        int y = (int) ((n - SwissBounds.MIN_N) / SECTOR_HEIGHT);
+        return y * SECTORS_PER_SIDE + x;
+    }
+}
@@ -0,0 +1,145 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaypointOrderOptimizerTest {
+
+    private static DistanceMatrix randomMatrix(int count, java.util.random.RandomGenerator rng) {
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; ++i) {
+            x[i] = rng.nextDouble(10_000);
+            y[i] = rng.nextDouble(10_000);
+        }
+        float[] costs = new float[count * count];
+        for (int i = 0; i < count; ++i) {
+            for (int j = 0; j < count; ++j) {
+                //climbing towards the north is more expensive, so that the costs are not symmetric
+                double climb = Math.max(0, y[j] - y[i]);
+                costs[i * count + j] = (float) (Math.hypot(x[j] - x[i], y[j] - y[i]) + 0.5 * climb);
+            }
+        }
+        return new DistanceMatrix(count, count, costs, costs.clone());
+    }
+
+    private static double pathCost(DistanceMatrix matrix, int[] order) {
+        double cost = 0;
+        for (int i = 1; i < order.length; ++i) cost += matrix.cost(order[i - 1], order[i]);
+        return cost;
+    }
+
+    private static double bestPathCost(DistanceMatrix matrix, int[] order, int fixed, boolean fixedFirst,
+                                       boolean fixedLast) {
+        if (fixed == order.length) {
+            if (fixedFirst && order[0] != 0) return Double.POSITIVE_INFINITY;
+            if (fixedLast && order[order.length - 1] != order.length - 1) return Double.POSITIVE_INFINITY;
+            return pathCost(matrix, order);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = fixed; i < order.length; ++i) {
+            int[] next = order.clone();
+            next[fixed] = order[i];
+            next[i] = order[fixed];
+            best = Math.min(best, bestPathCost(matrix, next, fixed + 1, fixedFirst, fixedLast));
+        }
+        return best;
+    }
+
+    @Test
+    void optimalOrderIsAValidPermutationRespectingTheFixedEnds() {
+        var rng = newRandom();
+        for (int i = 0; i < 200; ++i) {
+            int count = 1 + rng.nextInt(25);
+            DistanceMatrix matrix = randomMatrix(count, rng);
+            boolean fixedFirst = rng.nextBoolean();
+            boolean fixedLast = rng.nextBoolean();
+            int[] order = WaypointOrderOptimizer.optimalOrder(matrix, fixedFirst, fixedLast);
+            int[] sorted = order.clone();
+            Arrays.sort(sorted);
+            for (int j = 0; j < count; ++j) assertEquals(j, sorted[j]);
+            if (fixedFirst) assertEquals(0, order[0]);
+            if (fixedLast) assertEquals(count - 1, order[count - 1]);
+        }
+    }
+
+    @Test
+    void optimalOrderIsCloseToTheBestOneOnSmallInstances() {
+        var rng = newRandom();
+        double totalCost = 0;
+        double totalBestCost = 0;
+        for (int i = 0; i < 100; ++i) {
+            int count = 3 + rng.nextInt(5);
+            DistanceMatrix matrix = randomMatrix(count, rng);
+            boolean fixedFirst = rng.nextBoolean();
+            boolean fixedLast = rng.nextBoolean();
+            int[] identity = new int[count];
+            for (int j = 0; j < count; ++j) identity[j] = j;
+            double cost = pathCost(matrix, WaypointOrderOptimizer.optimalOrder(matrix, fixedFirst, fixedLast));
+            double bestCost = bestPathCost(matrix, identity, 0, fixedFirst, fixedLast);
+            assertTrue(cost >= bestCost - 1e-3);
+            totalCost += cost;
+            totalBestCost += bestCost;
+        }
+        assertTrue(totalCost <= 1.02 * totalBestCost);
+    }
+
+    @Test
+    void optimalOrderAvoidsMissingRoutes() {
+        float inf = Float.POSITIVE_INFINITY;
+        float[] costs = {
+                0, 2, 1, inf,
+                2, 0, 5, 1,
+                1, inf, 0, 1,
+                inf, 1, 1, 0};
+        DistanceMatrix matrix = new DistanceMatrix(4, 4, costs, costs.clone());
+        int[] order = WaypointOrderOptimizer.optimalOrder(matrix, true, true);
+        assertArrayEquals(new int[]{0, 1, 2, 3}, order);
+    }
+
+    @Test
+    void optimalOrderOfNodesKeepsTheWaypointsSharingANode() {
+        var rng = newRandom();
+        ch.epfl.javelo.data.Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        for (int i = 0; i < 20; ++i) {
+            int[] nodeIds = rng.ints(8, 0, graph.nodeCount()).toArray();
+            //a round trip, starting and ending at the same node
+            nodeIds[7] = nodeIds[0];
+            int[] order = WaypointOrderOptimizer.optimalOrder(routeComputer, nodeIds, true, true);
+            assertEquals(0, order[0]);
+            assertEquals(7, order[7]);
+            int[] sorted = order.clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5, 6, 7}, sorted);
+        }
+    }
+
+    @Test
+    void optimalOrderOfNodesCostsTheSameWithAHierarchy() {
+        var rng = newRandom();
+        ch.epfl.javelo.data.Graph graph = TestGraphs.grid(30, 30, 40, 2022);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        ManyToManyComputer manyToManyComputer =
+                new ManyToManyComputer(ContractionHierarchyBuilder.build(graph, costFunction));
+        for (int i = 0; i < 10; ++i) {
+            int[] nodeIds = rng.ints(0, graph.nodeCount()).distinct().limit(8).toArray();
+            DistanceMatrix matrix = routeComputer.costMatrix(nodeIds);
+            double expected = pathCost(matrix, WaypointOrderOptimizer.optimalOrder(matrix, false, true));
+            double actual = pathCost(matrix,
+                    WaypointOrderOptimizer.optimalOrder(manyToManyComputer, nodeIds, false, true));
+            assertEquals(expected, actual, 1e-3 * expected);
+        }
+    }
+
+    @Test
+    void optimalOrderThrowsOnNonSquareMatrix() {
+        DistanceMatrix matrix = new DistanceMatrix(2, 3, new float[6], new float[6]);
+        assertThrows(IllegalArgumentException.class, () -> WaypointOrderOptimizer.optimalOrder(matrix, true, true));
+    }
+}